@@ -1,8 +1,10 @@
 package iwkms.chatapp.authservice.config;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import iwkms.chatapp.authservice.security.BoundedPasswordEncoder;
 import iwkms.chatapp.common.security.config.JwtSecurityConfig;
 import iwkms.chatapp.common.security.jwt.JwtUtil;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.authentication.AuthenticationManager;
@@ -21,8 +23,11 @@ public class SecurityConfig extends JwtSecurityConfig {
     }
 
     @Bean
-    public BCryptPasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    public BoundedPasswordEncoder passwordEncoder(
+            @Value("${auth.password-hashing.threads:0}") int threads,
+            @Value("${auth.password-hashing.queue-capacity:64}") int queueCapacity,
+            @Value("${auth.password-hashing.timeout-ms:5000}") long timeoutMs) {
+        return new BoundedPasswordEncoder(new BCryptPasswordEncoder(), threads, queueCapacity, timeoutMs);
     }
 
     @Bean
@@ -31,11 +36,14 @@ public class SecurityConfig extends JwtSecurityConfig {
     }
 
     @Bean
-    public SecurityFilterChain filterChain(HttpSecurity http) throws Exception {
+    public SecurityFilterChain filterChain(HttpSecurity http,
+            @Value("${management.server.port:-1}") int managementPort) throws Exception {
         http.authorizeHttpRequests(auth -> auth
+                .requestMatchers(onManagementPort(managementPort)).permitAll()
                 .requestMatchers("/", "/login", "/register", "/register-process", 
                                  "/css/**", "/js/**", "/images/**", "/webjars/**", "/favicon.ico").permitAll()
-                .requestMatchers("/api/v1/auth/register", "/api/v1/auth/login").permitAll() 
+                .requestMatchers("/api/v1/auth/register", "/api/v1/auth/login").permitAll()
+                .requestMatchers("/actuator/health").permitAll()
                 .anyRequest().authenticated()
         );
         
@@ -6,6 +6,7 @@ import iwkms.chatapp.authservice.dto.ErrorResponseDto;
 import iwkms.chatapp.authservice.dto.GenericResponseDto;
 import iwkms.chatapp.authservice.dto.AuthResponseDto;
 import iwkms.chatapp.authservice.dto.UserInfoResponseDto;
+import iwkms.chatapp.authservice.exception.PasswordHashingOverloadedException;
 import iwkms.chatapp.authservice.exception.UserAlreadyExistsException;
 import iwkms.chatapp.authservice.model.UserEntity;
 import iwkms.chatapp.authservice.service.UserService;
@@ -63,6 +64,9 @@ public class AuthController {
         } catch (UserAlreadyExistsException e) {
             logger.warn("Registration failed for user {}: {}", registrationDto.getUsername(), e.getMessage());
             throw e;
+        } catch (PasswordHashingOverloadedException e) {
+            logger.warn("Registration rejected for user {}: {}", registrationDto.getUsername(), e.getMessage());
+            throw e;
         } catch (Exception e) {
             logger.error("Unexpected error during registration for user {}: {}", registrationDto.getUsername(), e.getMessage(), e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(new ErrorResponseDto(
@@ -103,6 +107,9 @@ public class AuthController {
         } catch (AuthenticationException e) {
             logger.warn("Login failed for user {}: {}", loginRequestDto.getUsername(), e.getMessage());
             throw e;
+        } catch (PasswordHashingOverloadedException e) {
+            logger.warn("Login rejected for user {}: {}", loginRequestDto.getUsername(), e.getMessage());
+            throw e;
         } catch (Exception e) {
             logger.error("Unexpected error during login for user {}: {}", loginRequestDto.getUsername(), e.getMessage(), e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(new ErrorResponseDto(
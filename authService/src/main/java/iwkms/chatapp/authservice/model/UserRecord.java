@@ -0,0 +1,18 @@
+package iwkms.chatapp.authservice.model;
+
+import java.util.List;
+
+/**
+ * Immutable snapshot of the fields needed to authenticate a user.
+ */
+public record UserRecord(String username,
+                         String passwordHash,
+                         boolean enabled,
+                         boolean accountNonLocked,
+                         List<String> roles) {
+
+    public static UserRecord from(UserEntity user) {
+        return new UserRecord(user.getUsername(), user.getPassword(), user.isEnabled(), user.isAccountNonLocked(),
+                List.copyOf(user.getRoles()));
+    }
+}
@@ -1,6 +1,6 @@
 package iwkms.chatapp.authservice.service;
 
-import iwkms.chatapp.authservice.model.UserEntity;
+import iwkms.chatapp.authservice.model.UserRecord;
 import iwkms.chatapp.authservice.repository.UserRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
@@ -12,25 +12,32 @@ import java.util.stream.Collectors;
 @Service
 public class UserDetailsServiceImpl implements UserDetailsService {
     private final UserRepository userRepository;
+    private final UserRecordCache userRecordCache;
 
     @Autowired
-    public UserDetailsServiceImpl(UserRepository userRepository) {
+    public UserDetailsServiceImpl(UserRepository userRepository, UserRecordCache userRecordCache) {
         this.userRepository = userRepository;
+        this.userRecordCache = userRecordCache;
     }
 
+    /**
+     * Returns a new {@link User} on every call: the authentication manager
+     * erases the password of the instance it is given after login.
+     */
     @Override
     public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
-        UserEntity userEntity = userRepository.findByUsername(username)
+        UserRecord user = userRecordCache.getOrLoad(username,
+                        name -> userRepository.findByUsername(name).map(UserRecord::from))
             .orElseThrow(() -> new UsernameNotFoundException("Пользователь не найден: " + username));
         
         return new org.springframework.security.core.userdetails.User(
-                userEntity.getUsername(),
-                userEntity.getPassword(),
-                userEntity.isEnabled(),
+                user.username(),
+                user.passwordHash(),
+                user.enabled(),
                 true,
                 true,
-                userEntity.isAccountNonLocked(),
-                userEntity.getRoles().stream()
+                user.accountNonLocked(),
+                user.roles().stream()
                         .map(SimpleGrantedAuthority::new)
                         .collect(Collectors.toList())
         );
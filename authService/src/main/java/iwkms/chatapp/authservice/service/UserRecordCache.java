@@ -0,0 +1,99 @@
+package iwkms.chatapp.authservice.service;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import iwkms.chatapp.authservice.model.UserRecord;
+import iwkms.chatapp.common.cache.BoundedLruCache;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * User records by username, so a warm login needs no SQL. Unknown users are
+ * not cached; when full, the least recently used user is dropped. Writes
+ * invalidate the entry once their transaction commits; a load that overlaps
+ * an invalidation is returned but not cached. Other authService instances do
+ * not see that invalidation, so every entry also expires {@code ttl-ms} after
+ * it was loaded, which bounds how long a node can serve a stale user.
+ */
+@Component
+public class UserRecordCache implements MeterBinder {
+    private final boolean enabled;
+    private final long ttlNanos;
+    private final BoundedLruCache<String, CachedUser> users;
+    private final AtomicLong generation = new AtomicLong();
+
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+
+    @Autowired
+    public UserRecordCache(@Value("${auth.cache.users.enabled:true}") boolean enabled,
+                           @Value("${auth.cache.users.max-entries:10000}") int maxEntries,
+                           @Value("${auth.cache.users.ttl-ms:60000}") long ttlMs) {
+        this.enabled = enabled;
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMs);
+        this.users = new BoundedLruCache<>(maxEntries);
+    }
+
+    public Optional<UserRecord> getOrLoad(String username, Function<String, Optional<UserRecord>> loader) {
+        CachedUser cached = enabled ? users.get(username) : null;
+        if (cached != null && System.nanoTime() - cached.loadedAt() < ttlNanos) {
+            hitCount.increment();
+            return Optional.of(cached.record());
+        }
+        missCount.increment();
+        long stamp = generation.get();
+        Optional<UserRecord> loaded = loader.apply(username);
+        if (enabled && loaded.isPresent()) {
+            CachedUser user = new CachedUser(loaded.get(), System.nanoTime());
+            users.compute(username, (name, current) -> generation.get() != stamp ? current : user);
+        }
+        return loaded;
+    }
+
+    public void invalidate(String username) {
+        Runnable apply = () -> users.compute(username, (name, current) -> {
+            generation.incrementAndGet();
+            return null;
+        });
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            apply.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                apply.run();
+            }
+        });
+    }
+
+    public int size() {
+        return users.size();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("auth.cache.users.hits", hitCount, LongAdder::sum)
+                .description("User lookups answered from memory")
+                .register(registry);
+        FunctionCounter.builder("auth.cache.users.misses", missCount, LongAdder::sum)
+                .description("User lookups that queried the database")
+                .register(registry);
+        Gauge.builder("auth.cache.users.size", this, UserRecordCache::size)
+                .register(registry);
+    }
+
+    private record CachedUser(UserRecord record, long loadedAt) {
+    }
+}
@@ -15,14 +15,17 @@ import java.util.Optional;
 public class UserService {
     private final UserRepository userRepository;
     private final PasswordEncoder passwordEncoder;
+    private final UserRecordCache userRecordCache;
 
     public static final String DEFAULT_USER_ROLE = "USER";
 
     @Autowired
     public UserService(UserRepository userRepository,
-                       PasswordEncoder passwordEncoder) {
+                       PasswordEncoder passwordEncoder,
+                       UserRecordCache userRecordCache) {
         this.userRepository = userRepository;
         this.passwordEncoder = passwordEncoder;
+        this.userRecordCache = userRecordCache;
     }
 
     @Transactional
@@ -35,7 +38,9 @@ public class UserService {
                 .password(passwordEncoder.encode(registrationDto.getPassword()))
                 .build();
         user.getRoles().add(DEFAULT_USER_ROLE);
-        return userRepository.save(user);
+        UserEntity saved = userRepository.save(user);
+        userRecordCache.invalidate(user.getUsername());
+        return saved;
     }
 
     public Optional<UserEntity> findByUsername(String username) {
@@ -3,6 +3,7 @@ package iwkms.chatapp.authservice.controller;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import iwkms.chatapp.authservice.dto.LoginRequestDto;
 import iwkms.chatapp.authservice.dto.RegistrationDto;
+import iwkms.chatapp.authservice.exception.PasswordHashingOverloadedException;
 import iwkms.chatapp.authservice.exception.UserAlreadyExistsException;
 import iwkms.chatapp.authservice.model.UserEntity;
 import iwkms.chatapp.authservice.service.UserService;
@@ -176,6 +177,38 @@ class AuthControllerTest {
                 .andExpect(jsonPath("$.path").value("/api/v1/auth/login"));
     }
     
+    @Test
+    void testLogin_PasswordHashingOverloaded() throws Exception {
+        String exceptionMessage = "Сервис аутентификации перегружен, повторите попытку позже";
+        given(authenticationManager.authenticate(any(UsernamePasswordAuthenticationToken.class)))
+                .willThrow(new PasswordHashingOverloadedException(exceptionMessage));
+
+        ResultActions response = mockMvc.perform(post("/api/v1/auth/login")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(loginRequestDto))
+                .with(csrf()));
+
+        response.andExpect(status().isServiceUnavailable())
+                .andExpect(header().string("Retry-After", "1"))
+                .andExpect(jsonPath("$.status").value(HttpStatus.SERVICE_UNAVAILABLE.value()))
+                .andExpect(jsonPath("$.message").value(exceptionMessage))
+                .andExpect(jsonPath("$.path").value("/api/v1/auth/login"));
+    }
+
+    @Test
+    void testRegisterUser_PasswordHashingOverloaded() throws Exception {
+        given(userService.registerUser(any(RegistrationDto.class)))
+                .willThrow(new PasswordHashingOverloadedException("Сервис аутентификации перегружен, повторите попытку позже"));
+
+        ResultActions response = mockMvc.perform(post("/api/v1/auth/register")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(registrationDto))
+                .with(csrf()));
+
+        response.andExpect(status().isServiceUnavailable())
+                .andExpect(jsonPath("$.path").value("/api/v1/auth/register"));
+    }
+
     @Test
     void testLogin_UserDisabled() throws Exception {
         String exceptionMessage = "Учетная запись пользователя отключена";
@@ -0,0 +1,117 @@
+package iwkms.chatapp.authservice.security;
+
+import iwkms.chatapp.authservice.exception.PasswordHashingOverloadedException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BoundedPasswordEncoderTest {
+
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final CountDownLatch started = new CountDownLatch(1);
+    private BoundedPasswordEncoder encoder;
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        if (encoder != null) {
+            encoder.destroy();
+        }
+    }
+
+    @Test
+    void encodeAndMatches_RunOnHashingThread() {
+        encoder = new BoundedPasswordEncoder(new ThreadRecordingEncoder(), 2, 4, 1000);
+
+        assertTrue(encoder.encode("secret").startsWith("password-hashing-"));
+        assertTrue(encoder.matches("secret", "password-hashing-1:secret"));
+        assertFalse(encoder.matches("other", "password-hashing-1:secret"));
+    }
+
+    @Test
+    void encode_RejectsWhenQueueIsFull() throws Exception {
+        encoder = new BoundedPasswordEncoder(new BlockingEncoder(), 1, 1, 5000);
+        CompletableFuture<String> running = CompletableFuture.supplyAsync(() -> encoder.encode("first"));
+        assertTrue(started.await(1, TimeUnit.SECONDS));
+        CompletableFuture<String> queued = CompletableFuture.supplyAsync(() -> encoder.encode("second"));
+        waitForQueueSize(1);
+
+        assertThrows(PasswordHashingOverloadedException.class, () -> encoder.encode("third"));
+
+        release.countDown();
+        assertEquals("hashed:first", running.get(1, TimeUnit.SECONDS));
+        assertEquals("hashed:second", queued.get(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void encode_FailsFastAfterTimeout() {
+        encoder = new BoundedPasswordEncoder(new BlockingEncoder(), 1, 4, 50);
+
+        assertThrows(PasswordHashingOverloadedException.class, () -> encoder.encode("slow"));
+    }
+
+    @Test
+    void encode_PropagatesDelegateExceptions() {
+        encoder = new BoundedPasswordEncoder(new FailingEncoder(), 1, 4, 1000);
+
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> encoder.encode("x"));
+        assertEquals("bad input", e.getMessage());
+    }
+
+    private void waitForQueueSize(int size) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+        while (encoder.getQueueSize() < size && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(size, encoder.getQueueSize());
+    }
+
+    private static final class ThreadRecordingEncoder implements PasswordEncoder {
+        @Override
+        public String encode(CharSequence rawPassword) {
+            return Thread.currentThread().getName() + ":" + rawPassword;
+        }
+
+        @Override
+        public boolean matches(CharSequence rawPassword, String encodedPassword) {
+            return Thread.currentThread().getName().startsWith("password-hashing-")
+                    && encodedPassword.endsWith(":" + rawPassword);
+        }
+    }
+
+    private final class BlockingEncoder implements PasswordEncoder {
+        @Override
+        public String encode(CharSequence rawPassword) {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return "hashed:" + rawPassword;
+        }
+
+        @Override
+        public boolean matches(CharSequence rawPassword, String encodedPassword) {
+            return encodedPassword.equals(encode(rawPassword));
+        }
+    }
+
+    private static final class FailingEncoder implements PasswordEncoder {
+        @Override
+        public String encode(CharSequence rawPassword) {
+            throw new IllegalArgumentException("bad input");
+        }
+
+        @Override
+        public boolean matches(CharSequence rawPassword, String encodedPassword) {
+            throw new IllegalArgumentException("bad input");
+        }
+    }
+}
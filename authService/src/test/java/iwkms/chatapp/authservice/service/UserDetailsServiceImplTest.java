@@ -7,6 +7,7 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
@@ -29,6 +30,9 @@ class UserDetailsServiceImplTest {
     @Mock
     private UserRepository userRepository;
 
+    @Spy
+    private UserRecordCache userRecordCache = new UserRecordCache(true, 100, 60_000);
+
     @InjectMocks
     private UserDetailsServiceImpl userDetailsService;
 
@@ -109,4 +113,38 @@ class UserDetailsServiceImplTest {
 
         verify(userRepository, times(1)).findByUsername("testuser");
     }
-} 
\ No newline at end of file
+
+    @Test
+    void testLoadUserByUsername_SecondLoginIsServedFromCache() {
+        when(userRepository.findByUsername("testuser")).thenReturn(Optional.of(userEntity));
+
+        UserDetails first = userDetailsService.loadUserByUsername("testuser");
+        UserDetails second = userDetailsService.loadUserByUsername("testuser");
+
+        assertNotSame(first, second);
+        assertEquals("hashedPassword", second.getPassword());
+        verify(userRepository, times(1)).findByUsername("testuser");
+    }
+
+    @Test
+    void testLoadUserByUsername_ErasedCredentialsDoNotLeakIntoCache() {
+        when(userRepository.findByUsername("testuser")).thenReturn(Optional.of(userEntity));
+
+        UserDetails first = userDetailsService.loadUserByUsername("testuser");
+        ((org.springframework.security.core.userdetails.User) first).eraseCredentials();
+
+        assertEquals("hashedPassword", userDetailsService.loadUserByUsername("testuser").getPassword());
+    }
+
+    @Test
+    void testLoadUserByUsername_ReloadsAfterInvalidation() {
+        when(userRepository.findByUsername("testuser")).thenReturn(Optional.of(userEntity));
+        userDetailsService.loadUserByUsername("testuser");
+
+        userRecordCache.invalidate("testuser");
+        userEntity.setAccountNonLocked(false);
+
+        assertFalse(userDetailsService.loadUserByUsername("testuser").isAccountNonLocked());
+        verify(userRepository, times(2)).findByUsername("testuser");
+    }
+}
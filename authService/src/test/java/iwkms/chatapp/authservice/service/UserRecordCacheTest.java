@@ -0,0 +1,107 @@
+package iwkms.chatapp.authservice.service;
+
+import iwkms.chatapp.authservice.model.UserRecord;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UserRecordCacheTest {
+
+    private final UserRecord alice = new UserRecord("alice", "hash", true, true, List.of("USER"));
+
+    @Test
+    void getOrLoad_CachesFoundUsers() {
+        UserRecordCache cache = new UserRecordCache(true, 100, 60_000);
+        AtomicInteger loads = new AtomicInteger();
+
+        cache.getOrLoad("alice", name -> { loads.incrementAndGet(); return Optional.of(alice); });
+        Optional<UserRecord> second = cache.getOrLoad("alice", name -> { loads.incrementAndGet(); return Optional.empty(); });
+
+        assertEquals(Optional.of(alice), second);
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void getOrLoad_ExpiredEntryIsReloaded() throws InterruptedException {
+        UserRecordCache cache = new UserRecordCache(true, 100, 1);
+        AtomicInteger loads = new AtomicInteger();
+        Function<String, Optional<UserRecord>> loader = name -> {
+            loads.incrementAndGet();
+            return Optional.of(alice);
+        };
+
+        cache.getOrLoad("alice", loader);
+        Thread.sleep(5);
+        cache.getOrLoad("alice", loader);
+
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void getOrLoad_DoesNotCacheUnknownUsers() {
+        UserRecordCache cache = new UserRecordCache(true, 100, 60_000);
+
+        assertTrue(cache.getOrLoad("ghost", name -> Optional.empty()).isEmpty());
+
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void getOrLoad_LoadOverlappingInvalidationIsNotCached() {
+        UserRecordCache cache = new UserRecordCache(true, 100, 60_000);
+
+        Optional<UserRecord> loaded = cache.getOrLoad("alice", name -> {
+            cache.invalidate("alice");
+            return Optional.of(alice);
+        });
+
+        assertEquals(Optional.of(alice), loaded);
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void getOrLoad_StaysWithinMaxEntries() {
+        UserRecordCache cache = new UserRecordCache(true, 2, 60_000);
+
+        for (String name : List.of("a", "b", "c", "d")) {
+            cache.getOrLoad(name, n -> Optional.of(new UserRecord(n, "hash", true, true, List.of())));
+        }
+
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    void getOrLoad_WhenFull_DropsLeastRecentlyUsedUser() {
+        UserRecordCache cache = new UserRecordCache(true, 2, 60_000);
+        AtomicInteger loads = new AtomicInteger();
+        Function<String, Optional<UserRecord>> loader = n -> {
+            loads.incrementAndGet();
+            return Optional.of(new UserRecord(n, "hash", true, true, List.of()));
+        };
+        cache.getOrLoad("a", loader);
+        cache.getOrLoad("b", loader);
+        cache.getOrLoad("a", loader);
+
+        cache.getOrLoad("c", loader);
+        cache.getOrLoad("a", loader);
+
+        assertEquals(3, loads.get());
+    }
+
+    @Test
+    void disabledCache_AlwaysLoads() {
+        UserRecordCache cache = new UserRecordCache(false, 100, 60_000);
+        AtomicInteger loads = new AtomicInteger();
+
+        cache.getOrLoad("alice", name -> { loads.incrementAndGet(); return Optional.of(alice); });
+        cache.getOrLoad("alice", name -> { loads.incrementAndGet(); return Optional.of(alice); });
+
+        assertEquals(2, loads.get());
+        assertEquals(0, cache.size());
+    }
+}
@@ -27,6 +27,9 @@ class UserServiceTest {
     @Mock
     private PasswordEncoder passwordEncoder;
 
+    @Mock
+    private UserRecordCache userRecordCache;
+
     @InjectMocks
     private UserService userService;
 
@@ -70,6 +73,7 @@ class UserServiceTest {
         verify(userRepository, times(1)).existsByUsername("testuser");
         verify(passwordEncoder, times(1)).encode("password123");
         verify(userRepository, times(1)).save(any(UserEntity.class));
+        verify(userRecordCache).invalidate("testuser");
     }
 
     @Test
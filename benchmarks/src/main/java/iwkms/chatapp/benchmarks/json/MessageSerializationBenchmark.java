@@ -0,0 +1,87 @@
+package iwkms.chatapp.benchmarks.json;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import iwkms.chatapp.chatservice.dto.ChatMessageDto;
+import iwkms.chatapp.chatservice.dto.ChatMessageWireDto;
+import iwkms.chatapp.chatservice.model.ChatMessage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Jackson cost of the message types on the send path: reading the inbound
+ * {@link ChatMessageDto}, writing the {@link ChatMessage} entity as the REST
+ * controller does, and writing the {@link ChatMessageWireDto} that is
+ * broadcast to subscribers. The mapper is configured like Spring Boot's.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MessageSerializationBenchmark {
+
+    @Param({"64", "1024"})
+    public int contentLength;
+
+    private ObjectMapper objectMapper;
+    private ObjectWriter entityWriter;
+    private ObjectWriter wireWriter;
+    private ObjectReader dtoReader;
+    private ChatMessage message;
+    private ChatMessageWireDto wireDto;
+    private ChatMessageDto dto;
+    private byte[] dtoJson;
+
+    @Setup
+    public void setUp() throws IOException {
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        entityWriter = objectMapper.writerFor(ChatMessage.class);
+        wireWriter = objectMapper.writerFor(ChatMessageWireDto.class);
+        dtoReader = objectMapper.readerFor(ChatMessageDto.class);
+
+        String content = "x".repeat(contentLength);
+        message = new ChatMessage("bench-user", "general", content);
+        message.setId(42L);
+        message.setTimestamp(LocalDateTime.of(2024, 5, 1, 10, 0));
+        wireDto = ChatMessageWireDto.from(message);
+        dto = new ChatMessageDto("bench-user", "general", content);
+        dtoJson = objectMapper.writeValueAsBytes(dto);
+    }
+
+    @Benchmark
+    public byte[] writeEntity() throws IOException {
+        return entityWriter.writeValueAsBytes(message);
+    }
+
+    @Benchmark
+    public byte[] writeWireDto() throws IOException {
+        return wireWriter.writeValueAsBytes(wireDto);
+    }
+
+    @Benchmark
+    public byte[] writeDto() throws IOException {
+        return objectMapper.writeValueAsBytes(dto);
+    }
+
+    @Benchmark
+    public ChatMessageDto readDto() throws IOException {
+        return dtoReader.readValue(dtoJson);
+    }
+}
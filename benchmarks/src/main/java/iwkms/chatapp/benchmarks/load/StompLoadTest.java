@@ -0,0 +1,195 @@
+package iwkms.chatapp.benchmarks.load;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import iwkms.chatapp.common.security.jwt.JwtUtil;
+import org.springframework.messaging.simp.stomp.StompFrameHandler;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.messaging.simp.stomp.StompSessionHandlerAdapter;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.socket.WebSocketHttpHeaders;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+import org.springframework.web.socket.sockjs.client.SockJsClient;
+import org.springframework.web.socket.sockjs.client.WebSocketTransport;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Closed-loop STOMP load test against a running ChatService. Each client
+ * subscribes to one of {@code load.rooms} rooms, sends a message, waits for
+ * its own message to come back on the room topic, records the round trip and
+ * sends the next one. Prints throughput and latency percentiles; run it once
+ * against a server started with {@code spring.threads.virtual.enabled=false}
+ * and once with {@code true} to compare.
+ *
+ * <pre>
+ * java -Dload.clients=500 -cp benchmarks/target/benchmarks.jar iwkms.chatapp.benchmarks.load.StompLoadTest
+ * </pre>
+ *
+ * Tokens are minted locally, so {@code load.jwt.secret} must match the
+ * server's {@code jwt.secret}.
+ */
+public class StompLoadTest {
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private final String url = System.getProperty("load.url", "ws://localhost:8080/ws");
+    private final int clients = Integer.getInteger("load.clients", 200);
+    private final int rooms = Integer.getInteger("load.rooms", 20);
+    private final int messagesPerClient = Integer.getInteger("load.messages", 50);
+    private final long timeoutSeconds = Long.getLong("load.timeout-s", 300);
+    private final JwtUtil jwtUtil = new JwtUtil(System.getProperty("load.jwt.secret",
+            "your-very-strong-and-long-secret-key-that-is-at-least-256-bits-long-for-hs256-example"), 3_600_000);
+
+    public static void main(String[] args) throws Exception {
+        new StompLoadTest().run();
+    }
+
+    void run() throws Exception {
+        WebSocketStompClient stompClient = new WebSocketStompClient(
+                new SockJsClient(List.of(new WebSocketTransport(new StandardWebSocketClient()))));
+        CountDownLatch done = new CountDownLatch(clients);
+        AtomicInteger failures = new AtomicInteger();
+        List<LoadClient> loadClients = new ArrayList<>(clients);
+        List<StompSession> sessions = new ArrayList<>(clients);
+
+        for (int i = 0; i < clients; i++) {
+            LoadClient client = new LoadClient("load-user-" + i, "load-room-" + (i % rooms), done, failures);
+            StompHeaders connectHeaders = new StompHeaders();
+            connectHeaders.add("Authorization", "Bearer " + token(client.username));
+            StompSession session = stompClient.connectAsync(url, new WebSocketHttpHeaders(), connectHeaders, client)
+                    .get(10, TimeUnit.SECONDS);
+            client.subscribe(session);
+            sessions.add(session);
+            loadClients.add(client);
+        }
+        // Let the server register the last subscriptions before the first message goes out.
+        Thread.sleep(1_000);
+
+        long start = System.nanoTime();
+        loadClients.forEach(LoadClient::sendNext);
+        boolean completed = done.await(timeoutSeconds, TimeUnit.SECONDS);
+        long elapsedNanos = System.nanoTime() - start;
+
+        sessions.forEach(StompSession::disconnect);
+        stompClient.stop();
+        report(loadClients, elapsedNanos, completed, failures.get());
+    }
+
+    private void report(List<LoadClient> loadClients, long elapsedNanos, boolean completed, int failures) {
+        long[] latencies = loadClients.stream()
+                .flatMapToLong(client -> Arrays.stream(client.latencies, 0, client.received.get()))
+                .sorted()
+                .toArray();
+        double seconds = elapsedNanos / 1e9;
+        System.out.printf("clients=%d rooms=%d messages=%d completed=%s failures=%d%n",
+                clients, rooms, latencies.length, completed, failures);
+        System.out.printf("throughput=%.1f msg/s p50=%.2f ms p99=%.2f ms max=%.2f ms%n",
+                latencies.length / seconds,
+                percentile(latencies, 0.50), percentile(latencies, 0.99), percentile(latencies, 1.0));
+    }
+
+    private static double percentile(long[] sorted, double p) {
+        if (sorted.length == 0) {
+            return Double.NaN;
+        }
+        int index = (int) Math.ceil(p * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))] / 1e6;
+    }
+
+    private String token(String username) {
+        UserDetails user = User.withUsername(username).password("").authorities("ROLE_USER").build();
+        return jwtUtil.generateToken(new UsernamePasswordAuthenticationToken(user, null, user.getAuthorities()));
+    }
+
+    private final class LoadClient extends StompSessionHandlerAdapter {
+        private final String username;
+        private final String roomId;
+        private final CountDownLatch done;
+        private final AtomicInteger failures;
+        private final long[] latencies = new long[messagesPerClient];
+        private final AtomicInteger received = new AtomicInteger();
+        private volatile StompSession session;
+        private volatile long sentAt;
+
+        LoadClient(String username, String roomId, CountDownLatch done, AtomicInteger failures) {
+            this.username = username;
+            this.roomId = roomId;
+            this.done = done;
+            this.failures = failures;
+        }
+
+        void subscribe(StompSession session) {
+            this.session = session;
+            session.subscribe("/topic/messages/" + roomId, this);
+        }
+
+        @Override
+        public Type getPayloadType(StompHeaders headers) {
+            return byte[].class;
+        }
+
+        @Override
+        public void handleFrame(StompHeaders headers, Object payload) {
+            String sender;
+            try {
+                JsonNode message = OBJECT_MAPPER.readTree((byte[]) payload);
+                sender = message.path("senderUsername").asText();
+            } catch (IOException e) {
+                failures.incrementAndGet();
+                return;
+            }
+            if (!username.equals(sender)) {
+                return;
+            }
+            int count = received.get();
+            latencies[count] = System.nanoTime() - sentAt;
+            if (received.incrementAndGet() < messagesPerClient) {
+                sendNext();
+            } else {
+                done.countDown();
+            }
+        }
+
+        @Override
+        public void handleException(StompSession session, StompHeaders command, StompHeaders headers,
+                                    byte[] payload, Throwable exception) {
+            failures.incrementAndGet();
+        }
+
+        @Override
+        public void handleTransportError(StompSession session, Throwable exception) {
+            failures.incrementAndGet();
+        }
+
+        void sendNext() {
+            StompHeaders headers = new StompHeaders();
+            headers.setDestination("/app/chat.sendMessage");
+            headers.setContentType(MimeTypeUtils.APPLICATION_JSON);
+            byte[] body;
+            try {
+                body = OBJECT_MAPPER.writeValueAsBytes(Map.of(
+                        "senderUsername", username,
+                        "chatRoomId", roomId,
+                        "content", "load message " + received.get()));
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+            sentAt = System.nanoTime();
+            session.send(headers, body);
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package iwkms.chatapp.benchmarks.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.prometheus.PrometheusConfig;
+import io.micrometer.prometheus.PrometheusMeterRegistry;
+import iwkms.chatapp.chatservice.service.ChatServiceMetrics;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * What the instrumentation adds to each timed call. {@code unboundTimer} is
+ * {@link ChatServiceMetrics} before a registry binds it; {@code prometheusTimer}
+ * records into a Prometheus registry with a percentile histogram, as in
+ * production. {@code scrape} is the cost of one {@code /actuator/prometheus}
+ * response for these meters. Run with {@code -t 8} to see contention.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MetricsOverheadBenchmark {
+    private ChatServiceMetrics unbound;
+    private ChatServiceMetrics bound;
+    private PrometheusMeterRegistry registry;
+    private Counter counter;
+    private final LongAdder adder = new LongAdder();
+
+    @Setup
+    public void setUp() {
+        unbound = new ChatServiceMetrics();
+        registry = new PrometheusMeterRegistry(PrometheusConfig.DEFAULT);
+        bound = new ChatServiceMetrics();
+        bound.bindTo(registry);
+        counter = Counter.builder("bench.counter").register(registry);
+    }
+
+    @Benchmark
+    public long baseline() {
+        return System.nanoTime() - System.nanoTime();
+    }
+
+    @Benchmark
+    public void unboundTimer() {
+        unbound.recordSave(System.nanoTime());
+    }
+
+    @Benchmark
+    public void prometheusTimer() {
+        bound.recordSave(System.nanoTime());
+    }
+
+    @Benchmark
+    public void counter() {
+        counter.increment();
+    }
+
+    @Benchmark
+    public void longAdder() {
+        adder.increment();
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public String scrape() {
+        return registry.scrape();
+    }
+}
@@ -0,0 +1,57 @@
+package iwkms.chatapp.benchmarks.model;
+
+import iwkms.chatapp.chatservice.model.ChatRoom;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link ChatRoom#hasMember} on rooms with many members, for a member and for
+ * a stranger. Usernames are fresh strings so their hash codes are not cached
+ * across calls the way interned literals would be.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ChatRoomMembershipBenchmark {
+
+    @Param({"10", "1000", "100000"})
+    public int members;
+
+    private ChatRoom room;
+    private String member;
+    private String stranger;
+
+    @Setup
+    public void setUp() {
+        room = new ChatRoom("bench", "Bench", "", true, "owner");
+        for (int i = 0; i < members; i++) {
+            room.addMember("user-" + i);
+        }
+        member = new String("user-" + (members / 2));
+        stranger = new String("stranger-" + members);
+    }
+
+    @Benchmark
+    public boolean hasMember() {
+        return room.hasMember(member);
+    }
+
+    @Benchmark
+    public boolean hasMemberMiss() {
+        return room.hasMember(stranger);
+    }
+}
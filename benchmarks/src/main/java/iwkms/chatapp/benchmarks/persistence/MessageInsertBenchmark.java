@@ -0,0 +1,179 @@
+package iwkms.chatapp.benchmarks.persistence;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares inserting chat messages one statement per row (the old IDENTITY
+ * path) with pooled sequence ids and JDBC batches (the import and
+ * write-behind path). Each path has its own state, so the batch size
+ * parameter only multiplies the batched runs.
+ *
+ * <p>Runs against an in-memory H2 database in PostgreSQL mode by default.
+ * Point it at a real server with {@code -Dbench.jdbc.url=jdbc:postgresql://...}
+ * plus {@code -Dbench.jdbc.user} and {@code -Dbench.jdbc.password}; add
+ * {@code ?reWriteBatchedInserts=true} to the URL to match the service config.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MessageInsertBenchmark {
+    private static final int ROWS = 500;
+    private static final int ALLOCATION_SIZE = 50;
+    private static final String COLUMNS = "sender_username VARCHAR(255) NOT NULL, chat_room_id VARCHAR(255) NOT NULL, "
+            + "content VARCHAR(255) NOT NULL, timestamp TIMESTAMP NOT NULL)";
+
+    @State(Scope.Benchmark)
+    public static class IdentityTable {
+        private Connection connection;
+        private PreparedStatement insert;
+
+        @Setup(Level.Trial)
+        public void setUp() throws SQLException {
+            connection = openConnection();
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("DROP TABLE IF EXISTS bench_chat_messages_identity");
+                statement.execute("CREATE TABLE bench_chat_messages_identity "
+                        + "(id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY, " + COLUMNS);
+            }
+            insert = connection.prepareStatement("INSERT INTO bench_chat_messages_identity "
+                    + "(sender_username, chat_room_id, content, timestamp) VALUES (?, ?, ?, ?)",
+                    Statement.RETURN_GENERATED_KEYS);
+            connection.setAutoCommit(false);
+        }
+
+        @TearDown(Level.Iteration)
+        public void truncate() throws SQLException {
+            truncateTable(connection, "bench_chat_messages_identity");
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws SQLException {
+            connection.close();
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class SequenceTable {
+        @Param({"1", "50", "500"})
+        public int batchSize;
+
+        private Connection connection;
+        private PreparedStatement insert;
+        private PreparedStatement nextval;
+        private long nextId;
+        private long blockLimit;
+
+        @Setup(Level.Trial)
+        public void setUp() throws SQLException {
+            connection = openConnection();
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("DROP TABLE IF EXISTS bench_chat_messages");
+                statement.execute("DROP SEQUENCE IF EXISTS bench_chat_messages_seq");
+                statement.execute("CREATE SEQUENCE bench_chat_messages_seq START WITH 1 INCREMENT BY "
+                        + ALLOCATION_SIZE);
+                statement.execute("CREATE TABLE bench_chat_messages (id BIGINT PRIMARY KEY, " + COLUMNS);
+            }
+            insert = connection.prepareStatement("INSERT INTO bench_chat_messages "
+                    + "(id, sender_username, chat_room_id, content, timestamp) VALUES (?, ?, ?, ?, ?)");
+            nextval = connection.prepareStatement("SELECT nextval('bench_chat_messages_seq')");
+            connection.setAutoCommit(false);
+        }
+
+        @TearDown(Level.Iteration)
+        public void truncate() throws SQLException {
+            truncateTable(connection, "bench_chat_messages");
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws SQLException {
+            connection.close();
+        }
+
+        long nextId() throws SQLException {
+            if (nextId >= blockLimit) {
+                try (ResultSet resultSet = nextval.executeQuery()) {
+                    resultSet.next();
+                    nextId = resultSet.getLong(1);
+                }
+                blockLimit = nextId + ALLOCATION_SIZE;
+            }
+            return nextId++;
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void identityPerRow(IdentityTable table) throws SQLException {
+        PreparedStatement insert = table.insert;
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        for (int i = 0; i < ROWS; i++) {
+            insert.setString(1, "user" + (i & 15));
+            insert.setString(2, "room" + (i & 7));
+            insert.setString(3, "message " + i);
+            insert.setTimestamp(4, now);
+            insert.executeUpdate();
+            try (ResultSet keys = insert.getGeneratedKeys()) {
+                keys.next();
+            }
+        }
+        table.connection.commit();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void pooledSequenceBatched(SequenceTable table) throws SQLException {
+        PreparedStatement insert = table.insert;
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        for (int i = 0; i < ROWS; i++) {
+            insert.setLong(1, table.nextId());
+            insert.setString(2, "user" + (i & 15));
+            insert.setString(3, "room" + (i & 7));
+            insert.setString(4, "message " + i);
+            insert.setTimestamp(5, now);
+            insert.addBatch();
+            if ((i + 1) % table.batchSize == 0) {
+                insert.executeBatch();
+            }
+        }
+        insert.executeBatch();
+        table.connection.commit();
+    }
+
+    private static Connection openConnection() throws SQLException {
+        String url = System.getProperty("bench.jdbc.url", "jdbc:h2:mem:bench;MODE=PostgreSQL;DB_CLOSE_DELAY=-1");
+        return DriverManager.getConnection(url,
+                System.getProperty("bench.jdbc.user", "sa"),
+                System.getProperty("bench.jdbc.password", ""));
+    }
+
+    private static void truncateTable(Connection connection, String table) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("TRUNCATE TABLE " + table);
+        }
+        connection.commit();
+    }
+}
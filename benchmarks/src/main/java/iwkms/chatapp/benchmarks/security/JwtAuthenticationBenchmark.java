@@ -0,0 +1,93 @@
+package iwkms.chatapp.benchmarks.security;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import iwkms.chatapp.common.security.jwt.JwtUtil;
+import iwkms.chatapp.common.security.jwt.ParsedToken;
+import iwkms.chatapp.common.security.jwt.VerifiedTokenCache;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.nio.charset.StandardCharsets;
+import java.security.Key;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of turning a bearer token into an {@link Authentication}, as paid by
+ * every authenticated HTTP request and STOMP CONNECT, and of issuing a token
+ * at login. {@code threeParses} reproduces the previous
+ * {@code getAuthentication}: validate, read subject, read claims, each with a
+ * freshly built parser. {@code cachedToken} is the
+ * same token answered from {@link VerifiedTokenCache}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JwtAuthenticationBenchmark {
+    private static final String SECRET = "your-very-strong-and-long-secret-key-that-is-at-least-256-bits-long-for-hs256-example";
+
+    private JwtUtil jwtUtil;
+    private JwtUtil cachingJwtUtil;
+    private Key key;
+    private String token;
+    private Authentication userAuthentication;
+
+    @Setup
+    public void setUp() {
+        jwtUtil = new JwtUtil(SECRET, 3_600_000);
+        key = Keys.hmacShaKeyFor(SECRET.getBytes(StandardCharsets.UTF_8));
+        UserDetails user = User.withUsername("bench-user").password("").authorities("ROLE_USER", "ROLE_ADMIN").build();
+        userAuthentication = new UsernamePasswordAuthenticationToken(user, null, user.getAuthorities());
+        token = jwtUtil.generateToken(userAuthentication);
+        cachingJwtUtil = new JwtUtil(SECRET, 3_600_000, new VerifiedTokenCache(true, 10_000));
+        cachingJwtUtil.getAuthentication(token);
+    }
+
+    @Benchmark
+    public String generateToken() {
+        return jwtUtil.generateToken(userAuthentication);
+    }
+
+    @Benchmark
+    public Authentication singleParse() {
+        return jwtUtil.getAuthentication(token);
+    }
+
+    @Benchmark
+    public Authentication cachedToken() {
+        return cachingJwtUtil.getAuthentication(token);
+    }
+
+    @Benchmark
+    public Authentication threeParses() {
+        Jwts.parserBuilder().setSigningKey(key).build().parseClaimsJws(token);
+        String username = Jwts.parserBuilder().setSigningKey(key).build()
+                .parseClaimsJws(token).getBody().getSubject();
+        Claims claims = Jwts.parserBuilder().setSigningKey(key).build()
+                .parseClaimsJws(token).getBody();
+        String roles = claims.get(JwtUtil.ROLES_CLAIM, String.class);
+        List<SimpleGrantedAuthority> authorities = Arrays.stream(roles.split(","))
+                .map(SimpleGrantedAuthority::new)
+                .toList();
+        return jwtUtil.toAuthentication(new ParsedToken(username, authorities, claims.getExpiration().toInstant()));
+    }
+}
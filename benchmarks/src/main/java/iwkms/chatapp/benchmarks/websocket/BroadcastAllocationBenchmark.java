@@ -0,0 +1,139 @@
+package iwkms.chatapp.benchmarks.websocket;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import iwkms.chatapp.chatservice.cluster.LocalClusterFanOut;
+import iwkms.chatapp.chatservice.model.ChatMessage;
+import iwkms.chatapp.chatservice.search.MessageSearchIndex;
+import iwkms.chatapp.chatservice.websocket.ChatMessageBroadcaster;
+import iwkms.chatapp.chatservice.websocket.StripedTopicBrokerMessageHandler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.support.ExecutorSubscribableChannel;
+import org.springframework.messaging.support.MessageBuilder;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cost of publishing one room message to its subscribers, from the saved
+ * entity to one outbound message per session:
+ * <ul>
+ *     <li>{@code convertEntity} - {@code convertAndSend} of the JPA entity through
+ *     the Jackson message converter, as the socket controller used to do;</li>
+ *     <li>{@code wireOnce} - {@link ChatMessageBroadcaster}, which writes the wire
+ *     DTO into a pooled buffer and sends the ready bytes.</li>
+ * </ul>
+ * Allocation per broadcast is the {@code gc.alloc.rate.norm} line of the GC
+ * profiler; {@link #main} runs with it enabled and writes JSON results.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BroadcastAllocationBenchmark {
+    private static final String ROOM_ID = "bench";
+
+    @Param({"1", "100"})
+    public int subscribers;
+
+    @Param({"64", "1024"})
+    public int contentLength;
+
+    private StripedTopicBrokerMessageHandler handler;
+    private SimpMessagingTemplate convertingTemplate;
+    private ChatMessageBroadcaster broadcaster;
+    private ChatMessage message;
+    private final LongAdder delivered = new LongAdder();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        MessageChannel outbound = (outgoing, timeout) -> {
+            delivered.increment();
+            return true;
+        };
+        handler = new StripedTopicBrokerMessageHandler(new ExecutorSubscribableChannel(), outbound,
+                new ExecutorSubscribableChannel(), List.of("/topic"), 64);
+        handler.start();
+        for (int i = 0; i < subscribers; i++) {
+            handler.handleMessage(subscribe("session-" + i, "sub-0",
+                    ChatMessageBroadcaster.TOPIC_PREFIX + ROOM_ID));
+        }
+        MessageChannel brokerChannel = (outgoing, timeout) -> {
+            handler.handleMessage(outgoing);
+            return true;
+        };
+
+        ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        MappingJackson2MessageConverter converter = new MappingJackson2MessageConverter();
+        converter.setObjectMapper(objectMapper);
+        convertingTemplate = new SimpMessagingTemplate(brokerChannel);
+        convertingTemplate.setMessageConverter(converter);
+        broadcaster = new ChatMessageBroadcaster(new SimpMessagingTemplate(brokerChannel), new LocalClusterFanOut(),
+                new MessageSearchIndex(false, "search", 1000, 10_000, 10, 1 << 30), objectMapper);
+
+        message = new ChatMessage("bench-user", ROOM_ID, "x".repeat(contentLength));
+        message.setId(1L);
+        message.setTimestamp(LocalDateTime.now());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        handler.stop();
+    }
+
+    @Benchmark
+    public long convertEntity() {
+        convertingTemplate.convertAndSend(ChatMessageBroadcaster.TOPIC_PREFIX + ROOM_ID, message);
+        return delivered.sum();
+    }
+
+    @Benchmark
+    public long wireOnce() {
+        broadcaster.broadcast(message);
+        return delivered.sum();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(BroadcastAllocationBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .resultFormat(ResultFormatType.JSON)
+                .result("broadcast-allocation.json")
+                .build()).run();
+    }
+
+    private static Message<byte[]> subscribe(String sessionId, String subscriptionId, String destination) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.SUBSCRIBE);
+        accessor.setSessionId(sessionId);
+        accessor.setSubscriptionId(subscriptionId);
+        accessor.setDestination(destination);
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+}
@@ -0,0 +1,129 @@
+package iwkms.chatapp.benchmarks.websocket;
+
+import iwkms.chatapp.chatservice.websocket.StripedTopicBrokerMessageHandler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.broker.AbstractBrokerMessageHandler;
+import org.springframework.messaging.simp.broker.SimpleBrokerMessageHandler;
+import org.springframework.messaging.support.ExecutorSubscribableChannel;
+import org.springframework.messaging.support.MessageBuilder;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Fan-out latency of one room broadcast through Spring's simple broker and
+ * through {@link StripedTopicBrokerMessageHandler}. The outbound channel only
+ * counts messages, so the numbers are the broker's own cost: subscriber
+ * lookup plus building one outbound message per session.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BrokerFanOutBenchmark {
+    private static final String ROOM_TOPIC = "/topic/messages/bench";
+
+    @Param({"simple", "striped"})
+    public String broker;
+
+    @Param({"10000"})
+    public int subscribers;
+
+    @Param({"100"})
+    public int otherRooms;
+
+    private AbstractBrokerMessageHandler handler;
+    private final LongAdder delivered = new LongAdder();
+    private Message<byte[]> broadcast;
+    private int churn;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        MessageChannel outbound = (message, timeout) -> {
+            delivered.increment();
+            return true;
+        };
+        ExecutorSubscribableChannel inbound = new ExecutorSubscribableChannel();
+        ExecutorSubscribableChannel brokerChannel = new ExecutorSubscribableChannel();
+        handler = "simple".equals(broker)
+                ? new SimpleBrokerMessageHandler(inbound, outbound, brokerChannel, List.of("/topic"))
+                : new StripedTopicBrokerMessageHandler(inbound, outbound, brokerChannel, List.of("/topic"), 64);
+        handler.start();
+
+        for (int i = 0; i < subscribers; i++) {
+            String sessionId = "session-" + i;
+            handler.handleMessage(connect(sessionId));
+            handler.handleMessage(subscribe(sessionId, "sub-0", ROOM_TOPIC));
+            handler.handleMessage(subscribe(sessionId, "sub-1", "/topic/messages/room-" + (i % otherRooms)));
+        }
+        broadcast = message(ROOM_TOPIC, "{\"senderUsername\":\"bench\",\"content\":\"hello\"}"
+                .getBytes(StandardCharsets.UTF_8));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        handler.stop();
+    }
+
+    @Benchmark
+    public long fanOut() {
+        handler.handleMessage(broadcast);
+        return delivered.sum();
+    }
+
+    @Benchmark
+    public long subscribeUnsubscribe() {
+        String sessionId = "session-" + (churn++ % subscribers);
+        handler.handleMessage(subscribe(sessionId, "sub-2", ROOM_TOPIC));
+        handler.handleMessage(unsubscribe(sessionId, "sub-2"));
+        return delivered.sum();
+    }
+
+    private static Message<byte[]> connect(String sessionId) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.CONNECT);
+        accessor.setSessionId(sessionId);
+        accessor.setHeader(SimpMessageHeaderAccessor.HEART_BEAT_HEADER, new long[] {0, 0});
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+
+    private static Message<byte[]> subscribe(String sessionId, String subscriptionId, String destination) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.SUBSCRIBE);
+        accessor.setSessionId(sessionId);
+        accessor.setSubscriptionId(subscriptionId);
+        accessor.setDestination(destination);
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+
+    private static Message<byte[]> unsubscribe(String sessionId, String subscriptionId) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.UNSUBSCRIBE);
+        accessor.setSessionId(sessionId);
+        accessor.setSubscriptionId(subscriptionId);
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+
+    private static Message<byte[]> message(String destination, byte[] payload) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setDestination(destination);
+        return MessageBuilder.createMessage(payload, accessor.getMessageHeaders());
+    }
+}
@@ -0,0 +1,132 @@
+package iwkms.chatapp.benchmarks.websocket;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import iwkms.chatapp.chatservice.cluster.LocalClusterFanOut;
+import iwkms.chatapp.chatservice.controller.ChatMessageSocketController;
+import iwkms.chatapp.chatservice.dto.ChatMessageDto;
+import iwkms.chatapp.chatservice.model.ChatMessage;
+import iwkms.chatapp.chatservice.ratelimit.MessageRateLimiter;
+import iwkms.chatapp.chatservice.search.MessageSearchIndex;
+import iwkms.chatapp.chatservice.service.ChatService;
+import iwkms.chatapp.chatservice.websocket.ChatMessageBroadcaster;
+import iwkms.chatapp.chatservice.websocket.RoomShardedExecutor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.validation.BeanPropertyBindingResult;
+import org.springframework.validation.Errors;
+import org.springframework.validation.beanvalidation.LocalValidatorFactoryBean;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bean Validation as done at the top of
+ * {@link ChatMessageSocketController#sendMessage} for every STOMP frame.
+ * {@code rejectInvalid} runs the controller itself on a blank message, so it
+ * also pays for building the {@code /user/queue/errors} reply; the outbound
+ * channel only counts messages. {@code acceptValid} runs the controller on a
+ * valid message through the real rate limiter and broadcaster; the service
+ * returns a prepared message instead of touching a database and the room
+ * executor runs the task on the calling thread.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SocketValidationBenchmark {
+    private final LongAdder sent = new LongAdder();
+
+    private LocalValidatorFactoryBean validator;
+    private ChatMessageSocketController controller;
+    private SimpMessageHeaderAccessor headerAccessor;
+    private ChatMessageDto valid;
+
+    @Setup
+    public void setUp() {
+        validator = new LocalValidatorFactoryBean();
+        validator.afterPropertiesSet();
+        SimpMessagingTemplate messagingTemplate = new SimpMessagingTemplate((message, timeout) -> {
+            sent.increment();
+            return true;
+        });
+        MappingJackson2MessageConverter converter = new MappingJackson2MessageConverter();
+        ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        converter.setObjectMapper(objectMapper);
+        messagingTemplate.setMessageConverter(converter);
+
+        ChatMessage saved = new ChatMessage("bench-user", "general", "hello");
+        saved.setId(1L);
+        saved.setTimestamp(LocalDateTime.now());
+        ChatService chatService = new ChatService(null, null, null, null, null, null, 0) {
+            @Override
+            public void checkCanPost(String chatRoomId, String username) {
+            }
+
+            @Override
+            public ChatMessage saveMessage(ChatMessageDto messageDto) {
+                return saved;
+            }
+        };
+        MessageRateLimiter rateLimiter = new MessageRateLimiter(true, 1e9, Integer.MAX_VALUE,
+                1e9, Integer.MAX_VALUE, "", 64, 100_000);
+        RoomShardedExecutor roomExecutor = new RoomShardedExecutor(1, 1, 0) {
+            @Override
+            public void execute(String roomId, Runnable task) {
+                task.run();
+            }
+        };
+        ChatMessageBroadcaster broadcaster = new ChatMessageBroadcaster(messagingTemplate, new LocalClusterFanOut(),
+                new MessageSearchIndex(false, "search", 1000, 10_000, 10, 1 << 30), objectMapper);
+        controller = new ChatMessageSocketController(messagingTemplate, chatService, validator, broadcaster,
+                roomExecutor, rateLimiter);
+
+        headerAccessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        headerAccessor.setSessionId("bench-session");
+        headerAccessor.setDestination("/app/chat.sendMessage");
+        headerAccessor.setUser(new UsernamePasswordAuthenticationToken("bench-user", null, List.of()));
+        valid = new ChatMessageDto("bench-user", "general", "hello");
+    }
+
+    @TearDown
+    public void tearDown() {
+        validator.close();
+    }
+
+    @Benchmark
+    public boolean validateValid() {
+        Errors errors = new BeanPropertyBindingResult(valid, "chatMessageDto");
+        validator.validate(valid, errors);
+        return errors.hasErrors();
+    }
+
+    @Benchmark
+    public long acceptValid() {
+        controller.sendMessage(new ChatMessageDto("bench-user", "general", "hello"), headerAccessor);
+        return sent.sum();
+    }
+
+    @Benchmark
+    public long rejectInvalid() {
+        controller.sendMessage(new ChatMessageDto("bench-user", "general", " "), headerAccessor);
+        return sent.sum();
+    }
+}
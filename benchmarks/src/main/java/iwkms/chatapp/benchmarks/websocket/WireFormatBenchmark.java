@@ -0,0 +1,97 @@
+package iwkms.chatapp.benchmarks.websocket;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import iwkms.chatapp.chatservice.dto.ChatMessageWireDto;
+import iwkms.chatapp.chatservice.websocket.BinaryMessageCodec;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encode and decode cost of one room message as the JSON payload and as a
+ * {@link BinaryMessageCodec} frame. The binary encoder and decoder are warmed
+ * with one message first, so room id and sender are table references as they
+ * are for every message after a session's first. The encode benchmarks
+ * report the size of the frame they produce as the {@code frameBytes}
+ * secondary result.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WireFormatBenchmark {
+
+    @Param({"16", "64", "1024"})
+    public int contentLength;
+
+    private ObjectWriter jsonWriter;
+    private ObjectReader jsonReader;
+    private BinaryMessageCodec.Encoder encoder;
+    private BinaryMessageCodec.Decoder decoder;
+    private ChatMessageWireDto message;
+    private byte[] json;
+    private byte[] binary;
+
+    @Setup
+    public void setUp() throws IOException {
+        ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        jsonWriter = objectMapper.writerFor(ChatMessageWireDto.class);
+        jsonReader = objectMapper.readerFor(ChatMessageWireDto.class);
+        message = new ChatMessageWireDto(1_234_567L, "bench-user", "general-discussion", "x".repeat(contentLength),
+                LocalDateTime.of(2024, 5, 1, 10, 0, 0, 250_000_000));
+
+        encoder = new BinaryMessageCodec.Encoder(1024);
+        decoder = new BinaryMessageCodec.Decoder();
+        decoder.decode(encoder.encode(message));
+        json = jsonWriter.writeValueAsBytes(message);
+        binary = encoder.encode(message);
+    }
+
+    @Benchmark
+    public byte[] encodeJson(FrameSize frameSize) throws IOException {
+        byte[] frame = jsonWriter.writeValueAsBytes(message);
+        frameSize.frameBytes = frame.length;
+        return frame;
+    }
+
+    @Benchmark
+    public byte[] encodeBinary(FrameSize frameSize) {
+        byte[] frame = encoder.encode(message);
+        frameSize.frameBytes = frame.length;
+        return frame;
+    }
+
+    @Benchmark
+    public ChatMessageWireDto decodeJson() throws IOException {
+        return jsonReader.readValue(json);
+    }
+
+    @Benchmark
+    public ChatMessageWireDto decodeBinary() {
+        return decoder.decode(binary);
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class FrameSize {
+        public long frameBytes;
+    }
+}
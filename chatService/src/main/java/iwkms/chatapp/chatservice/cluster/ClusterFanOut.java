@@ -0,0 +1,64 @@
+package iwkms.chatapp.chatservice.cluster;
+
+/**
+ * Carries room broadcasts between chatService instances. Every node delivers
+ * a saved message to its own subscribers and then calls {@link #publish} once;
+ * the implementation hands it to each other node that has subscribers in the
+ * room, which delivers it through the {@link LocalDelivery} registered here.
+ *
+ * <p>Payloads are the encoded room topic frames, so receiving nodes forward the
+ * bytes as they are without touching the message.
+ *
+ * <p>Nodes also cache room membership, so a change committed on one node is
+ * announced with {@link #publishRoomChanged} and reaches every other node's
+ * {@link RoomChangeListener}, whether or not it serves the room.
+ */
+public interface ClusterFanOut {
+
+    void setLocalDelivery(LocalDelivery delivery);
+
+    /**
+     * Sends an already encoded room broadcast to the other nodes. Must not
+     * deliver it back to this node.
+     */
+    void publish(String roomId, byte[] payload);
+
+    /**
+     * Affinity hint: called when the first local subscriber joins a room
+     * ({@code interested = true}) and when the last one leaves. Implementations
+     * may use it to only receive traffic for rooms this node serves.
+     */
+    default void roomInterestChanged(String roomId, boolean interested) {
+    }
+
+    /**
+     * Registers a callback for every broadcast relayed from another node,
+     * called before {@link LocalDelivery} and whether or not this node has
+     * subscribers in the room. An implementation that only receives the rooms
+     * this node serves must receive every room once a listener is set.
+     */
+    default void setRelayListener(LocalDelivery listener) {
+    }
+
+    default void setRoomChangeListener(RoomChangeListener listener) {
+    }
+
+    /**
+     * Tells the other nodes that the room's membership or metadata changed, so
+     * they drop what they cached about it. Called after the change committed.
+     */
+    default void publishRoomChanged(String roomId) {
+    }
+
+    @FunctionalInterface
+    interface LocalDelivery {
+        void deliver(String roomId, byte[] payload);
+    }
+
+    interface RoomChangeListener {
+        void roomChanged(String roomId);
+
+        /** Changes may have been missed, e.g. while this node was disconnected. */
+        void allRoomsChanged();
+    }
+}
@@ -0,0 +1,15 @@
+package iwkms.chatapp.chatservice.cluster;
+
+/**
+ * Single-node stand-in: there are no other nodes, so nothing is published.
+ */
+public class LocalClusterFanOut implements ClusterFanOut {
+
+    @Override
+    public void setLocalDelivery(LocalDelivery delivery) {
+    }
+
+    @Override
+    public void publish(String roomId, byte[] payload) {
+    }
+}
@@ -0,0 +1,514 @@
+package iwkms.chatapp.chatservice.cluster;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import iwkms.chatapp.chatservice.dto.ChatMessageDto;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ResultSetExtractor;
+
+import javax.sql.DataSource;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cluster fan-out over PostgreSQL {@code LISTEN/NOTIFY}. Rooms are hashed onto
+ * a fixed number of channels ({@code <prefix><bucket>}); a node only LISTENs
+ * on the channels of rooms it has local subscribers in, so a broadcast reaches
+ * just the nodes serving that room's bucket. Notifications carry the sending
+ * node's id, and a node drops its own.
+ *
+ * <p>One dedicated connection, owned by a single listener thread, does all
+ * LISTEN/UNLISTEN and polling; it is reopened with backoff if it breaks.
+ * Publishing goes through the regular pool. PostgreSQL limits a notification
+ * to 8000 bytes, so a larger message is split into parts sent by a single
+ * statement, which PostgreSQL delivers together and in order; the listener
+ * joins them before delivering. Room changes go to one extra channel that
+ * every node listens on, and a node that had to reconnect treats every room
+ * as changed, since it may have missed some. With a relay listener set, a
+ * node listens on every channel so the listener sees all rooms' broadcasts,
+ * and only those of rooms with local subscribers are delivered.
+ */
+public class PostgresClusterFanOut implements ClusterFanOut, SmartLifecycle, MeterBinder {
+    private static final Logger logger = LoggerFactory.getLogger(PostgresClusterFanOut.class);
+
+    static final int MAX_NOTIFICATION_BYTES = 7999;
+    /** Enough for any message the API accepts, see {@link ChatMessageDto#MAX_CONTENT_LENGTH}. */
+    static final int MAX_PARTS = 16;
+    private static final int MAX_PENDING_MESSAGES = 256;
+    private static final char WHOLE = 'm';
+    private static final char PART = 'p';
+    private static final char ROOM_CHANGED = 'r';
+    private static final String[] NOTIFY_SQL = notifySql(MAX_PARTS);
+    private static final ResultSetExtractor<Void> IGNORE_RESULT = rs -> null;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final DataSource listenerDataSource;
+    private final String channelPrefix;
+    private final String roomChangesChannel;
+    private final int pollIntervalMs;
+    private final long reconnectDelayMs;
+    private final String nodeId = UUID.randomUUID().toString();
+
+    private final ConcurrentHashMap<String, Boolean> interestedRooms = new ConcurrentHashMap<>();
+    private final AtomicIntegerArray bucketInterest;
+    private final BitSet listening;
+    private volatile boolean interestChanged = true;
+    private volatile LocalDelivery localDelivery = (roomId, payload) -> { };
+    private volatile LocalDelivery relayListener;
+    private volatile RoomChangeListener roomChangeListener;
+    private final AtomicLong sequence = new AtomicLong();
+
+    private volatile boolean running;
+    private volatile int listeningCount;
+    private Thread listenerThread;
+
+    private final LongAdder publishedCount = new LongAdder();
+    private final LongAdder receivedCount = new LongAdder();
+    private final LongAdder failedCount = new LongAdder();
+    private final LongAdder oversizedCount = new LongAdder();
+    private final LongAdder splitCount = new LongAdder();
+    private final LongAdder incompleteCount = new LongAdder();
+    private final LongAdder roomChangeCount = new LongAdder();
+
+    /** Messages whose parts have not all arrived yet; only touched by the listener thread. */
+    private final Map<String, PendingMessage> pending = new LinkedHashMap<>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, PendingMessage> eldest) {
+            if (size() <= MAX_PENDING_MESSAGES) {
+                return false;
+            }
+            incompleteCount.increment();
+            return true;
+        }
+    };
+
+    public PostgresClusterFanOut(JdbcTemplate jdbcTemplate,
+                                 DataSource listenerDataSource,
+                                 String channelPrefix,
+                                 int channels,
+                                 int pollIntervalMs,
+                                 long reconnectDelayMs) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.listenerDataSource = listenerDataSource;
+        this.channelPrefix = channelPrefix;
+        this.roomChangesChannel = channelPrefix + "rooms";
+        this.bucketInterest = new AtomicIntegerArray(Math.max(1, channels));
+        this.listening = new BitSet(bucketInterest.length());
+        this.pollIntervalMs = pollIntervalMs;
+        this.reconnectDelayMs = reconnectDelayMs;
+    }
+
+    @Override
+    public void setLocalDelivery(LocalDelivery delivery) {
+        this.localDelivery = delivery;
+    }
+
+    @Override
+    public void setRelayListener(LocalDelivery listener) {
+        this.relayListener = listener;
+        interestChanged = true;
+    }
+
+    @Override
+    public void setRoomChangeListener(RoomChangeListener listener) {
+        this.roomChangeListener = listener;
+    }
+
+    @Override
+    public void publish(String roomId, byte[] payload) {
+        List<String> notifications = encode(nodeId, sequence.incrementAndGet(), roomId, payload);
+        if (notifications == null) {
+            oversizedCount.increment();
+            logger.warn("Message for room {} exceeds {} NOTIFY payloads and is not relayed", roomId, MAX_PARTS);
+            return;
+        }
+        try {
+            notify(channelFor(roomId), notifications);
+            publishedCount.increment();
+            if (notifications.size() > 1) {
+                splitCount.increment();
+            }
+        } catch (DataAccessException e) {
+            failedCount.increment();
+            logger.warn("Failed to relay message for room {} to other nodes", roomId, e);
+        }
+    }
+
+    @Override
+    public void publishRoomChanged(String roomId) {
+        String notification = header(nodeId, ROOM_CHANGED, roomId);
+        if (notification.getBytes(StandardCharsets.UTF_8).length > MAX_NOTIFICATION_BYTES) {
+            oversizedCount.increment();
+            logger.warn("Room id {} exceeds the NOTIFY payload limit, its change is not relayed", roomId);
+            return;
+        }
+        try {
+            notify(roomChangesChannel, List.of(notification));
+        } catch (DataAccessException e) {
+            failedCount.increment();
+            logger.warn("Failed to relay change of room {} to other nodes", roomId, e);
+        }
+    }
+
+    /** Sends all notifications in one statement, so they are delivered together and in order. */
+    private void notify(String channel, List<String> notifications) {
+        Object[] args = new Object[notifications.size() * 2];
+        for (int i = 0; i < notifications.size(); i++) {
+            args[2 * i] = channel;
+            args[2 * i + 1] = notifications.get(i);
+        }
+        jdbcTemplate.query(NOTIFY_SQL[notifications.size()], IGNORE_RESULT, args);
+    }
+
+    @Override
+    public void roomInterestChanged(String roomId, boolean interested) {
+        int bucket = bucketOf(roomId);
+        if (interested) {
+            if (interestedRooms.putIfAbsent(roomId, Boolean.TRUE) == null) {
+                bucketInterest.incrementAndGet(bucket);
+                interestChanged = true;
+            }
+        } else if (interestedRooms.remove(roomId) != null) {
+            bucketInterest.decrementAndGet(bucket);
+            interestChanged = true;
+        }
+    }
+
+    String channelFor(String roomId) {
+        return channelPrefix + bucketOf(roomId);
+    }
+
+    int bucketOf(String roomId) {
+        int h = roomId.hashCode();
+        return Math.floorMod(h ^ (h >>> 16), bucketInterest.length());
+    }
+
+    String getNodeId() {
+        return nodeId;
+    }
+
+    /**
+     * Notifications for one broadcast, each
+     * {@code <node id>\n<kind><room id length>\n<room id><body>}. A payload
+     * that fits is a single {@code m} notification with the payload as body;
+     * a larger one becomes {@code p} parts with the body
+     * {@code <sequence>\n<index>\n<count>\n<chunk>}, split between
+     * characters. Returns {@code null} if it needs more than {@link #MAX_PARTS}.
+     */
+    static List<String> encode(String nodeId, long sequence, String roomId, byte[] payload) {
+        String whole = header(nodeId, WHOLE, roomId);
+        int headerBytes = whole.getBytes(StandardCharsets.UTF_8).length;
+        if (headerBytes + payload.length <= MAX_NOTIFICATION_BYTES) {
+            return List.of(whole + new String(payload, StandardCharsets.UTF_8));
+        }
+        String partHeader = header(nodeId, PART, roomId) + sequence + '\n';
+        int indexAndCountBytes = 2 * String.valueOf(MAX_PARTS).length() + 2;
+        int budget = MAX_NOTIFICATION_BYTES - partHeader.getBytes(StandardCharsets.UTF_8).length
+                - indexAndCountBytes;
+        if (budget < 4) {
+            return null;
+        }
+        String text = new String(payload, StandardCharsets.UTF_8);
+        List<String> chunks = new ArrayList<>();
+        int chunkStart = 0;
+        int chunkBytes = 0;
+        for (int i = 0; i < text.length(); ) {
+            int codePoint = text.codePointAt(i);
+            int bytes = utf8Length(codePoint);
+            if (chunkBytes + bytes > budget) {
+                if (chunks.size() == MAX_PARTS - 1) {
+                    return null;
+                }
+                chunks.add(text.substring(chunkStart, i));
+                chunkStart = i;
+                chunkBytes = 0;
+            }
+            chunkBytes += bytes;
+            i += Character.charCount(codePoint);
+        }
+        chunks.add(text.substring(chunkStart));
+        List<String> parts = new ArrayList<>(chunks.size());
+        for (int i = 0; i < chunks.size(); i++) {
+            parts.add(partHeader + i + '\n' + chunks.size() + '\n' + chunks.get(i));
+        }
+        return parts;
+    }
+
+    private static String header(String nodeId, char kind, String roomId) {
+        return nodeId + '\n' + kind + roomId.length() + '\n' + roomId;
+    }
+
+    private static int utf8Length(int codePoint) {
+        if (codePoint < 0x80) {
+            return 1;
+        }
+        if (codePoint < 0x800) {
+            return 2;
+        }
+        return codePoint < 0x10000 ? 3 : 4;
+    }
+
+    private static String[] notifySql(int maxNotifications) {
+        String[] sql = new String[maxNotifications + 1];
+        StringBuilder select = new StringBuilder("SELECT pg_notify(?, ?)");
+        for (int count = 1; count <= maxNotifications; count++) {
+            sql[count] = select.toString();
+            select.append(", pg_notify(?, ?)");
+        }
+        return sql;
+    }
+
+    void handleNotification(String notification) {
+        int nodeEnd = notification.indexOf('\n');
+        int lengthEnd = nodeEnd < 0 ? -1 : notification.indexOf('\n', nodeEnd + 2);
+        if (lengthEnd < 0) {
+            logger.warn("Ignoring malformed cluster notification");
+            return;
+        }
+        if (nodeEnd == nodeId.length() && notification.startsWith(nodeId)) {
+            return;
+        }
+        char kind = notification.charAt(nodeEnd + 1);
+        int roomStart = lengthEnd + 1;
+        int roomEnd;
+        try {
+            roomEnd = roomStart + Integer.parseInt(notification, nodeEnd + 2, lengthEnd, 10);
+        } catch (NumberFormatException e) {
+            logger.warn("Ignoring malformed cluster notification");
+            return;
+        }
+        if (roomEnd > notification.length()) {
+            logger.warn("Ignoring malformed cluster notification");
+            return;
+        }
+        String roomId = notification.substring(roomStart, roomEnd);
+        switch (kind) {
+            case ROOM_CHANGED -> roomChanged(roomId);
+            case WHOLE -> deliverMessage(roomId, notification.substring(roomEnd));
+            case PART -> collectPart(notification.substring(0, nodeEnd), roomId, notification, roomEnd);
+            default -> logger.warn("Ignoring cluster notification of unknown kind {}", kind);
+        }
+    }
+
+    private void roomChanged(String roomId) {
+        roomChangeCount.increment();
+        RoomChangeListener listener = roomChangeListener;
+        if (listener != null) {
+            listener.roomChanged(roomId);
+        }
+    }
+
+    private void deliverMessage(String roomId, String payload) {
+        LocalDelivery relay = relayListener;
+        boolean interested = interestedRooms.containsKey(roomId);
+        if (relay == null && !interested) {
+            return;
+        }
+        byte[] bytes = payload.getBytes(StandardCharsets.UTF_8);
+        if (relay != null) {
+            relay.deliver(roomId, bytes);
+        }
+        if (interested) {
+            receivedCount.increment();
+            localDelivery.deliver(roomId, bytes);
+        }
+    }
+
+    private void collectPart(String senderId, String roomId, String notification, int bodyStart) {
+        int sequenceEnd = notification.indexOf('\n', bodyStart);
+        int indexEnd = sequenceEnd < 0 ? -1 : notification.indexOf('\n', sequenceEnd + 1);
+        int countEnd = indexEnd < 0 ? -1 : notification.indexOf('\n', indexEnd + 1);
+        int index = -1;
+        int count = -1;
+        try {
+            if (countEnd >= 0) {
+                index = Integer.parseInt(notification, sequenceEnd + 1, indexEnd, 10);
+                count = Integer.parseInt(notification, indexEnd + 1, countEnd, 10);
+            }
+        } catch (NumberFormatException e) {
+            index = -1;
+        }
+        if (index < 0 || index >= count || count > MAX_PARTS) {
+            logger.warn("Ignoring malformed cluster notification");
+            return;
+        }
+        String key = senderId + '/' + notification.substring(bodyStart, sequenceEnd);
+        PendingMessage message = pending.get(key);
+        if (message == null) {
+            message = new PendingMessage(roomId, count);
+            pending.put(key, message);
+        }
+        if (!message.add(index, notification.substring(countEnd + 1))) {
+            return;
+        }
+        pending.remove(key);
+        deliverMessage(message.roomId, message.join());
+    }
+
+    private void listen() {
+        boolean reconnecting = false;
+        while (running) {
+            try (Connection connection = listenerDataSource.getConnection()) {
+                connection.setAutoCommit(true);
+                PGConnection pgConnection = connection.unwrap(PGConnection.class);
+                listening.clear();
+                interestChanged = true;
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("LISTEN " + roomChangesChannel);
+                }
+                if (reconnecting) {
+                    pending.clear();
+                    RoomChangeListener listener = roomChangeListener;
+                    if (listener != null) {
+                        listener.allRoomsChanged();
+                    }
+                }
+                while (running) {
+                    if (interestChanged) {
+                        interestChanged = false;
+                        syncChannels(connection);
+                    }
+                    PGNotification[] notifications = pgConnection.getNotifications(pollIntervalMs);
+                    if (notifications != null) {
+                        for (PGNotification notification : notifications) {
+                            deliver(notification.getParameter());
+                        }
+                    }
+                }
+            } catch (SQLException e) {
+                listeningCount = 0;
+                reconnecting = true;
+                if (running) {
+                    logger.warn("Cluster listener connection failed, reconnecting in {} ms", reconnectDelayMs, e);
+                    sleepQuietly(reconnectDelayMs);
+                }
+            }
+        }
+    }
+
+    private void deliver(String notification) {
+        try {
+            handleNotification(notification);
+        } catch (RuntimeException e) {
+            logger.error("Failed to deliver cluster notification", e);
+        }
+    }
+
+    private void syncChannels(Connection connection) throws SQLException {
+        boolean all = relayListener != null;
+        try (Statement statement = connection.createStatement()) {
+            for (int bucket = 0; bucket < bucketInterest.length(); bucket++) {
+                boolean wanted = all || bucketInterest.get(bucket) > 0;
+                if (wanted != listening.get(bucket)) {
+                    statement.execute((wanted ? "LISTEN " : "UNLISTEN ") + channelPrefix + bucket);
+                    listening.set(bucket, wanted);
+                }
+            }
+        }
+        listeningCount = listening.cardinality();
+    }
+
+    private static void sleepQuietly(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        listenerThread = new Thread(this::listen, "cluster-fanout-listener");
+        listenerThread.setDaemon(true);
+        listenerThread.start();
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        Thread thread = listenerThread;
+        if (thread != null) {
+            try {
+                thread.join(pollIntervalMs + reconnectDelayMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("chat.cluster.published", publishedCount, LongAdder::sum)
+                .description("Room broadcasts relayed to other nodes")
+                .register(registry);
+        FunctionCounter.builder("chat.cluster.received", receivedCount, LongAdder::sum)
+                .description("Room broadcasts from other nodes delivered to local subscribers")
+                .register(registry);
+        FunctionCounter.builder("chat.cluster.failed", failedCount, LongAdder::sum)
+                .register(registry);
+        FunctionCounter.builder("chat.cluster.oversized", oversizedCount, LongAdder::sum)
+                .description("Room broadcasts too large to relay")
+                .register(registry);
+        FunctionCounter.builder("chat.cluster.split", splitCount, LongAdder::sum)
+                .description("Room broadcasts relayed as several NOTIFY parts")
+                .register(registry);
+        FunctionCounter.builder("chat.cluster.incomplete", incompleteCount, LongAdder::sum)
+                .description("Split broadcasts dropped before all their parts arrived")
+                .register(registry);
+        FunctionCounter.builder("chat.cluster.room-changes", roomChangeCount, LongAdder::sum)
+                .description("Room changes announced by other nodes")
+                .register(registry);
+        Gauge.builder("chat.cluster.channels.listening", this, fanOut -> fanOut.listeningCount)
+                .register(registry);
+    }
+
+    private static final class PendingMessage {
+        private final String roomId;
+        private final String[] parts;
+        private int received;
+
+        PendingMessage(String roomId, int count) {
+            this.roomId = roomId;
+            this.parts = new String[count];
+        }
+
+        /** Returns whether this was the last missing part. */
+        boolean add(int index, String part) {
+            if (index >= parts.length || parts[index] != null) {
+                return false;
+            }
+            parts[index] = part;
+            return ++received == parts.length;
+        }
+
+        String join() {
+            return String.join("", parts);
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package iwkms.chatapp.chatservice.cluster;
+
+import iwkms.chatapp.chatservice.websocket.ChatMessageBroadcaster;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+import org.springframework.web.socket.messaging.SessionUnsubscribeEvent;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Counts local subscribers per room topic and tells the {@link ClusterFanOut}
+ * when a room gains its first or loses its last subscriber on this node.
+ */
+@Component
+public class RoomInterestTracker {
+    private final ClusterFanOut clusterFanOut;
+
+    /** sessionId -> (subscriptionId -> roomId). */
+    private final ConcurrentHashMap<String, Map<String, String>> sessions = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Integer> subscribers = new ConcurrentHashMap<>();
+
+    @Autowired
+    public RoomInterestTracker(ClusterFanOut clusterFanOut) {
+        this.clusterFanOut = clusterFanOut;
+    }
+
+    @EventListener
+    public void onSubscribe(SessionSubscribeEvent event) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.wrap(event.getMessage());
+        String sessionId = accessor.getSessionId();
+        String subscriptionId = accessor.getSubscriptionId();
+        String destination = accessor.getDestination();
+        if (sessionId == null || subscriptionId == null || destination == null
+                || !destination.startsWith(ChatMessageBroadcaster.TOPIC_PREFIX)) {
+            return;
+        }
+        String roomId = destination.substring(ChatMessageBroadcaster.TOPIC_PREFIX.length());
+        String previous = sessions.computeIfAbsent(sessionId, id -> new ConcurrentHashMap<>())
+                .put(subscriptionId, roomId);
+        if (previous != null) {
+            release(previous);
+        }
+        acquire(roomId);
+    }
+
+    @EventListener
+    public void onUnsubscribe(SessionUnsubscribeEvent event) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.wrap(event.getMessage());
+        Map<String, String> subscriptions = accessor.getSessionId() != null
+                ? sessions.get(accessor.getSessionId()) : null;
+        String roomId = subscriptions != null && accessor.getSubscriptionId() != null
+                ? subscriptions.remove(accessor.getSubscriptionId()) : null;
+        if (roomId != null) {
+            release(roomId);
+        }
+    }
+
+    @EventListener
+    public void onDisconnect(SessionDisconnectEvent event) {
+        Map<String, String> subscriptions = sessions.remove(event.getSessionId());
+        if (subscriptions != null) {
+            subscriptions.values().forEach(this::release);
+        }
+    }
+
+    public int getRoomCount() {
+        return subscribers.size();
+    }
+
+    private void acquire(String roomId) {
+        subscribers.compute(roomId, (id, count) -> {
+            if (count == null) {
+                clusterFanOut.roomInterestChanged(id, true);
+                return 1;
+            }
+            return count + 1;
+        });
+    }
+
+    private void release(String roomId) {
+        subscribers.computeIfPresent(roomId, (id, count) -> {
+            if (count == 1) {
+                clusterFanOut.roomInterestChanged(id, false);
+                return null;
+            }
+            return count - 1;
+        });
+    }
+}
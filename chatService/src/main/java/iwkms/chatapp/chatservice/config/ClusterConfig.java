@@ -0,0 +1,48 @@
+package iwkms.chatapp.chatservice.config;
+
+import iwkms.chatapp.chatservice.cluster.ClusterFanOut;
+import iwkms.chatapp.chatservice.cluster.LocalClusterFanOut;
+import iwkms.chatapp.chatservice.cluster.PostgresClusterFanOut;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+/**
+ * Selects how room broadcasts reach clients connected to other instances:
+ * {@code chat.cluster.fan-out=local} (default, single node) or
+ * {@code postgres} (LISTEN/NOTIFY on the application database).
+ */
+@Configuration
+public class ClusterConfig {
+
+    @Bean
+    @ConditionalOnProperty(name = "chat.cluster.fan-out", havingValue = "local", matchIfMissing = true)
+    public ClusterFanOut localClusterFanOut() {
+        return new LocalClusterFanOut();
+    }
+
+    /**
+     * The listener holds its connection for the life of the node, so it gets
+     * its own unpooled connection rather than a permanent slot in the pool.
+     */
+    @Bean
+    @ConditionalOnProperty(name = "chat.cluster.fan-out", havingValue = "postgres")
+    public PostgresClusterFanOut postgresClusterFanOut(
+            JdbcTemplate jdbcTemplate,
+            DataSourceProperties dataSourceProperties,
+            @Value("${chat.cluster.postgres.channel-prefix:chat_fanout_}") String channelPrefix,
+            @Value("${chat.cluster.postgres.channels:64}") int channels,
+            @Value("${chat.cluster.postgres.poll-interval-ms:50}") int pollIntervalMs,
+            @Value("${chat.cluster.postgres.reconnect-delay-ms:2000}") long reconnectDelayMs) {
+        DriverManagerDataSource listenerDataSource = new DriverManagerDataSource(
+                dataSourceProperties.determineUrl(),
+                dataSourceProperties.determineUsername(),
+                dataSourceProperties.determinePassword());
+        return new PostgresClusterFanOut(jdbcTemplate, listenerDataSource, channelPrefix, channels,
+                pollIntervalMs, reconnectDelayMs);
+    }
+}
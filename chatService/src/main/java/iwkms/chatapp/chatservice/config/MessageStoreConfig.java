@@ -0,0 +1,58 @@
+package iwkms.chatapp.chatservice.config;
+
+import iwkms.chatapp.chatservice.repository.ChatMessageRepository;
+import iwkms.chatapp.chatservice.service.ChatMessagePersister;
+import iwkms.chatapp.chatservice.service.MessageIdAllocator;
+import iwkms.chatapp.chatservice.store.JpaMessageStore;
+import iwkms.chatapp.chatservice.store.MessageArchive;
+import iwkms.chatapp.chatservice.store.MessageStore;
+import iwkms.chatapp.chatservice.store.SegmentLogMessageStore;
+import iwkms.chatapp.chatservice.store.TieredMessageStore;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.nio.file.Path;
+
+/**
+ * Selects the message storage engine: {@code chat.store.engine=jpa} (default,
+ * PostgreSQL) or {@code log} (memory-mapped per-room segment files). Rooms,
+ * members and message ids stay in PostgreSQL either way. With
+ * {@code chat.archive.enabled} the PostgreSQL store also reads messages that
+ * have been tiered out to the {@link MessageArchive}. Tiering and partition
+ * retention only act on {@code chat_messages}, so the log engine refuses them.
+ */
+@Configuration
+public class MessageStoreConfig {
+
+    @Bean
+    @ConditionalOnProperty(name = "chat.store.engine", havingValue = "jpa", matchIfMissing = true)
+    public MessageStore jpaMessageStore(ChatMessageRepository chatMessageRepository,
+                                        ChatMessagePersister chatMessagePersister,
+                                        MessageArchive messageArchive) {
+        MessageStore store = new JpaMessageStore(chatMessageRepository, chatMessagePersister);
+        return messageArchive.isEnabled() ? new TieredMessageStore(store, messageArchive) : store;
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "chat.store.engine", havingValue = "log")
+    public SegmentLogMessageStore segmentLogMessageStore(
+            MessageIdAllocator messageIdAllocator,
+            MessageArchive messageArchive,
+            @Value("${chat.partitions.retention-months:0}") int retentionMonths,
+            @Value("${chat.store.log.directory:data/messages}") String directory,
+            @Value("${chat.store.log.segment-bytes:16777216}") int segmentBytes,
+            @Value("${chat.store.log.index-interval:64}") int indexInterval,
+            @Value("${chat.store.log.fsync:interval}") String fsync,
+            @Value("${chat.store.log.fsync-interval-ms:100}") long fsyncIntervalMs) {
+        if (messageArchive.isEnabled()) {
+            throw new IllegalStateException("chat.archive.enabled не поддерживается с chat.store.engine=log");
+        }
+        if (retentionMonths > 0) {
+            throw new IllegalStateException("chat.partitions.retention-months не поддерживается с chat.store.engine=log");
+        }
+        return new SegmentLogMessageStore(Path.of(directory), messageIdAllocator::nextId, segmentBytes, indexInterval,
+                SegmentLogMessageStore.FsyncPolicy.valueOf(fsync.toUpperCase()), fsyncIntervalMs);
+    }
+}
@@ -3,6 +3,7 @@ package iwkms.chatapp.chatservice.config;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import iwkms.chatapp.common.security.config.JwtSecurityConfig;
 import iwkms.chatapp.common.security.jwt.JwtUtil;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
@@ -18,8 +19,10 @@ public class SecurityConfig extends JwtSecurityConfig {
     }
 
     @Bean
-    public SecurityFilterChain securityFilterChain(HttpSecurity http) throws Exception {
+    public SecurityFilterChain securityFilterChain(HttpSecurity http,
+            @Value("${management.server.port:-1}") int managementPort) throws Exception {
         http.authorizeHttpRequests(auth -> auth
+                .requestMatchers(onManagementPort(managementPort)).permitAll()
                 .requestMatchers("/", "/index.html", "/favicon.ico", 
                                  "/error",
                                  "/css/**", "/js/**", "/images/**",
@@ -27,7 +30,9 @@ public class SecurityConfig extends JwtSecurityConfig {
                                  "/login", "/register",
                                  "/chat",
                                  "/profile",
-                                 "/ws/**"
+                                 "/ws/**",
+                                 "/ws-native",
+                                 "/actuator/health"
                 ).permitAll()
                 .requestMatchers("/api/v1/messages/**", "/api/v1/rooms/**").authenticated()
                 .anyRequest().authenticated()
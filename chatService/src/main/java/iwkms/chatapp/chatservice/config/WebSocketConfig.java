@@ -1,31 +1,86 @@
 package iwkms.chatapp.chatservice.config;
 
+import iwkms.chatapp.chatservice.websocket.StripedTopicBrokerMessageHandler;
+import iwkms.chatapp.chatservice.websocket.WireFormatInterceptor;
 import iwkms.chatapp.common.security.jwt.JwtUtil;
 import iwkms.chatapp.common.security.websocket.JwtWebSocketChannelInterceptor;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.SubscribableChannel;
 import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.web.socket.WebSocketHandler;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
 import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
+import org.springframework.web.socket.server.HandshakeInterceptor;
+
+import java.util.List;
+import java.util.Map;
 
 @Configuration
 @EnableWebSocketMessageBroker
 public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
+    private static final String TOPIC_PREFIX = "/topic";
+    private static final String QUEUE_PREFIX = "/queue";
 
     private final JwtUtil jwtUtil;
+    private final WireFormatInterceptor wireFormatInterceptor;
+    private final boolean stripedBroker;
+    private final boolean binaryWire;
+    private final boolean virtualThreads;
+    private final int channelConcurrency;
 
     @Autowired
-    public WebSocketConfig(JwtUtil jwtUtil) {
+    public WebSocketConfig(JwtUtil jwtUtil,
+                           WireFormatInterceptor wireFormatInterceptor,
+                           @Value("${chat.websocket.broker.type:striped}") String brokerType,
+                           @Value("${chat.websocket.wire.binary.enabled:false}") boolean binaryWire,
+                           @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads,
+                           @Value("${chat.websocket.virtual-threads.max-concurrency:10000}") int channelConcurrency) {
         this.jwtUtil = jwtUtil;
+        this.wireFormatInterceptor = wireFormatInterceptor;
+        this.stripedBroker = "striped".equals(brokerType);
+        this.binaryWire = binaryWire;
+        this.virtualThreads = virtualThreads;
+        this.channelConcurrency = channelConcurrency;
     }
 
     @Override
     public void configureMessageBroker(MessageBrokerRegistry config) {
-        config.enableSimpleBroker("/topic", "/queue");
+        if (stripedBroker) {
+            config.enableSimpleBroker(QUEUE_PREFIX);
+        } else {
+            config.enableSimpleBroker(TOPIC_PREFIX, QUEUE_PREFIX);
+        }
         config.setApplicationDestinationPrefixes("/app");
         config.setUserDestinationPrefix("/user");
+        // With virtual threads frames are no longer funnelled through a handful of pool threads,
+        // so per-session order has to be kept explicitly. Binary frames reference strings interned
+        // by earlier frames of the session and need the same guarantee.
+        config.setPreservePublishOrder(virtualThreads || binaryWire);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "chat.websocket.broker.type", havingValue = "striped", matchIfMissing = true)
+    public StripedTopicBrokerMessageHandler stripedTopicBrokerMessageHandler(
+            @Qualifier("clientInboundChannel") SubscribableChannel clientInboundChannel,
+            @Qualifier("clientOutboundChannel") MessageChannel clientOutboundChannel,
+            @Qualifier("brokerChannel") SubscribableChannel brokerChannel,
+            @Value("${chat.websocket.broker.stripes:64}") int stripes) {
+        StripedTopicBrokerMessageHandler handler = new StripedTopicBrokerMessageHandler(clientInboundChannel,
+                clientOutboundChannel, brokerChannel, List.of(TOPIC_PREFIX), stripes);
+        // Same ordering as the simple broker gets from configureMessageBroker.
+        handler.setPreservePublishOrder(virtualThreads || binaryWire);
+        return handler;
     }
 
     @Override
@@ -33,10 +88,58 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
         registry.addEndpoint("/ws")
                 .setAllowedOriginPatterns("*")
                 .withSockJS();
+        // Plain WebSocket without SockJS fallbacks; the only endpoint that can carry binary frames.
+        registry.addEndpoint("/ws-native")
+                .setAllowedOriginPatterns("*")
+                .addInterceptors(nativeTransportMarker());
+        registry.setPreserveReceiveOrder(virtualThreads);
     }
 
     @Override
     public void configureClientInboundChannel(ChannelRegistration registration) {
-        registration.interceptors(new JwtWebSocketChannelInterceptor(jwtUtil));
+        registration.interceptors(new JwtWebSocketChannelInterceptor(jwtUtil), wireFormatInterceptor);
+        if (virtualThreads) {
+            registration.taskExecutor(virtualThreadExecutor());
+        }
+    }
+
+    @Override
+    public void configureClientOutboundChannel(ChannelRegistration registration) {
+        registration.interceptors(wireFormatInterceptor);
+        if (virtualThreads) {
+            registration.taskExecutor(virtualThreadExecutor());
+        }
+    }
+
+    private static HandshakeInterceptor nativeTransportMarker() {
+        return new HandshakeInterceptor() {
+            @Override
+            public boolean beforeHandshake(ServerHttpRequest request, ServerHttpResponse response,
+                                           WebSocketHandler wsHandler, Map<String, Object> attributes) {
+                attributes.put(WireFormatInterceptor.NATIVE_TRANSPORT_ATTRIBUTE, Boolean.TRUE);
+                return true;
+            }
+
+            @Override
+            public void afterHandshake(ServerHttpRequest request, ServerHttpResponse response,
+                                       WebSocketHandler wsHandler, Exception exception) {
+            }
+        };
+    }
+
+    /**
+     * Executor that starts a virtual thread per frame up to {@code channelConcurrency}
+     * concurrent frames; idle threads are not kept around. Core and max size are
+     * equal because a ThreadPoolExecutor only grows past its core size once the
+     * (here unbounded) queue is full; no threads are created up front.
+     */
+    private ThreadPoolTaskExecutor virtualThreadExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setVirtualThreads(true);
+        executor.setCorePoolSize(channelConcurrency);
+        executor.setMaxPoolSize(channelConcurrency);
+        executor.setKeepAliveSeconds(1);
+        executor.setAllowCoreThreadTimeOut(true);
+        return executor;
     }
-}
\ No newline at end of file
+}
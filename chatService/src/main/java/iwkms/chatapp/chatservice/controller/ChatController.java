@@ -1,7 +1,12 @@
 package iwkms.chatapp.chatservice.controller;
 
+import iwkms.chatapp.chatservice.dto.ChatMessageDeltaDto;
 import iwkms.chatapp.chatservice.dto.ChatMessageDto;
+import iwkms.chatapp.chatservice.dto.ChatMessageImportRequestDto;
+import iwkms.chatapp.chatservice.dto.ChatMessagePageDto;
+import iwkms.chatapp.chatservice.dto.ChatMessageSearchDto;
 import iwkms.chatapp.chatservice.model.ChatMessage;
+import iwkms.chatapp.chatservice.ratelimit.MessageRateLimiter;
 import iwkms.chatapp.chatservice.service.ChatService;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -10,16 +15,18 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
 
-import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/v1/messages")
 public class ChatController {
     private final ChatService chatService;
+    private final MessageRateLimiter rateLimiter;
 
     @Autowired
-    public ChatController(ChatService chatService) {
+    public ChatController(ChatService chatService, MessageRateLimiter rateLimiter) {
         this.chatService = chatService;
+        this.rateLimiter = rateLimiter;
     }
 
     @PostMapping
@@ -29,19 +36,48 @@ public class ChatController {
         if (!username.equals(messageDto.getSenderUsername())) {
             messageDto.setSenderUsername(username);
         }
+        chatService.checkCanPost(messageDto.getChatRoomId(), username);
+        rateLimiter.acquire(username, messageDto.getChatRoomId());
         
         ChatMessage savedMessage = chatService.saveMessage(messageDto);
         return new ResponseEntity<>(savedMessage, HttpStatus.CREATED);
     }
 
+    @GetMapping("/search")
+    public ResponseEntity<ChatMessageSearchDto> searchMessages(@RequestParam String q,
+                                                               @RequestParam(required = false) String roomId,
+                                                               @RequestParam(required = false) Integer limit,
+                                                               Authentication authentication) {
+        return ResponseEntity.ok(chatService.searchMessages(authentication.getName(), q, roomId, limit));
+    }
+
     @GetMapping("/{chatRoomId}")
-    public ResponseEntity<List<ChatMessage>> getMessagesByRoom(@PathVariable String chatRoomId,
-                                                             Authentication authentication) {
+    public ResponseEntity<ChatMessagePageDto> getMessagesByRoom(@PathVariable String chatRoomId,
+                                                                @RequestParam(required = false) String before,
+                                                                @RequestParam(required = false) String after,
+                                                                @RequestParam(required = false) Integer limit,
+                                                                Authentication authentication) {
         String username = authentication.getName();
-        List<ChatMessage> messages = chatService.getMessagesByChatRoom(chatRoomId, username);
-        if (messages.isEmpty()) {
+        ChatMessagePageDto page = chatService.getMessagePage(chatRoomId, username, before, after, limit);
+        if (page.getMessages().isEmpty()) {
             return ResponseEntity.noContent().build();
         }
-        return ResponseEntity.ok(messages);
+        return ResponseEntity.ok(page);
+    }
+
+    @GetMapping("/{chatRoomId}/since")
+    public ResponseEntity<ChatMessageDeltaDto> getMessagesSince(@PathVariable String chatRoomId,
+                                                                @RequestParam String cursor,
+                                                                @RequestParam(required = false) Integer limit,
+                                                                Authentication authentication) {
+        return ResponseEntity.ok(chatService.getMessagesSince(chatRoomId, authentication.getName(), cursor, limit));
+    }
+
+    @PostMapping("/{chatRoomId}/import")
+    public ResponseEntity<Map<String, Integer>> importMessages(@PathVariable String chatRoomId,
+                                                               @Valid @RequestBody ChatMessageImportRequestDto importRequest,
+                                                               Authentication authentication) {
+        int imported = chatService.importMessages(chatRoomId, importRequest.getMessages(), authentication.getName());
+        return new ResponseEntity<>(Map.of("imported", imported), HttpStatus.CREATED);
     }
 }
\ No newline at end of file
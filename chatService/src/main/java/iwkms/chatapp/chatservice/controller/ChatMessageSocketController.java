@@ -1,10 +1,17 @@
 package iwkms.chatapp.chatservice.controller;
 
+import iwkms.chatapp.chatservice.dto.ChatMessageDeltaDto;
 import iwkms.chatapp.chatservice.dto.ChatMessageDto;
+import iwkms.chatapp.chatservice.dto.ChatSyncRequestDto;
 import iwkms.chatapp.chatservice.dto.WebSocketErrorDto;
+import iwkms.chatapp.chatservice.exception.RateLimitExceededException;
+import iwkms.chatapp.chatservice.exception.ServiceOverloadedException;
 import iwkms.chatapp.chatservice.exception.UnauthorizedException;
 import iwkms.chatapp.chatservice.model.ChatMessage;
+import iwkms.chatapp.chatservice.ratelimit.MessageRateLimiter;
 import iwkms.chatapp.chatservice.service.ChatService;
+import iwkms.chatapp.chatservice.websocket.ChatMessageBroadcaster;
+import iwkms.chatapp.chatservice.websocket.RoomShardedExecutor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.messaging.handler.annotation.MessageMapping;
 import org.springframework.messaging.handler.annotation.Payload;
@@ -25,14 +32,23 @@ public class ChatMessageSocketController {
     private final SimpMessagingTemplate messagingTemplate;
     private final ChatService chatService;
     private final Validator validator;
+    private final ChatMessageBroadcaster broadcaster;
+    private final RoomShardedExecutor roomExecutor;
+    private final MessageRateLimiter rateLimiter;
 
     @Autowired
     public ChatMessageSocketController(SimpMessagingTemplate messagingTemplate,
                                        ChatService chatService,
-                                       Validator validator) {
+                                       Validator validator,
+                                       ChatMessageBroadcaster broadcaster,
+                                       RoomShardedExecutor roomExecutor,
+                                       MessageRateLimiter rateLimiter) {
         this.messagingTemplate = messagingTemplate;
         this.chatService = chatService;
         this.validator = validator;
+        this.broadcaster = broadcaster;
+        this.roomExecutor = roomExecutor;
+        this.rateLimiter = rateLimiter;
     }
 
     @MessageMapping("/chat.sendMessage")
@@ -42,7 +58,7 @@ public class ChatMessageSocketController {
         validator.validate(chatMessageDto, errors);
 
         if (errors.hasErrors()) {
-            sendValidationErrors(chatMessageDto, headerAccessor, errors);
+            sendValidationErrors(headerAccessor, errors);
             return;
         }
 
@@ -58,12 +74,70 @@ public class ChatMessageSocketController {
             if (!username.equals(chatMessageDto.getSenderUsername())) {
                 chatMessageDto.setSenderUsername(username);
             }
+            chatService.checkCanPost(chatMessageDto.getChatRoomId(), username);
+            rateLimiter.acquire(username, chatMessageDto.getChatRoomId());
+            try {
+                roomExecutor.execute(chatMessageDto.getChatRoomId(),
+                        () -> saveAndBroadcast(chatMessageDto, headerAccessor));
+            } catch (ServiceOverloadedException e) {
+                rateLimiter.refund(username, chatMessageDto.getChatRoomId());
+                throw e;
+            }
             
+        } catch (RateLimitExceededException e) {
+            sendError(headerAccessor, "Rate Limit", e.getMessage());
+        } catch (ServiceOverloadedException e) {
+            sendError(headerAccessor, "Overloaded", e.getMessage());
+        } catch (UnauthorizedException e) {
+            sendError(headerAccessor, "Access Denied", e.getMessage());
+        } catch (Exception e) {
+            sendError(headerAccessor, "Error", "Произошла ошибка: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Runs on the room's shard thread, so messages of one room are saved and
+     * broadcast strictly one after another.
+     */
+    private void saveAndBroadcast(ChatMessageDto chatMessageDto, SimpMessageHeaderAccessor headerAccessor) {
+        try {
             ChatMessage savedMessage = chatService.saveMessage(chatMessageDto);
-            
-            String destination = "/topic/messages/" + savedMessage.getChatRoomId();
-            messagingTemplate.convertAndSend(destination, savedMessage);
-            
+            broadcaster.broadcast(savedMessage);
+        } catch (UnauthorizedException e) {
+            sendError(headerAccessor, "Access Denied", e.getMessage());
+        } catch (Exception e) {
+            sendError(headerAccessor, "Error", "Произошла ошибка: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Replies on {@code /user/queue/sync} with the messages a reconnecting
+     * client missed, starting after the cursor of its last sync.
+     */
+    @MessageMapping("/chat.sync")
+    public void syncMessages(@Payload ChatSyncRequestDto syncRequest,
+                             SimpMessageHeaderAccessor headerAccessor) {
+        Errors errors = new BeanPropertyBindingResult(syncRequest, "chatSyncRequestDto");
+        validator.validate(syncRequest, errors);
+
+        if (errors.hasErrors()) {
+            sendValidationErrors(headerAccessor, errors);
+            return;
+        }
+
+        try {
+            Authentication authentication = (Authentication) headerAccessor.getUser();
+            if (authentication == null) {
+                sendError(headerAccessor, "Unauthorized", "Вы не авторизованы");
+                return;
+            }
+
+            ChatMessageDeltaDto delta = chatService.getMessagesSince(syncRequest.getChatRoomId(),
+                    authentication.getName(), syncRequest.getCursor(), syncRequest.getLimit());
+            String sessionId = headerAccessor.getSessionId();
+            if (sessionId != null) {
+                messagingTemplate.convertAndSendToUser(sessionId, "/queue/sync", delta);
+            }
         } catch (UnauthorizedException e) {
             sendError(headerAccessor, "Access Denied", e.getMessage());
         } catch (Exception e) {
@@ -71,8 +145,7 @@ public class ChatMessageSocketController {
         }
     }
     
-    private void sendValidationErrors(ChatMessageDto chatMessageDto, 
-                                     SimpMessageHeaderAccessor headerAccessor, 
+    private void sendValidationErrors(SimpMessageHeaderAccessor headerAccessor, 
                                      Errors errors) {
         List<String> errorMessages = errors.getFieldErrors().stream()
                 .map(FieldError::getDefaultMessage)
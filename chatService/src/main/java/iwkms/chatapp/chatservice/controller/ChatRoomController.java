@@ -3,13 +3,19 @@ package iwkms.chatapp.chatservice.controller;
 import iwkms.chatapp.chatservice.dto.ChatRoomDto;
 import iwkms.chatapp.chatservice.model.ChatRoom;
 import iwkms.chatapp.chatservice.service.ChatRoomService;
+import iwkms.chatapp.chatservice.service.MessageExportService;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 
 @RestController
@@ -17,10 +23,12 @@ import java.util.List;
 public class ChatRoomController {
 
     private final ChatRoomService chatRoomService;
+    private final MessageExportService messageExportService;
 
     @Autowired
-    public ChatRoomController(ChatRoomService chatRoomService) {
+    public ChatRoomController(ChatRoomService chatRoomService, MessageExportService messageExportService) {
         this.chatRoomService = chatRoomService;
+        this.messageExportService = messageExportService;
     }
 
     @PostMapping
@@ -43,6 +51,32 @@ public class ChatRoomController {
         return ResponseEntity.ok(room);
     }
 
+    /**
+     * Streams the room's full history as an attachment, in {@code ndjson} or
+     * {@code csv}, gzipped with {@code gzip=true}. Refused with 429 while
+     * {@code chat.export.max-concurrent} exports are running.
+     */
+    @GetMapping("/{roomId}/export")
+    public void exportMessages(@PathVariable String roomId,
+                               @RequestParam(defaultValue = "ndjson") String format,
+                               @RequestParam(defaultValue = "false") boolean gzip,
+                               Authentication authentication,
+                               HttpServletResponse response) throws IOException {
+        MessageExportService.Format exportFormat = MessageExportService.Format.parse(format);
+        messageExportService.checkAccess(roomId, authentication.getName());
+
+        messageExportService.acquireSlot();
+        try {
+            String fileName = roomId + "." + exportFormat.extension() + (gzip ? ".gz" : "");
+            response.setContentType(gzip ? "application/gzip" : exportFormat.contentType());
+            response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+                    ContentDisposition.attachment().filename(fileName, StandardCharsets.UTF_8).build().toString());
+            messageExportService.export(roomId, exportFormat, gzip, response.getOutputStream());
+        } finally {
+            messageExportService.releaseSlot();
+        }
+    }
+
     @GetMapping("/public")
     public ResponseEntity<List<ChatRoom>> getPublicRooms() {
         List<ChatRoom> publicRooms = chatRoomService.getPublicChatRooms();
@@ -1,8 +1,10 @@
 package iwkms.chatapp.chatservice.controller;
 
 import iwkms.chatapp.chatservice.dto.ChatMessageDto;
+import iwkms.chatapp.chatservice.exception.RateLimitExceededException;
 import iwkms.chatapp.chatservice.model.ChatMessage;
 import iwkms.chatapp.chatservice.model.ChatRoom;
+import iwkms.chatapp.chatservice.ratelimit.MessageRateLimiter;
 import iwkms.chatapp.chatservice.service.ChatRoomService;
 import iwkms.chatapp.chatservice.service.ChatService;
 import jakarta.validation.Valid;
@@ -25,11 +27,14 @@ public class ChatWebController {
 
     private final ChatService chatService;
     private final ChatRoomService chatRoomService;
+    private final MessageRateLimiter rateLimiter;
 
     @Autowired
-    public ChatWebController(ChatService chatService, ChatRoomService chatRoomService) {
+    public ChatWebController(ChatService chatService, ChatRoomService chatRoomService,
+                             MessageRateLimiter rateLimiter) {
         this.chatService = chatService;
         this.chatRoomService = chatRoomService;
+        this.rateLimiter = rateLimiter;
     }
 
     @GetMapping("/chat")
@@ -78,6 +83,7 @@ public class ChatWebController {
                     }
                 }
                 model.addAttribute("chatRoom", currentChatRoom);
+                model.addAttribute("syncCursor", chatService.startSyncCursor());
                 List<ChatMessage> messages = chatService.getMessagesByChatRoom(chatRoomId, username);
                 model.addAttribute("messages", messages);
 
@@ -99,6 +105,7 @@ public class ChatWebController {
     @PostMapping("/chat/send")
     public String sendMessage(@Valid @ModelAttribute("messageDto") ChatMessageDto messageDto,
                               BindingResult bindingResult,
+                              Authentication authentication,
                               RedirectAttributes redirectAttributes) {
 
         if (bindingResult.hasErrors()) {
@@ -112,6 +119,20 @@ public class ChatWebController {
             return "redirect:/chat";
         }
 
+        String username = authentication.getName();
+        messageDto.setSenderUsername(username);
+        chatService.checkCanPost(messageDto.getChatRoomId(), username);
+        try {
+            rateLimiter.acquire(username, messageDto.getChatRoomId());
+        } catch (RateLimitExceededException e) {
+            redirectAttributes.addFlashAttribute("errorMessage", "Too many messages, try again in "
+                    + Math.max(1, (e.getRetryAfterMillis() + 999) / 1000) + " s.");
+            redirectAttributes.addFlashAttribute("messageDto", messageDto);
+            redirectAttributes.addAttribute("username", username);
+            redirectAttributes.addAttribute("chatRoomId", messageDto.getChatRoomId());
+            return "redirect:/chat";
+        }
+
         chatService.saveMessage(messageDto);
 
         redirectAttributes.addAttribute("username", messageDto.getSenderUsername());
@@ -0,0 +1,25 @@
+package iwkms.chatapp.chatservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ChatMessageDeltaDto {
+    private String chatRoomId;
+    /** Messages after the requested cursor, in timestamp-then-id order. */
+    private List<ChatMessageWireDto> messages;
+    /** Whether more messages follow; ask again with {@link #nextCursor}. */
+    private boolean hasMore;
+    /**
+     * Settled position to resume from after the next reconnect, or
+     * {@code null} if the client should keep the one it has.
+     */
+    private String cursor;
+    /** Where the next page starts while {@link #hasMore} is set. */
+    private String nextCursor;
+}
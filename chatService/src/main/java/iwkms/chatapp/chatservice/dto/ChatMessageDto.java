@@ -1,12 +1,15 @@
 package iwkms.chatapp.chatservice.dto;
 
 import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.Size;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
 @Data
 @NoArgsConstructor
 public class ChatMessageDto {
+    public static final int MAX_CONTENT_LENGTH = 10_000;
+
     @NotBlank(message = "Sender username cannot be blank")
     private String senderUsername;
 
@@ -14,6 +17,7 @@ public class ChatMessageDto {
     private String chatRoomId;
 
     @NotBlank(message = "Content cannot be blank")
+    @Size(max = MAX_CONTENT_LENGTH, message = "Content cannot be longer than " + MAX_CONTENT_LENGTH + " characters")
     private String content;
 
     public ChatMessageDto(String senderUsername, String chatRoomId, String content) {
@@ -0,0 +1,21 @@
+package iwkms.chatapp.chatservice.dto;
+
+import jakarta.validation.constraints.NotBlank;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ChatMessageImportDto {
+    @NotBlank(message = "Sender username cannot be blank")
+    private String senderUsername;
+
+    @NotBlank(message = "Content cannot be blank")
+    private String content;
+
+    private LocalDateTime timestamp;
+}
@@ -0,0 +1,19 @@
+package iwkms.chatapp.chatservice.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ChatMessageImportRequestDto {
+    @NotEmpty(message = "Messages cannot be empty")
+    @Size(max = 10000, message = "No more than 10000 messages can be imported at once")
+    private List<@Valid ChatMessageImportDto> messages;
+}
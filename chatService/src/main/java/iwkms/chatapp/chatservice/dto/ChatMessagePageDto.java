@@ -0,0 +1,20 @@
+package iwkms.chatapp.chatservice.dto;
+
+import iwkms.chatapp.chatservice.model.ChatMessage;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ChatMessagePageDto {
+    /** Messages in ascending id order. */
+    private List<ChatMessage> messages;
+    /** Cursor for the next newer page; present whenever the page is non-empty. */
+    private String nextCursor;
+    /** Cursor for the next older page; absent once the start of the history is reached. */
+    private String prevCursor;
+}
@@ -0,0 +1,16 @@
+package iwkms.chatapp.chatservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ChatMessageSearchDto {
+    private String query;
+    /** Matching messages, newest first. */
+    private List<ChatMessageWireDto> messages;
+}
@@ -0,0 +1,28 @@
+package iwkms.chatapp.chatservice.dto;
+
+import iwkms.chatapp.chatservice.model.ChatMessage;
+
+import java.time.LocalDateTime;
+
+/**
+ * What subscribers of {@code /topic/messages/{roomId}} receive. Field names
+ * match {@link ChatMessage} so clients see the same JSON as before.
+ */
+public record ChatMessageWireDto(Long id,
+                                 String senderUsername,
+                                 String chatRoomId,
+                                 String content,
+                                 LocalDateTime timestamp) {
+
+    public static ChatMessageWireDto from(ChatMessage message) {
+        return new ChatMessageWireDto(message.getId(), message.getSenderUsername(), message.getChatRoomId(),
+                message.getContent(), message.getTimestamp());
+    }
+
+    public ChatMessage toMessage() {
+        ChatMessage message = new ChatMessage(senderUsername, chatRoomId, content);
+        message.setId(id);
+        message.setTimestamp(timestamp);
+        return message;
+    }
+}
@@ -0,0 +1,20 @@
+package iwkms.chatapp.chatservice.dto;
+
+import jakarta.validation.constraints.NotBlank;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ChatSyncRequestDto {
+    @NotBlank(message = "Chat room ID cannot be blank")
+    private String chatRoomId;
+
+    /** A cursor from the chat page or from the previous sync answer. */
+    @NotBlank(message = "Sync cursor cannot be blank")
+    private String cursor;
+
+    private Integer limit;
+}
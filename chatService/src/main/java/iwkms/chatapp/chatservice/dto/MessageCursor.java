@@ -0,0 +1,41 @@
+package iwkms.chatapp.chatservice.dto;
+
+import iwkms.chatapp.chatservice.exception.InvalidCursorException;
+import iwkms.chatapp.chatservice.model.ChatMessage;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Position in a room's message history: the timestamp and id of the message
+ * a page starts or ends with. Clients only ever see the encoded form, so the
+ * key it wraps can change without breaking them.
+ */
+public record MessageCursor(LocalDateTime timestamp, long messageId) {
+    private static final char SEPARATOR = '|';
+
+    public static MessageCursor of(ChatMessage message) {
+        return new MessageCursor(message.getTimestamp(), message.getId());
+    }
+
+    public String encode() {
+        String raw = timestamp + String.valueOf(SEPARATOR) + messageId;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    public static MessageCursor decode(String token) {
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.US_ASCII);
+            int separator = decoded.indexOf(SEPARATOR);
+            if (separator < 0) {
+                throw new IllegalArgumentException(token);
+            }
+            return new MessageCursor(LocalDateTime.parse(decoded.substring(0, separator)),
+                    Long.parseLong(decoded.substring(separator + 1)));
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            throw new InvalidCursorException("Некорректный курсор: " + token);
+        }
+    }
+}
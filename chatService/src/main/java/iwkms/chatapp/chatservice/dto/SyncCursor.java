@@ -0,0 +1,50 @@
+package iwkms.chatapp.chatservice.dto;
+
+import iwkms.chatapp.chatservice.exception.InvalidCursorException;
+import iwkms.chatapp.chatservice.model.ChatMessage;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Position in a room's history in timestamp-then-id order, used by reconnect
+ * sync. A {@code settled} cursor lies below every message that can still be
+ * committed, so a client may keep it across reconnects; an unsettled one only
+ * continues a sync that is being paged through.
+ */
+public record SyncCursor(LocalDateTime timestamp, long messageId, boolean settled) {
+    private static final char SEPARATOR = '|';
+
+    public static SyncCursor after(ChatMessage message, boolean settled) {
+        return new SyncCursor(message.getTimestamp(), message.getId(), settled);
+    }
+
+    /** Whether {@code message} comes after this position. */
+    public boolean precedes(ChatMessage message) {
+        int byTimestamp = message.getTimestamp().compareTo(timestamp);
+        return byTimestamp > 0 || (byTimestamp == 0 && message.getId() > messageId);
+    }
+
+    public String encode() {
+        String raw = timestamp + String.valueOf(SEPARATOR) + messageId + SEPARATOR + (settled ? 's' : 'u');
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    public static SyncCursor decode(String token) {
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.US_ASCII);
+            int first = decoded.indexOf(SEPARATOR);
+            int second = decoded.indexOf(SEPARATOR, first + 1);
+            if (first < 0 || second < 0 || second != decoded.length() - 2) {
+                throw new IllegalArgumentException(token);
+            }
+            return new SyncCursor(LocalDateTime.parse(decoded.substring(0, first)),
+                    Long.parseLong(decoded.substring(first + 1, second)),
+                    decoded.charAt(second + 1) == 's');
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            throw new InvalidCursorException("Некорректный курсор: " + token);
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package iwkms.chatapp.chatservice.exception;
 
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.AccessDeniedException;
@@ -29,6 +30,38 @@ public class GlobalExceptionHandler {
         return createErrorResponse(ex.getMessage(), request, HttpStatus.NOT_FOUND);
     }
     
+    @ExceptionHandler(InvalidCursorException.class)
+    public ResponseEntity<ErrorDetails> handleInvalidCursorException(
+            InvalidCursorException ex, WebRequest request) {
+        return createErrorResponse(ex.getMessage(), request, HttpStatus.BAD_REQUEST);
+    }
+    
+    @ExceptionHandler(InvalidExportFormatException.class)
+    public ResponseEntity<ErrorDetails> handleInvalidExportFormatException(
+            InvalidExportFormatException ex, WebRequest request) {
+        return createErrorResponse(ex.getMessage(), request, HttpStatus.BAD_REQUEST);
+    }
+    
+    @ExceptionHandler(ServiceOverloadedException.class)
+    public ResponseEntity<ErrorDetails> handleServiceOverloadedException(
+            ServiceOverloadedException ex, WebRequest request) {
+        return createErrorResponse(ex.getMessage(), request, HttpStatus.SERVICE_UNAVAILABLE);
+    }
+    
+    @ExceptionHandler(RateLimitExceededException.class)
+    public ResponseEntity<ErrorDetails> handleRateLimitExceededException(
+            RateLimitExceededException ex, WebRequest request) {
+        ErrorDetails errorDetails = new ErrorDetails(
+                LocalDateTime.now(),
+                ex.getMessage(),
+                request.getDescription(false)
+        );
+        long retryAfterSeconds = Math.max(1, (ex.getRetryAfterMillis() + 999) / 1000);
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds))
+                .body(errorDetails);
+    }
+    
     @ExceptionHandler(AuthenticationException.class)
     public ResponseEntity<ErrorDetails> handleAuthenticationException(
             AuthenticationException ex, WebRequest request) {
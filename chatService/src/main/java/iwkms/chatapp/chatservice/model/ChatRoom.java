@@ -13,8 +13,11 @@ import java.util.Set;
 @Data
 @NoArgsConstructor
 public class ChatRoom {
+    public static final String ID_SEQUENCE = "chat_rooms_seq";
+
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = ID_SEQUENCE)
+    @SequenceGenerator(name = ID_SEQUENCE, sequenceName = ID_SEQUENCE, allocationSize = 50)
     private Long id;
 
     @Column(unique = true, nullable = false)
@@ -0,0 +1,7 @@
+package iwkms.chatapp.chatservice.model;
+
+/**
+ * The parts of a {@link ChatRoom} needed to route and authorize a message.
+ */
+public record RoomMetadata(long id, String roomId, boolean isPrivate, String ownerUsername) {
+}
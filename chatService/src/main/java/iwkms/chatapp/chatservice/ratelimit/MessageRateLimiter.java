@@ -0,0 +1,145 @@
+package iwkms.chatapp.chatservice.ratelimit;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import iwkms.chatapp.chatservice.exception.RateLimitExceededException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Limits how fast messages are sent, per sender and per room. A message needs
+ * a token from both buckets; if the room refuses, the sender's token is given
+ * back. Room limits can be overridden per room with
+ * {@code chat.rate-limit.room.overrides=roomId:perSecond/burst,...}.
+ */
+@Component
+public class MessageRateLimiter implements MeterBinder {
+    private final boolean enabled;
+    private final Limit userLimit;
+    private final Limit defaultRoomLimit;
+    private final Map<String, Limit> roomLimits;
+    private final TokenBucketTable userBuckets;
+    private final TokenBucketTable roomBuckets;
+    private final LongSupplier nanoClock;
+
+    private final LongAdder userRejections = new LongAdder();
+    private final LongAdder roomRejections = new LongAdder();
+
+    @Autowired
+    public MessageRateLimiter(@Value("${chat.rate-limit.enabled:true}") boolean enabled,
+                              @Value("${chat.rate-limit.user.per-second:5}") double userPerSecond,
+                              @Value("${chat.rate-limit.user.burst:10}") int userBurst,
+                              @Value("${chat.rate-limit.room.per-second:50}") double roomPerSecond,
+                              @Value("${chat.rate-limit.room.burst:100}") int roomBurst,
+                              @Value("${chat.rate-limit.room.overrides:}") String roomOverrides,
+                              @Value("${chat.rate-limit.stripes:64}") int stripes,
+                              @Value("${chat.rate-limit.max-keys:100000}") int maxKeys) {
+        this(enabled, new Limit(userPerSecond, userBurst), new Limit(roomPerSecond, roomBurst),
+                parseOverrides(roomOverrides), stripes, maxKeys, System::nanoTime);
+    }
+
+    MessageRateLimiter(boolean enabled, Limit userLimit, Limit defaultRoomLimit, Map<String, Limit> roomLimits,
+                       int stripes, int maxKeys, LongSupplier nanoClock) {
+        this.enabled = enabled;
+        this.userLimit = userLimit;
+        this.defaultRoomLimit = defaultRoomLimit;
+        this.roomLimits = Map.copyOf(roomLimits);
+        this.userBuckets = new TokenBucketTable(stripes, maxKeys);
+        this.roomBuckets = new TokenBucketTable(stripes, maxKeys);
+        this.nanoClock = nanoClock;
+    }
+
+    /**
+     * @throws RateLimitExceededException if the sender or the room is over its limit
+     */
+    public void acquire(String username, String roomId) {
+        if (!enabled) {
+            return;
+        }
+        long now = nanoClock.getAsLong();
+        long userWait = userBuckets.tryAcquire(username, userLimit.intervalNanos(), userLimit.burst(), now);
+        if (userWait > 0) {
+            userRejections.increment();
+            throw new RateLimitExceededException("Слишком много сообщений, подождите немного", toMillis(userWait));
+        }
+        Limit roomLimit = roomLimits.getOrDefault(roomId, defaultRoomLimit);
+        long roomWait = roomBuckets.tryAcquire(roomId, roomLimit.intervalNanos(), roomLimit.burst(), now);
+        if (roomWait > 0) {
+            userBuckets.refund(username, userLimit.intervalNanos());
+            roomRejections.increment();
+            throw new RateLimitExceededException("Слишком много сообщений в комнате " + roomId, toMillis(roomWait));
+        }
+    }
+
+    /**
+     * Gives back the tokens of an {@link #acquire} whose message was then
+     * refused for another reason, so it does not count against either limit.
+     */
+    public void refund(String username, String roomId) {
+        if (!enabled) {
+            return;
+        }
+        userBuckets.refund(username, userLimit.intervalNanos());
+        roomBuckets.refund(roomId, roomLimits.getOrDefault(roomId, defaultRoomLimit).intervalNanos());
+    }
+
+    private static long toMillis(long nanos) {
+        return Math.max(1, TimeUnit.NANOSECONDS.toMillis(nanos + 999_999));
+    }
+
+    static Map<String, Limit> parseOverrides(String overrides) {
+        Map<String, Limit> limits = new HashMap<>();
+        if (!StringUtils.hasText(overrides)) {
+            return limits;
+        }
+        for (String entry : overrides.split(",")) {
+            String trimmed = entry.trim();
+            int colon = trimmed.lastIndexOf(':');
+            int slash = trimmed.indexOf('/', colon + 1);
+            if (colon <= 0 || slash < 0) {
+                throw new IllegalArgumentException(
+                        "Неверный формат лимита комнаты '" + trimmed + "', ожидается roomId:perSecond/burst");
+            }
+            limits.put(trimmed.substring(0, colon), new Limit(
+                    Double.parseDouble(trimmed.substring(colon + 1, slash)),
+                    Integer.parseInt(trimmed.substring(slash + 1))));
+        }
+        return limits;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("chat.ratelimit.rejected", userRejections, LongAdder::sum)
+                .tag("scope", "user")
+                .description("Messages refused because the sender or room exceeded its rate limit")
+                .register(registry);
+        FunctionCounter.builder("chat.ratelimit.rejected", roomRejections, LongAdder::sum)
+                .tag("scope", "room")
+                .description("Messages refused because the sender or room exceeded its rate limit")
+                .register(registry);
+        Gauge.builder("chat.ratelimit.buckets", this, limiter -> limiter.userBuckets.size() + limiter.roomBuckets.size())
+                .register(registry);
+    }
+
+    record Limit(double perSecond, int burst) {
+        Limit {
+            if (perSecond <= 0 || burst < 1) {
+                throw new IllegalArgumentException("Лимит должен быть положительным: " + perSecond + "/" + burst);
+            }
+        }
+
+        long intervalNanos() {
+            return (long) (TimeUnit.SECONDS.toNanos(1) / perSecond);
+        }
+    }
+}
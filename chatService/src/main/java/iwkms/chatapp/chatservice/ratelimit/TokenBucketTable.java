@@ -0,0 +1,105 @@
+package iwkms.chatapp.chatservice.ratelimit;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Token buckets keyed by string, stored as one "theoretical arrival time" per
+ * key (GCRA, which admits exactly the same traffic as a token bucket). Keys
+ * are spread over lock stripes; a check on a known key allocates nothing. A
+ * bucket whose arrival time has passed is full and equivalent to no bucket,
+ * so such entries are dropped first when a stripe reaches its size limit.
+ */
+class TokenBucketTable {
+    private final Stripe[] stripes;
+    private final int mask;
+    private final int maxKeysPerStripe;
+
+    TokenBucketTable(int stripeCount, int maxKeys) {
+        int size = Integer.highestOneBit(Math.max(1, stripeCount - 1) << 1);
+        this.stripes = new Stripe[size];
+        for (int i = 0; i < size; i++) {
+            stripes[i] = new Stripe();
+        }
+        this.mask = size - 1;
+        this.maxKeysPerStripe = Math.max(1, maxKeys / size);
+    }
+
+    /**
+     * Takes one token from the key's bucket.
+     *
+     * @return 0 if the token was granted, otherwise nanoseconds until one will be available
+     */
+    long tryAcquire(String key, long intervalNanos, int burst, long now) {
+        Stripe stripe = stripe(key);
+        stripe.lock.lock();
+        try {
+            Bucket bucket = stripe.buckets.get(key);
+            long tat = bucket != null ? Math.max(bucket.tat, now) : now;
+            long next = tat + intervalNanos;
+            long excess = next - now - intervalNanos * burst;
+            if (excess > 0) {
+                return excess;
+            }
+            if (bucket == null) {
+                if (stripe.buckets.size() >= maxKeysPerStripe) {
+                    stripe.makeRoom(now, maxKeysPerStripe);
+                }
+                bucket = new Bucket();
+                stripe.buckets.put(key, bucket);
+            }
+            bucket.tat = next;
+            return 0;
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    /**
+     * Gives back a token taken by {@link #tryAcquire}.
+     */
+    void refund(String key, long intervalNanos) {
+        Stripe stripe = stripe(key);
+        stripe.lock.lock();
+        try {
+            Bucket bucket = stripe.buckets.get(key);
+            if (bucket != null) {
+                bucket.tat -= intervalNanos;
+            }
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            size += stripe.buckets.size();
+        }
+        return size;
+    }
+
+    private Stripe stripe(String key) {
+        int h = key.hashCode();
+        return stripes[(h ^ (h >>> 16)) & mask];
+    }
+
+    private static final class Bucket {
+        private long tat;
+    }
+
+    private static final class Stripe {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final HashMap<String, Bucket> buckets = new HashMap<>();
+
+        void makeRoom(long now, int maxKeys) {
+            buckets.values().removeIf(bucket -> bucket.tat <= now);
+            Iterator<String> keys = buckets.keySet().iterator();
+            while (buckets.size() >= maxKeys && keys.hasNext()) {
+                keys.next();
+                keys.remove();
+            }
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package iwkms.chatapp.chatservice.repository;
+
+import iwkms.chatapp.chatservice.model.ChatMessage;
+
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.stream.Stream;
+
+public interface ChatMessageRepositoryCustom {
+
+    /** Lowest and highest id among some of a room's messages. */
+    record RoomIdRange(String chatRoomId, long minId, long maxId) {
+    }
+
+    long nextIdBlockStart();
+    void batchInsert(List<ChatMessage> messages);
+    void saveAllInBatches(List<ChatMessage> messages);
+
+    /** Rooms that have messages older than {@code cutoff}. */
+    List<String> findRoomIdsBefore(LocalDateTime cutoff);
+
+    /** Per room, the id range of the messages older than {@code cutoff}. */
+    List<RoomIdRange> findRoomIdRangesBefore(LocalDateTime cutoff);
+
+    /** Lowest id of a room's messages from {@code cutoff} on, or {@code null} if there are none. */
+    Long findFirstIdSince(String chatRoomId, LocalDateTime cutoff);
+
+    /** Messages of a room with {@code afterId < id <= maxId} older than {@code before}, oldest first. */
+    List<ChatMessage> findRangeAsc(String chatRoomId, long afterId, long maxId, LocalDateTime before, int limit);
+
+    /**
+     * A room's newest messages in timestamp-then-id order, newest first. Each
+     * month's partition is read backwards along {@code (chat_room_id, timestamp, id)}
+     * and PostgreSQL stops at the first partition that fills the page.
+     */
+    List<ChatMessage> findLatest(String chatRoomId, int limit);
+
+    /** Messages of a room before {@code (timestamp, beforeId)} in timestamp-then-id order, newest first. */
+    List<ChatMessage> findBefore(String chatRoomId, LocalDateTime timestamp, long beforeId, int limit);
+
+    /** Messages of a room after {@code (timestamp, afterId)} in timestamp-then-id order, oldest first. */
+    List<ChatMessage> findAfter(String chatRoomId, LocalDateTime timestamp, long afterId, int limit);
+
+    int deleteByIds(List<Long> ids);
+
+    /**
+     * Messages of a room with an id above {@code afterId}, oldest first, read
+     * through a cursor {@code fetchSize} rows at a time. PostgreSQL only uses a
+     * cursor inside a transaction; the stream must be closed.
+     */
+    Stream<ChatMessage> streamAfter(String chatRoomId, long afterId, int fetchSize);
+
+    /** Months that have a partition of {@code chat_messages}; the default partition is not included. */
+    List<YearMonth> findPartitionMonths();
+
+    void createPartition(YearMonth month);
+
+    void dropPartition(YearMonth month);
+
+    int deleteFromDefaultPartitionBefore(LocalDateTime cutoff);
+}
@@ -0,0 +1,220 @@
+package iwkms.chatapp.chatservice.repository;
+
+import iwkms.chatapp.chatservice.model.ChatMessage;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+public class ChatMessageRepositoryImpl implements ChatMessageRepositoryCustom {
+    private static final String NEXT_ID_BLOCK_SQL = "SELECT nextval('" + ChatMessage.ID_SEQUENCE + "')";
+    private static final String INSERT_SQL =
+            "INSERT INTO chat_messages (id, sender_username, chat_room_id, content, timestamp) VALUES (?, ?, ?, ?, ?)";
+    private static final String ROOM_IDS_BEFORE_SQL =
+            "SELECT DISTINCT chat_room_id FROM chat_messages WHERE timestamp < ?";
+    private static final String ROOM_ID_RANGES_BEFORE_SQL =
+            "SELECT chat_room_id, min(id), max(id) FROM chat_messages WHERE timestamp < ? GROUP BY chat_room_id";
+    private static final String FIRST_ID_SINCE_SQL =
+            "SELECT min(id) FROM chat_messages WHERE chat_room_id = ? AND timestamp >= ?";
+    private static final String RANGE_SQL =
+            "SELECT id, sender_username, chat_room_id, content, timestamp FROM chat_messages "
+                    + "WHERE chat_room_id = ? AND id > ? AND id <= ? AND timestamp < ? ORDER BY id LIMIT ?";
+    private static final String LATEST_SQL =
+            "SELECT id, sender_username, chat_room_id, content, timestamp FROM chat_messages "
+                    + "WHERE chat_room_id = ? ORDER BY timestamp DESC, id DESC LIMIT ?";
+    private static final String BEFORE_SQL =
+            "SELECT id, sender_username, chat_room_id, content, timestamp FROM chat_messages "
+                    + "WHERE chat_room_id = ? AND (timestamp, id) < (?, ?) ORDER BY timestamp DESC, id DESC LIMIT ?";
+    private static final String AFTER_SQL =
+            "SELECT id, sender_username, chat_room_id, content, timestamp FROM chat_messages "
+                    + "WHERE chat_room_id = ? AND (timestamp, id) > (?, ?) ORDER BY timestamp, id LIMIT ?";
+    private static final String STREAM_SQL =
+            "SELECT id, sender_username, chat_room_id, content, timestamp FROM chat_messages "
+                    + "WHERE chat_room_id = ? AND id > ? ORDER BY id";
+    private static final String DELETE_BY_IDS_SQL = "DELETE FROM chat_messages WHERE id = ANY (?)";
+    private static final String PARTITION_PREFIX = "chat_messages_p";
+    private static final DateTimeFormatter PARTITION_SUFFIX = DateTimeFormatter.ofPattern("yyyyMM");
+    private static final String LIST_PARTITIONS_SQL =
+            "SELECT c.relname FROM pg_inherits i"
+                    + " JOIN pg_class c ON c.oid = i.inhrelid"
+                    + " JOIN pg_class p ON p.oid = i.inhparent"
+                    + " WHERE p.relname = 'chat_messages'";
+    private static final String MOVE_FROM_DEFAULT_SQL =
+            "WITH moved AS (DELETE FROM chat_messages_default WHERE timestamp >= ? AND timestamp < ? RETURNING *)"
+                    + " INSERT INTO %s SELECT * FROM moved";
+    private static final String DELETE_DEFAULT_BEFORE_SQL = "DELETE FROM chat_messages_default WHERE timestamp < ?";
+    private static final RowMapper<ChatMessage> MESSAGE_ROW_MAPPER = (rs, rowNum) -> {
+        ChatMessage message = new ChatMessage();
+        message.setId(rs.getLong("id"));
+        message.setSenderUsername(rs.getString("sender_username"));
+        message.setChatRoomId(rs.getString("chat_room_id"));
+        message.setContent(rs.getString("content"));
+        message.setTimestamp(rs.getTimestamp("timestamp").toLocalDateTime());
+        return message;
+    };
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int jdbcBatchSize;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    public ChatMessageRepositoryImpl(JdbcTemplate jdbcTemplate,
+                                     @Value("${spring.jpa.properties.hibernate.jdbc.batch_size:50}") int jdbcBatchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.jdbcBatchSize = jdbcBatchSize;
+    }
+
+    @Override
+    public long nextIdBlockStart() {
+        Long value = jdbcTemplate.queryForObject(NEXT_ID_BLOCK_SQL, Long.class);
+        if (value == null) {
+            throw new IllegalStateException("Sequence " + ChatMessage.ID_SEQUENCE + " returned no value");
+        }
+        return value;
+    }
+
+    @Override
+    public void batchInsert(List<ChatMessage> messages) {
+        if (messages.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(INSERT_SQL, messages, messages.size(), (ps, message) -> {
+            ps.setLong(1, message.getId());
+            ps.setString(2, message.getSenderUsername());
+            ps.setString(3, message.getChatRoomId());
+            ps.setString(4, message.getContent());
+            ps.setTimestamp(5, Timestamp.valueOf(message.getTimestamp()));
+        });
+    }
+
+    @Override
+    @Transactional
+    public void saveAllInBatches(List<ChatMessage> messages) {
+        for (int i = 0; i < messages.size(); i++) {
+            entityManager.persist(messages.get(i));
+            if ((i + 1) % jdbcBatchSize == 0) {
+                entityManager.flush();
+                entityManager.clear();
+            }
+        }
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    @Override
+    public List<String> findRoomIdsBefore(LocalDateTime cutoff) {
+        return jdbcTemplate.queryForList(ROOM_IDS_BEFORE_SQL, String.class, Timestamp.valueOf(cutoff));
+    }
+
+    @Override
+    public List<RoomIdRange> findRoomIdRangesBefore(LocalDateTime cutoff) {
+        return jdbcTemplate.query(ROOM_ID_RANGES_BEFORE_SQL,
+                (rs, rowNum) -> new RoomIdRange(rs.getString(1), rs.getLong(2), rs.getLong(3)),
+                Timestamp.valueOf(cutoff));
+    }
+
+    @Override
+    public Long findFirstIdSince(String chatRoomId, LocalDateTime cutoff) {
+        return jdbcTemplate.queryForObject(FIRST_ID_SINCE_SQL, Long.class, chatRoomId, Timestamp.valueOf(cutoff));
+    }
+
+    @Override
+    public List<ChatMessage> findRangeAsc(String chatRoomId, long afterId, long maxId, LocalDateTime before,
+                                         int limit) {
+        return jdbcTemplate.query(RANGE_SQL, MESSAGE_ROW_MAPPER,
+                chatRoomId, afterId, maxId, Timestamp.valueOf(before), limit);
+    }
+
+    @Override
+    public List<ChatMessage> findLatest(String chatRoomId, int limit) {
+        return jdbcTemplate.query(LATEST_SQL, MESSAGE_ROW_MAPPER, chatRoomId, limit);
+    }
+
+    @Override
+    public List<ChatMessage> findBefore(String chatRoomId, LocalDateTime timestamp, long beforeId, int limit) {
+        return jdbcTemplate.query(BEFORE_SQL, MESSAGE_ROW_MAPPER,
+                chatRoomId, Timestamp.valueOf(timestamp), beforeId, limit);
+    }
+
+    @Override
+    public List<ChatMessage> findAfter(String chatRoomId, LocalDateTime timestamp, long afterId, int limit) {
+        return jdbcTemplate.query(AFTER_SQL, MESSAGE_ROW_MAPPER,
+                chatRoomId, Timestamp.valueOf(timestamp), afterId, limit);
+    }
+
+    @Override
+    public Stream<ChatMessage> streamAfter(String chatRoomId, long afterId, int fetchSize) {
+        return jdbcTemplate.queryForStream(connection -> {
+            PreparedStatement statement = connection.prepareStatement(STREAM_SQL);
+            statement.setFetchSize(fetchSize);
+            statement.setString(1, chatRoomId);
+            statement.setLong(2, afterId);
+            return statement;
+        }, MESSAGE_ROW_MAPPER);
+    }
+
+    @Override
+    public int deleteByIds(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        return jdbcTemplate.update(DELETE_BY_IDS_SQL,
+                ps -> ps.setArray(1, ps.getConnection().createArrayOf("bigint", ids.toArray())));
+    }
+
+    @Override
+    public List<YearMonth> findPartitionMonths() {
+        List<YearMonth> months = new ArrayList<>();
+        for (String name : jdbcTemplate.queryForList(LIST_PARTITIONS_SQL, String.class)) {
+            if (name.startsWith(PARTITION_PREFIX)) {
+                months.add(YearMonth.parse(name.substring(PARTITION_PREFIX.length()), PARTITION_SUFFIX));
+            }
+        }
+        return months;
+    }
+
+    /**
+     * Rows of that month already in the default partition are moved into the
+     * new one first, since PostgreSQL refuses to attach a range the default
+     * partition still holds rows for. Partition names are built from the
+     * month only.
+     */
+    @Override
+    @Transactional
+    public void createPartition(YearMonth month) {
+        String name = partitionName(month);
+        Timestamp from = Timestamp.valueOf(month.atDay(1).atStartOfDay());
+        Timestamp to = Timestamp.valueOf(month.plusMonths(1).atDay(1).atStartOfDay());
+        jdbcTemplate.execute("CREATE TABLE " + name
+                + " (LIKE chat_messages INCLUDING DEFAULTS INCLUDING CONSTRAINTS)");
+        jdbcTemplate.update(MOVE_FROM_DEFAULT_SQL.formatted(name), from, to);
+        jdbcTemplate.execute("ALTER TABLE chat_messages ATTACH PARTITION " + name
+                + " FOR VALUES FROM ('" + from + "') TO ('" + to + "')");
+    }
+
+    @Override
+    public void dropPartition(YearMonth month) {
+        jdbcTemplate.execute("DROP TABLE IF EXISTS " + partitionName(month));
+    }
+
+    @Override
+    public int deleteFromDefaultPartitionBefore(LocalDateTime cutoff) {
+        return jdbcTemplate.update(DELETE_DEFAULT_BEFORE_SQL, Timestamp.valueOf(cutoff));
+    }
+
+    static String partitionName(YearMonth month) {
+        return PARTITION_PREFIX + month.format(PARTITION_SUFFIX);
+    }
+}
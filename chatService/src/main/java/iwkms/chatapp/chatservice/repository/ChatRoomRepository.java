@@ -2,15 +2,20 @@ package iwkms.chatapp.chatservice.repository;
 
 import iwkms.chatapp.chatservice.model.ChatRoom;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface ChatRoomRepository extends JpaRepository<ChatRoom, Long> {
+public interface ChatRoomRepository extends JpaRepository<ChatRoom, Long>, ChatRoomRepositoryCustom {
     Optional<ChatRoom> findByRoomId(String roomId);
     boolean existsByRoomId(String roomId);
     List<ChatRoom> findByIsPrivateFalse();
     List<ChatRoom> findByMembersContains(String username);
-} 
\ No newline at end of file
+
+    @Query("select m from ChatRoom r join r.members m where r.roomId = :roomId")
+    List<String> findMemberUsernamesByRoomId(@Param("roomId") String roomId);
+} 
@@ -0,0 +1,17 @@
+package iwkms.chatapp.chatservice.repository;
+
+import iwkms.chatapp.chatservice.model.RoomMetadata;
+
+import java.util.Optional;
+
+public interface ChatRoomRepositoryCustom {
+    Optional<RoomMetadata> findMetadataByRoomId(String roomId);
+
+    /**
+     * Creates a public room owned by {@code ownerUsername} unless one with the
+     * same id already exists. Safe to call concurrently for the same room.
+     *
+     * @return {@code true} if this call created the room
+     */
+    boolean insertIfAbsent(String roomId, String name, String description, String ownerUsername);
+}
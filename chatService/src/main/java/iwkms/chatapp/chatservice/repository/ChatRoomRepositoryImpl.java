@@ -0,0 +1,42 @@
+package iwkms.chatapp.chatservice.repository;
+
+import iwkms.chatapp.chatservice.model.ChatRoom;
+import iwkms.chatapp.chatservice.model.RoomMetadata;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+public class ChatRoomRepositoryImpl implements ChatRoomRepositoryCustom {
+    private static final String FIND_METADATA_SQL =
+            "SELECT id, room_id, is_private, owner_username FROM chat_rooms WHERE room_id = ?";
+    private static final String INSERT_IF_ABSENT_SQL =
+            "WITH ins AS ("
+                    + " INSERT INTO chat_rooms (id, room_id, name, description, is_private, created_at, owner_username)"
+                    + " VALUES (nextval('" + ChatRoom.ID_SEQUENCE + "'), ?, ?, ?, false, ?, ?)"
+                    + " ON CONFLICT (room_id) DO NOTHING"
+                    + " RETURNING id)"
+                    + " INSERT INTO chat_room_members (chat_room_id, username) SELECT id, ? FROM ins";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public ChatRoomRepositoryImpl(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public Optional<RoomMetadata> findMetadataByRoomId(String roomId) {
+        return jdbcTemplate.query(FIND_METADATA_SQL, (rs, rowNum) -> new RoomMetadata(
+                rs.getLong("id"),
+                rs.getString("room_id"),
+                rs.getBoolean("is_private"),
+                rs.getString("owner_username")), roomId).stream().findFirst();
+    }
+
+    @Override
+    public boolean insertIfAbsent(String roomId, String name, String description, String ownerUsername) {
+        return jdbcTemplate.update(INSERT_IF_ABSENT_SQL,
+                roomId, name, description, Timestamp.valueOf(LocalDateTime.now()), ownerUsername, ownerUsername) > 0;
+    }
+}
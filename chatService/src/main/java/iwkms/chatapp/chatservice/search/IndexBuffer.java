@@ -0,0 +1,133 @@
+package iwkms.chatapp.chatservice.search;
+
+import iwkms.chatapp.chatservice.model.ChatMessage;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * The mutable head of the index: messages added since the last flush, with
+ * their postings as plain growable arrays. Searchable right away; written out
+ * as a segment by {@link #flush}. All access is synchronized, additions are
+ * cheap and a buffer only holds a few seconds' worth of messages.
+ */
+final class IndexBuffer implements TopHits.DocumentSource {
+    private final List<ChatMessage> documents = new ArrayList<>();
+    private final Map<String, PostingBuilder> postings = new HashMap<>();
+
+    synchronized void add(ChatMessage message, List<String> terms) {
+        int ordinal = documents.size();
+        documents.add(message);
+        for (String term : terms) {
+            postings.computeIfAbsent(term, t -> new PostingBuilder()).add(ordinal);
+        }
+    }
+
+    synchronized int documentCount() {
+        return documents.size();
+    }
+
+    synchronized void search(List<String> queryTerms, Predicate<String> roomFilter, Tombstones tombstones,
+                             TopHits hits) {
+        int[] candidates = null;
+        for (String term : queryTerms) {
+            PostingBuilder posting = postings.get(term);
+            if (posting == null) {
+                return;
+            }
+            int[] ordinals = Arrays.copyOf(posting.ordinals, posting.count);
+            candidates = candidates == null ? ordinals : Postings.intersect(candidates, ordinals);
+        }
+        if (candidates == null) {
+            return;
+        }
+        Map<String, Boolean> allowedRooms = new HashMap<>();
+        for (int ordinal : candidates) {
+            ChatMessage message = documents.get(ordinal);
+            long micros = IndexSegment.epochMicros(message.getTimestamp());
+            if (allowedRooms.computeIfAbsent(message.getChatRoomId(), roomFilter::test)
+                    && !tombstones.covers(message.getChatRoomId(), message.getId(), micros)) {
+                hits.offer(message.getId(), micros, this, ordinal);
+            }
+        }
+    }
+
+    /** The ranges of {@code tombstones} that cover a buffered message. */
+    synchronized Set<Tombstones.Range> coveringRanges(Tombstones tombstones) {
+        Set<Tombstones.Range> covering = new HashSet<>();
+        if (tombstones.isEmpty()) {
+            return covering;
+        }
+        for (ChatMessage message : documents) {
+            long micros = IndexSegment.epochMicros(message.getTimestamp());
+            for (Tombstones.Range range : tombstones.forRoom(message.getChatRoomId())) {
+                if (range.covers(message.getId(), micros)) {
+                    covering.add(range);
+                }
+            }
+        }
+        return covering;
+    }
+
+    @Override
+    public synchronized ChatMessage document(int ordinal) {
+        return documents.get(ordinal);
+    }
+
+    /**
+     * Writes the buffered messages that {@code tombstones} do not cover as a
+     * segment. The buffer must no longer receive additions.
+     */
+    synchronized IndexSegment flush(Path directory, long generation, Tombstones tombstones) throws IOException {
+        try (IndexSegment.Writer writer = new IndexSegment.Writer(directory, generation)) {
+            int[] newOrdinals = new int[documents.size()];
+            int next = 0;
+            for (int ordinal = 0; ordinal < documents.size(); ordinal++) {
+                ChatMessage message = documents.get(ordinal);
+                if (tombstones.covers(message.getChatRoomId(), message.getId(),
+                        IndexSegment.epochMicros(message.getTimestamp()))) {
+                    newOrdinals[ordinal] = -1;
+                } else {
+                    writer.addDocument(message);
+                    newOrdinals[ordinal] = next++;
+                }
+            }
+            List<String> terms = new ArrayList<>(postings.keySet());
+            terms.sort(null);
+            for (String term : terms) {
+                PostingBuilder posting = postings.get(term);
+                int[] ordinals = new int[posting.count];
+                int count = 0;
+                for (int i = 0; i < posting.count; i++) {
+                    if (newOrdinals[posting.ordinals[i]] >= 0) {
+                        ordinals[count++] = newOrdinals[posting.ordinals[i]];
+                    }
+                }
+                if (count > 0) {
+                    writer.addTerm(term, ordinals, count);
+                }
+            }
+            return writer.finish();
+        }
+    }
+
+    private static final class PostingBuilder {
+        private int[] ordinals = new int[4];
+        private int count;
+
+        void add(int ordinal) {
+            if (count == ordinals.length) {
+                ordinals = Arrays.copyOf(ordinals, count * 2);
+            }
+            ordinals[count++] = ordinal;
+        }
+    }
+}
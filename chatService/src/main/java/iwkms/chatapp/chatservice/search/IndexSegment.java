@@ -0,0 +1,477 @@
+package iwkms.chatapp.chatservice.search;
+
+import iwkms.chatapp.chatservice.model.ChatMessage;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * One immutable, memory-mapped segment of the search index.
+ * <pre>
+ * header    "CHATIDX2", long generation, int count, long[count] generations this segment replaces
+ * documents per document: long id, long timestamp (epoch micros), u16 room length, room,
+ *           u16 sender length, sender, int content length, content (UTF-8)
+ * postings  per term: ordinal gaps as varints ({@link Postings})
+ * terms     per term, ascending: u16 length, term, int document count, long offset, int length
+ * rooms     per room: u16 length, room
+ * documents per document: long id, long timestamp, int room ordinal, long offset
+ * footer    long terms offset, int term count, long rooms offset, int room count,
+ *           long document table offset, int document count, "CHATIDX2"
+ * </pre>
+ * Ordinals are the position of a document in the segment. The term dictionary
+ * and document table are loaded on open, so ranking and {@link Tombstones}
+ * checks need no reads of stored messages; postings and stored messages are
+ * read from the mapping on demand.
+ */
+final class IndexSegment implements TopHits.DocumentSource {
+    static final String SUFFIX = ".idx";
+    private static final byte[] MAGIC = "CHATIDX2".getBytes(StandardCharsets.US_ASCII);
+    private static final int FOOTER_BYTES = 8 + 4 + 8 + 4 + 8 + 4 + MAGIC.length;
+    private static final long[] NO_GENERATIONS = new long[0];
+
+    private final Path file;
+    private final long generation;
+    private final long[] replaces;
+    private final long sizeBytes;
+    private final MappedByteBuffer buffer;
+    private final String[] terms;
+    private final int[] documentCounts;
+    private final long[] postingOffsets;
+    private final String[] rooms;
+    private final long[] messageIds;
+    private final long[] timestamps;
+    private final int[] roomOrdinals;
+    private final long[] documentOffsets;
+
+    private IndexSegment(Path file, long sizeBytes, MappedByteBuffer buffer) {
+        this.file = file;
+        this.sizeBytes = sizeBytes;
+        this.buffer = buffer;
+
+        byte[] header = new byte[MAGIC.length];
+        byte[] trailer = new byte[MAGIC.length];
+        buffer.get(0, header);
+        buffer.get((int) sizeBytes - MAGIC.length, trailer);
+        if (!Arrays.equals(header, MAGIC) || !Arrays.equals(trailer, MAGIC)) {
+            throw new IllegalStateException("Повреждён сегмент поискового индекса " + file);
+        }
+        int footer = (int) sizeBytes - FOOTER_BYTES;
+        this.generation = buffer.getLong(MAGIC.length);
+        int replacedCount = buffer.getInt(MAGIC.length + 8);
+        this.replaces = new long[replacedCount];
+        for (int i = 0; i < replacedCount; i++) {
+            replaces[i] = buffer.getLong(MAGIC.length + 12 + i * 8);
+        }
+
+        int position = (int) buffer.getLong(footer);
+        int termCount = buffer.getInt(footer + 8);
+        this.terms = new String[termCount];
+        this.documentCounts = new int[termCount];
+        this.postingOffsets = new long[termCount];
+        for (int i = 0; i < termCount; i++) {
+            int length = Short.toUnsignedInt(buffer.getShort(position));
+            terms[i] = string(position + 2, length);
+            position += 2 + length;
+            documentCounts[i] = buffer.getInt(position);
+            postingOffsets[i] = buffer.getLong(position + 4);
+            position += 4 + 8 + 4;
+        }
+
+        position = (int) buffer.getLong(footer + 12);
+        int roomCount = buffer.getInt(footer + 20);
+        this.rooms = new String[roomCount];
+        for (int i = 0; i < roomCount; i++) {
+            int length = Short.toUnsignedInt(buffer.getShort(position));
+            rooms[i] = string(position + 2, length);
+            position += 2 + length;
+        }
+
+        position = (int) buffer.getLong(footer + 24);
+        int documentCount = buffer.getInt(footer + 32);
+        this.messageIds = new long[documentCount];
+        this.timestamps = new long[documentCount];
+        this.roomOrdinals = new int[documentCount];
+        this.documentOffsets = new long[documentCount];
+        for (int i = 0; i < documentCount; i++) {
+            messageIds[i] = buffer.getLong(position);
+            timestamps[i] = buffer.getLong(position + 8);
+            roomOrdinals[i] = buffer.getInt(position + 16);
+            documentOffsets[i] = buffer.getLong(position + 20);
+            position += 28;
+        }
+    }
+
+    /** A message timestamp as stored in segments: microseconds since the epoch. */
+    static long epochMicros(LocalDateTime timestamp) {
+        return ChronoUnit.MICROS.between(Instant.EPOCH, timestamp.toInstant(ZoneOffset.UTC));
+    }
+
+    static Path fileName(Path directory, long generation) {
+        return directory.resolve(String.format("%020d%s", generation, SUFFIX));
+    }
+
+    static IndexSegment open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE || size < MAGIC.length + 12 + FOOTER_BYTES) {
+                throw new IOException("Неверный размер сегмента поискового индекса " + file);
+            }
+            return new IndexSegment(file, size, channel.map(FileChannel.MapMode.READ_ONLY, 0, size));
+        }
+    }
+
+    /**
+     * Merges {@code segments} into a new segment with the given generation,
+     * leaving out the documents covered by {@code tombstones}. Documents keep
+     * their order, so each posting list is the concatenation of the inputs'
+     * lists with the ordinals mapped to the new positions. A single segment
+     * is merged on its own to purge deleted documents.
+     */
+    static IndexSegment merge(Path directory, long generation, List<IndexSegment> segments,
+                              Tombstones tombstones) throws IOException {
+        long[] replaced = new long[segments.size()];
+        int[][] newOrdinals = new int[segments.size()][];
+        for (int i = 0; i < segments.size(); i++) {
+            replaced[i] = segments.get(i).generation;
+        }
+        try (Writer writer = new Writer(directory, generation, replaced)) {
+            int next = 0;
+            for (int i = 0; i < segments.size(); i++) {
+                IndexSegment segment = segments.get(i);
+                boolean[] deleted = segment.covered(tombstones);
+                newOrdinals[i] = new int[segment.documentCount()];
+                for (int ordinal = 0; ordinal < segment.documentCount(); ordinal++) {
+                    if (deleted[ordinal]) {
+                        newOrdinals[i][ordinal] = -1;
+                    } else {
+                        writer.addDocument(segment.document(ordinal));
+                        newOrdinals[i][ordinal] = next++;
+                    }
+                }
+            }
+            int[] cursors = new int[segments.size()];
+            while (true) {
+                String term = null;
+                for (int i = 0; i < segments.size(); i++) {
+                    String[] segmentTerms = segments.get(i).terms;
+                    if (cursors[i] < segmentTerms.length
+                            && (term == null || segmentTerms[cursors[i]].compareTo(term) < 0)) {
+                        term = segmentTerms[cursors[i]];
+                    }
+                }
+                if (term == null) {
+                    break;
+                }
+                int[] merged = new int[16];
+                int count = 0;
+                for (int i = 0; i < segments.size(); i++) {
+                    IndexSegment segment = segments.get(i);
+                    if (cursors[i] < segment.terms.length && segment.terms[cursors[i]].equals(term)) {
+                        int[] ordinals = segment.postings(cursors[i]);
+                        if (count + ordinals.length > merged.length) {
+                            merged = Arrays.copyOf(merged, Math.max(merged.length * 2, count + ordinals.length));
+                        }
+                        for (int ordinal : ordinals) {
+                            if (newOrdinals[i][ordinal] >= 0) {
+                                merged[count++] = newOrdinals[i][ordinal];
+                            }
+                        }
+                        cursors[i]++;
+                    }
+                }
+                if (count > 0) {
+                    writer.addTerm(term, merged, count);
+                }
+            }
+            return writer.finish();
+        }
+    }
+
+    long generation() {
+        return generation;
+    }
+
+    /** Generations merged into this segment; empty for a flushed buffer. */
+    long[] replaces() {
+        return replaces;
+    }
+
+    int documentCount() {
+        return messageIds.length;
+    }
+
+    long sizeBytes() {
+        return sizeBytes;
+    }
+
+    Path file() {
+        return file;
+    }
+
+    /** Which documents {@code tombstones} cover, by ordinal. */
+    boolean[] covered(Tombstones tombstones) {
+        boolean[] covered = new boolean[messageIds.length];
+        if (tombstones.isEmpty()) {
+            return covered;
+        }
+        List<List<Tombstones.Range>> byRoom = new ArrayList<>(rooms.length);
+        for (String room : rooms) {
+            byRoom.add(tombstones.forRoom(room));
+        }
+        for (int ordinal = 0; ordinal < messageIds.length; ordinal++) {
+            covered[ordinal] = Tombstones.covers(byRoom.get(roomOrdinals[ordinal]),
+                    messageIds[ordinal], timestamps[ordinal]);
+        }
+        return covered;
+    }
+
+    /** Whether any document of this segment is covered by {@code tombstones}. */
+    boolean containsAny(Tombstones tombstones) {
+        for (boolean covered : covered(tombstones)) {
+            if (covered) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Offers every document that contains all {@code queryTerms}, whose room
+     * passes {@code roomFilter} and that {@code tombstones} do not cover to
+     * {@code hits}. Postings are decoded rarest term first, so the
+     * intersection shrinks as early as possible.
+     */
+    void search(List<String> queryTerms, Predicate<String> roomFilter, Tombstones tombstones, TopHits hits) {
+        int[] termIndexes = new int[queryTerms.size()];
+        for (int i = 0; i < termIndexes.length; i++) {
+            termIndexes[i] = Arrays.binarySearch(terms, queryTerms.get(i));
+            if (termIndexes[i] < 0) {
+                return;
+            }
+        }
+        Integer[] order = new Integer[termIndexes.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = termIndexes[i];
+        }
+        Arrays.sort(order, (a, b) -> Integer.compare(documentCounts[a], documentCounts[b]));
+
+        int[] candidates = postings(order[0]);
+        for (int i = 1; i < order.length && candidates.length > 0; i++) {
+            candidates = Postings.intersect(candidates, postings(order[i]));
+        }
+
+        Map<Integer, List<Tombstones.Range>> deletedByRoom = new HashMap<>();
+        for (int ordinal : candidates) {
+            int room = roomOrdinals[ordinal];
+            List<Tombstones.Range> deleted = deletedByRoom.get(room);
+            if (deleted == null && !deletedByRoom.containsKey(room)) {
+                deleted = roomFilter.test(rooms[room]) ? tombstones.forRoom(rooms[room]) : null;
+                deletedByRoom.put(room, deleted);
+            }
+            if (deleted != null && !Tombstones.covers(deleted, messageIds[ordinal], timestamps[ordinal])) {
+                hits.offer(messageIds[ordinal], timestamps[ordinal], this, ordinal);
+            }
+        }
+    }
+
+    @Override
+    public ChatMessage document(int ordinal) {
+        int position = (int) documentOffsets[ordinal];
+        ChatMessage message = new ChatMessage();
+        message.setId(buffer.getLong(position));
+        long micros = buffer.getLong(position + 8);
+        message.setTimestamp(LocalDateTime.ofEpochSecond(Math.floorDiv(micros, 1_000_000L),
+                (int) Math.floorMod(micros, 1_000_000L) * 1000, ZoneOffset.UTC));
+        position += 16;
+        int roomLength = Short.toUnsignedInt(buffer.getShort(position));
+        message.setChatRoomId(string(position + 2, roomLength));
+        position += 2 + roomLength;
+        int senderLength = Short.toUnsignedInt(buffer.getShort(position));
+        message.setSenderUsername(string(position + 2, senderLength));
+        position += 2 + senderLength;
+        int contentLength = buffer.getInt(position);
+        message.setContent(string(position + 4, contentLength));
+        return message;
+    }
+
+    private int[] postings(int termIndex) {
+        return Postings.decode(buffer, (int) postingOffsets[termIndex], documentCounts[termIndex]);
+    }
+
+    private String string(int position, int length) {
+        byte[] bytes = new byte[length];
+        buffer.get(position, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Streams a new segment to disk: all documents first, in ordinal order,
+     * then the terms in ascending order. The file is written under a temporary
+     * name, forced to disk and renamed by {@link #finish}, so a crash never
+     * leaves a partial segment.
+     */
+    static final class Writer implements Closeable {
+        private final Path target;
+        private final Path temp;
+        private final long generation;
+        private final DataOutputStream out;
+        private final Map<String, Integer> roomOrdinals = new HashMap<>();
+        private final List<String> rooms = new ArrayList<>();
+        private long[] messageIds = new long[64];
+        private long[] documentTimestamps = new long[64];
+        private int[] documentRooms = new int[64];
+        private long[] documentOffsets = new long[64];
+        private int documentCount;
+        private final ByteArrayOutputStream termBytes = new ByteArrayOutputStream();
+        private final DataOutputStream terms = new DataOutputStream(termBytes);
+        private int termCount;
+        private long position;
+        private boolean finished;
+
+        Writer(Path directory, long generation, long[] replaces) throws IOException {
+            this.generation = generation;
+            this.target = fileName(directory, generation);
+            this.temp = target.resolveSibling(target.getFileName() + ".tmp");
+            OutputStream file = Files.newOutputStream(temp, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+            this.out = new DataOutputStream(new BufferedOutputStream(file, 1 << 16));
+            out.write(MAGIC);
+            out.writeLong(generation);
+            out.writeInt(replaces.length);
+            for (long replaced : replaces) {
+                out.writeLong(replaced);
+            }
+            position = MAGIC.length + 12 + 8L * replaces.length;
+        }
+
+        Writer(Path directory, long generation) throws IOException {
+            this(directory, generation, NO_GENERATIONS);
+        }
+
+        void addDocument(ChatMessage message) throws IOException {
+            if (documentCount == messageIds.length) {
+                messageIds = Arrays.copyOf(messageIds, documentCount * 2);
+                documentTimestamps = Arrays.copyOf(documentTimestamps, documentCount * 2);
+                documentRooms = Arrays.copyOf(documentRooms, documentCount * 2);
+                documentOffsets = Arrays.copyOf(documentOffsets, documentCount * 2);
+            }
+            String room = message.getChatRoomId();
+            Integer roomOrdinal = roomOrdinals.get(room);
+            if (roomOrdinal == null) {
+                roomOrdinal = rooms.size();
+                roomOrdinals.put(room, roomOrdinal);
+                rooms.add(room);
+            }
+            long micros = epochMicros(message.getTimestamp());
+            messageIds[documentCount] = message.getId();
+            documentTimestamps[documentCount] = micros;
+            documentRooms[documentCount] = roomOrdinal;
+            documentOffsets[documentCount] = position;
+            documentCount++;
+
+            byte[] roomBytes = room.getBytes(StandardCharsets.UTF_8);
+            byte[] sender = message.getSenderUsername().getBytes(StandardCharsets.UTF_8);
+            byte[] content = message.getContent().getBytes(StandardCharsets.UTF_8);
+            out.writeLong(message.getId());
+            out.writeLong(micros);
+            out.writeShort(roomBytes.length);
+            out.write(roomBytes);
+            out.writeShort(sender.length);
+            out.write(sender);
+            out.writeInt(content.length);
+            out.write(content);
+            position += 8 + 8 + 2 + roomBytes.length + 2 + sender.length + 4 + content.length;
+            checkSize();
+        }
+
+        /** Terms must arrive in ascending order, after all documents. */
+        void addTerm(String term, int[] ordinals, int count) throws IOException {
+            byte[] postings = Postings.encode(ordinals, count);
+            byte[] bytes = term.getBytes(StandardCharsets.UTF_8);
+            terms.writeShort(bytes.length);
+            terms.write(bytes);
+            terms.writeInt(count);
+            terms.writeLong(position);
+            terms.writeInt(postings.length);
+            termCount++;
+            out.write(postings);
+            position += postings.length;
+            checkSize();
+        }
+
+        IndexSegment finish() throws IOException {
+            long termsOffset = position;
+            termBytes.writeTo(out);
+            position += terms.size();
+
+            long roomsOffset = position;
+            for (String room : rooms) {
+                byte[] bytes = room.getBytes(StandardCharsets.UTF_8);
+                out.writeShort(bytes.length);
+                out.write(bytes);
+                position += 2 + bytes.length;
+            }
+
+            long documentTableOffset = position;
+            for (int i = 0; i < documentCount; i++) {
+                out.writeLong(messageIds[i]);
+                out.writeLong(documentTimestamps[i]);
+                out.writeInt(documentRooms[i]);
+                out.writeLong(documentOffsets[i]);
+            }
+            position += 28L * documentCount;
+
+            out.writeLong(termsOffset);
+            out.writeInt(termCount);
+            out.writeLong(roomsOffset);
+            out.writeInt(rooms.size());
+            out.writeLong(documentTableOffset);
+            out.writeInt(documentCount);
+            out.write(MAGIC);
+            position += FOOTER_BYTES;
+            checkSize();
+            out.close();
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                channel.force(true);
+            }
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+            finished = true;
+            return open(target);
+        }
+
+        private void checkSize() throws IOException {
+            if (position + terms.size() > Integer.MAX_VALUE) {
+                throw new IOException("Сегмент поискового индекса " + generation + " превышает 2 ГБ");
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!finished) {
+                out.close();
+                Files.deleteIfExists(temp);
+            }
+        }
+    }
+}
@@ -0,0 +1,517 @@
+package iwkms.chatapp.chatservice.search;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import iwkms.chatapp.chatservice.model.ChatMessage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+/**
+ * In-process full-text index over message content. New messages go to an
+ * {@link IndexBuffer} that is searchable immediately; every
+ * {@code flush-interval-ms}, or once it holds {@code flush-documents}
+ * messages, the buffer is written out as an immutable {@link IndexSegment}.
+ * When there are {@code merge-factor} segments, the smallest of them are merged
+ * into one, so the segment count grows with the logarithm of the index size.
+ * A manifest file lists the live segments and is replaced atomically after
+ * every flush and merge.
+ *
+ * <p>A query matches messages containing all of its terms and returns the
+ * newest ones by timestamp. Segments store the messages themselves, so
+ * results do not depend on the message store engine or on history having been
+ * archived. Messages still in the buffer when the process dies are not indexed.
+ *
+ * <p>Deleted messages are recorded as {@link Tombstones}, kept in a file next
+ * to the manifest. Searches skip what they cover right away; flushes and
+ * merges leave it out, and segments still holding any of it are rewritten on
+ * their own, after which the tombstones are dropped.
+ */
+@Component
+public class MessageSearchIndex implements SmartLifecycle, MeterBinder {
+    private static final Logger logger = LoggerFactory.getLogger(MessageSearchIndex.class);
+
+    static final int PHASE = SmartLifecycle.DEFAULT_PHASE - 4096;
+    static final int MAX_QUERY_TERMS = 8;
+    private static final IndexSegment[] NO_SEGMENTS = new IndexSegment[0];
+    private static final String MANIFEST = "segments";
+    private static final String TOMBSTONES = "tombstones";
+
+    private final boolean enabled;
+    private final Path directory;
+    private final long flushIntervalMs;
+    private final int flushDocuments;
+    private final int mergeFactor;
+    private final long maxSegmentBytes;
+
+    private final LongAdder indexedCount = new LongAdder();
+    private final LongAdder flushCount = new LongAdder();
+    private final LongAdder mergeCount = new LongAdder();
+    private final LongAdder purgeCount = new LongAdder();
+    private final Object tombstoneFileLock = new Object();
+
+    /** Messages of a room with {@code fromId <= id <= toId} that were deleted. */
+    public record DeletedRange(String roomId, long fromId, long toId) {
+    }
+
+    /** Segments on disk and the buffer being written out, published together. */
+    private record IndexState(IndexSegment[] segments, IndexBuffer flushing) {
+    }
+
+    private IndexBuffer buffer = new IndexBuffer();
+    private volatile IndexState state = new IndexState(NO_SEGMENTS, null);
+    private Tombstones tombstones = Tombstones.NONE;
+    private boolean purgePending;
+    private long nextGeneration = 1;
+    private volatile ScheduledExecutorService scheduler;
+    private volatile boolean running;
+
+    @Autowired
+    public MessageSearchIndex(@Value("${chat.search.enabled:true}") boolean enabled,
+                              @Value("${chat.search.directory:data/search}") String directory,
+                              @Value("${chat.search.flush-interval-ms:1000}") long flushIntervalMs,
+                              @Value("${chat.search.flush-documents:10000}") int flushDocuments,
+                              @Value("${chat.search.merge-factor:10}") int mergeFactor,
+                              @Value("${chat.search.max-segment-bytes:1073741824}") long maxSegmentBytes) {
+        this.enabled = enabled;
+        this.directory = Path.of(directory);
+        this.flushIntervalMs = flushIntervalMs;
+        this.flushDocuments = Math.max(1, flushDocuments);
+        this.mergeFactor = Math.max(2, mergeFactor);
+        this.maxSegmentBytes = Math.min(maxSegmentBytes, Integer.MAX_VALUE);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Indexes a message that has been committed. Cheap enough for the request
+     * thread: the content is tokenized and appended to the buffer.
+     */
+    public void add(ChatMessage message) {
+        if (!enabled || message.getContent() == null) {
+            return;
+        }
+        List<String> terms = Tokenizer.terms(message.getContent());
+        int buffered;
+        synchronized (this) {
+            buffer.add(message, terms);
+            buffered = buffer.documentCount();
+        }
+        indexedCount.increment();
+        ScheduledExecutorService executor = scheduler;
+        if (buffered == flushDocuments && executor != null) {
+            try {
+                executor.execute(this::flushSafely);
+            } catch (RejectedExecutionException e) {
+                // stopping; stop() writes out the buffer
+            }
+        }
+    }
+
+    /**
+     * Removes messages from the index: those in {@code ranges} that are
+     * stamped before {@code before}, which keeps newer messages whose ids fall
+     * in a range. They disappear from results at once; the tombstones are
+     * written to disk before this returns, so a restart does not bring the
+     * messages back.
+     */
+    public void delete(Collection<DeletedRange> ranges, LocalDateTime before) {
+        if (!enabled || ranges.isEmpty()) {
+            return;
+        }
+        long beforeMicros = IndexSegment.epochMicros(before);
+        List<Tombstones.Range> added = new ArrayList<>(ranges.size());
+        for (DeletedRange range : ranges) {
+            added.add(new Tombstones.Range(range.roomId(), range.fromId(), range.toId(), beforeMicros));
+        }
+        synchronized (this) {
+            tombstones = tombstones.plus(added);
+            purgePending = true;
+        }
+        if (running) {
+            try {
+                writeTombstones();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Не удалось сохранить удаления поискового индекса " + directory, e);
+            }
+        }
+    }
+
+    /**
+     * Up to {@code limit} of the newest messages that contain every term of
+     * {@code query} and are in a room accepted by {@code roomFilter}. Only the
+     * first {@link #MAX_QUERY_TERMS} terms are used.
+     */
+    public List<ChatMessage> search(String query, Predicate<String> roomFilter, int limit) {
+        List<String> terms = Tokenizer.terms(query);
+        if (!enabled || terms.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+        if (terms.size() > MAX_QUERY_TERMS) {
+            terms = terms.subList(0, MAX_QUERY_TERMS);
+        }
+        IndexBuffer current;
+        IndexState snapshot;
+        Tombstones deleted;
+        synchronized (this) {
+            current = buffer;
+            snapshot = state;
+            deleted = tombstones;
+        }
+        TopHits hits = new TopHits(limit);
+        current.search(terms, roomFilter, deleted, hits);
+        if (snapshot.flushing() != null) {
+            snapshot.flushing().search(terms, roomFilter, deleted, hits);
+        }
+        for (IndexSegment segment : snapshot.segments()) {
+            segment.search(terms, roomFilter, deleted, hits);
+        }
+        return hits.messages();
+    }
+
+    public int getSegmentCount() {
+        return state.segments().length;
+    }
+
+    public long getDocumentCount() {
+        IndexState snapshot = state;
+        long count = snapshot.flushing() != null ? snapshot.flushing().documentCount() : 0;
+        for (IndexSegment segment : snapshot.segments()) {
+            count += segment.documentCount();
+        }
+        synchronized (this) {
+            return count + buffer.documentCount();
+        }
+    }
+
+    /**
+     * Writes the buffer out as a segment. A buffer whose write failed stays
+     * searchable and is written again on the next call. Called from the
+     * scheduler thread only.
+     */
+    void flush() throws IOException {
+        IndexBuffer full;
+        Tombstones deleted;
+        synchronized (this) {
+            deleted = tombstones;
+            full = state.flushing();
+            if (full == null) {
+                if (buffer.documentCount() == 0) {
+                    return;
+                }
+                full = buffer;
+                buffer = new IndexBuffer();
+                state = new IndexState(state.segments(), full);
+            }
+        }
+        Files.createDirectories(directory);
+        IndexSegment segment = full.flush(directory, nextGeneration++, deleted);
+        synchronized (this) {
+            IndexSegment[] segments = Arrays.copyOf(state.segments(), state.segments().length + 1);
+            segments[segments.length - 1] = segment;
+            state = new IndexState(segments, null);
+        }
+        writeManifest(state.segments());
+        flushCount.increment();
+    }
+
+    /**
+     * Merges the {@code merge-factor} smallest segments if there are that
+     * many and together they stay under {@code max-segment-bytes}. The inputs
+     * are deleted once the manifest lists the merged segment instead.
+     *
+     * @return whether a merge happened
+     */
+    boolean mergeOnce() throws IOException {
+        IndexSegment[] segments = state.segments();
+        if (segments.length < mergeFactor) {
+            return false;
+        }
+        IndexSegment[] bySize = segments.clone();
+        Arrays.sort(bySize, Comparator.comparingLong(IndexSegment::sizeBytes));
+        List<IndexSegment> picked = new ArrayList<>(mergeFactor);
+        long bytes = 0;
+        for (IndexSegment segment : bySize) {
+            if (picked.size() == mergeFactor || bytes + segment.sizeBytes() > maxSegmentBytes) {
+                break;
+            }
+            picked.add(segment);
+            bytes += segment.sizeBytes();
+        }
+        if (picked.size() < 2) {
+            return false;
+        }
+        picked.sort(Comparator.comparingLong(IndexSegment::generation));
+        Tombstones deleted;
+        synchronized (this) {
+            deleted = tombstones;
+        }
+        replace(picked, IndexSegment.merge(directory, nextGeneration++, picked, deleted));
+        mergeCount.increment();
+        return true;
+    }
+
+    /**
+     * Rewrites every segment holding messages deleted since the last purge,
+     * then drops the tombstones that no longer cover anything. Those still
+     * covering buffered messages stay until the buffer has been written out.
+     */
+    void purge() throws IOException {
+        Tombstones applied;
+        synchronized (this) {
+            if (!purgePending) {
+                return;
+            }
+            purgePending = false;
+            applied = tombstones;
+        }
+        try {
+            for (IndexSegment segment : state.segments()) {
+                if (segment.containsAny(applied)) {
+                    List<IndexSegment> single = List.of(segment);
+                    replace(single, IndexSegment.merge(directory, nextGeneration++, single, applied));
+                    purgeCount.increment();
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            synchronized (this) {
+                purgePending = true;
+            }
+            throw e;
+        }
+        synchronized (this) {
+            Set<Tombstones.Range> covering = buffer.coveringRanges(applied);
+            if (state.flushing() != null) {
+                covering.addAll(state.flushing().coveringRanges(applied));
+            }
+            List<Tombstones.Range> done = applied.ranges();
+            done.removeAll(covering);
+            tombstones = tombstones.minus(done);
+            purgePending |= !covering.isEmpty();
+        }
+        writeTombstones();
+    }
+
+    /** Swaps {@code replaced} for {@code merged} and deletes their files once the manifest is written. */
+    private void replace(List<IndexSegment> replaced, IndexSegment merged) throws IOException {
+        synchronized (this) {
+            List<IndexSegment> remaining = new ArrayList<>(Arrays.asList(state.segments()));
+            remaining.removeAll(replaced);
+            remaining.add(merged);
+            state = new IndexState(remaining.toArray(NO_SEGMENTS), state.flushing());
+        }
+        writeManifest(state.segments());
+        for (IndexSegment segment : replaced) {
+            deleteQuietly(segment.file());
+        }
+    }
+
+    private void flushSafely() {
+        try {
+            flush();
+            while (running && mergeOnce()) {
+                // keep merging while a tier is full
+            }
+            purge();
+        } catch (IOException | RuntimeException e) {
+            logger.error("Search index flush failed", e);
+        }
+    }
+
+    /**
+     * Opens the segments listed in the manifest, plus segments flushed after
+     * the manifest was last written. Everything else is an input of a merge
+     * that completed, an output of one that did not, or a temporary file of
+     * an interrupted write, and is deleted. Stored tombstones are added to any
+     * recorded before the index was opened.
+     */
+    private void load() {
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        Set<Long> listed = new HashSet<>();
+        Path manifest = directory.resolve(MANIFEST);
+        try {
+            if (Files.exists(manifest)) {
+                for (String line : Files.readAllLines(manifest)) {
+                    if (!line.isBlank()) {
+                        listed.add(Long.parseLong(line.trim()));
+                    }
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            throw new IllegalStateException("Не удалось прочитать манифест поискового индекса " + manifest, e);
+        }
+        long lastListed = listed.stream().mapToLong(Long::longValue).max().orElse(0);
+        Tombstones stored;
+        try {
+            stored = Tombstones.read(directory.resolve(TOMBSTONES));
+        } catch (IOException e) {
+            throw new IllegalStateException("Не удалось прочитать удаления поискового индекса " + directory, e);
+        }
+
+        List<IndexSegment> live = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+            for (Path file : stream) {
+                String name = file.getFileName().toString();
+                if (name.endsWith(".tmp")) {
+                    deleteQuietly(file);
+                } else if (name.endsWith(IndexSegment.SUFFIX)) {
+                    IndexSegment segment;
+                    try {
+                        segment = IndexSegment.open(file);
+                    } catch (IOException | RuntimeException e) {
+                        logger.error("Skipping unreadable search index segment {}", file, e);
+                        continue;
+                    }
+                    nextGeneration = Math.max(nextGeneration, segment.generation() + 1);
+                    boolean flushedLater = segment.generation() > lastListed && segment.replaces().length == 0;
+                    if (listed.contains(segment.generation()) || flushedLater) {
+                        live.add(segment);
+                    } else {
+                        deleteQuietly(file);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось открыть поисковый индекс " + directory, e);
+        }
+        IndexSegment[] segments = live.toArray(NO_SEGMENTS);
+        synchronized (this) {
+            state = new IndexState(segments, state.flushing());
+            tombstones = stored.plus(tombstones.ranges());
+            purgePending = !tombstones.isEmpty();
+        }
+        try {
+            writeManifest(segments);
+            writeTombstones();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось записать манифест поискового индекса " + directory, e);
+        }
+        logger.info("Opened search index with {} segments", segments.length);
+    }
+
+    /** Records the live generations, replacing the manifest atomically. */
+    private void writeManifest(IndexSegment[] segments) throws IOException {
+        StringBuilder content = new StringBuilder();
+        for (IndexSegment segment : segments) {
+            content.append(segment.generation()).append('\n');
+        }
+        Path manifest = directory.resolve(MANIFEST);
+        Path temp = directory.resolve(MANIFEST + ".tmp");
+        Files.writeString(temp, content, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE, StandardOpenOption.SYNC);
+        Files.move(temp, manifest, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /** Writes the current tombstones; concurrent callers write one after the other, the last one wins. */
+    private void writeTombstones() throws IOException {
+        synchronized (tombstoneFileLock) {
+            Tombstones current;
+            synchronized (this) {
+                current = tombstones;
+            }
+            current.write(directory.resolve(TOMBSTONES));
+        }
+    }
+
+    private void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            logger.warn("Could not delete search index file {}: {}", file, e.getMessage());
+        }
+    }
+
+    @Override
+    public void start() {
+        if (!enabled || running) {
+            return;
+        }
+        load();
+        running = true;
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "message-search-index");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(this::flushSafely, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+        scheduler = executor;
+    }
+
+    /** Stops the scheduler and writes out what is still buffered. */
+    @Override
+    public void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        ScheduledExecutorService executor = scheduler;
+        scheduler = null;
+        executor.shutdown();
+        try {
+            executor.awaitTermination(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flushSafely();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        return PHASE;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("chat.search.indexed", indexedCount, LongAdder::sum)
+                .description("Messages added to the search index")
+                .register(registry);
+        FunctionCounter.builder("chat.search.flushes", flushCount, LongAdder::sum)
+                .register(registry);
+        FunctionCounter.builder("chat.search.merges", mergeCount, LongAdder::sum)
+                .register(registry);
+        FunctionCounter.builder("chat.search.purges", purgeCount, LongAdder::sum)
+                .description("Segments rewritten to drop deleted messages")
+                .register(registry);
+        Gauge.builder("chat.search.segments", this, MessageSearchIndex::getSegmentCount)
+                .register(registry);
+        Gauge.builder("chat.search.documents", this, MessageSearchIndex::getDocumentCount)
+                .description("Messages searchable in this instance")
+                .register(registry);
+    }
+}
@@ -0,0 +1,74 @@
+package iwkms.chatapp.chatservice.search;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Posting lists: the ascending document ordinals of a term, stored as the
+ * gaps between them in LEB128 varints, so a term that occurs in every other
+ * message costs about one byte per occurrence.
+ */
+final class Postings {
+
+    private Postings() {
+    }
+
+    static byte[] encode(int[] ordinals, int count) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(count + 4);
+        int previous = 0;
+        for (int i = 0; i < count; i++) {
+            int gap = ordinals[i] - previous;
+            previous = ordinals[i];
+            while ((gap & ~0x7F) != 0) {
+                out.write((gap & 0x7F) | 0x80);
+                gap >>>= 7;
+            }
+            out.write(gap);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Decodes {@code count} ordinals starting at {@code offset}; uses absolute
+     * reads only, so the buffer can be shared between threads.
+     */
+    static int[] decode(ByteBuffer buffer, int offset, int count) {
+        int[] ordinals = new int[count];
+        int position = offset;
+        int previous = 0;
+        for (int i = 0; i < count; i++) {
+            int gap = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = buffer.get(position++);
+                gap |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            previous += gap;
+            ordinals[i] = previous;
+        }
+        return ordinals;
+    }
+
+    /** Ordinals present in both ascending arrays. */
+    static int[] intersect(int[] a, int[] b) {
+        int[] result = new int[Math.min(a.length, b.length)];
+        int count = 0;
+        int i = 0;
+        int j = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                result[count++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        return count == result.length ? result : Arrays.copyOf(result, count);
+    }
+}
@@ -0,0 +1,51 @@
+package iwkms.chatapp.chatservice.search;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Splits text into index terms: maximal runs of letters and digits, lower
+ * cased, capped at {@link #MAX_TERM_LENGTH} characters. Messages and queries
+ * go through the same tokenizer, so a query term matches exactly the words it
+ * was indexed as.
+ */
+final class Tokenizer {
+    static final int MAX_TERM_LENGTH = 64;
+
+    private Tokenizer() {
+    }
+
+    /**
+     * Distinct terms of {@code text} in order of first occurrence.
+     */
+    static List<String> terms(String text) {
+        if (text == null || text.isEmpty()) {
+            return List.of();
+        }
+        Set<String> terms = new LinkedHashSet<>();
+        int length = text.length();
+        int i = 0;
+        while (i < length) {
+            int codePoint = text.codePointAt(i);
+            if (!Character.isLetterOrDigit(codePoint)) {
+                i += Character.charCount(codePoint);
+                continue;
+            }
+            int start = i;
+            while (i < length && Character.isLetterOrDigit(codePoint = text.codePointAt(i))) {
+                i += Character.charCount(codePoint);
+            }
+            String term = text.substring(start, i).toLowerCase(Locale.ROOT);
+            if (term.length() > MAX_TERM_LENGTH) {
+                term = term.substring(0, Character.isHighSurrogate(term.charAt(MAX_TERM_LENGTH - 1))
+                        ? MAX_TERM_LENGTH - 1
+                        : MAX_TERM_LENGTH);
+            }
+            terms.add(term);
+        }
+        return new ArrayList<>(terms);
+    }
+}
@@ -0,0 +1,135 @@
+package iwkms.chatapp.chatservice.search;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Deleted messages that may still be stored in segments or the buffer: per
+ * room, an id range limited to messages older than a timestamp. Ids are
+ * allocated in blocks per node, so a range of ids alone may also cover newer
+ * messages; the timestamp keeps those. Searches skip covered documents and
+ * every segment write leaves them out. Immutable.
+ */
+final class Tombstones {
+    static final Tombstones NONE = new Tombstones(Map.of());
+
+    /** Messages of {@code roomId} with {@code fromId <= id <= toId} stamped before {@code beforeMicros}. */
+    record Range(String roomId, long fromId, long toId, long beforeMicros) {
+
+        boolean covers(long messageId, long timestampMicros) {
+            return messageId >= fromId && messageId <= toId && timestampMicros < beforeMicros;
+        }
+    }
+
+    private final Map<String, List<Range>> byRoom;
+
+    private Tombstones(Map<String, List<Range>> byRoom) {
+        this.byRoom = byRoom;
+    }
+
+    boolean isEmpty() {
+        return byRoom.isEmpty();
+    }
+
+    List<Range> ranges() {
+        List<Range> ranges = new ArrayList<>();
+        byRoom.values().forEach(ranges::addAll);
+        return ranges;
+    }
+
+    /** The ranges of a room, empty if none of its messages are deleted. */
+    List<Range> forRoom(String roomId) {
+        return byRoom.getOrDefault(roomId, List.of());
+    }
+
+    static boolean covers(List<Range> ranges, long messageId, long timestampMicros) {
+        for (Range range : ranges) {
+            if (range.covers(messageId, timestampMicros)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    boolean covers(String roomId, long messageId, long timestampMicros) {
+        return covers(forRoom(roomId), messageId, timestampMicros);
+    }
+
+    Tombstones plus(Collection<Range> added) {
+        Map<String, List<Range>> copy = copy();
+        for (Range range : added) {
+            List<Range> ranges = copy.computeIfAbsent(range.roomId(), r -> new ArrayList<>());
+            if (!ranges.contains(range)) {
+                ranges.add(range);
+            }
+        }
+        return new Tombstones(copy);
+    }
+
+    Tombstones minus(Collection<Range> removed) {
+        Map<String, List<Range>> copy = copy();
+        for (Range range : removed) {
+            List<Range> ranges = copy.get(range.roomId());
+            if (ranges != null && ranges.remove(range) && ranges.isEmpty()) {
+                copy.remove(range.roomId());
+            }
+        }
+        return new Tombstones(copy);
+    }
+
+    private Map<String, List<Range>> copy() {
+        Map<String, List<Range>> copy = new HashMap<>();
+        byRoom.forEach((room, ranges) -> copy.put(room, new ArrayList<>(ranges)));
+        return copy;
+    }
+
+    /** One range per line: from id, to id, timestamp bound in epoch micros and room, separated by spaces. */
+    static Tombstones read(Path file) throws IOException {
+        if (!Files.exists(file)) {
+            return NONE;
+        }
+        List<Range> ranges = new ArrayList<>();
+        for (String line : Files.readAllLines(file)) {
+            if (line.isBlank()) {
+                continue;
+            }
+            String[] fields = line.trim().split(" ", 4);
+            if (fields.length != 4) {
+                throw new IOException("Некорректная строка " + line + " в " + file);
+            }
+            try {
+                ranges.add(new Range(fields[3], Long.parseLong(fields[0]), Long.parseLong(fields[1]),
+                        Long.parseLong(fields[2])));
+            } catch (NumberFormatException e) {
+                throw new IOException("Некорректная строка " + line + " в " + file, e);
+            }
+        }
+        return NONE.plus(ranges);
+    }
+
+    /** Replaces {@code file} atomically; an empty set removes it. */
+    void write(Path file) throws IOException {
+        if (isEmpty()) {
+            Files.deleteIfExists(file);
+            return;
+        }
+        StringBuilder content = new StringBuilder();
+        for (Range range : ranges()) {
+            content.append(range.fromId()).append(' ').append(range.toId()).append(' ')
+                    .append(range.beforeMicros()).append(' ').append(range.roomId()).append('\n');
+        }
+        Files.createDirectories(file.getParent());
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        Files.writeString(temp, content, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE, StandardOpenOption.SYNC);
+        Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
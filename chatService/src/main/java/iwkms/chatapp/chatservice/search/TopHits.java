@@ -0,0 +1,73 @@
+package iwkms.chatapp.chatservice.search;
+
+import iwkms.chatapp.chatservice.model.ChatMessage;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * Collects the {@code k} newest matching messages across the buffer and all
+ * segments, by timestamp and then id: ids are allocated in blocks per node,
+ * so they do not follow the order of messages. Only ids, timestamps and
+ * ordinals are kept while collecting; the stored messages are read for the
+ * winners alone.
+ */
+final class TopHits {
+
+    /** Something that can load the stored message behind an ordinal. */
+    interface DocumentSource {
+        ChatMessage document(int ordinal);
+    }
+
+    private record Hit(long messageId, long timestampMicros, DocumentSource source, int ordinal) {
+    }
+
+    private static final Comparator<Hit> OLDEST_FIRST =
+            Comparator.comparingLong(Hit::timestampMicros).thenComparingLong(Hit::messageId);
+
+    private final int k;
+    private final PriorityQueue<Hit> heap;
+    private final Set<Long> seen = new HashSet<>();
+    private int matched;
+
+    TopHits(int k) {
+        this.k = k;
+        this.heap = new PriorityQueue<>(k + 1, OLDEST_FIRST);
+    }
+
+    void offer(long messageId, long timestampMicros, DocumentSource source, int ordinal) {
+        matched++;
+        Hit oldest = heap.peek();
+        if (heap.size() == k && (oldest.timestampMicros() > timestampMicros
+                || oldest.timestampMicros() == timestampMicros && oldest.messageId() >= messageId)) {
+            return;
+        }
+        if (!seen.add(messageId)) {
+            return;
+        }
+        heap.add(new Hit(messageId, timestampMicros, source, ordinal));
+        if (heap.size() > k) {
+            seen.remove(heap.poll().messageId());
+        }
+    }
+
+    /** Matching documents seen, including those that did not make the top k. */
+    int matched() {
+        return matched;
+    }
+
+    /** The collected messages, newest first. */
+    List<ChatMessage> messages() {
+        List<Hit> hits = new ArrayList<>(heap);
+        hits.sort(OLDEST_FIRST.reversed());
+        List<ChatMessage> messages = new ArrayList<>(hits.size());
+        for (Hit hit : hits) {
+            messages.add(hit.source().document(hit.ordinal()));
+        }
+        return messages;
+    }
+}
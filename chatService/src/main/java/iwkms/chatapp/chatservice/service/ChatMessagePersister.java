@@ -0,0 +1,320 @@
+package iwkms.chatapp.chatservice.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import iwkms.chatapp.chatservice.dto.ChatMessageWireDto;
+import iwkms.chatapp.chatservice.exception.ServiceOverloadedException;
+import iwkms.chatapp.chatservice.model.ChatMessage;
+import iwkms.chatapp.chatservice.repository.ChatMessageRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Write-behind pipeline for chat messages. Messages get their id up front from
+ * {@link MessageIdAllocator}, are queued, and a single persister thread writes
+ * them to {@code chat_messages} in JDBC batches bounded by size and by time.
+ * The queue is bounded: producers wait up to the offer timeout and are then
+ * rejected with {@link ServiceOverloadedException}. On shutdown the queue is
+ * drained before the datasource goes away. A batch that still fails after
+ * the last retry has already been delivered to subscribers, so it is appended
+ * to a dead-letter file (one JSON message per line, the export format) for
+ * replay instead of being discarded.
+ */
+@Component
+public class ChatMessagePersister implements SmartLifecycle, MeterBinder {
+    private static final Logger logger = LoggerFactory.getLogger(ChatMessagePersister.class);
+
+    static final int PHASE = SmartLifecycle.DEFAULT_PHASE - 4096;
+    private static final long MAX_WAIT_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+
+    private final ChatMessageRepository chatMessageRepository;
+    private final MessageIdAllocator messageIdAllocator;
+    private final boolean enabled;
+    private final int batchSize;
+    private final long flushIntervalNanos;
+    private final long offerTimeoutMs;
+    private final int maxRetries;
+    private final long shutdownTimeoutMs;
+    private final Path deadLetterFile;
+    private final ObjectWriter deadLetterWriter;
+    private final BlockingQueue<PendingMessage> queue;
+    // Producers hold the read lock from the running check to the end of the
+    // offer; stop() takes the write lock, so nothing is queued after it.
+    private final ReadWriteLock lifecycleLock = new ReentrantReadWriteLock();
+
+    private final LongAdder persistedCount = new LongAdder();
+    private final LongAdder batchCount = new LongAdder();
+    private final LongAdder rejectedCount = new LongAdder();
+    private final LongAdder deadLetteredCount = new LongAdder();
+    private final LongAdder droppedCount = new LongAdder();
+
+    private volatile boolean running;
+    private volatile long inFlightSinceNanos;
+    private Thread worker;
+
+    @Autowired
+    public ChatMessagePersister(ChatMessageRepository chatMessageRepository,
+                                MessageIdAllocator messageIdAllocator,
+                                ObjectMapper objectMapper,
+                                @Value("${chat.persistence.write-behind.enabled:false}") boolean enabled,
+                                @Value("${chat.persistence.write-behind.batch-size:500}") int batchSize,
+                                @Value("${chat.persistence.write-behind.flush-interval-ms:20}") long flushIntervalMs,
+                                @Value("${chat.persistence.write-behind.queue-capacity:50000}") int queueCapacity,
+                                @Value("${chat.persistence.write-behind.offer-timeout-ms:50}") long offerTimeoutMs,
+                                @Value("${chat.persistence.write-behind.max-retries:5}") int maxRetries,
+                                @Value("${chat.persistence.write-behind.shutdown-timeout-ms:30000}") long shutdownTimeoutMs,
+                                @Value("${chat.persistence.write-behind.dead-letter-file:data/dead-letter/chat-messages.ndjson}")
+                                String deadLetterFile) {
+        this.chatMessageRepository = chatMessageRepository;
+        this.messageIdAllocator = messageIdAllocator;
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+        this.offerTimeoutMs = offerTimeoutMs;
+        this.maxRetries = maxRetries;
+        this.shutdownTimeoutMs = shutdownTimeoutMs;
+        this.deadLetterFile = Path.of(deadLetterFile);
+        this.deadLetterWriter = objectMapper.writerFor(ChatMessageWireDto.class);
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public ChatMessage enqueue(ChatMessage chatMessage) {
+        lifecycleLock.readLock().lock();
+        try {
+            if (!running) {
+                rejectedCount.increment();
+                throw new ServiceOverloadedException("Сервис сообщений недоступен, повторите попытку позже");
+            }
+            chatMessage.setId(messageIdAllocator.nextId());
+            PendingMessage pending = new PendingMessage(chatMessage, System.nanoTime());
+            if (!queue.offer(pending, offerTimeoutMs, TimeUnit.MILLISECONDS)) {
+                rejectedCount.increment();
+                throw new ServiceOverloadedException("Сервис перегружен, повторите попытку позже");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            rejectedCount.increment();
+            throw new ServiceOverloadedException("Сохранение сообщения прервано");
+        } finally {
+            lifecycleLock.readLock().unlock();
+        }
+        return chatMessage;
+    }
+
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    public long getLagMillis() {
+        long oldest = inFlightSinceNanos;
+        PendingMessage head = queue.peek();
+        if (oldest == 0 && head != null) {
+            oldest = head.enqueuedAtNanos();
+        }
+        return oldest == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - oldest);
+    }
+
+    @Override
+    public void start() {
+        if (!enabled || running) {
+            return;
+        }
+        running = true;
+        worker = new Thread(this::runLoop, "chat-message-persister");
+        worker.start();
+        logger.info("Write-behind message persistence started: batchSize={}, queueCapacity={}",
+                batchSize, queue.remainingCapacity());
+    }
+
+    @Override
+    public void stop() {
+        lifecycleLock.writeLock().lock();
+        try {
+            if (!running) {
+                return;
+            }
+            running = false;
+        } finally {
+            lifecycleLock.writeLock().unlock();
+        }
+        try {
+            worker.join(shutdownTimeoutMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (!worker.isAlive() && !queue.isEmpty()) {
+            List<PendingMessage> rest = new ArrayList<>(queue.size());
+            queue.drainTo(rest);
+            flush(rest);
+        }
+        if (!queue.isEmpty()) {
+            logger.error("Write-behind persister stopped with {} unsaved messages", queue.size());
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        return PHASE;
+    }
+
+    private void runLoop() {
+        List<PendingMessage> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                collectBatch(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            if (!batch.isEmpty()) {
+                flush(batch);
+                batch.clear();
+            }
+        }
+        queue.drainTo(batch);
+        if (!batch.isEmpty()) {
+            flush(batch);
+        }
+    }
+
+    private void collectBatch(List<PendingMessage> batch) throws InterruptedException {
+        PendingMessage first = queue.poll(MAX_WAIT_NANOS, TimeUnit.NANOSECONDS);
+        if (first == null) {
+            return;
+        }
+        batch.add(first);
+        long deadline = System.nanoTime() + flushIntervalNanos;
+        while (batch.size() < batchSize) {
+            queue.drainTo(batch, batchSize - batch.size());
+            long remaining = deadline - System.nanoTime();
+            if (batch.size() >= batchSize || remaining <= 0 || !running) {
+                return;
+            }
+            PendingMessage next = queue.poll(Math.min(remaining, MAX_WAIT_NANOS), TimeUnit.NANOSECONDS);
+            if (next != null) {
+                batch.add(next);
+            }
+        }
+    }
+
+    void flush(List<PendingMessage> batch) {
+        inFlightSinceNanos = batch.get(0).enqueuedAtNanos();
+        List<ChatMessage> messages = new ArrayList<>(batch.size());
+        for (PendingMessage pending : batch) {
+            messages.add(pending.message());
+        }
+        try {
+            for (int attempt = 0; ; attempt++) {
+                try {
+                    chatMessageRepository.batchInsert(messages);
+                    persistedCount.add(messages.size());
+                    batchCount.increment();
+                    return;
+                } catch (RuntimeException e) {
+                    if (attempt >= maxRetries) {
+                        logger.error("Batch insert of {} messages failed after {} attempts, writing to {}",
+                                messages.size(), attempt + 1, deadLetterFile, e);
+                        deadLetter(messages);
+                        return;
+                    }
+                    logger.warn("Batch insert of {} messages failed (attempt {}): {}",
+                            messages.size(), attempt + 1, e.getMessage());
+                    sleepBeforeRetry(attempt);
+                }
+            }
+        } finally {
+            inFlightSinceNanos = 0;
+        }
+    }
+
+    private void deadLetter(List<ChatMessage> messages) {
+        try {
+            Path parent = deadLetterFile.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            try (FileChannel channel = FileChannel.open(deadLetterFile, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+                OutputStream out = Channels.newOutputStream(channel);
+                StringBuilder lines = new StringBuilder();
+                for (ChatMessage message : messages) {
+                    lines.append(deadLetterWriter.writeValueAsString(ChatMessageWireDto.from(message))).append('\n');
+                }
+                out.write(lines.toString().getBytes(StandardCharsets.UTF_8));
+                channel.force(false);
+            }
+            deadLetteredCount.add(messages.size());
+        } catch (IOException | RuntimeException e) {
+            droppedCount.add(messages.size());
+            logger.error("Dropping {} messages (ids {}..{}): dead-letter write failed", messages.size(),
+                    messages.get(0).getId(), messages.get(messages.size() - 1).getId(), e);
+        }
+    }
+
+    private void sleepBeforeRetry(int attempt) {
+        try {
+            Thread.sleep(Math.min(1000L, 50L << attempt));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("chat.persistence.queue.size", this, ChatMessagePersister::getQueueSize)
+                .description("Messages accepted but not yet written to the database")
+                .register(registry);
+        TimeGauge.builder("chat.persistence.lag", this, TimeUnit.MILLISECONDS, ChatMessagePersister::getLagMillis)
+                .description("Age of the oldest message not yet written to the database")
+                .register(registry);
+        FunctionCounter.builder("chat.persistence.persisted", persistedCount, LongAdder::sum)
+                .register(registry);
+        FunctionCounter.builder("chat.persistence.batches", batchCount, LongAdder::sum)
+                .register(registry);
+        FunctionCounter.builder("chat.persistence.rejected", rejectedCount, LongAdder::sum)
+                .register(registry);
+        FunctionCounter.builder("chat.persistence.dead-lettered", deadLetteredCount, LongAdder::sum)
+                .description("Messages written to the dead-letter file after the last retry failed")
+                .register(registry);
+        FunctionCounter.builder("chat.persistence.dropped", droppedCount, LongAdder::sum)
+                .register(registry);
+    }
+
+    record PendingMessage(ChatMessage message, long enqueuedAtNanos) {
+    }
+}
@@ -14,10 +14,16 @@ import java.util.List;
 @Service
 public class ChatRoomService {
     private final ChatRoomRepository chatRoomRepository;
+    private final MembershipCache membershipCache;
+    private final ChatServiceMetrics metrics;
 
     @Autowired
-    public ChatRoomService(ChatRoomRepository chatRoomRepository) {
+    public ChatRoomService(ChatRoomRepository chatRoomRepository,
+                           MembershipCache membershipCache,
+                           ChatServiceMetrics metrics) {
         this.chatRoomRepository = chatRoomRepository;
+        this.membershipCache = membershipCache;
+        this.metrics = metrics;
     }
 
     @Transactional
@@ -34,7 +40,9 @@ public class ChatRoomService {
                 creatorUsername
         );
         
-        return chatRoomRepository.save(chatRoom);
+        ChatRoom savedRoom = chatRoomRepository.save(chatRoom);
+        membershipCache.invalidate(chatRoomDto.getRoomId());
+        return savedRoom;
     }
 
     @Transactional(readOnly = true)
@@ -53,6 +61,7 @@ public class ChatRoomService {
         
         chatRoom.addMember(username);
         chatRoomRepository.save(chatRoom);
+        membershipCache.memberAdded(roomId, username);
     }
 
     @Transactional
@@ -69,6 +78,9 @@ public class ChatRoomService {
         
         chatRoom.removeMember(username);
         chatRoomRepository.save(chatRoom);
+        if (!chatRoom.hasMember(username)) {
+            membershipCache.memberRemoved(roomId, username);
+        }
     }
 
     @Transactional
@@ -76,6 +88,7 @@ public class ChatRoomService {
         ChatRoom chatRoom = getChatRoomById(roomId);
         chatRoom.addMember(username);
         chatRoomRepository.save(chatRoom);
+        membershipCache.memberAdded(roomId, username);
     }
 
     @Transactional
@@ -83,15 +96,19 @@ public class ChatRoomService {
         ChatRoom chatRoom = getChatRoomById(roomId);
         chatRoom.removeMember(username);
         chatRoomRepository.save(chatRoom);
+        if (!chatRoom.hasMember(username)) {
+            membershipCache.memberRemoved(roomId, username);
+        }
     }
 
     @Transactional(readOnly = true)
     public boolean checkMembership(String roomId, String username) {
-        ChatRoom chatRoom = getChatRoomById(roomId);
-        if (!chatRoom.isPrivate()) {
-            return true;
+        long start = System.nanoTime();
+        try {
+            return membershipCache.isMember(roomId, username);
+        } finally {
+            metrics.recordMembershipCheck(start);
         }
-        return chatRoom.hasMember(username);
     }
 
     @Transactional(readOnly = true)
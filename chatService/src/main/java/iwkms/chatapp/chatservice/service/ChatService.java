@@ -1,64 +1,332 @@
 package iwkms.chatapp.chatservice.service;
 
+import iwkms.chatapp.chatservice.dto.ChatMessageDeltaDto;
 import iwkms.chatapp.chatservice.dto.ChatMessageDto;
+import iwkms.chatapp.chatservice.dto.ChatMessageImportDto;
+import iwkms.chatapp.chatservice.dto.ChatMessagePageDto;
+import iwkms.chatapp.chatservice.dto.ChatMessageSearchDto;
+import iwkms.chatapp.chatservice.dto.ChatMessageWireDto;
+import iwkms.chatapp.chatservice.dto.MessageCursor;
+import iwkms.chatapp.chatservice.dto.SyncCursor;
+import iwkms.chatapp.chatservice.exception.InvalidCursorException;
+import iwkms.chatapp.chatservice.exception.ResourceNotFoundException;
 import iwkms.chatapp.chatservice.exception.UnauthorizedException;
 import iwkms.chatapp.chatservice.model.ChatMessage;
 import iwkms.chatapp.chatservice.model.ChatRoom;
-import iwkms.chatapp.chatservice.repository.ChatMessageRepository;
-import iwkms.chatapp.chatservice.repository.ChatRoomRepository;
+import iwkms.chatapp.chatservice.model.RoomMetadata;
+import iwkms.chatapp.chatservice.search.MessageSearchIndex;
+import iwkms.chatapp.chatservice.store.MessageStore;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
 
 @Service
 public class ChatService {
-    private final ChatMessageRepository chatMessageRepository;
-    private final ChatRoomRepository chatRoomRepository;
+    public static final int DEFAULT_PAGE_SIZE = 50;
+    public static final int MAX_PAGE_SIZE = 200;
+    public static final int DEFAULT_SEARCH_RESULTS = 20;
+    public static final int MAX_SEARCH_RESULTS = 100;
+
+    private final MessageStore messageStore;
+    private final RoomRegistry roomRegistry;
     private final ChatRoomService chatRoomService;
+    private final RecentMessageCache recentMessageCache;
+    private final MessageSearchIndex messageSearchIndex;
+    private final ChatServiceMetrics metrics;
+    private final ChatMessagePersister chatMessagePersister;
+    private final Duration syncSettleWindow;
 
     @Autowired
-    public ChatService(ChatMessageRepository chatMessageRepository,
-                       ChatRoomRepository chatRoomRepository,
-                       ChatRoomService chatRoomService) {
-        this.chatMessageRepository = chatMessageRepository;
-        this.chatRoomRepository = chatRoomRepository;
+    public ChatService(MessageStore messageStore,
+                       RoomRegistry roomRegistry,
+                       ChatRoomService chatRoomService,
+                       RecentMessageCache recentMessageCache,
+                       MessageSearchIndex messageSearchIndex,
+                       ChatServiceMetrics metrics,
+                       ChatMessagePersister chatMessagePersister,
+                       @Value("${chat.sync.settle-window-ms:30000}") long syncSettleWindowMs) {
+        this.messageStore = messageStore;
+        this.roomRegistry = roomRegistry;
         this.chatRoomService = chatRoomService;
+        this.recentMessageCache = recentMessageCache;
+        this.messageSearchIndex = messageSearchIndex;
+        this.metrics = metrics;
+        this.chatMessagePersister = chatMessagePersister;
+        this.syncSettleWindow = Duration.ofMillis(syncSettleWindowMs);
     }
 
     @Transactional
     public ChatMessage saveMessage(ChatMessageDto messageDto) {
-        if (!chatRoomRepository.existsByRoomId(messageDto.getChatRoomId())) {
-            ChatRoom chatRoom = new ChatRoom(
-                    messageDto.getChatRoomId(),
-                    "Комната " + messageDto.getChatRoomId(),
-                    "Автоматически созданная комната",
-                    false,
-                    messageDto.getSenderUsername()
-            );
-            chatRoomRepository.save(chatRoom);
-        }
-        
-        if (!chatRoomService.checkMembership(messageDto.getChatRoomId(), messageDto.getSenderUsername())) {
-            throw new UnauthorizedException("Вы не являетесь участником этой приватной комнаты");
+        long start = System.nanoTime();
+        try {
+            RoomMetadata room = roomRegistry.getOrCreate(messageDto.getChatRoomId(), messageDto.getSenderUsername());
+
+            if (room.isPrivate() && !chatRoomService.checkMembership(room.roomId(), messageDto.getSenderUsername())) {
+                throw new UnauthorizedException("Вы не являетесь участником этой приватной комнаты");
+            }
+
+            ChatMessage chatMessage = new ChatMessage();
+            chatMessage.setSenderUsername(messageDto.getSenderUsername());
+            chatMessage.setChatRoomId(messageDto.getChatRoomId());
+            chatMessage.setContent(messageDto.getContent());
+            chatMessage.setTimestamp(LocalDateTime.now());
+            ChatMessage savedMessage = messageStore.save(chatMessage);
+            afterCommit(() -> {
+                recentMessageCache.append(savedMessage);
+                messageSearchIndex.add(savedMessage);
+            });
+            return savedMessage;
+        } finally {
+            metrics.recordSave(start);
         }
+    }
 
-        ChatMessage chatMessage = new ChatMessage();
-        chatMessage.setSenderUsername(messageDto.getSenderUsername());
-        chatMessage.setChatRoomId(messageDto.getChatRoomId());
-        chatMessage.setContent(messageDto.getContent());
-        chatMessage.setTimestamp(LocalDateTime.now());
-        return chatMessageRepository.save(chatMessage);
+    /**
+     * Rejects a sender who may not post to the room, before any rate-limit
+     * token is spent on the attempt. A room that does not exist yet passes,
+     * because {@link #saveMessage} creates it as a public room.
+     */
+    @Transactional(readOnly = true)
+    public void checkCanPost(String chatRoomId, String username) {
+        roomRegistry.find(chatRoomId).ifPresent(room -> {
+            if (room.isPrivate() && !chatRoomService.checkMembership(room.roomId(), username)) {
+                throw new UnauthorizedException("Вы не являетесь участником этой приватной комнаты");
+            }
+        });
     }
 
+    /**
+     * Returns the latest page of a room's history in ascending order.
+     */
     @Transactional(readOnly = true)
     public List<ChatMessage> getMessagesByChatRoom(String chatRoomId, String username) {
-        if (!chatRoomService.checkMembership(chatRoomId, username)) {
-            throw new UnauthorizedException("Вы не имеете доступа к этой приватной комнате");
+        return getMessagePage(chatRoomId, username, null, null, null).getMessages();
+    }
+
+    /**
+     * Keyset-paginated history in the store's history order. {@code before}
+     * pages towards older messages, {@code after} towards newer ones; without
+     * either the latest page is returned. Cursors carry the timestamp as well
+     * as the id, since ids are allocated in blocks per node and do not follow
+     * posting order on a cluster.
+     */
+    @Transactional(readOnly = true)
+    public ChatMessagePageDto getMessagePage(String chatRoomId, String username,
+                                             String before, String after, Integer limit) {
+        long start = System.nanoTime();
+        try {
+            if (before != null && after != null) {
+                throw new InvalidCursorException("Параметры before и after нельзя использовать одновременно");
+            }
+            if (!chatRoomService.checkMembership(chatRoomId, username)) {
+                throw new UnauthorizedException("Вы не имеете доступа к этой приватной комнате");
+            }
+
+            int pageSize = limit == null ? DEFAULT_PAGE_SIZE : Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+            Limit fetchLimit = Limit.of(pageSize + 1);
+
+            List<ChatMessage> messages;
+            boolean hasOlder;
+            if (after != null) {
+                MessageCursor cursor = MessageCursor.decode(after);
+                messages = messageStore.findAfter(chatRoomId, cursor.timestamp(), cursor.messageId(), fetchLimit);
+                if (messages.size() > pageSize) {
+                    messages = new ArrayList<>(messages.subList(0, pageSize));
+                }
+                hasOlder = !messages.isEmpty() && !messageStore.findBefore(chatRoomId,
+                        messages.get(0).getTimestamp(), messages.get(0).getId(), Limit.of(1)).isEmpty();
+            } else if (before != null) {
+                MessageCursor cursor = MessageCursor.decode(before);
+                messages = messageStore.findBefore(chatRoomId, cursor.timestamp(), cursor.messageId(), fetchLimit);
+                hasOlder = messages.size() > pageSize;
+                messages = new ArrayList<>(hasOlder ? messages.subList(0, pageSize) : messages);
+                Collections.reverse(messages);
+            } else {
+                messages = recentMessageCache.getLatest(chatRoomId, pageSize + 1)
+                        .orElseGet(() -> loadLatest(chatRoomId, fetchLimit));
+                hasOlder = messages.size() > pageSize;
+                if (hasOlder) {
+                    messages = new ArrayList<>(messages.subList(messages.size() - pageSize, messages.size()));
+                }
+            }
+
+            if (messages.isEmpty()) {
+                return new ChatMessagePageDto(messages, null, null);
+            }
+            String nextCursor = MessageCursor.of(messages.get(messages.size() - 1)).encode();
+            String prevCursor = hasOlder ? MessageCursor.of(messages.get(0)).encode() : null;
+            return new ChatMessagePageDto(messages, nextCursor, prevCursor);
+        } finally {
+            metrics.recordHistory(start);
+        }
+    }
+
+    /**
+     * Cursor for a client that has just read a room's latest page, so that its
+     * first sync also returns whatever is committed after that read.
+     */
+    public String startSyncCursor() {
+        return new SyncCursor(syncHorizon(), 0, true).encode();
+    }
+
+    /**
+     * Messages stamped before this are assumed committed. With write-behind,
+     * a queued message is stamped before it is enqueued, so the horizon is
+     * held back by the persister's lag on top of the settle window.
+     */
+    private LocalDateTime syncHorizon() {
+        Duration lag = Duration.ofMillis(chatMessagePersister.getLagMillis());
+        return LocalDateTime.now().minus(syncSettleWindow).minus(lag);
+    }
+
+    /**
+     * Messages after {@code cursor}, for a client catching up after a
+     * reconnect. Ids do not follow commit order, so the room is read in
+     * timestamp order instead, and the settled cursor handed back only moves
+     * past messages older than the settle window and this instance's
+     * write-behind lag: a write still in flight has a newer timestamp than
+     * that and is returned by a later sync. Messages
+     * inside the window are returned again by the next sync; clients drop
+     * the ids they already have.
+     */
+    @Transactional(readOnly = true)
+    public ChatMessageDeltaDto getMessagesSince(String chatRoomId, String username, String cursor, Integer limit) {
+        long start = System.nanoTime();
+        try {
+            if (!chatRoomService.checkMembership(chatRoomId, username)) {
+                throw new UnauthorizedException("Вы не имеете доступа к этой приватной комнате");
+            }
+            SyncCursor from = SyncCursor.decode(cursor);
+            int pageSize = limit == null ? DEFAULT_PAGE_SIZE : Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+            List<ChatMessage> messages = messageStore.findSince(chatRoomId, from.timestamp(), from.messageId(),
+                    Limit.of(pageSize + 1));
+            boolean hasMore = messages.size() > pageSize;
+            List<ChatMessage> page = hasMore ? messages.subList(0, pageSize) : messages;
+
+            LocalDateTime horizon = syncHorizon();
+            SyncCursor settled = null;
+            boolean pageSettled = false;
+            if (from.settled()) {
+                settled = from;
+                int i = 0;
+                while (i < page.size() && page.get(i).getTimestamp().isBefore(horizon)) {
+                    settled = SyncCursor.after(page.get(i++), true);
+                }
+                pageSettled = i == page.size();
+                if (!hasMore && settled.timestamp().isBefore(horizon)) {
+                    settled = new SyncCursor(horizon, 0, true);
+                }
+            }
+            String nextCursor = null;
+            if (hasMore) {
+                nextCursor = pageSettled
+                        ? settled.encode()
+                        : SyncCursor.after(page.get(page.size() - 1), false).encode();
+            }
+            List<ChatMessageWireDto> delta = page.stream()
+                    .map(ChatMessageWireDto::from)
+                    .toList();
+            return new ChatMessageDeltaDto(chatRoomId, delta, hasMore,
+                    settled != null ? settled.encode() : null, nextCursor);
+        } finally {
+            metrics.recordSync(start);
+        }
+    }
+
+    private List<ChatMessage> loadLatest(String chatRoomId, Limit fetchLimit) {
+        List<ChatMessage> latest = new ArrayList<>(messageStore.findLatest(chatRoomId, fetchLimit));
+        Collections.reverse(latest);
+        recentMessageCache.prime(chatRoomId, latest, latest.size() < fetchLimit.max());
+        return latest;
+    }
+
+    /**
+     * Full-text search. With {@code roomId} only that room is searched,
+     * otherwise every room the user may read; rooms the user cannot read are
+     * filtered out inside the index, before the top results are picked.
+     */
+    @Transactional(readOnly = true)
+    public ChatMessageSearchDto searchMessages(String username, String query, String roomId, Integer limit) {
+        long start = System.nanoTime();
+        try {
+            if (!messageSearchIndex.isEnabled()) {
+                throw new ResourceNotFoundException("Поиск по сообщениям отключён");
+            }
+            Predicate<String> roomFilter;
+            if (roomId != null) {
+                if (!chatRoomService.checkMembership(roomId, username)) {
+                    throw new UnauthorizedException("Вы не имеете доступа к этой приватной комнате");
+                }
+                roomFilter = roomId::equals;
+            } else {
+                Map<String, Boolean> readable = new HashMap<>();
+                roomFilter = room -> readable.computeIfAbsent(room, r -> canRead(r, username));
+            }
+            int resultCount = limit == null
+                    ? DEFAULT_SEARCH_RESULTS
+                    : Math.max(1, Math.min(limit, MAX_SEARCH_RESULTS));
+            List<ChatMessageWireDto> messages = messageSearchIndex.search(query, roomFilter, resultCount).stream()
+                    .map(ChatMessageWireDto::from)
+                    .toList();
+            return new ChatMessageSearchDto(query, messages);
+        } finally {
+            metrics.recordSearch(start);
+        }
+    }
+
+    private boolean canRead(String roomId, String username) {
+        try {
+            return chatRoomService.checkMembership(roomId, username);
+        } catch (ResourceNotFoundException e) {
+            return false;
+        }
+    }
+
+    private void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    @Transactional
+    public int importMessages(String chatRoomId, List<ChatMessageImportDto> importDtos, String requestingUsername) {
+        ChatRoom chatRoom = chatRoomService.getChatRoomById(chatRoomId);
+        if (!chatRoom.isOwner(requestingUsername)) {
+            throw new UnauthorizedException("Только владелец комнаты может импортировать сообщения");
+        }
+
+        List<ChatMessage> messages = new ArrayList<>(importDtos.size());
+        for (ChatMessageImportDto importDto : importDtos) {
+            ChatMessage chatMessage = new ChatMessage();
+            chatMessage.setSenderUsername(importDto.getSenderUsername());
+            chatMessage.setChatRoomId(chatRoomId);
+            chatMessage.setContent(importDto.getContent());
+            chatMessage.setTimestamp(importDto.getTimestamp() != null ? importDto.getTimestamp() : LocalDateTime.now());
+            messages.add(chatMessage);
         }
-        
-        return chatMessageRepository.findByChatRoomIdOrderByTimestampAsc(chatRoomId);
+        messageStore.saveAll(messages);
+        recentMessageCache.evict(chatRoomId);
+        afterCommit(() -> messages.forEach(messageSearchIndex::add));
+        return messages.size();
     }
 }
\ No newline at end of file
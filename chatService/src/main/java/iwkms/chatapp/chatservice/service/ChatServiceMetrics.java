@@ -0,0 +1,76 @@
+package iwkms.chatapp.chatservice.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency timers for the service calls on the message path, published with
+ * percentile histograms. Until the application's registry binds them the
+ * timers record into an empty composite registry, i.e. nowhere, so the
+ * services work without a registry.
+ */
+@Component
+public class ChatServiceMetrics implements MeterBinder {
+    private volatile Timer saveTimer;
+    private volatile Timer historyTimer;
+    private volatile Timer membershipTimer;
+    private volatile Timer syncTimer;
+    private volatile Timer searchTimer;
+
+    public ChatServiceMetrics() {
+        register(new CompositeMeterRegistry());
+    }
+
+    public void recordSave(long startNanos) {
+        saveTimer.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordHistory(long startNanos) {
+        historyTimer.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordSync(long startNanos) {
+        syncTimer.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordSearch(long startNanos) {
+        searchTimer.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordMembershipCheck(long startNanos) {
+        membershipTimer.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        register(registry);
+    }
+
+    private void register(MeterRegistry registry) {
+        saveTimer = Timer.builder("chat.messages.save")
+                .description("ChatService.saveMessage, excluding the commit")
+                .publishPercentileHistogram()
+                .register(registry);
+        historyTimer = Timer.builder("chat.messages.history")
+                .description("One page of room history, from the recent-message cache or the database")
+                .publishPercentileHistogram()
+                .register(registry);
+        syncTimer = Timer.builder("chat.messages.sync")
+                .description("Messages newer than a client's last seen id, for reconnects")
+                .publishPercentileHistogram()
+                .register(registry);
+        searchTimer = Timer.builder("chat.messages.search")
+                .description("Full-text search over the messages a user can read")
+                .publishPercentileHistogram()
+                .register(registry);
+        membershipTimer = Timer.builder("chat.rooms.membership.check")
+                .description("ChatRoomService.checkMembership")
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+}
@@ -0,0 +1,176 @@
+package iwkms.chatapp.chatservice.service;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import iwkms.chatapp.common.cache.BoundedLruCache;
+import iwkms.chatapp.chatservice.cluster.ClusterFanOut;
+import iwkms.chatapp.chatservice.exception.ResourceNotFoundException;
+import iwkms.chatapp.chatservice.repository.ChatRoomRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.UnaryOperator;
+
+/**
+ * Answers "may this user post to / read this room" from memory. Public rooms
+ * are cached as a bare marker; private rooms as an immutable member set that
+ * membership changes replace in place once their transaction has committed.
+ * At most {@code max-rooms} rooms are kept, least recently used dropped first.
+ *
+ * <p>A load that races with a membership change is not cached: every change
+ * bumps a generation counter under the room's map entry, and a load only
+ * publishes its result if the counter is unchanged.
+ *
+ * <p>Each committed change is announced through the {@link ClusterFanOut};
+ * other nodes drop the room from this cache and the {@link RoomRegistry}, and
+ * clear both when the fan-out reports that changes may have been missed.
+ */
+@Component
+public class MembershipCache implements MeterBinder {
+    private static final RoomMembership PUBLIC = new RoomMembership(false, Set.of());
+
+    private final ChatRoomRepository chatRoomRepository;
+    private final RoomRegistry roomRegistry;
+    private final ClusterFanOut clusterFanOut;
+    private final boolean enabled;
+    private final BoundedLruCache<String, RoomMembership> rooms;
+    private final AtomicLong generation = new AtomicLong();
+
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+
+    @Autowired
+    public MembershipCache(ChatRoomRepository chatRoomRepository,
+                           RoomRegistry roomRegistry,
+                           ClusterFanOut clusterFanOut,
+                           @Value("${chat.cache.membership.enabled:true}") boolean enabled,
+                           @Value("${chat.cache.membership.max-rooms:50000}") int maxRooms) {
+        this.chatRoomRepository = chatRoomRepository;
+        this.roomRegistry = roomRegistry;
+        this.clusterFanOut = clusterFanOut;
+        this.enabled = enabled;
+        this.rooms = new BoundedLruCache<>(maxRooms);
+        clusterFanOut.setRoomChangeListener(new ClusterFanOut.RoomChangeListener() {
+            @Override
+            public void roomChanged(String roomId) {
+                rooms.compute(roomId, (id, membership) -> {
+                    generation.incrementAndGet();
+                    return null;
+                });
+                roomRegistry.evict(roomId);
+            }
+
+            @Override
+            public void allRoomsChanged() {
+                generation.incrementAndGet();
+                rooms.clear();
+                roomRegistry.clear();
+            }
+        });
+    }
+
+    /**
+     * @throws ResourceNotFoundException if the room does not exist
+     */
+    public boolean isMember(String roomId, String username) {
+        RoomMembership membership = enabled ? rooms.get(roomId) : null;
+        if (membership != null) {
+            hitCount.increment();
+        } else {
+            missCount.increment();
+            membership = load(roomId);
+        }
+        return !membership.isPrivate() || membership.members().contains(username);
+    }
+
+    public void memberAdded(String roomId, String username) {
+        updateAfterCommit(roomId, membership -> membership.with(username));
+    }
+
+    public void memberRemoved(String roomId, String username) {
+        updateAfterCommit(roomId, membership -> membership.without(username));
+    }
+
+    public void invalidate(String roomId) {
+        updateAfterCommit(roomId, membership -> null);
+    }
+
+    public int size() {
+        return rooms.size();
+    }
+
+    private RoomMembership load(String roomId) {
+        long stamp = generation.get();
+        boolean isPrivate = roomRegistry.find(roomId)
+                .orElseThrow(() -> new ResourceNotFoundException("Чат-комната не найдена"))
+                .isPrivate();
+        RoomMembership membership = isPrivate
+                ? new RoomMembership(true, Set.copyOf(chatRoomRepository.findMemberUsernamesByRoomId(roomId)))
+                : PUBLIC;
+        if (enabled) {
+            rooms.compute(roomId, (id, cached) -> cached != null || generation.get() != stamp ? cached : membership);
+        }
+        return membership;
+    }
+
+    private void updateAfterCommit(String roomId, UnaryOperator<RoomMembership> update) {
+        Runnable apply = () -> {
+            rooms.compute(roomId, (id, membership) -> {
+                generation.incrementAndGet();
+                return membership == null ? null : update.apply(membership);
+            });
+            clusterFanOut.publishRoomChanged(roomId);
+        };
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            apply.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                apply.run();
+            }
+        });
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("chat.cache.membership.hits", hitCount, LongAdder::sum)
+                .description("Membership checks answered from memory")
+                .register(registry);
+        FunctionCounter.builder("chat.cache.membership.misses", missCount, LongAdder::sum)
+                .description("Membership checks that loaded the room from the database")
+                .register(registry);
+        Gauge.builder("chat.cache.membership.rooms", this, MembershipCache::size)
+                .register(registry);
+    }
+
+    record RoomMembership(boolean isPrivate, Set<String> members) {
+        RoomMembership with(String username) {
+            if (!isPrivate || members.contains(username)) {
+                return this;
+            }
+            Set<String> updated = new HashSet<>(members);
+            updated.add(username);
+            return new RoomMembership(true, Set.copyOf(updated));
+        }
+
+        RoomMembership without(String username) {
+            if (!isPrivate || !members.contains(username)) {
+                return this;
+            }
+            Set<String> updated = new HashSet<>(members);
+            updated.remove(username);
+            return new RoomMembership(true, Set.copyOf(updated));
+        }
+    }
+}
@@ -0,0 +1,269 @@
+package iwkms.chatapp.chatservice.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import iwkms.chatapp.chatservice.dto.ChatMessageWireDto;
+import iwkms.chatapp.chatservice.exception.InvalidExportFormatException;
+import iwkms.chatapp.chatservice.exception.RateLimitExceededException;
+import iwkms.chatapp.chatservice.exception.UnauthorizedException;
+import iwkms.chatapp.chatservice.model.ChatMessage;
+import iwkms.chatapp.chatservice.model.ChatRoom;
+import iwkms.chatapp.chatservice.store.MessageStore;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.TransactionTimedOutException;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.format.DateTimeFormatter;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Full exports of a room's history. Messages are read with
+ * {@link MessageStore#streamAfter} and written to the response one by one,
+ * so memory use stays the same whatever the size of the room; the read-only
+ * transaction keeps the database cursor open for the whole download.
+ *
+ * <p>Each export therefore holds a connection, so at most
+ * {@code max-concurrent} run at once and further ones are refused with 429.
+ * An export is aborted after {@code timeout-seconds}, which is also the
+ * transaction timeout applied to its statements.
+ */
+@Service
+public class MessageExportService implements MeterBinder {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final String CSV_HEADER = "id,timestamp,chatRoomId,senderUsername,content\r\n";
+    private static final long BUSY_RETRY_AFTER_MS = 5_000;
+    private static final String FORMULA_PREFIXES = "=+-@\t\r";
+
+    private final MessageStore messageStore;
+    private final ChatRoomService chatRoomService;
+    private final ObjectWriter rowWriter;
+    private final Semaphore slots;
+    private final long timeoutNanos;
+
+    private final LongAdder exportCount = new LongAdder();
+    private final LongAdder exportedMessages = new LongAdder();
+    private final LongAdder rejectedCount = new LongAdder();
+    private final LongAdder timedOutCount = new LongAdder();
+
+    public enum Format {
+        NDJSON("application/x-ndjson", "ndjson"),
+        CSV("text/csv;charset=UTF-8", "csv");
+
+        private final String contentType;
+        private final String extension;
+
+        Format(String contentType, String extension) {
+            this.contentType = contentType;
+            this.extension = extension;
+        }
+
+        public String contentType() {
+            return contentType;
+        }
+
+        public String extension() {
+            return extension;
+        }
+
+        public static Format parse(String value) {
+            try {
+                return valueOf(value.toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new InvalidExportFormatException("Неподдерживаемый формат экспорта: " + value);
+            }
+        }
+    }
+
+    @Autowired
+    public MessageExportService(MessageStore messageStore,
+                                ChatRoomService chatRoomService,
+                                ObjectMapper objectMapper,
+                                @Value("${chat.export.max-concurrent:4}") int maxConcurrent,
+                                @Value("${chat.export.timeout-seconds:600}") long timeoutSeconds) {
+        this.messageStore = messageStore;
+        this.chatRoomService = chatRoomService;
+        this.rowWriter = objectMapper.writerFor(ChatMessageWireDto.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        this.slots = new Semaphore(Math.max(1, maxConcurrent));
+        this.timeoutNanos = TimeUnit.SECONDS.toNanos(timeoutSeconds);
+    }
+
+    /**
+     * Only the owner may export a room. Checked before the response is
+     * started, so a refusal still gets a proper error status.
+     */
+    @Transactional(readOnly = true)
+    public void checkAccess(String roomId, String username) {
+        ChatRoom chatRoom = chatRoomService.getChatRoomById(roomId);
+        if (!chatRoom.isOwner(username)) {
+            throw new UnauthorizedException("Только владелец комнаты может экспортировать сообщения");
+        }
+    }
+
+    /**
+     * Takes one of the {@code max-concurrent} export slots or refuses with
+     * 429. Called before {@link #export} opens its transaction, so a refused
+     * export never takes a connection; the slot is given back with
+     * {@link #releaseSlot}.
+     */
+    public void acquireSlot() {
+        if (!slots.tryAcquire()) {
+            rejectedCount.increment();
+            throw new RateLimitExceededException("Слишком много одновременных экспортов, повторите попытку позже",
+                    BUSY_RETRY_AFTER_MS);
+        }
+    }
+
+    public void releaseSlot() {
+        slots.release();
+    }
+
+    /**
+     * Writes every message of the room to {@code out} in id order, gzipped if
+     * asked to, and returns how many were written. {@code out} is not closed.
+     * Throws {@link TransactionTimedOutException} once the export has run for
+     * {@code timeout-seconds}, which ends the transaction and frees the
+     * connection even if the client reads slowly.
+     */
+    @Transactional(readOnly = true, timeoutString = "${chat.export.timeout-seconds:600}")
+    public long export(String roomId, Format format, boolean gzip, OutputStream out) throws IOException {
+        GZIPOutputStream compressed = gzip ? new GZIPOutputStream(out, BUFFER_SIZE) : null;
+        Writer writer = new BufferedWriter(
+                new OutputStreamWriter(compressed != null ? compressed : out, StandardCharsets.UTF_8), BUFFER_SIZE);
+        long deadline = System.nanoTime() + timeoutNanos;
+        long count;
+        try (Stream<ChatMessage> messages = messageStore.streamAfter(roomId, 0)) {
+            Iterator<ChatMessage> rows = new Deadline(messages.iterator(), deadline, roomId);
+            count = format == Format.CSV
+                    ? writeCsv(rows, writer)
+                    : writeNdjson(rows, writer);
+        }
+        writer.flush();
+        if (compressed != null) {
+            compressed.finish();
+        }
+        exportCount.increment();
+        exportedMessages.add(count);
+        return count;
+    }
+
+    private long writeNdjson(Iterator<ChatMessage> messages, Writer writer) throws IOException {
+        JsonGenerator generator = rowWriter.getFactory().createGenerator(writer)
+                .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        generator.setRootValueSeparator(null);
+        long count = 0;
+        while (messages.hasNext()) {
+            rowWriter.writeValue(generator, ChatMessageWireDto.from(messages.next()));
+            generator.writeRaw('\n');
+            count++;
+        }
+        generator.flush();
+        return count;
+    }
+
+    private long writeCsv(Iterator<ChatMessage> messages, Writer writer) throws IOException {
+        writer.write(CSV_HEADER);
+        long count = 0;
+        while (messages.hasNext()) {
+            ChatMessage message = messages.next();
+            writer.write(String.valueOf(message.getId()));
+            writer.write(',');
+            writer.write(DateTimeFormatter.ISO_LOCAL_DATE_TIME.format(message.getTimestamp()));
+            writer.write(',');
+            writeCsvField(writer, message.getChatRoomId());
+            writer.write(',');
+            writeCsvField(writer, message.getSenderUsername());
+            writer.write(',');
+            writeCsvField(writer, message.getContent());
+            writer.write("\r\n");
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * RFC 4180: fields with separators, quotes or line breaks are quoted,
+     * quotes doubled. A field that a spreadsheet would take for a formula
+     * gets a leading {@code '}, so opening the export runs nothing.
+     */
+    static void writeCsvField(Writer writer, String value) throws IOException {
+        if (value == null) {
+            return;
+        }
+        if (!value.isEmpty() && FORMULA_PREFIXES.indexOf(value.charAt(0)) >= 0) {
+            value = "'" + value;
+        }
+        boolean quote = false;
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char c = value.charAt(i);
+            quote = c == ',' || c == '"' || c == '\r' || c == '\n';
+        }
+        if (!quote) {
+            writer.write(value);
+            return;
+        }
+        writer.write('"');
+        writer.write(value.replace("\"", "\"\""));
+        writer.write('"');
+    }
+
+    /** Passes rows through until the export's deadline, then fails it. */
+    private final class Deadline implements Iterator<ChatMessage> {
+        private final Iterator<ChatMessage> rows;
+        private final long deadline;
+        private final String roomId;
+
+        Deadline(Iterator<ChatMessage> rows, long deadline, String roomId) {
+            this.rows = rows;
+            this.deadline = deadline;
+            this.roomId = roomId;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (System.nanoTime() - deadline > 0) {
+                timedOutCount.increment();
+                throw new TransactionTimedOutException("Экспорт комнаты " + roomId + " превысил допустимое время");
+            }
+            return rows.hasNext();
+        }
+
+        @Override
+        public ChatMessage next() {
+            return rows.next();
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("chat.export.count", exportCount, LongAdder::sum)
+                .description("Completed room exports")
+                .register(registry);
+        FunctionCounter.builder("chat.export.messages", exportedMessages, LongAdder::sum)
+                .register(registry);
+        FunctionCounter.builder("chat.export.rejected", rejectedCount, LongAdder::sum)
+                .description("Exports refused because max-concurrent were running")
+                .register(registry);
+        FunctionCounter.builder("chat.export.timed-out", timedOutCount, LongAdder::sum)
+                .register(registry);
+    }
+}
@@ -0,0 +1,41 @@
+package iwkms.chatapp.chatservice.service;
+
+import iwkms.chatapp.chatservice.model.ChatMessage;
+import iwkms.chatapp.chatservice.repository.ChatMessageRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Hands out chat message ids without a database round trip per message.
+ * Each {@code nextval} on the message sequence reserves a block of
+ * {@link ChatMessage#ID_ALLOCATION_SIZE} ids, using the same pooled-lo
+ * interpretation as Hibernate, so ids never collide with JPA inserts.
+ */
+@Component
+public class MessageIdAllocator {
+    private final ChatMessageRepository chatMessageRepository;
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private long nextId;
+    private long blockLimit;
+
+    @Autowired
+    public MessageIdAllocator(ChatMessageRepository chatMessageRepository) {
+        this.chatMessageRepository = chatMessageRepository;
+    }
+
+    public long nextId() {
+        lock.lock();
+        try {
+            if (nextId >= blockLimit) {
+                nextId = chatMessageRepository.nextIdBlockStart();
+                blockLimit = nextId + ChatMessage.ID_ALLOCATION_SIZE;
+            }
+            return nextId++;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package iwkms.chatapp.chatservice.service;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import iwkms.chatapp.chatservice.repository.ChatMessageRepository;
+import iwkms.chatapp.chatservice.search.MessageSearchIndex;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps the monthly partitions of {@code chat_messages} in shape: creates the
+ * current month and {@code months-ahead} further ones, and with
+ * {@code retention-months} set drops whole partitions that fell out of the
+ * retention window, removing their messages from the {@link MessageSearchIndex}
+ * first. Runs once on startup and then every {@code interval-ms}.
+ */
+@Component
+public class MessagePartitionMaintainer implements SmartLifecycle, MeterBinder {
+    private static final Logger logger = LoggerFactory.getLogger(MessagePartitionMaintainer.class);
+
+    private final ChatMessageRepository chatMessageRepository;
+    private final MessageSearchIndex messageSearchIndex;
+    private final int monthsAhead;
+    private final int retentionMonths;
+    private final long intervalMs;
+    private final Clock clock;
+
+    private final LongAdder createdCount = new LongAdder();
+    private final LongAdder droppedCount = new LongAdder();
+
+    private volatile int partitionCount;
+    private volatile ScheduledExecutorService scheduler;
+    private volatile boolean running;
+
+    @Autowired
+    public MessagePartitionMaintainer(ChatMessageRepository chatMessageRepository,
+                                      MessageSearchIndex messageSearchIndex,
+                                      @Value("${chat.partitions.months-ahead:2}") int monthsAhead,
+                                      @Value("${chat.partitions.retention-months:0}") int retentionMonths,
+                                      @Value("${chat.partitions.interval-ms:3600000}") long intervalMs) {
+        this(chatMessageRepository, messageSearchIndex, monthsAhead, retentionMonths, intervalMs,
+                Clock.systemDefaultZone());
+    }
+
+    MessagePartitionMaintainer(ChatMessageRepository chatMessageRepository,
+                               MessageSearchIndex messageSearchIndex,
+                               int monthsAhead,
+                               int retentionMonths,
+                               long intervalMs,
+                               Clock clock) {
+        this.chatMessageRepository = chatMessageRepository;
+        this.messageSearchIndex = messageSearchIndex;
+        this.monthsAhead = Math.max(0, monthsAhead);
+        this.retentionMonths = Math.max(0, retentionMonths);
+        this.intervalMs = intervalMs;
+        this.clock = clock;
+    }
+
+    public int getPartitionCount() {
+        return partitionCount;
+    }
+
+    public void maintain() {
+        LocalDateTime now = LocalDateTime.now(clock);
+        YearMonth current = YearMonth.from(now);
+        Set<YearMonth> existing = new HashSet<>(chatMessageRepository.findPartitionMonths());
+
+        for (int i = 0; i <= monthsAhead; i++) {
+            YearMonth month = current.plusMonths(i);
+            if (!existing.contains(month)) {
+                try {
+                    chatMessageRepository.createPartition(month);
+                    existing.add(month);
+                    createdCount.increment();
+                    logger.info("Created chat_messages partition for {}", month);
+                } catch (RuntimeException e) {
+                    logger.warn("Could not create chat_messages partition for {}: {}", month, e.getMessage());
+                }
+            }
+        }
+
+        if (retentionMonths > 0) {
+            YearMonth oldestKept = current.minusMonths(retentionMonths);
+            LocalDateTime cutoff = oldestKept.atDay(1).atStartOfDay();
+            removeFromSearchIndex(cutoff);
+            for (YearMonth month : List.copyOf(existing)) {
+                if (month.isBefore(oldestKept)) {
+                    chatMessageRepository.dropPartition(month);
+                    existing.remove(month);
+                    droppedCount.increment();
+                    logger.info("Dropped chat_messages partition for {}", month);
+                }
+            }
+            chatMessageRepository.deleteFromDefaultPartitionBefore(cutoff);
+        }
+        partitionCount = existing.size();
+    }
+
+    /**
+     * Tombstones the messages about to be dropped in the search index. Their
+     * ids are taken per room; the index only removes those stamped before the
+     * cutoff, since newer messages can have ids within such a range. If this
+     * fails nothing is dropped, and the next run tries again.
+     */
+    private void removeFromSearchIndex(LocalDateTime cutoff) {
+        if (!messageSearchIndex.isEnabled()) {
+            return;
+        }
+        List<MessageSearchIndex.DeletedRange> ranges = chatMessageRepository.findRoomIdRangesBefore(cutoff).stream()
+                .map(range -> new MessageSearchIndex.DeletedRange(range.chatRoomId(), range.minId(), range.maxId()))
+                .toList();
+        messageSearchIndex.delete(ranges, cutoff);
+    }
+
+    private void maintainSafely() {
+        try {
+            maintain();
+        } catch (RuntimeException e) {
+            logger.error("Message partition maintenance failed", e);
+        }
+    }
+
+    @Override
+    public void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        maintainSafely();
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "message-partitions");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(this::maintainSafely, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+        scheduler = executor;
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        ScheduledExecutorService executor = scheduler;
+        if (executor != null) {
+            executor.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        return ChatMessagePersister.PHASE;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("chat.partitions.count", this, MessagePartitionMaintainer::getPartitionCount)
+                .description("Monthly partitions of chat_messages")
+                .register(registry);
+        FunctionCounter.builder("chat.partitions.created", createdCount, LongAdder::sum)
+                .register(registry);
+        FunctionCounter.builder("chat.partitions.dropped", droppedCount, LongAdder::sum)
+                .register(registry);
+    }
+}
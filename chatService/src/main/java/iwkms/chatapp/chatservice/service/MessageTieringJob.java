@@ -0,0 +1,164 @@
+package iwkms.chatapp.chatservice.service;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import iwkms.chatapp.chatservice.model.ChatMessage;
+import iwkms.chatapp.chatservice.repository.ChatMessageRepository;
+import iwkms.chatapp.chatservice.store.MessageArchive;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Moves old messages from {@code chat_messages} into the {@link MessageArchive}.
+ * Each run archives, room by room, messages older than {@code age-days} into
+ * archive files of at most {@code batch-size} messages, deleting each batch by
+ * id once its file is on disk. A crash between the two steps leaves the batch
+ * in both tiers, which readers tolerate; it is never lost.
+ *
+ * <p>Ids are handed out in blocks per node, so a recent message can have a
+ * lower id than an old one. The archive holds a contiguous id range per room,
+ * so a room is only archived up to just below its lowest id that is still
+ * younger than the cutoff.
+ */
+@Component
+public class MessageTieringJob implements SmartLifecycle, MeterBinder {
+    private static final Logger logger = LoggerFactory.getLogger(MessageTieringJob.class);
+
+    private final ChatMessageRepository chatMessageRepository;
+    private final MessageArchive messageArchive;
+    private final long ageDays;
+    private final long intervalMs;
+    private final int batchSize;
+
+    private final LongAdder runCount = new LongAdder();
+    private final LongAdder failureCount = new LongAdder();
+
+    private volatile ScheduledExecutorService scheduler;
+    private volatile boolean running;
+    private volatile boolean stopping;
+
+    @Autowired
+    public MessageTieringJob(ChatMessageRepository chatMessageRepository,
+                             MessageArchive messageArchive,
+                             @Value("${chat.archive.age-days:90}") long ageDays,
+                             @Value("${chat.archive.interval-ms:3600000}") long intervalMs,
+                             @Value("${chat.archive.batch-size:50000}") int batchSize) {
+        this.chatMessageRepository = chatMessageRepository;
+        this.messageArchive = messageArchive;
+        this.ageDays = ageDays;
+        this.intervalMs = intervalMs;
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    /**
+     * Archives everything currently older than the cutoff and returns the
+     * number of messages moved.
+     */
+    public int runOnce() {
+        runCount.increment();
+        LocalDateTime cutoff = LocalDateTime.now().minusDays(ageDays);
+        int moved = 0;
+        for (String roomId : chatMessageRepository.findRoomIdsBefore(cutoff)) {
+            if (stopping) {
+                break;
+            }
+            moved += archiveRoom(roomId, cutoff);
+        }
+        if (moved > 0) {
+            logger.info("Archived {} messages older than {}", moved, cutoff);
+        }
+        return moved;
+    }
+
+    private int archiveRoom(String roomId, LocalDateTime cutoff) {
+        Long firstRecentId = chatMessageRepository.findFirstIdSince(roomId, cutoff);
+        long maxId = firstRecentId == null ? Long.MAX_VALUE : firstRecentId - 1;
+        int moved = 0;
+        long afterId = messageArchive.getLastArchivedId(roomId);
+        while (!stopping) {
+            List<ChatMessage> batch = chatMessageRepository.findRangeAsc(roomId, afterId, maxId, cutoff, batchSize);
+            if (batch.isEmpty()) {
+                break;
+            }
+            messageArchive.append(roomId, batch);
+            chatMessageRepository.deleteByIds(batch.stream().map(ChatMessage::getId).toList());
+            moved += batch.size();
+            afterId = batch.get(batch.size() - 1).getId();
+            if (batch.size() < batchSize) {
+                break;
+            }
+        }
+        return moved;
+    }
+
+    private void runSafely() {
+        try {
+            runOnce();
+        } catch (RuntimeException e) {
+            failureCount.increment();
+            logger.error("Message tiering run failed", e);
+        }
+    }
+
+    @Override
+    public void start() {
+        if (!messageArchive.isEnabled() || running) {
+            return;
+        }
+        running = true;
+        stopping = false;
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "message-tiering");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(this::runSafely, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+        scheduler = executor;
+    }
+
+    @Override
+    public void stop() {
+        stopping = true;
+        running = false;
+        ScheduledExecutorService executor = scheduler;
+        if (executor != null) {
+            executor.shutdown();
+            try {
+                executor.awaitTermination(30, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            scheduler = null;
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        return ChatMessagePersister.PHASE;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("chat.archive.runs", runCount, LongAdder::sum)
+                .register(registry);
+        FunctionCounter.builder("chat.archive.failures", failureCount, LongAdder::sum)
+                .register(registry);
+    }
+}
@@ -0,0 +1,316 @@
+package iwkms.chatapp.chatservice.service;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import iwkms.chatapp.chatservice.model.ChatMessage;
+import iwkms.chatapp.chatservice.store.MessageStore;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Keeps the most recent messages of each room in a bounded ring buffer so the
+ * latest history page can be served without a database query. Messages are
+ * kept in the store's {@link MessageStore#historyOrder()}, so a page served
+ * from here ends where the store's next page begins. Reconnect sync does not
+ * read it: a message committed late with a lower id would be missing from a
+ * buffer that looks complete.
+ *
+ * <p>Every buffer holds a contiguous run of the newest messages of its room:
+ * it is filled on write and primed from the database on a miss. A buffer
+ * always has room for a full page plus the probe for an older one, so every
+ * page size the API accepts can hit. Rooms are spread over lock stripes, each
+ * with its share of the message cap; when a stripe goes over it, its least
+ * recently used rooms are dropped.
+ *
+ * <p>Only a single node sees every write, so the cache is off unless
+ * {@code chat.cluster.fan-out} is {@code local}: with other nodes posting to
+ * the same rooms, a buffer here would miss their messages.
+ */
+@Component
+public class RecentMessageCache implements MeterBinder {
+    private final boolean enabled;
+    private final int messagesPerRoom;
+    private final Comparator<ChatMessage> order;
+    private final Stripe[] stripes;
+    private final int mask;
+    private final int maxMessagesPerStripe;
+
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder evictionCount = new LongAdder();
+
+    @Autowired
+    public RecentMessageCache(@Value("${chat.cache.recent-messages.enabled:true}") boolean enabled,
+                              @Value("${chat.cache.recent-messages.per-room:201}") int messagesPerRoom,
+                              @Value("${chat.cache.recent-messages.max-messages:200000}") int maxMessages,
+                              @Value("${chat.cache.recent-messages.stripes:64}") int stripeCount,
+                              @Value("${chat.cluster.fan-out:local}") String clusterFanOut,
+                              MessageStore messageStore) {
+        this(enabled, messagesPerRoom, maxMessages, stripeCount, clusterFanOut, messageStore.historyOrder());
+    }
+
+    RecentMessageCache(boolean enabled, int messagesPerRoom, int maxMessages, int stripeCount, String clusterFanOut,
+                       Comparator<ChatMessage> order) {
+        this.enabled = enabled && "local".equals(clusterFanOut);
+        this.messagesPerRoom = Math.max(messagesPerRoom, ChatService.MAX_PAGE_SIZE + 1);
+        this.order = order;
+        int size = Integer.highestOneBit(Math.max(1, stripeCount - 1) << 1);
+        this.stripes = new Stripe[size];
+        for (int i = 0; i < size; i++) {
+            stripes[i] = new Stripe();
+        }
+        this.mask = size - 1;
+        this.maxMessagesPerStripe = Math.max(1, maxMessages / size);
+    }
+
+    /**
+     * Returns the newest {@code count} messages of a room, oldest first,
+     * or fewer if that is the room's entire history. Empty on a miss.
+     */
+    public Optional<List<ChatMessage>> getLatest(String roomId, int count) {
+        List<ChatMessage> result = null;
+        if (enabled) {
+            Stripe stripe = stripe(roomId);
+            stripe.lock.lock();
+            try {
+                RoomBuffer buffer = stripe.rooms.get(roomId);
+                result = buffer != null ? buffer.latest(count) : null;
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+        if (result == null) {
+            missCount.increment();
+        } else {
+            hitCount.increment();
+        }
+        return Optional.ofNullable(result);
+    }
+
+    /**
+     * Records a message that has just been written.
+     */
+    public void append(ChatMessage message) {
+        if (!enabled) {
+            return;
+        }
+        Stripe stripe = stripe(message.getChatRoomId());
+        stripe.lock.lock();
+        try {
+            stripe.cachedMessages += buffer(stripe, message.getChatRoomId()).add(message);
+            evictIfNeeded(stripe);
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    /**
+     * Merges the newest messages read from the store, oldest first.
+     * {@code startOfHistory} tells whether nothing older exists in the room.
+     */
+    public void prime(String roomId, List<ChatMessage> latest, boolean startOfHistory) {
+        if (!enabled) {
+            return;
+        }
+        Stripe stripe = stripe(roomId);
+        stripe.lock.lock();
+        try {
+            stripe.cachedMessages += buffer(stripe, roomId).merge(latest, startOfHistory);
+            evictIfNeeded(stripe);
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    public void evict(String roomId) {
+        Stripe stripe = stripe(roomId);
+        stripe.lock.lock();
+        try {
+            RoomBuffer removed = stripe.rooms.remove(roomId);
+            if (removed != null) {
+                stripe.cachedMessages -= removed.size();
+            }
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    public int getRoomCount() {
+        int count = 0;
+        for (Stripe stripe : stripes) {
+            stripe.lock.lock();
+            try {
+                count += stripe.rooms.size();
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+        return count;
+    }
+
+    public int getCachedMessageCount() {
+        int count = 0;
+        for (Stripe stripe : stripes) {
+            count += stripe.cachedMessages;
+        }
+        return count;
+    }
+
+    private RoomBuffer buffer(Stripe stripe, String roomId) {
+        return stripe.rooms.computeIfAbsent(roomId, id -> new RoomBuffer(messagesPerRoom, order));
+    }
+
+    private Stripe stripe(String roomId) {
+        int h = roomId.hashCode();
+        return stripes[(h ^ (h >>> 16)) & mask];
+    }
+
+    private void evictIfNeeded(Stripe stripe) {
+        Iterator<RoomBuffer> eldest = stripe.rooms.values().iterator();
+        while (stripe.cachedMessages > maxMessagesPerStripe && stripe.rooms.size() > 1) {
+            RoomBuffer buffer = eldest.next();
+            eldest.remove();
+            stripe.cachedMessages -= buffer.size();
+            evictionCount.increment();
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("chat.cache.recent.hits", hitCount, LongAdder::sum)
+                .description("History reads served from the recent-message cache")
+                .register(registry);
+        FunctionCounter.builder("chat.cache.recent.misses", missCount, LongAdder::sum)
+                .description("History reads that fell through to the database")
+                .register(registry);
+        FunctionCounter.builder("chat.cache.recent.evictions", evictionCount, LongAdder::sum)
+                .register(registry);
+        Gauge.builder("chat.cache.recent.rooms", this, RecentMessageCache::getRoomCount)
+                .register(registry);
+        Gauge.builder("chat.cache.recent.messages", this, RecentMessageCache::getCachedMessageCount)
+                .register(registry);
+    }
+
+    private static final class Stripe {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final LinkedHashMap<String, RoomBuffer> rooms = new LinkedHashMap<>(16, 0.75f, true);
+        private volatile int cachedMessages;
+    }
+
+    /**
+     * Ring buffer of one room's newest messages in history order.
+     */
+    static final class RoomBuffer {
+        private final ChatMessage[] ring;
+        private final Comparator<ChatMessage> order;
+        private int head;
+        private int size;
+        private boolean startOfHistory;
+
+        RoomBuffer(int capacity, Comparator<ChatMessage> order) {
+            this.ring = new ChatMessage[capacity];
+            this.order = order;
+        }
+
+        int size() {
+            return size;
+        }
+
+        List<ChatMessage> latest(int count) {
+            if (size < count && !startOfHistory) {
+                return null;
+            }
+            int n = Math.min(count, size);
+            List<ChatMessage> result = new ArrayList<>(n);
+            for (int i = size - n; i < size; i++) {
+                result.add(get(i));
+            }
+            return result;
+        }
+
+        /**
+         * Inserts a message keeping history order and returns the change in size.
+         */
+        int add(ChatMessage message) {
+            int pos = size;
+            while (pos > 0 && order.compare(get(pos - 1), message) >= 0) {
+                if (get(pos - 1).getId().equals(message.getId())) {
+                    return 0;
+                }
+                pos--;
+            }
+            boolean full = size == ring.length;
+            if (full) {
+                if (pos == 0) {
+                    startOfHistory = false;
+                    return 0;
+                }
+                dropOldest();
+                pos--;
+            }
+            for (int i = size; i > pos; i--) {
+                set(i, get(i - 1));
+            }
+            set(pos, message);
+            size++;
+            return full ? 0 : 1;
+        }
+
+        /**
+         * Merges messages read from the database and returns the change in size.
+         */
+        int merge(List<ChatMessage> latest, boolean reachedStart) {
+            int before = size;
+            List<ChatMessage> combined = new ArrayList<>(size + latest.size());
+            for (int i = 0; i < size; i++) {
+                combined.add(get(i));
+            }
+            combined.addAll(latest);
+            combined.sort(order);
+
+            List<ChatMessage> unique = new ArrayList<>(combined.size());
+            for (ChatMessage message : combined) {
+                if (unique.isEmpty() || !unique.get(unique.size() - 1).getId().equals(message.getId())) {
+                    unique.add(message);
+                }
+            }
+            int skip = Math.max(0, unique.size() - ring.length);
+            Arrays.fill(ring, null);
+            head = 0;
+            size = 0;
+            for (ChatMessage message : unique.subList(skip, unique.size())) {
+                ring[size++] = message;
+            }
+            startOfHistory = reachedStart && skip == 0;
+            return size - before;
+        }
+
+        private void dropOldest() {
+            ring[head] = null;
+            head = (head + 1) % ring.length;
+            size--;
+            startOfHistory = false;
+        }
+
+        private ChatMessage get(int i) {
+            return ring[(head + i) % ring.length];
+        }
+
+        private void set(int i, ChatMessage message) {
+            ring[(head + i) % ring.length] = message;
+        }
+    }
+}
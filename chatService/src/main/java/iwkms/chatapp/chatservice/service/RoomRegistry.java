@@ -0,0 +1,128 @@
+package iwkms.chatapp.chatservice.service;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import iwkms.chatapp.common.cache.BoundedLruCache;
+import iwkms.chatapp.chatservice.model.RoomMetadata;
+import iwkms.chatapp.chatservice.repository.ChatRoomRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Resolves a room id to its {@link RoomMetadata} from memory. Rooms never
+ * change privacy or owner, so entries are only dropped to respect the size
+ * limit, least recently used first, or when {@link MembershipCache} passes on
+ * a change announced by another node. Unknown rooms are not cached.
+ */
+@Component
+public class RoomRegistry implements MeterBinder {
+    private final ChatRoomRepository chatRoomRepository;
+    private final BoundedLruCache<String, RoomMetadata> rooms;
+
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder createdCount = new LongAdder();
+
+    @Autowired
+    public RoomRegistry(ChatRoomRepository chatRoomRepository,
+                        @Value("${chat.cache.rooms.max-rooms:50000}") int maxRooms) {
+        this.chatRoomRepository = chatRoomRepository;
+        this.rooms = new BoundedLruCache<>(maxRooms);
+    }
+
+    public Optional<RoomMetadata> find(String roomId) {
+        RoomMetadata metadata = rooms.get(roomId);
+        if (metadata != null) {
+            hitCount.increment();
+            return Optional.of(metadata);
+        }
+        missCount.increment();
+        Optional<RoomMetadata> loaded = chatRoomRepository.findMetadataByRoomId(roomId);
+        loaded.ifPresent(this::put);
+        return loaded;
+    }
+
+    /**
+     * Returns the room, creating it as a public room owned by
+     * {@code creatorUsername} if it does not exist yet. A room created here is
+     * only cached once the surrounding transaction commits. An existing room
+     * is read first, as the insert draws an id from the sequence even when it
+     * conflicts.
+     */
+    public RoomMetadata getOrCreate(String roomId, String creatorUsername) {
+        RoomMetadata metadata = rooms.get(roomId);
+        if (metadata != null) {
+            hitCount.increment();
+            return metadata;
+        }
+        missCount.increment();
+        Optional<RoomMetadata> existing = chatRoomRepository.findMetadataByRoomId(roomId);
+        if (existing.isPresent()) {
+            put(existing.get());
+            return existing.get();
+        }
+        boolean created = chatRoomRepository.insertIfAbsent(roomId,
+                "Комната " + roomId,
+                "Автоматически созданная комната",
+                creatorUsername);
+        RoomMetadata loaded = chatRoomRepository.findMetadataByRoomId(roomId)
+                .orElseThrow(() -> new IllegalStateException("Комната " + roomId + " не найдена после создания"));
+        if (!created) {
+            put(loaded);
+        } else {
+            createdCount.increment();
+            putAfterCommit(loaded);
+        }
+        return loaded;
+    }
+
+    public void evict(String roomId) {
+        rooms.remove(roomId);
+    }
+
+    public void clear() {
+        rooms.clear();
+    }
+
+    public int size() {
+        return rooms.size();
+    }
+
+    private void put(RoomMetadata metadata) {
+        rooms.put(metadata.roomId(), metadata);
+    }
+
+    private void putAfterCommit(RoomMetadata metadata) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            put(metadata);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                put(metadata);
+            }
+        });
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("chat.cache.rooms.hits", hitCount, LongAdder::sum)
+                .register(registry);
+        FunctionCounter.builder("chat.cache.rooms.misses", missCount, LongAdder::sum)
+                .register(registry);
+        FunctionCounter.builder("chat.rooms.auto-created", createdCount, LongAdder::sum)
+                .description("Rooms created implicitly by the first message sent to them")
+                .register(registry);
+        Gauge.builder("chat.cache.rooms.size", this, RoomRegistry::size)
+                .register(registry);
+    }
+}
@@ -0,0 +1,317 @@
+package iwkms.chatapp.chatservice.store;
+
+import iwkms.chatapp.chatservice.model.ChatMessage;
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4SafeDecompressor;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * One immutable archive file of a room: messages in id order, packed into
+ * LZ4-compressed blocks, followed by a block index.
+ * <pre>
+ * "CHATARC1"
+ * block*   LZ4 of records: long id, long timestamp (epoch micros, as stored by PostgreSQL),
+ *          u16 sender length, sender, int content length, content (UTF-8)
+ * index    per block: long firstId, long lastId, long offset,
+ *          int compressed length, int raw length, int CRC32 of the compressed bytes
+ * footer   long index offset, int block count, "CHATARC1"
+ * </pre>
+ * Only the index is kept in memory; a read opens the file, fetches the blocks
+ * it needs with positional reads and decompresses them.
+ */
+final class ArchiveFile {
+    static final String SUFFIX = ".arc";
+    private static final byte[] MAGIC = "CHATARC1".getBytes(StandardCharsets.US_ASCII);
+    private static final int INDEX_ENTRY_BYTES = 8 + 8 + 8 + 4 + 4 + 4;
+    private static final int FOOTER_BYTES = 8 + 4 + MAGIC.length;
+    private static final LZ4Factory LZ4 = LZ4Factory.fastestInstance();
+
+    private final Path file;
+    private final long[] firstIds;
+    private final long[] lastIds;
+    private final long[] offsets;
+    private final int[] compressedLengths;
+    private final int[] rawLengths;
+    private final int[] checksums;
+
+    private ArchiveFile(Path file, int blockCount) {
+        this.file = file;
+        this.firstIds = new long[blockCount];
+        this.lastIds = new long[blockCount];
+        this.offsets = new long[blockCount];
+        this.compressedLengths = new int[blockCount];
+        this.rawLengths = new int[blockCount];
+        this.checksums = new int[blockCount];
+    }
+
+    static Path fileName(Path directory, long firstId) {
+        return directory.resolve(String.format("%020d%s", firstId, SUFFIX));
+    }
+
+    /**
+     * Writes {@code messages} (ascending ids, not empty) to a new file named
+     * after the first id. The file is written under a temporary name, forced
+     * to disk and then renamed, so a crash never leaves a partial archive.
+     */
+    static ArchiveFile write(Path directory, List<ChatMessage> messages, int blockBytes) throws IOException {
+        Path target = fileName(directory, messages.get(0).getId());
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        LZ4Compressor compressor = LZ4.fastCompressor();
+        List<long[]> blocks = new ArrayList<>();
+
+        try (OutputStream file = Files.newOutputStream(temp);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file, 1 << 16))) {
+            out.write(MAGIC);
+            long offset = MAGIC.length;
+            ByteArrayOutputStream raw = new ByteArrayOutputStream(blockBytes + 1024);
+            DataOutputStream records = new DataOutputStream(raw);
+            long firstId = -1;
+            long lastId = -1;
+            for (int i = 0; i < messages.size(); i++) {
+                ChatMessage message = messages.get(i);
+                if (firstId < 0) {
+                    firstId = message.getId();
+                }
+                lastId = message.getId();
+                writeRecord(records, message);
+                if (raw.size() >= blockBytes || i == messages.size() - 1) {
+                    byte[] block = raw.toByteArray();
+                    byte[] compressed = new byte[compressor.maxCompressedLength(block.length)];
+                    int length = compressor.compress(block, 0, block.length, compressed, 0, compressed.length);
+                    CRC32 crc = new CRC32();
+                    crc.update(compressed, 0, length);
+                    out.write(compressed, 0, length);
+                    blocks.add(new long[] {firstId, lastId, offset, length, block.length, (int) crc.getValue()});
+                    offset += length;
+                    raw.reset();
+                    firstId = -1;
+                }
+            }
+            for (long[] block : blocks) {
+                out.writeLong(block[0]);
+                out.writeLong(block[1]);
+                out.writeLong(block[2]);
+                out.writeInt((int) block[3]);
+                out.writeInt((int) block[4]);
+                out.writeInt((int) block[5]);
+            }
+            out.writeLong(offset);
+            out.writeInt(blocks.size());
+            out.write(MAGIC);
+        }
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+        Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+        return open(target);
+    }
+
+    /**
+     * Reads the footer and block index of an existing file.
+     */
+    static ArchiveFile open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < MAGIC.length + FOOTER_BYTES) {
+                throw new IOException("Archive " + file + " is truncated");
+            }
+            ByteBuffer footer = readFully(channel, size - FOOTER_BYTES, FOOTER_BYTES);
+            long indexOffset = footer.getLong();
+            int blockCount = footer.getInt();
+            byte[] magic = new byte[MAGIC.length];
+            footer.get(magic);
+            if (!Arrays.equals(magic, MAGIC) || blockCount <= 0
+                    || indexOffset + (long) blockCount * INDEX_ENTRY_BYTES != size - FOOTER_BYTES) {
+                throw new IOException("Archive " + file + " has an invalid footer");
+            }
+            ByteBuffer index = readFully(channel, indexOffset, blockCount * INDEX_ENTRY_BYTES);
+            ArchiveFile archive = new ArchiveFile(file, blockCount);
+            for (int i = 0; i < blockCount; i++) {
+                archive.firstIds[i] = index.getLong();
+                archive.lastIds[i] = index.getLong();
+                archive.offsets[i] = index.getLong();
+                archive.compressedLengths[i] = index.getInt();
+                archive.rawLengths[i] = index.getInt();
+                archive.checksums[i] = index.getInt();
+            }
+            return archive;
+        }
+    }
+
+    long firstId() {
+        return firstIds[0];
+    }
+
+    long lastId() {
+        return lastIds[lastIds.length - 1];
+    }
+
+    int blockCount() {
+        return firstIds.length;
+    }
+
+    /**
+     * Appends messages with an id above {@code afterId}, oldest first, until
+     * {@code out} holds {@code limit} entries. Returns the number of blocks read.
+     */
+    int readAfter(String roomId, long afterId, int limit, List<ChatMessage> out) throws IOException {
+        int block = firstBlockEndingAfter(afterId);
+        if (block < 0) {
+            return 0;
+        }
+        int blocksRead = 0;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            for (; block < firstIds.length && out.size() < limit; block++) {
+                ByteBuffer records = readBlock(channel, block);
+                blocksRead++;
+                while (records.hasRemaining() && out.size() < limit) {
+                    ChatMessage message = readRecord(records, roomId);
+                    if (message.getId() > afterId) {
+                        out.add(message);
+                    }
+                }
+            }
+        }
+        return blocksRead;
+    }
+
+    /**
+     * Appends messages with an id below {@code beforeId}, newest first, until
+     * {@code out} holds {@code limit} entries. Returns the number of blocks read.
+     */
+    int readBefore(String roomId, long beforeId, int limit, List<ChatMessage> out) throws IOException {
+        int block = lastBlockStartingBefore(beforeId);
+        if (block < 0) {
+            return 0;
+        }
+        int blocksRead = 0;
+        List<ChatMessage> decoded = new ArrayList<>();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            for (; block >= 0 && out.size() < limit; block--) {
+                ByteBuffer records = readBlock(channel, block);
+                blocksRead++;
+                decoded.clear();
+                while (records.hasRemaining()) {
+                    ChatMessage message = readRecord(records, roomId);
+                    if (message.getId() >= beforeId) {
+                        break;
+                    }
+                    decoded.add(message);
+                }
+                for (int i = decoded.size() - 1; i >= 0 && out.size() < limit; i--) {
+                    out.add(decoded.get(i));
+                }
+            }
+        }
+        return blocksRead;
+    }
+
+    private int firstBlockEndingAfter(long afterId) {
+        int low = 0;
+        int high = lastIds.length - 1;
+        int found = -1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (lastIds[mid] > afterId) {
+                found = mid;
+                high = mid - 1;
+            } else {
+                low = mid + 1;
+            }
+        }
+        return found;
+    }
+
+    private int lastBlockStartingBefore(long beforeId) {
+        int low = 0;
+        int high = firstIds.length - 1;
+        int found = -1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (firstIds[mid] < beforeId) {
+                found = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return found;
+    }
+
+    private ByteBuffer readBlock(FileChannel channel, int block) throws IOException {
+        ByteBuffer compressed = readFully(channel, offsets[block], compressedLengths[block]);
+        CRC32 crc = new CRC32();
+        crc.update(compressed.duplicate());
+        if ((int) crc.getValue() != checksums[block]) {
+            throw new IOException("Archive " + file + " block " + block + " fails its checksum");
+        }
+        byte[] raw = new byte[rawLengths[block]];
+        LZ4SafeDecompressor decompressor = LZ4.safeDecompressor();
+        int length = decompressor.decompress(compressed.array(), 0, compressedLengths[block], raw, 0, raw.length);
+        if (length != raw.length) {
+            throw new IOException("Archive " + file + " block " + block + " has an unexpected length");
+        }
+        return ByteBuffer.wrap(raw);
+    }
+
+    private static ByteBuffer readFully(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of archive");
+            }
+        }
+        return buffer.flip();
+    }
+
+    private static void writeRecord(DataOutputStream out, ChatMessage message) throws IOException {
+        byte[] sender = message.getSenderUsername().getBytes(StandardCharsets.UTF_8);
+        byte[] content = message.getContent().getBytes(StandardCharsets.UTF_8);
+        out.writeLong(message.getId());
+        Instant timestamp = message.getTimestamp().toInstant(ZoneOffset.UTC);
+        out.writeLong(timestamp.getEpochSecond() * 1_000_000L + timestamp.getNano() / 1_000);
+        out.writeShort(sender.length);
+        out.write(sender);
+        out.writeInt(content.length);
+        out.write(content);
+    }
+
+    private static ChatMessage readRecord(ByteBuffer records, String roomId) {
+        ChatMessage message = new ChatMessage();
+        message.setId(records.getLong());
+        long micros = records.getLong();
+        message.setTimestamp(LocalDateTime.ofEpochSecond(Math.floorDiv(micros, 1_000_000L),
+                (int) Math.floorMod(micros, 1_000_000L) * 1_000, ZoneOffset.UTC));
+        message.setSenderUsername(readString(records, records.getShort() & 0xFFFF));
+        message.setContent(readString(records, records.getInt()));
+        message.setChatRoomId(roomId);
+        return message;
+    }
+
+    private static String readString(ByteBuffer records, int length) {
+        String value = new String(records.array(), records.arrayOffset() + records.position(), length,
+                StandardCharsets.UTF_8);
+        records.position(records.position() + length);
+        return value;
+    }
+}
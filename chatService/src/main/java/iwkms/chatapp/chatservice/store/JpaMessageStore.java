@@ -0,0 +1,64 @@
+package iwkms.chatapp.chatservice.store;
+
+import iwkms.chatapp.chatservice.model.ChatMessage;
+import iwkms.chatapp.chatservice.repository.ChatMessageRepository;
+import iwkms.chatapp.chatservice.service.ChatMessagePersister;
+import org.springframework.data.domain.Limit;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Row per message in PostgreSQL, written directly or, with write-behind
+ * enabled, in batches by the {@link ChatMessagePersister}.
+ *
+ * <p>History is read in {@link #TIMESTAMP_ORDER} with one range scan on
+ * {@code (chat_room_id, timestamp, id)}. {@code chat_messages} is partitioned
+ * by month on {@code timestamp}, so a cursor's timestamp also lets PostgreSQL
+ * skip the partitions above it, and the latest page stops in the newest
+ * partition that fills it.
+ */
+public class JpaMessageStore implements MessageStore {
+    private final ChatMessageRepository chatMessageRepository;
+    private final ChatMessagePersister chatMessagePersister;
+
+    public JpaMessageStore(ChatMessageRepository chatMessageRepository,
+                           ChatMessagePersister chatMessagePersister) {
+        this.chatMessageRepository = chatMessageRepository;
+        this.chatMessagePersister = chatMessagePersister;
+    }
+
+    @Override
+    public ChatMessage save(ChatMessage message) {
+        return chatMessagePersister.isEnabled()
+                ? chatMessagePersister.enqueue(message)
+                : chatMessageRepository.save(message);
+    }
+
+    @Override
+    public void saveAll(List<ChatMessage> messages) {
+        chatMessageRepository.saveAllInBatches(messages);
+    }
+
+    @Override
+    public List<ChatMessage> findLatest(String chatRoomId, Limit limit) {
+        return chatMessageRepository.findLatest(chatRoomId, limit.max());
+    }
+
+    @Override
+    public List<ChatMessage> findBefore(String chatRoomId, LocalDateTime timestamp, long beforeId, Limit limit) {
+        return chatMessageRepository.findBefore(chatRoomId, timestamp, beforeId, limit.max());
+    }
+
+    @Override
+    public List<ChatMessage> findAfter(String chatRoomId, LocalDateTime timestamp, long afterId, Limit limit) {
+        return chatMessageRepository.findAfter(chatRoomId, timestamp, afterId, limit.max());
+    }
+
+    /** A server-side cursor fetching {@link #STREAM_PAGE_SIZE} rows at a time. */
+    @Override
+    public Stream<ChatMessage> streamAfter(String chatRoomId, long afterId) {
+        return chatMessageRepository.streamAfter(chatRoomId, afterId, STREAM_PAGE_SIZE);
+    }
+}
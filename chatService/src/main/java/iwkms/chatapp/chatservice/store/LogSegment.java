@@ -0,0 +1,263 @@
+package iwkms.chatapp.chatservice.store;
+
+import iwkms.chatapp.chatservice.model.ChatMessage;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * One preallocated, memory-mapped file of a room's log. Records are appended
+ * back to back:
+ * <pre>
+ * int    body length (0 marks the end of the data)
+ * int    CRC32 of the body
+ * long   id
+ * long   timestamp, epoch milliseconds
+ * u16    sender length, sender (UTF-8)
+ * int    content length, content (UTF-8)
+ * </pre>
+ * The length is written last, so a record torn by a crash reads as the end
+ * of the segment or fails its checksum; either way recovery stops there.
+ *
+ * <p>Every {@code indexInterval}-th record's id and position go into a sparse
+ * in-memory index, rebuilt by the recovery scan when the segment is opened.
+ * Reads scan the mapping in place and copy only the sender and content of
+ * each record into new strings. Not thread-safe except for
+ * {@link #force()}; {@link RoomLog} serializes access.
+ */
+final class LogSegment {
+    static final String SUFFIX = ".log";
+    static final int HEADER_BYTES = 8;
+    private static final int FIXED_BODY_BYTES = 8 + 8 + 2 + 4;
+    private static final int MAX_SENDER_BYTES = 0xFFFF;
+
+    final long baseId;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final int indexInterval;
+
+    private volatile int writePosition;
+    private int syncedPosition;
+    private int recordCount;
+    private long[] indexIds = new long[16];
+    private int[] indexPositions = new int[16];
+    private int indexSize;
+
+    private LogSegment(long baseId, FileChannel channel, MappedByteBuffer buffer, int indexInterval) {
+        this.baseId = baseId;
+        this.channel = channel;
+        this.buffer = buffer;
+        this.indexInterval = indexInterval;
+    }
+
+    static Path fileName(Path directory, long baseId) {
+        return directory.resolve(String.format("%020d%s", baseId, SUFFIX));
+    }
+
+    static int recordSize(byte[] sender, byte[] content) {
+        return HEADER_BYTES + FIXED_BODY_BYTES + sender.length + content.length;
+    }
+
+    /**
+     * Opens or creates the segment file, mapping at least {@code capacity}
+     * bytes, and scans it to find the end of the valid data.
+     */
+    static LogSegment open(Path file, long baseId, int capacity, int indexInterval) throws IOException {
+        FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            long size = Math.min(Integer.MAX_VALUE, Math.max(channel.size(), capacity));
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            LogSegment segment = new LogSegment(baseId, channel, buffer, indexInterval);
+            segment.recover();
+            return segment;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @return {@code false} if the record does not fit into the rest of the segment
+     */
+    boolean append(long id, long timestampMillis, byte[] sender, byte[] content) {
+        if (sender.length > MAX_SENDER_BYTES) {
+            throw new IllegalArgumentException("Имя отправителя слишком длинное");
+        }
+        int position = writePosition;
+        int bodyLength = FIXED_BODY_BYTES + sender.length + content.length;
+        if ((long) position + HEADER_BYTES + bodyLength > buffer.capacity()) {
+            return false;
+        }
+        int body = position + HEADER_BYTES;
+        buffer.putLong(body, id);
+        buffer.putLong(body + 8, timestampMillis);
+        buffer.putShort(body + 16, (short) sender.length);
+        buffer.put(body + 18, sender);
+        buffer.putInt(body + 18 + sender.length, content.length);
+        buffer.put(body + 22 + sender.length, content);
+        buffer.putInt(position + 4, checksum(body, bodyLength));
+        buffer.putInt(position, bodyLength);
+        track(id, position);
+        writePosition = body + bodyLength;
+        return true;
+    }
+
+    /**
+     * Messages with an id above {@code afterId} in ascending order, added to
+     * {@code out} until it holds {@code limit} entries.
+     */
+    void readAfter(String roomId, long afterId, int limit, List<ChatMessage> out) {
+        int end = writePosition;
+        int position = floorIndexPosition(afterId);
+        while (position < end && out.size() < limit) {
+            if (idAt(position) > afterId) {
+                out.add(read(roomId, position));
+            }
+            position = next(position);
+        }
+    }
+
+    /**
+     * Messages with an id below {@code beforeId} in descending order, added to
+     * {@code out} until it holds {@code limit} entries. Walks the sparse index
+     * backwards one block at a time.
+     */
+    void readBefore(String roomId, long beforeId, int limit, List<ChatMessage> out) {
+        int end = writePosition;
+        int block = floorIndexBlock(beforeId - 1);
+        List<ChatMessage> blockMessages = new ArrayList<>(indexInterval);
+        for (; block >= 0 && out.size() < limit; block--) {
+            int position = indexPositions[block];
+            int blockEnd = block + 1 < indexSize ? indexPositions[block + 1] : end;
+            blockMessages.clear();
+            while (position < blockEnd) {
+                if (idAt(position) < beforeId) {
+                    blockMessages.add(read(roomId, position));
+                }
+                position = next(position);
+            }
+            for (int i = blockMessages.size() - 1; i >= 0 && out.size() < limit; i--) {
+                out.add(blockMessages.get(i));
+            }
+        }
+    }
+
+    boolean isEmpty() {
+        return recordCount == 0;
+    }
+
+    int getWritePosition() {
+        return writePosition;
+    }
+
+    /**
+     * Flushes everything appended since the last call to the storage device.
+     */
+    synchronized void force() {
+        int end = writePosition;
+        if (end > syncedPosition) {
+            buffer.force(syncedPosition, end - syncedPosition);
+            syncedPosition = end;
+        }
+    }
+
+    void close() throws IOException {
+        force();
+        channel.close();
+    }
+
+    private void recover() {
+        int position = 0;
+        while (position + HEADER_BYTES <= buffer.capacity()) {
+            int bodyLength = buffer.getInt(position);
+            int body = position + HEADER_BYTES;
+            if (bodyLength < FIXED_BODY_BYTES || bodyLength > buffer.capacity() - body
+                    || buffer.getInt(position + 4) != checksum(body, bodyLength)) {
+                break;
+            }
+            track(buffer.getLong(body), position);
+            position = body + bodyLength;
+        }
+        writePosition = position;
+        syncedPosition = position;
+    }
+
+    private void track(long id, int position) {
+        if (recordCount++ % indexInterval == 0) {
+            if (indexSize == indexIds.length) {
+                indexIds = Arrays.copyOf(indexIds, indexSize * 2);
+                indexPositions = Arrays.copyOf(indexPositions, indexSize * 2);
+            }
+            indexIds[indexSize] = id;
+            indexPositions[indexSize] = position;
+            indexSize++;
+        }
+    }
+
+    /** Last index block whose first id is at most {@code id}, or -1. */
+    private int floorIndexBlock(long id) {
+        int low = 0;
+        int high = indexSize - 1;
+        int found = -1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (indexIds[mid] <= id) {
+                found = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return found;
+    }
+
+    private int floorIndexPosition(long id) {
+        int block = floorIndexBlock(id);
+        return block < 0 ? 0 : indexPositions[block];
+    }
+
+    private long idAt(int position) {
+        return buffer.getLong(position + HEADER_BYTES);
+    }
+
+    private int next(int position) {
+        return position + HEADER_BYTES + buffer.getInt(position);
+    }
+
+    private ChatMessage read(String roomId, int position) {
+        int body = position + HEADER_BYTES;
+        int senderLength = buffer.getShort(body + 16) & 0xFFFF;
+        int contentLength = buffer.getInt(body + 18 + senderLength);
+        ChatMessage message = new ChatMessage();
+        message.setId(buffer.getLong(body));
+        message.setTimestamp(LocalDateTime.ofInstant(Instant.ofEpochMilli(buffer.getLong(body + 8)), ZoneOffset.UTC));
+        message.setSenderUsername(string(body + 18, senderLength));
+        message.setChatRoomId(roomId);
+        message.setContent(string(body + 22 + senderLength, contentLength));
+        return message;
+    }
+
+    private String string(int position, int length) {
+        byte[] bytes = new byte[length];
+        buffer.get(position, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private int checksum(int position, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(buffer.slice(position, length));
+        return (int) crc.getValue();
+    }
+}
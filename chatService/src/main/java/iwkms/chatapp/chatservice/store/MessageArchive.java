@@ -0,0 +1,158 @@
+package iwkms.chatapp.chatservice.store;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import iwkms.chatapp.chatservice.model.ChatMessage;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cold tier of the message history: per-room directories of immutable
+ * {@link ArchiveFile}s, each holding a contiguous id range that has been moved
+ * out of {@code chat_messages}. A room's file list is loaded on first use and
+ * replaced as a whole when a file is added, so readers never lock.
+ *
+ * <p>The files live on this node's disk while the rows are deleted from the
+ * shared database, so other nodes could not read them: the archive refuses to
+ * start unless {@code chat.cluster.fan-out} is {@code local}.
+ */
+@Component
+public class MessageArchive implements MeterBinder {
+    private static final ArchiveFile[] NO_FILES = new ArchiveFile[0];
+
+    private final boolean enabled;
+    private final Path directory;
+    private final int blockBytes;
+    private final ConcurrentHashMap<String, ArchiveFile[]> rooms = new ConcurrentHashMap<>();
+
+    private final LongAdder archivedCount = new LongAdder();
+    private final LongAdder blocksRead = new LongAdder();
+
+    @Autowired
+    public MessageArchive(@Value("${chat.archive.enabled:false}") boolean enabled,
+                          @Value("${chat.archive.directory:data/archive}") String directory,
+                          @Value("${chat.archive.block-bytes:65536}") int blockBytes,
+                          @Value("${chat.cluster.fan-out:local}") String clusterFanOut) {
+        if (enabled && !"local".equals(clusterFanOut)) {
+            throw new IllegalStateException("chat.archive.enabled требует chat.cluster.fan-out=local: "
+                    + "архив хранится на диске одного узла");
+        }
+        this.enabled = enabled;
+        this.directory = Path.of(directory);
+        this.blockBytes = Math.max(1024, blockBytes);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Highest archived id of the room, or 0 if nothing has been archived.
+     */
+    public long getLastArchivedId(String roomId) {
+        ArchiveFile[] files = files(roomId);
+        return files.length == 0 ? 0 : files[files.length - 1].lastId();
+    }
+
+    /**
+     * Writes {@code messages} (one room, ascending ids above the last archived
+     * id) as a new archive file and makes it visible to readers.
+     */
+    public synchronized void append(String roomId, List<ChatMessage> messages) {
+        if (messages.isEmpty()) {
+            return;
+        }
+        ArchiveFile[] files = files(roomId);
+        try {
+            Path roomDirectory = RoomLog.directoryFor(directory, roomId);
+            Files.createDirectories(roomDirectory);
+            ArchiveFile written = ArchiveFile.write(roomDirectory, messages, blockBytes);
+            ArchiveFile[] updated = Arrays.copyOf(files, files.length + 1);
+            updated[files.length] = written;
+            rooms.put(roomId, updated);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось записать архив комнаты " + roomId, e);
+        }
+        archivedCount.add(messages.size());
+    }
+
+    /** Archived messages with an id below {@code beforeId}, newest first. */
+    public List<ChatMessage> findBefore(String roomId, long beforeId, int limit) {
+        ArchiveFile[] files = files(roomId);
+        List<ChatMessage> result = new ArrayList<>(Math.min(limit, 256));
+        try {
+            for (int i = files.length - 1; i >= 0 && result.size() < limit; i--) {
+                if (files[i].firstId() < beforeId) {
+                    blocksRead.add(files[i].readBefore(roomId, beforeId, limit, result));
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось прочитать архив комнаты " + roomId, e);
+        }
+        return result;
+    }
+
+    /** Archived messages with an id above {@code afterId}, oldest first. */
+    public List<ChatMessage> findAfter(String roomId, long afterId, int limit) {
+        ArchiveFile[] files = files(roomId);
+        List<ChatMessage> result = new ArrayList<>(Math.min(limit, 256));
+        try {
+            for (int i = 0; i < files.length && result.size() < limit; i++) {
+                if (files[i].lastId() > afterId) {
+                    blocksRead.add(files[i].readAfter(roomId, afterId, limit, result));
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось прочитать архив комнаты " + roomId, e);
+        }
+        return result;
+    }
+
+    private ArchiveFile[] files(String roomId) {
+        if (!enabled) {
+            return NO_FILES;
+        }
+        return rooms.computeIfAbsent(roomId, this::load);
+    }
+
+    private ArchiveFile[] load(String roomId) {
+        Path roomDirectory = RoomLog.directoryFor(directory, roomId);
+        if (!Files.isDirectory(roomDirectory)) {
+            return NO_FILES;
+        }
+        List<ArchiveFile> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(roomDirectory, "*" + ArchiveFile.SUFFIX)) {
+            for (Path file : stream) {
+                files.add(ArchiveFile.open(file));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось открыть архив комнаты " + roomId, e);
+        }
+        files.sort(Comparator.comparingLong(ArchiveFile::firstId));
+        return files.toArray(NO_FILES);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("chat.archive.messages", archivedCount, LongAdder::sum)
+                .description("Messages moved from chat_messages to archive files")
+                .register(registry);
+        FunctionCounter.builder("chat.archive.blocks.read", blocksRead, LongAdder::sum)
+                .description("Archive blocks decompressed to answer history reads")
+                .register(registry);
+    }
+}
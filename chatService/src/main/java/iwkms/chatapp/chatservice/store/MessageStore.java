@@ -0,0 +1,84 @@
+package iwkms.chatapp.chatservice.store;
+
+import iwkms.chatapp.chatservice.model.ChatMessage;
+import org.springframework.data.domain.Limit;
+
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Where chat messages are kept. {@code ChatService} only talks to this
+ * interface; the engine is chosen with {@code chat.store.engine}.
+ * Ids are assigned by the store, but with the PostgreSQL store they are
+ * handed out in blocks per node, so they neither follow commit order nor, on a
+ * cluster, the order in which messages were posted. History is therefore read
+ * in {@link #historyOrder()}, which is timestamp-then-id unless the engine
+ * guarantees that a room's ids grow in append order.
+ *
+ * @see JpaMessageStore
+ * @see SegmentLogMessageStore
+ */
+public interface MessageStore {
+    /** Page size of {@link #streamAfter}, and the JDBC fetch size where it reads through a cursor. */
+    int STREAM_PAGE_SIZE = 1000;
+
+    /** Order of {@link #findSince}, and the default history order. */
+    Comparator<ChatMessage> TIMESTAMP_ORDER =
+            Comparator.comparing(ChatMessage::getTimestamp).thenComparingLong(ChatMessage::getId);
+
+    Comparator<ChatMessage> ID_ORDER = Comparator.comparingLong(ChatMessage::getId);
+
+    /**
+     * Stores a new message and returns it with its id set. An implementation
+     * may defer both until the surrounding transaction commits; the id is set
+     * on the returned instance before the caller's after-commit callbacks run.
+     */
+    ChatMessage save(ChatMessage message);
+
+    void saveAll(List<ChatMessage> messages);
+
+    /**
+     * Order of {@link #findLatest}, {@link #findBefore} and {@link #findAfter}.
+     * A history cursor holds the timestamp and id of a message, which is all
+     * either order needs to position a read.
+     */
+    default Comparator<ChatMessage> historyOrder() {
+        return TIMESTAMP_ORDER;
+    }
+
+    /** Newest first in {@link #historyOrder()}. */
+    List<ChatMessage> findLatest(String chatRoomId, Limit limit);
+
+    /**
+     * Messages positioned before the message {@code (timestamp, beforeId)} in
+     * {@link #historyOrder()}, newest first.
+     */
+    List<ChatMessage> findBefore(String chatRoomId, LocalDateTime timestamp, long beforeId, Limit limit);
+
+    /**
+     * Messages positioned after the message {@code (timestamp, afterId)} in
+     * {@link #historyOrder()}, oldest first.
+     */
+    List<ChatMessage> findAfter(String chatRoomId, LocalDateTime timestamp, long afterId, Limit limit);
+
+    /**
+     * Every message of the room with an id above {@code afterId}, in id order,
+     * read lazily so that memory use does not depend on the size of the room.
+     * The stream may hold database resources and must be closed; with the
+     * PostgreSQL store it has to be consumed inside a transaction.
+     */
+    Stream<ChatMessage> streamAfter(String chatRoomId, long afterId);
+
+    /**
+     * Messages positioned after {@code (timestamp, afterId)} in
+     * {@link #TIMESTAMP_ORDER}, oldest first. A message is timestamped just
+     * before it is written, so unlike its id the timestamp trails its commit by
+     * at most the length of the write. Where history is already in that order
+     * this is {@link #findAfter}.
+     */
+    default List<ChatMessage> findSince(String chatRoomId, LocalDateTime timestamp, long afterId, Limit limit) {
+        return findAfter(chatRoomId, timestamp, afterId, limit);
+    }
+}
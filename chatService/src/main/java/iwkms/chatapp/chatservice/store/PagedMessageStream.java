@@ -0,0 +1,56 @@
+package iwkms.chatapp.chatservice.store;
+
+import iwkms.chatapp.chatservice.model.ChatMessage;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.function.LongFunction;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * A lazy stream over pages fetched by keyset: each page is loaded with the id
+ * of the last message of the previous one, so only one page is held at a time.
+ */
+final class PagedMessageStream extends Spliterators.AbstractSpliterator<ChatMessage> {
+    private final LongFunction<List<ChatMessage>> nextPage;
+    private Iterator<ChatMessage> page = List.<ChatMessage>of().iterator();
+    private long lastId;
+    private boolean exhausted;
+
+    private PagedMessageStream(long afterId, LongFunction<List<ChatMessage>> nextPage) {
+        super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL);
+        this.lastId = afterId;
+        this.nextPage = nextPage;
+    }
+
+    /**
+     * @param nextPage messages above the given id in ascending id order; an
+     *                 empty page ends the stream
+     */
+    static Stream<ChatMessage> of(long afterId, LongFunction<List<ChatMessage>> nextPage) {
+        return StreamSupport.stream(new PagedMessageStream(afterId, nextPage), false);
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super ChatMessage> action) {
+        if (!page.hasNext()) {
+            if (exhausted) {
+                return false;
+            }
+            List<ChatMessage> messages = nextPage.apply(lastId);
+            if (messages.isEmpty()) {
+                exhausted = true;
+                return false;
+            }
+            page = messages.iterator();
+        }
+        ChatMessage message = page.next();
+        lastId = message.getId();
+        action.accept(message);
+        return true;
+    }
+}
@@ -0,0 +1,189 @@
+package iwkms.chatapp.chatservice.store;
+
+import iwkms.chatapp.chatservice.model.ChatMessage;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.LongSupplier;
+
+/**
+ * The segments of one room, oldest first. A segment is named after the first
+ * id it holds; when the active one is full a new one is started. Appends take
+ * the write lock, reads the read lock.
+ */
+final class RoomLog {
+    private final String roomId;
+    private final Path directory;
+    private final int segmentBytes;
+    private final int indexInterval;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final List<LogSegment> segments = new ArrayList<>();
+
+    private RoomLog(String roomId, Path directory, int segmentBytes, int indexInterval) {
+        this.roomId = roomId;
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        this.indexInterval = indexInterval;
+    }
+
+    /**
+     * Room ids are hex-encoded into the directory name, so any id is a safe
+     * file name and can be recovered from it.
+     */
+    static Path directoryFor(Path root, String roomId) {
+        return root.resolve(HexFormat.of().formatHex(roomId.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    static RoomLog open(Path root, String roomId, int segmentBytes, int indexInterval) throws IOException {
+        Path directory = directoryFor(root, roomId);
+        Files.createDirectories(directory);
+        RoomLog log = new RoomLog(roomId, directory, segmentBytes, indexInterval);
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + LogSegment.SUFFIX)) {
+            stream.forEach(files::add);
+        }
+        files.sort(Comparator.comparingLong(RoomLog::baseIdOf));
+        try {
+            for (Path file : files) {
+                log.segments.add(LogSegment.open(file, baseIdOf(file), segmentBytes, indexInterval));
+            }
+        } catch (IOException | RuntimeException e) {
+            log.close();
+            throw e;
+        }
+        return log;
+    }
+
+    /**
+     * Assigns the next id from {@code ids} under the room's lock, so ids grow
+     * in append order, and writes the message.
+     */
+    void append(ChatMessage message, LongSupplier ids, boolean sync) throws IOException {
+        byte[] sender = message.getSenderUsername().getBytes(StandardCharsets.UTF_8);
+        byte[] content = message.getContent().getBytes(StandardCharsets.UTF_8);
+        long timestampMillis = message.getTimestamp().toInstant(ZoneOffset.UTC).toEpochMilli();
+        lock.writeLock().lock();
+        try {
+            long id = ids.getAsLong();
+            LogSegment active = segments.isEmpty() ? null : segments.get(segments.size() - 1);
+            if (active == null || !active.append(id, timestampMillis, sender, content)) {
+                if (active != null) {
+                    active.force();
+                }
+                int capacity = Math.max(segmentBytes, LogSegment.recordSize(sender, content));
+                active = LogSegment.open(LogSegment.fileName(directory, id), id, capacity, indexInterval);
+                segments.add(active);
+                active.append(id, timestampMillis, sender, content);
+            }
+            if (sync) {
+                active.force();
+            }
+            message.setId(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    List<ChatMessage> after(long afterId, int limit) {
+        List<ChatMessage> result = new ArrayList<>(Math.min(limit, 256));
+        lock.readLock().lock();
+        try {
+            for (int i = Math.max(0, floorSegment(afterId)); i < segments.size() && result.size() < limit; i++) {
+                segments.get(i).readAfter(roomId, afterId, limit, result);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return result;
+    }
+
+    List<ChatMessage> before(long beforeId, int limit) {
+        List<ChatMessage> result = new ArrayList<>(Math.min(limit, 256));
+        lock.readLock().lock();
+        try {
+            for (int i = floorSegment(beforeId - 1); i >= 0 && result.size() < limit; i--) {
+                segments.get(i).readBefore(roomId, beforeId, limit, result);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return result;
+    }
+
+    /**
+     * Flushes the active segment. The lock is only held to find it, so
+     * appends continue while the flush is in progress.
+     */
+    void force() {
+        LogSegment active;
+        lock.readLock().lock();
+        try {
+            active = segments.isEmpty() ? null : segments.get(segments.size() - 1);
+        } finally {
+            lock.readLock().unlock();
+        }
+        if (active != null) {
+            active.force();
+        }
+    }
+
+    int getSegmentCount() {
+        lock.readLock().lock();
+        try {
+            return segments.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    void close() throws IOException {
+        lock.writeLock().lock();
+        try {
+            IOException failure = null;
+            for (LogSegment segment : segments) {
+                try {
+                    segment.close();
+                } catch (IOException e) {
+                    failure = e;
+                }
+            }
+            segments.clear();
+            if (failure != null) {
+                throw failure;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** Last segment whose base id is at most {@code id}, or -1. */
+    private int floorSegment(long id) {
+        int low = 0;
+        int high = segments.size() - 1;
+        int found = -1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (segments.get(mid).baseId <= id) {
+                found = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return found;
+    }
+
+    private static long baseIdOf(Path file) {
+        String name = file.getFileName().toString();
+        return Long.parseLong(name.substring(0, name.length() - LogSegment.SUFFIX.length()));
+    }
+}
@@ -0,0 +1,294 @@
+package iwkms.chatapp.chatservice.store;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import iwkms.chatapp.chatservice.model.ChatMessage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.data.domain.Limit;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.stream.Stream;
+
+/**
+ * Stores each room as an append-only log of memory-mapped segment files under
+ * {@code directory}, one subdirectory per room (see {@link RoomLog} and
+ * {@link LogSegment}). History reads come from the mapped segments without
+ * read calls, though each record is still copied into the message's strings.
+ * Rooms are opened on first use and stay open until shutdown.
+ *
+ * <p>A save inside a transaction is appended, and gets its id, only once the
+ * transaction commits, so a rollback leaves no record behind. Ids are taken
+ * under the room's lock as records are appended, so a room's ids grow in
+ * append order and history is read in {@link #ID_ORDER}: a cursor's id alone
+ * positions a read.
+ *
+ * <p>Durability follows {@link FsyncPolicy}: {@code ALWAYS} flushes before
+ * {@link #save} returns, {@code INTERVAL} flushes rooms written to in the last
+ * {@code fsyncIntervalMs} from a background thread, {@code OS} leaves write-back
+ * to the kernel and only flushes on shutdown.
+ */
+public class SegmentLogMessageStore implements MessageStore, SmartLifecycle, MeterBinder {
+    private static final Logger logger = LoggerFactory.getLogger(SegmentLogMessageStore.class);
+
+    static final int PHASE = SmartLifecycle.DEFAULT_PHASE - 4096;
+
+    public enum FsyncPolicy {
+        ALWAYS, INTERVAL, OS
+    }
+
+    private final Path directory;
+    private final LongSupplier ids;
+    private final int segmentBytes;
+    private final int indexInterval;
+    private final FsyncPolicy fsyncPolicy;
+    private final long fsyncIntervalMs;
+
+    private final ConcurrentHashMap<String, RoomLog> rooms = new ConcurrentHashMap<>();
+    private final Set<RoomLog> dirtyRooms = ConcurrentHashMap.newKeySet();
+    private volatile ScheduledExecutorService flusher;
+    private volatile boolean running;
+
+    private final LongAdder appendCount = new LongAdder();
+    private final LongAdder fsyncCount = new LongAdder();
+
+    public SegmentLogMessageStore(Path directory,
+                                  LongSupplier ids,
+                                  int segmentBytes,
+                                  int indexInterval,
+                                  FsyncPolicy fsyncPolicy,
+                                  long fsyncIntervalMs) {
+        this.directory = directory;
+        this.ids = ids;
+        this.segmentBytes = segmentBytes;
+        this.indexInterval = Math.max(1, indexInterval);
+        this.fsyncPolicy = fsyncPolicy;
+        this.fsyncIntervalMs = fsyncIntervalMs;
+    }
+
+    @Override
+    public ChatMessage save(ChatMessage message) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            append(message);
+            return message;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                append(message);
+            }
+        });
+        return message;
+    }
+
+    private void append(ChatMessage message) {
+        RoomLog log = room(message.getChatRoomId(), true);
+        try {
+            log.append(message, ids, fsyncPolicy == FsyncPolicy.ALWAYS);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось записать сообщение в журнал комнаты "
+                    + message.getChatRoomId(), e);
+        }
+        appendCount.increment();
+        if (fsyncPolicy == FsyncPolicy.ALWAYS) {
+            fsyncCount.increment();
+        } else if (fsyncPolicy == FsyncPolicy.INTERVAL) {
+            dirtyRooms.add(log);
+        }
+    }
+
+    @Override
+    public void saveAll(List<ChatMessage> messages) {
+        for (ChatMessage message : messages) {
+            save(message);
+        }
+    }
+
+    @Override
+    public Comparator<ChatMessage> historyOrder() {
+        return ID_ORDER;
+    }
+
+    @Override
+    public List<ChatMessage> findLatest(String chatRoomId, Limit limit) {
+        return before(chatRoomId, Long.MAX_VALUE, limit.max());
+    }
+
+    @Override
+    public List<ChatMessage> findBefore(String chatRoomId, LocalDateTime timestamp, long beforeId, Limit limit) {
+        return before(chatRoomId, beforeId, limit.max());
+    }
+
+    @Override
+    public List<ChatMessage> findAfter(String chatRoomId, LocalDateTime timestamp, long afterId, Limit limit) {
+        return after(chatRoomId, afterId, limit.max());
+    }
+
+    @Override
+    public Stream<ChatMessage> streamAfter(String chatRoomId, long afterId) {
+        return PagedMessageStream.of(afterId, id -> after(chatRoomId, id, STREAM_PAGE_SIZE));
+    }
+
+    /**
+     * Walks back from the newest record until it passes {@code timestamp}, as
+     * records are in append order; the cost grows with the messages since then.
+     */
+    @Override
+    public List<ChatMessage> findSince(String chatRoomId, LocalDateTime timestamp, long afterId, Limit limit) {
+        List<ChatMessage> newer = new ArrayList<>();
+        long beforeId = Long.MAX_VALUE;
+        while (true) {
+            List<ChatMessage> page = before(chatRoomId, beforeId, STREAM_PAGE_SIZE);
+            for (ChatMessage message : page) {
+                if (message.getTimestamp().isBefore(timestamp)) {
+                    return firstInTimestampOrder(newer, limit);
+                }
+                int byTimestamp = message.getTimestamp().compareTo(timestamp);
+                if (byTimestamp > 0 || message.getId() > afterId) {
+                    newer.add(message);
+                }
+            }
+            if (page.size() < STREAM_PAGE_SIZE) {
+                return firstInTimestampOrder(newer, limit);
+            }
+            beforeId = page.get(page.size() - 1).getId();
+        }
+    }
+
+    private static List<ChatMessage> firstInTimestampOrder(List<ChatMessage> messages, Limit limit) {
+        messages.sort(TIMESTAMP_ORDER);
+        return messages.size() > limit.max() ? messages.subList(0, limit.max()) : messages;
+    }
+
+    private List<ChatMessage> before(String chatRoomId, long beforeId, int limit) {
+        RoomLog log = room(chatRoomId, false);
+        return log == null ? List.of() : log.before(beforeId, limit);
+    }
+
+    private List<ChatMessage> after(String chatRoomId, long afterId, int limit) {
+        RoomLog log = room(chatRoomId, false);
+        return log == null ? List.of() : log.after(afterId, limit);
+    }
+
+    public int getOpenRoomCount() {
+        return rooms.size();
+    }
+
+    /**
+     * Open rooms are cached; a room without a directory is only created when
+     * {@code create} is set, so reads of unknown rooms leave no trace on disk.
+     */
+    private RoomLog room(String roomId, boolean create) {
+        RoomLog log = rooms.get(roomId);
+        if (log != null) {
+            return log;
+        }
+        if (!create && !Files.isDirectory(RoomLog.directoryFor(directory, roomId))) {
+            return null;
+        }
+        return rooms.computeIfAbsent(roomId, id -> {
+            try {
+                return RoomLog.open(directory, id, segmentBytes, indexInterval);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Не удалось открыть журнал комнаты " + id, e);
+            }
+        });
+    }
+
+    private void flushDirtyRooms() {
+        for (RoomLog log : dirtyRooms) {
+            dirtyRooms.remove(log);
+            try {
+                log.force();
+                fsyncCount.increment();
+            } catch (RuntimeException e) {
+                logger.error("Failed to flush message log", e);
+            }
+        }
+    }
+
+    @Override
+    public void start() {
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось создать каталог журнала сообщений " + directory, e);
+        }
+        if (fsyncPolicy == FsyncPolicy.INTERVAL) {
+            ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(task -> {
+                Thread thread = new Thread(task, "message-log-fsync");
+                thread.setDaemon(true);
+                return thread;
+            });
+            executor.scheduleWithFixedDelay(this::flushDirtyRooms, fsyncIntervalMs, fsyncIntervalMs,
+                    TimeUnit.MILLISECONDS);
+            flusher = executor;
+        }
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        ScheduledExecutorService executor = flusher;
+        if (executor != null) {
+            executor.shutdown();
+            try {
+                executor.awaitTermination(fsyncIntervalMs + 1000, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            flusher = null;
+        }
+        rooms.values().forEach(log -> {
+            try {
+                log.close();
+            } catch (IOException e) {
+                logger.error("Failed to close message log", e);
+            }
+        });
+        rooms.clear();
+        dirtyRooms.clear();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        return PHASE;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("chat.store.log.appends", appendCount, LongAdder::sum)
+                .register(registry);
+        FunctionCounter.builder("chat.store.log.fsyncs", fsyncCount, LongAdder::sum)
+                .description("Explicit flushes of message log segments")
+                .register(registry);
+        Gauge.builder("chat.store.log.rooms", this, SegmentLogMessageStore::getOpenRoomCount)
+                .description("Rooms with an open message log")
+                .register(registry);
+    }
+}
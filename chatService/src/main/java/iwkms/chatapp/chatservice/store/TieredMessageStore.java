@@ -0,0 +1,147 @@
+package iwkms.chatapp.chatservice.store;
+
+import iwkms.chatapp.chatservice.model.ChatMessage;
+import org.springframework.data.domain.Limit;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Puts the {@link MessageArchive} behind a hot store. Writes go to the hot
+ * store only. The archive holds every message of a room up to its last
+ * archived id and is read in id order; it only runs on a single node, where
+ * that is the order the ids were handed out. History therefore runs through
+ * the archived messages in id order and then through the rest of the room in
+ * the hot store's order, and a cursor at or below the last archived id points
+ * into the archive. A message briefly present in both tiers while it is being
+ * moved already belongs to the archive and is skipped in the hot store.
+ */
+public class TieredMessageStore implements MessageStore {
+    /** Below every timestamp, to read the hot store from its first message. */
+    private static final LocalDateTime START = LocalDateTime.of(1, 1, 1, 0, 0);
+
+    private final MessageStore hot;
+    private final MessageArchive archive;
+
+    public TieredMessageStore(MessageStore hot, MessageArchive archive) {
+        this.hot = hot;
+        this.archive = archive;
+    }
+
+    @Override
+    public ChatMessage save(ChatMessage message) {
+        return hot.save(message);
+    }
+
+    @Override
+    public void saveAll(List<ChatMessage> messages) {
+        hot.saveAll(messages);
+    }
+
+    /** The newest messages of a room are always in the hot store. */
+    @Override
+    public Comparator<ChatMessage> historyOrder() {
+        return hot.historyOrder();
+    }
+
+    @Override
+    public List<ChatMessage> findLatest(String chatRoomId, Limit limit) {
+        return findBefore(chatRoomId, null, Long.MAX_VALUE, limit);
+    }
+
+    @Override
+    public List<ChatMessage> findBefore(String chatRoomId, LocalDateTime timestamp, long beforeId, Limit limit) {
+        long lastArchivedId = archive.getLastArchivedId(chatRoomId);
+        if (beforeId <= lastArchivedId) {
+            return archive.findBefore(chatRoomId, beforeId, limit.max());
+        }
+        List<ChatMessage> recent = hotBefore(chatRoomId, timestamp, beforeId, limit, lastArchivedId);
+        if (lastArchivedId == 0 || recent.size() >= limit.max()) {
+            return recent;
+        }
+        List<ChatMessage> page = new ArrayList<>(recent);
+        page.addAll(archive.findBefore(chatRoomId, Long.MAX_VALUE, limit.max() - recent.size()));
+        return page;
+    }
+
+    @Override
+    public List<ChatMessage> findAfter(String chatRoomId, LocalDateTime timestamp, long afterId, Limit limit) {
+        long lastArchivedId = archive.getLastArchivedId(chatRoomId);
+        if (afterId > lastArchivedId) {
+            return hotAfter(chatRoomId, timestamp, afterId, limit, lastArchivedId);
+        }
+        List<ChatMessage> page = new ArrayList<>(archive.findAfter(chatRoomId, afterId, limit.max()));
+        if (page.size() < limit.max()) {
+            page.addAll(hotAfter(chatRoomId, START, 0, Limit.of(limit.max() - page.size()), lastArchivedId));
+        }
+        return page;
+    }
+
+    /**
+     * Only the archive's oldest messages are moved there, long before any
+     * client could still be syncing past them, so sync reads the hot store.
+     */
+    @Override
+    public List<ChatMessage> findSince(String chatRoomId, LocalDateTime timestamp, long afterId, Limit limit) {
+        return hot.findSince(chatRoomId, timestamp, afterId, limit);
+    }
+
+    /** Hot messages before the position, or the newest ones without a timestamp. */
+    private List<ChatMessage> hotBefore(String chatRoomId, LocalDateTime timestamp, long beforeId, Limit limit,
+                                        long lastArchivedId) {
+        List<ChatMessage> first = timestamp == null
+                ? hot.findLatest(chatRoomId, limit)
+                : hot.findBefore(chatRoomId, timestamp, beforeId, limit);
+        return unarchived(first, limit, lastArchivedId,
+                last -> hot.findBefore(chatRoomId, last.getTimestamp(), last.getId(), limit));
+    }
+
+    private List<ChatMessage> hotAfter(String chatRoomId, LocalDateTime timestamp, long afterId, Limit limit,
+                                       long lastArchivedId) {
+        return unarchived(hot.findAfter(chatRoomId, timestamp, afterId, limit), limit, lastArchivedId,
+                last -> hot.findAfter(chatRoomId, last.getTimestamp(), last.getId(), limit));
+    }
+
+    /**
+     * Drops the messages that are already archived from hot store pages,
+     * reading on from the last message of a full page until {@code limit}
+     * remain. Only a move in progress leaves such messages behind.
+     */
+    private static List<ChatMessage> unarchived(List<ChatMessage> page, Limit limit, long lastArchivedId,
+                                                Function<ChatMessage, List<ChatMessage>> nextPage) {
+        List<ChatMessage> result = new ArrayList<>(page.size());
+        while (true) {
+            for (ChatMessage message : page) {
+                if (message.getId() > lastArchivedId && result.size() < limit.max()) {
+                    result.add(message);
+                }
+            }
+            if (result.size() >= limit.max() || page.size() < limit.max()) {
+                return result;
+            }
+            page = nextPage.apply(page.get(page.size() - 1));
+        }
+    }
+
+    /**
+     * The archived part of the room page by page, then the hot store from the
+     * last archived id on. Files archived while the stream is read are left
+     * to the hot store, which still has their rows until they are deleted.
+     */
+    @Override
+    public Stream<ChatMessage> streamAfter(String chatRoomId, long afterId) {
+        long lastArchivedId = archive.getLastArchivedId(chatRoomId);
+        if (lastArchivedId <= afterId) {
+            return hot.streamAfter(chatRoomId, afterId);
+        }
+        Stream<ChatMessage> archived = PagedMessageStream.of(afterId, id -> archive
+                .findAfter(chatRoomId, id, STREAM_PAGE_SIZE).stream()
+                .filter(message -> message.getId() <= lastArchivedId)
+                .toList());
+        return Stream.concat(archived, hot.streamAfter(chatRoomId, lastArchivedId));
+    }
+}
@@ -0,0 +1,181 @@
+package iwkms.chatapp.chatservice.websocket;
+
+import iwkms.chatapp.chatservice.dto.ChatMessageWireDto;
+import org.springframework.util.MimeType;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact binary form of {@link ChatMessageWireDto}, sent instead of the JSON
+ * payload to sessions that ask for it on CONNECT. Version 1 layout:
+ * <pre>
+ * u8      version, 1
+ * varint  id
+ * varint  timestamp as epoch milliseconds
+ * ref     chatRoomId
+ * ref     senderUsername
+ * string  content
+ * </pre>
+ * Varints are unsigned LEB128; a string is a varint byte length followed by
+ * UTF-8. A ref is a varint tag: {@code 0} - a string follows and is not
+ * remembered; {@code 1} - a string follows and becomes the next entry of the
+ * session's table; {@code n >= 2} - table entry {@code n - 2}. Room ids and
+ * usernames therefore travel in full once per session and as one or two bytes
+ * after that. Encoder and decoder tables must see frames in the same order.
+ * Message timestamps are the server's local time and are converted in the
+ * JVM's default zone, so the epoch value names the actual instant.
+ */
+public final class BinaryMessageCodec {
+    public static final int VERSION = 1;
+    public static final MimeType MIME_TYPE =
+            new MimeType("application", "octet-stream", Map.of("schema", "chat-message-v1"));
+
+    private static final int TAG_LITERAL = 0;
+    private static final int TAG_DEFINE = 1;
+    private static final int TAG_FIRST_REFERENCE = 2;
+
+    private BinaryMessageCodec() {
+    }
+
+    /**
+     * Per-session encoder. Interns up to {@code maxEntries} distinct strings;
+     * later ones are sent as literals.
+     */
+    public static final class Encoder {
+        private final Map<String, Integer> table = new HashMap<>();
+        private final int maxEntries;
+
+        public Encoder(int maxEntries) {
+            this.maxEntries = maxEntries;
+        }
+
+        public synchronized byte[] encode(ChatMessageWireDto message) {
+            Output out = new Output(32 + message.content().length());
+            out.write(VERSION);
+            out.writeVarLong(message.id());
+            out.writeVarLong(message.timestamp().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli());
+            writeRef(out, message.chatRoomId());
+            writeRef(out, message.senderUsername());
+            out.writeString(message.content());
+            return out.toByteArray();
+        }
+
+        private void writeRef(Output out, String value) {
+            Integer index = table.get(value);
+            if (index != null) {
+                out.writeVarLong(TAG_FIRST_REFERENCE + index);
+            } else if (table.size() < maxEntries) {
+                table.put(value, table.size());
+                out.writeVarLong(TAG_DEFINE);
+                out.writeString(value);
+            } else {
+                out.writeVarLong(TAG_LITERAL);
+                out.writeString(value);
+            }
+        }
+    }
+
+    /**
+     * Client side of a session: the counterpart of {@link Encoder}.
+     */
+    public static final class Decoder {
+        private final List<String> table = new ArrayList<>();
+
+        public ChatMessageWireDto decode(byte[] frame) {
+            Input in = new Input(frame);
+            int version = in.read();
+            if (version != VERSION) {
+                throw new IllegalArgumentException("Неподдерживаемая версия формата сообщения: " + version);
+            }
+            long id = in.readVarLong();
+            LocalDateTime timestamp = LocalDateTime.ofInstant(Instant.ofEpochMilli(in.readVarLong()), ZoneId.systemDefault());
+            String roomId = readRef(in);
+            String sender = readRef(in);
+            String content = in.readString();
+            return new ChatMessageWireDto(id, sender, roomId, content, timestamp);
+        }
+
+        private String readRef(Input in) {
+            long tag = in.readVarLong();
+            if (tag == TAG_LITERAL) {
+                return in.readString();
+            }
+            if (tag == TAG_DEFINE) {
+                String value = in.readString();
+                table.add(value);
+                return value;
+            }
+            long index = tag - TAG_FIRST_REFERENCE;
+            if (index >= table.size()) {
+                throw new IllegalArgumentException("Неизвестная ссылка на строку: " + index);
+            }
+            return table.get((int) index);
+        }
+    }
+
+    private static final class Output extends ByteArrayOutputStream {
+        Output(int size) {
+            super(size);
+        }
+
+        void writeVarLong(long value) {
+            while ((value & ~0x7FL) != 0) {
+                write((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            write((int) value);
+        }
+
+        void writeString(String value) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarLong(bytes.length);
+            write(bytes, 0, bytes.length);
+        }
+    }
+
+    private static final class Input {
+        private final byte[] data;
+        private int position;
+
+        Input(byte[] data) {
+            this.data = data;
+        }
+
+        int read() {
+            if (position >= data.length) {
+                throw new IllegalArgumentException("Сообщение обрезано");
+            }
+            return data[position++] & 0xFF;
+        }
+
+        long readVarLong() {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = read();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IllegalArgumentException("Некорректное число в сообщении");
+        }
+
+        String readString() {
+            long length = readVarLong();
+            if (length > data.length - position) {
+                throw new IllegalArgumentException("Сообщение обрезано");
+            }
+            String value = new String(data, position, (int) length, StandardCharsets.UTF_8);
+            position += (int) length;
+            return value;
+        }
+    }
+}
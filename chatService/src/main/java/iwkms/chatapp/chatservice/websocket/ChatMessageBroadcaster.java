@@ -0,0 +1,123 @@
+package iwkms.chatapp.chatservice.websocket;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import iwkms.chatapp.chatservice.cluster.ClusterFanOut;
+import iwkms.chatapp.chatservice.dto.ChatMessageWireDto;
+import iwkms.chatapp.chatservice.model.ChatMessage;
+import iwkms.chatapp.chatservice.search.MessageSearchIndex;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeType;
+import org.springframework.util.MimeTypeUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * Publishes saved messages to their room topic. The message is written as a
+ * {@link ChatMessageWireDto} into a pooled buffer and sent as a ready-made JSON
+ * payload, so the broker passes the same bytes to every subscriber instead of
+ * the message converter serializing the entity on each send. The same bytes
+ * are then handed to the {@link ClusterFanOut} for subscribers connected to
+ * other nodes. With search enabled, every message another node relays is
+ * also added to this node's {@link MessageSearchIndex}, including rooms this
+ * node has no subscribers in, as the index only sees local saves otherwise.
+ */
+@Component
+public class ChatMessageBroadcaster {
+    private static final Logger logger = LoggerFactory.getLogger(ChatMessageBroadcaster.class);
+    public static final String TOPIC_PREFIX = "/topic/messages/";
+
+    private static final MimeType JSON = MimeTypeUtils.APPLICATION_JSON;
+    private static final int POOL_SIZE = 64;
+    private static final int INITIAL_BUFFER_SIZE = 512;
+    /** Buffers grown past this by an unusually large message are not returned to the pool. */
+    private static final int MAX_POOLED_BUFFER_SIZE = 64 * 1024;
+
+    private final SimpMessagingTemplate messagingTemplate;
+    private final ClusterFanOut clusterFanOut;
+    private final MessageSearchIndex messageSearchIndex;
+    private final ObjectWriter writer;
+    private final ObjectReader reader;
+    private final ArrayBlockingQueue<Buffer> pool = new ArrayBlockingQueue<>(POOL_SIZE);
+
+    @Autowired
+    public ChatMessageBroadcaster(SimpMessagingTemplate messagingTemplate,
+                                  ClusterFanOut clusterFanOut,
+                                  MessageSearchIndex messageSearchIndex,
+                                  ObjectMapper objectMapper) {
+        this.messagingTemplate = messagingTemplate;
+        this.clusterFanOut = clusterFanOut;
+        this.messageSearchIndex = messageSearchIndex;
+        this.writer = objectMapper.writerFor(ChatMessageWireDto.class);
+        this.reader = objectMapper.readerFor(ChatMessageWireDto.class);
+        clusterFanOut.setLocalDelivery(this::deliverLocally);
+        if (messageSearchIndex.isEnabled()) {
+            clusterFanOut.setRelayListener(this::indexRelayed);
+        }
+    }
+
+    public void broadcast(ChatMessage message) {
+        byte[] payload = encode(message);
+        deliverLocally(message.getChatRoomId(), payload);
+        clusterFanOut.publish(message.getChatRoomId(), payload);
+    }
+
+    /**
+     * Sends an encoded message to this node's subscribers of the room only.
+     */
+    public void deliverLocally(String roomId, byte[] payload) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setContentType(JSON);
+        accessor.setLeaveMutable(true);
+        messagingTemplate.send(TOPIC_PREFIX + roomId, MessageBuilder.createMessage(payload, accessor.getMessageHeaders()));
+    }
+
+    /** Indexes a message published by another node, which only indexes it in its own search index. */
+    private void indexRelayed(String roomId, byte[] payload) {
+        try {
+            ChatMessageWireDto wire = reader.readValue(payload);
+            messageSearchIndex.add(wire.toMessage());
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Could not index message relayed for room {}: {}", roomId, e.getMessage());
+        }
+    }
+
+    public byte[] encode(ChatMessage message) {
+        Buffer buffer = pool.poll();
+        if (buffer == null) {
+            buffer = new Buffer();
+        }
+        try {
+            writer.writeValue(buffer, ChatMessageWireDto.from(message));
+            return buffer.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось сериализовать сообщение " + message.getId(), e);
+        } finally {
+            if (buffer.capacity() <= MAX_POOLED_BUFFER_SIZE) {
+                buffer.reset();
+                pool.offer(buffer);
+            }
+        }
+    }
+
+    private static final class Buffer extends ByteArrayOutputStream {
+        Buffer() {
+            super(INITIAL_BUFFER_SIZE);
+        }
+
+        int capacity() {
+            return buf.length;
+        }
+    }
+}
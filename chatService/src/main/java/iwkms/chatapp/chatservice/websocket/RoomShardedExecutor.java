@@ -0,0 +1,165 @@
+package iwkms.chatapp.chatservice.websocket;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import iwkms.chatapp.chatservice.exception.ServiceOverloadedException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runs per-room work on a fixed set of single-threaded shards chosen by room
+ * id hash. Each shard has exactly one thread, so tasks for a room run one at a
+ * time in submission order, while rooms on different shards run in parallel.
+ * Shard queues are bounded; a full shard rejects with
+ * {@link ServiceOverloadedException}. Shard threads are created on
+ * {@link #start()}, so the executor can be restarted after a stop. On shutdown
+ * queued tasks are finished before the write-behind persister stops.
+ */
+@Component
+public class RoomShardedExecutor implements SmartLifecycle, MeterBinder {
+    private static final Logger logger = LoggerFactory.getLogger(RoomShardedExecutor.class);
+
+    static final int PHASE = SmartLifecycle.DEFAULT_PHASE - 2048;
+
+    private final int shardCount;
+    private final int queueCapacity;
+    private final long shutdownTimeoutMs;
+    private final long[] retiredCompletedCounts;
+    private final LongAdder rejectedCount = new LongAdder();
+    private volatile ThreadPoolExecutor[] shards;
+    private volatile boolean running;
+
+    @Autowired
+    public RoomShardedExecutor(@Value("${chat.websocket.ordering.shards:0}") int shardCount,
+                               @Value("${chat.websocket.ordering.queue-capacity:10000}") int queueCapacity,
+                               @Value("${chat.websocket.ordering.shutdown-timeout-ms:10000}") long shutdownTimeoutMs) {
+        this.shardCount = shardCount > 0 ? shardCount : Runtime.getRuntime().availableProcessors();
+        this.queueCapacity = queueCapacity;
+        this.shutdownTimeoutMs = shutdownTimeoutMs;
+        this.retiredCompletedCounts = new long[this.shardCount];
+    }
+
+    /**
+     * Queues {@code task} on the room's shard.
+     *
+     * @throws ServiceOverloadedException if the shard queue is full or the executor is not running
+     */
+    public void execute(String roomId, Runnable task) {
+        ThreadPoolExecutor[] current = shards;
+        if (!running || current == null) {
+            rejectedCount.increment();
+            throw new ServiceOverloadedException("Сервис сообщений недоступен, повторите попытку позже");
+        }
+        try {
+            current[shardOf(roomId)].execute(task);
+        } catch (RejectedExecutionException e) {
+            rejectedCount.increment();
+            throw new ServiceOverloadedException("Сервис перегружен, повторите попытку позже");
+        }
+    }
+
+    int shardOf(String roomId) {
+        int h = roomId.hashCode();
+        return Math.floorMod(h ^ (h >>> 16), shardCount);
+    }
+
+    public int getShardCount() {
+        return shardCount;
+    }
+
+    @Override
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        ThreadPoolExecutor[] previous = shards;
+        ThreadPoolExecutor[] created = new ThreadPoolExecutor[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            if (previous != null) {
+                retiredCompletedCounts[i] += previous[i].getCompletedTaskCount();
+            }
+            String threadName = "room-shard-" + i;
+            created[i] = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(queueCapacity),
+                    task -> new Thread(task, threadName),
+                    new ThreadPoolExecutor.AbortPolicy());
+        }
+        shards = created;
+        running = true;
+    }
+
+    @Override
+    public synchronized void stop() {
+        ThreadPoolExecutor[] current = shards;
+        running = false;
+        if (current == null) {
+            return;
+        }
+        for (ThreadPoolExecutor shard : current) {
+            shard.shutdown();
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(shutdownTimeoutMs);
+        try {
+            for (ThreadPoolExecutor shard : current) {
+                shard.awaitTermination(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (int i = 0; i < current.length; i++) {
+            if (!current[i].isTerminated()) {
+                logger.error("Room shard {} stopped with {} unprocessed messages", i, current[i].getQueue().size());
+                current[i].shutdownNow();
+            }
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        return PHASE;
+    }
+
+    private int queuedCount(int shard) {
+        ThreadPoolExecutor[] current = shards;
+        return current == null ? 0 : current[shard].getQueue().size();
+    }
+
+    private long completedCount(int shard) {
+        ThreadPoolExecutor[] current = shards;
+        return retiredCompletedCounts[shard] + (current == null ? 0 : current[shard].getCompletedTaskCount());
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        for (int i = 0; i < shardCount; i++) {
+            int shard = i;
+            Gauge.builder("chat.websocket.shard.queued", this, executor -> executor.queuedCount(shard))
+                    .tag("shard", String.valueOf(i))
+                    .description("Messages waiting on a room shard")
+                    .register(registry);
+            FunctionCounter.builder("chat.websocket.shard.completed", this, executor -> executor.completedCount(shard))
+                    .tag("shard", String.valueOf(i))
+                    .register(registry);
+        }
+        FunctionCounter.builder("chat.websocket.shard.rejected", rejectedCount, LongAdder::sum)
+                .description("Messages refused because their room shard was full")
+                .register(registry);
+    }
+}
@@ -0,0 +1,144 @@
+package iwkms.chatapp.chatservice.websocket;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.SubscribableChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.broker.AbstractBrokerMessageHandler;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.messaging.support.NativeMessageHeaderAccessor;
+
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-process broker for topic destinations, used in place of the simple
+ * broker's {@code /topic} handling. Subscriptions live in a
+ * {@link TopicSubscriptionRegistry}; a broadcast reads the subscriber array
+ * once and hands the same payload bytes to every session, so the message is
+ * serialized exactly once no matter how many subscribers there are.
+ *
+ * <p>With {@link #setPreservePublishOrder} each session gets its own ordered
+ * view of the client outbound channel, kept until the session disconnects, so
+ * broadcasts from different threads reach a session in the order they were
+ * published. Binary sessions depend on it: their encoder interns strings in
+ * send order, and a frame that overtakes an earlier one cannot be decoded.
+ *
+ * <p>CONNECT, heartbeats and {@code /queue} destinations are left to the simple
+ * broker running alongside this handler.
+ */
+public class StripedTopicBrokerMessageHandler extends AbstractBrokerMessageHandler implements MeterBinder {
+
+    private final TopicSubscriptionRegistry registry;
+    private final ConcurrentHashMap<String, MessageChannel> sessionChannels = new ConcurrentHashMap<>();
+
+    public StripedTopicBrokerMessageHandler(SubscribableChannel clientInboundChannel,
+                                            MessageChannel clientOutboundChannel,
+                                            SubscribableChannel brokerChannel,
+                                            Collection<String> destinationPrefixes,
+                                            int stripes) {
+        super(clientInboundChannel, clientOutboundChannel, brokerChannel, destinationPrefixes);
+        this.registry = new TopicSubscriptionRegistry(stripes);
+    }
+
+    public TopicSubscriptionRegistry getRegistry() {
+        return registry;
+    }
+
+    @Override
+    protected void startInternal() {
+        publishBrokerAvailableEvent();
+    }
+
+    @Override
+    protected void stopInternal() {
+        publishBrokerUnavailableEvent();
+    }
+
+    @Override
+    protected void handleMessageInternal(Message<?> message) {
+        MessageHeaders headers = message.getHeaders();
+        SimpMessageType messageType = SimpMessageHeaderAccessor.getMessageType(headers);
+        String destination = SimpMessageHeaderAccessor.getDestination(headers);
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(headers);
+
+        if (SimpMessageType.MESSAGE.equals(messageType)) {
+            if (destination != null && checkDestinationPrefix(destination)) {
+                broadcast(destination, message);
+            }
+        } else if (SimpMessageType.SUBSCRIBE.equals(messageType)) {
+            String subscriptionId = SimpMessageHeaderAccessor.getSubscriptionId(headers);
+            if (sessionId != null && subscriptionId != null
+                    && destination != null && checkDestinationPrefix(destination)) {
+                registry.subscribe(sessionId, subscriptionId, destination);
+            }
+        } else if (SimpMessageType.UNSUBSCRIBE.equals(messageType)) {
+            String subscriptionId = SimpMessageHeaderAccessor.getSubscriptionId(headers);
+            if (sessionId != null && subscriptionId != null) {
+                registry.unsubscribe(sessionId, subscriptionId);
+            }
+        } else if (SimpMessageType.DISCONNECT.equals(messageType)) {
+            if (sessionId != null) {
+                registry.unsubscribeAll(sessionId);
+                sessionChannels.remove(sessionId);
+            }
+        }
+    }
+
+    private void broadcast(String destination, Message<?> message) {
+        TopicSubscriptionRegistry.Subscription[] subscriptions = registry.getSubscriptions(destination);
+        if (subscriptions.length == 0) {
+            return;
+        }
+        MessageHeaders headers = message.getHeaders();
+        Object payload = message.getPayload();
+        Object contentType = headers.get(MessageHeaders.CONTENT_TYPE);
+        Object nativeHeaders = headers.get(NativeMessageHeaderAccessor.NATIVE_HEADERS);
+
+        for (TopicSubscriptionRegistry.Subscription subscription : subscriptions) {
+            SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+            accessor.setDestination(destination);
+            accessor.setSessionId(subscription.sessionId());
+            accessor.setSubscriptionId(subscription.subscriptionId());
+            if (contentType != null) {
+                accessor.setHeader(MessageHeaders.CONTENT_TYPE, contentType);
+            }
+            if (nativeHeaders != null) {
+                accessor.setHeader(NativeMessageHeaderAccessor.NATIVE_HEADERS, nativeHeaders);
+            }
+            accessor.setLeaveMutable(true);
+            try {
+                outboundChannel(subscription.sessionId())
+                        .send(MessageBuilder.createMessage(payload, accessor.getMessageHeaders()));
+            } catch (RuntimeException e) {
+                logger.error("Failed to send " + destination + " to session " + subscription.sessionId(), e);
+            }
+        }
+    }
+
+    private MessageChannel outboundChannel(String sessionId) {
+        if (!isPreservePublishOrder()) {
+            return getClientOutboundChannel();
+        }
+        return sessionChannels.computeIfAbsent(sessionId, this::getClientOutboundChannelForSession);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry meterRegistry) {
+        Gauge.builder("chat.websocket.broker.subscriptions", registry, TopicSubscriptionRegistry::getSubscriptionCount)
+                .description("Active topic subscriptions")
+                .register(meterRegistry);
+        Gauge.builder("chat.websocket.broker.destinations", registry, TopicSubscriptionRegistry::getDestinationCount)
+                .description("Topic destinations with at least one subscriber")
+                .register(meterRegistry);
+        Gauge.builder("chat.websocket.broker.subscriptions.max", registry,
+                        TopicSubscriptionRegistry::getMaxSubscriptionsPerDestination)
+                .description("Subscribers of the most subscribed topic destination")
+                .register(meterRegistry);
+    }
+}
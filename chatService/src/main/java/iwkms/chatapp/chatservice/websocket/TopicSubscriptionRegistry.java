@@ -0,0 +1,152 @@
+package iwkms.chatapp.chatservice.websocket;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Subscriber tables for topic destinations. Destinations are spread over a
+ * fixed number of stripes; each destination maps to a copy-on-write array of
+ * subscriptions, so fan-out reads a plain array without locking while
+ * subscribe and unsubscribe only contend within one stripe. Changes for one
+ * session run inside {@code compute} on its session entry, so the session
+ * table and the stripes cannot drift apart when a subscribe races with a
+ * disconnect.
+ */
+public class TopicSubscriptionRegistry {
+    static final Subscription[] NO_SUBSCRIPTIONS = new Subscription[0];
+
+    private final Stripe[] stripes;
+    private final int mask;
+    /**
+     * sessionId -> (subscriptionId -> destination), used for unsubscribe and
+     * disconnect. The inner maps are only touched inside {@code compute}.
+     */
+    private final ConcurrentHashMap<String, Map<String, String>> sessions = new ConcurrentHashMap<>();
+
+    public TopicSubscriptionRegistry(int stripeCount) {
+        int size = Integer.highestOneBit(Math.max(1, stripeCount - 1) << 1);
+        this.stripes = new Stripe[size];
+        for (int i = 0; i < size; i++) {
+            stripes[i] = new Stripe();
+        }
+        this.mask = size - 1;
+    }
+
+    public Subscription[] getSubscriptions(String destination) {
+        Subscription[] subscriptions = stripe(destination).subscribers.get(destination);
+        return subscriptions != null ? subscriptions : NO_SUBSCRIPTIONS;
+    }
+
+    public void subscribe(String sessionId, String subscriptionId, String destination) {
+        sessions.compute(sessionId, (id, subscriptions) -> {
+            Map<String, String> updated = subscriptions != null ? subscriptions : new HashMap<>();
+            String previous = updated.put(subscriptionId, destination);
+            if (previous != null) {
+                stripe(previous).remove(previous, sessionId, subscriptionId);
+            }
+            stripe(destination).add(destination, new Subscription(sessionId, subscriptionId));
+            return updated;
+        });
+    }
+
+    public void unsubscribe(String sessionId, String subscriptionId) {
+        sessions.computeIfPresent(sessionId, (id, subscriptions) -> {
+            String destination = subscriptions.remove(subscriptionId);
+            if (destination != null) {
+                stripe(destination).remove(destination, sessionId, subscriptionId);
+            }
+            return subscriptions.isEmpty() ? null : subscriptions;
+        });
+    }
+
+    public void unsubscribeAll(String sessionId) {
+        sessions.computeIfPresent(sessionId, (id, subscriptions) -> {
+            subscriptions.forEach((subscriptionId, destination) ->
+                    stripe(destination).remove(destination, sessionId, subscriptionId));
+            return null;
+        });
+    }
+
+    public int getSubscriptionCount() {
+        int count = 0;
+        for (Stripe stripe : stripes) {
+            for (Subscription[] subscriptions : stripe.subscribers.values()) {
+                count += subscriptions.length;
+            }
+        }
+        return count;
+    }
+
+    public int getDestinationCount() {
+        int count = 0;
+        for (Stripe stripe : stripes) {
+            count += stripe.subscribers.size();
+        }
+        return count;
+    }
+
+    public int getMaxSubscriptionsPerDestination() {
+        int max = 0;
+        for (Stripe stripe : stripes) {
+            for (Subscription[] subscriptions : stripe.subscribers.values()) {
+                max = Math.max(max, subscriptions.length);
+            }
+        }
+        return max;
+    }
+
+    private Stripe stripe(String destination) {
+        int h = destination.hashCode();
+        return stripes[(h ^ (h >>> 16)) & mask];
+    }
+
+    public record Subscription(String sessionId, String subscriptionId) {
+    }
+
+    private static final class Stripe {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final ConcurrentHashMap<String, Subscription[]> subscribers = new ConcurrentHashMap<>();
+
+        void add(String destination, Subscription subscription) {
+            lock.lock();
+            try {
+                Subscription[] current = subscribers.getOrDefault(destination, NO_SUBSCRIPTIONS);
+                Subscription[] updated = Arrays.copyOf(current, current.length + 1);
+                updated[current.length] = subscription;
+                subscribers.put(destination, updated);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void remove(String destination, String sessionId, String subscriptionId) {
+            lock.lock();
+            try {
+                Subscription[] current = subscribers.get(destination);
+                if (current == null) {
+                    return;
+                }
+                for (int i = 0; i < current.length; i++) {
+                    Subscription subscription = current[i];
+                    if (subscription.sessionId().equals(sessionId)
+                            && subscription.subscriptionId().equals(subscriptionId)) {
+                        if (current.length == 1) {
+                            subscribers.remove(destination);
+                        } else {
+                            Subscription[] updated = new Subscription[current.length - 1];
+                            System.arraycopy(current, 0, updated, 0, i);
+                            System.arraycopy(current, i + 1, updated, i, current.length - i - 1);
+                            subscribers.put(destination, updated);
+                        }
+                        return;
+                    }
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package iwkms.chatapp.chatservice.websocket;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.SubscribableChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.support.ExecutorSubscribableChannel;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.messaging.SessionConnectedEvent;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Connected STOMP sessions and the backlog of the client inbound and outbound
+ * channels. A session can produce more than one disconnect event, so sessions
+ * are tracked by id rather than with a plain counter.
+ */
+@Component
+public class WebSocketMetrics implements MeterBinder {
+    private final ObjectProvider<SubscribableChannel> clientInboundChannel;
+    private final ObjectProvider<SubscribableChannel> clientOutboundChannel;
+
+    private final Set<String> sessions = ConcurrentHashMap.newKeySet();
+    private final LongAdder connectCount = new LongAdder();
+
+    @Autowired
+    public WebSocketMetrics(@Qualifier("clientInboundChannel") ObjectProvider<SubscribableChannel> clientInboundChannel,
+                            @Qualifier("clientOutboundChannel") ObjectProvider<SubscribableChannel> clientOutboundChannel) {
+        this.clientInboundChannel = clientInboundChannel;
+        this.clientOutboundChannel = clientOutboundChannel;
+    }
+
+    @EventListener
+    public void onConnected(SessionConnectedEvent event) {
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(event.getMessage().getHeaders());
+        if (sessionId != null && sessions.add(sessionId)) {
+            connectCount.increment();
+        }
+    }
+
+    @EventListener
+    public void onDisconnect(SessionDisconnectEvent event) {
+        sessions.remove(event.getSessionId());
+    }
+
+    public int getSessionCount() {
+        return sessions.size();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("chat.websocket.sessions", this, WebSocketMetrics::getSessionCount)
+                .description("Connected STOMP sessions")
+                .register(registry);
+        FunctionCounter.builder("chat.websocket.connections", connectCount, LongAdder::sum)
+                .description("STOMP sessions opened since start")
+                .register(registry);
+        bindChannel(registry, "inbound", clientInboundChannel.getIfAvailable());
+        bindChannel(registry, "outbound", clientOutboundChannel.getIfAvailable());
+    }
+
+    private static void bindChannel(MeterRegistry registry, String name, SubscribableChannel channel) {
+        if (!(channel instanceof ExecutorSubscribableChannel executorChannel)
+                || !(executorChannel.getExecutor() instanceof ThreadPoolTaskExecutor executor)) {
+            return;
+        }
+        Gauge.builder("chat.websocket.channel.queued", executor, ThreadPoolTaskExecutor::getQueueSize)
+                .tag("channel", name)
+                .description("Frames waiting for a channel thread")
+                .register(registry);
+        Gauge.builder("chat.websocket.channel.active", executor, ThreadPoolTaskExecutor::getActiveCount)
+                .tag("channel", name)
+                .description("Channel threads currently handling a frame")
+                .register(registry);
+    }
+}
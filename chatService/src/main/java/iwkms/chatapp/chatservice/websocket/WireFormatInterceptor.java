@@ -0,0 +1,157 @@
+package iwkms.chatapp.chatservice.websocket;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import iwkms.chatapp.chatservice.dto.ChatMessageWireDto;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.messaging.support.NativeMessageHeaderAccessor;
+import org.springframework.stereotype.Component;
+import org.springframework.util.InvalidMimeTypeException;
+import org.springframework.util.MimeType;
+import org.springframework.util.MimeTypeUtils;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Negotiates the room message format per session and converts outgoing room
+ * messages for sessions that chose {@link BinaryMessageCodec}.
+ *
+ * <p>A client lists the formats it accepts, most preferred first, in the
+ * {@value #ACCEPT_HEADER} header of its CONNECT frame. Binary is only granted
+ * on the plain WebSocket endpoint, because SockJS transports carry text; every
+ * other session keeps JSON. Room messages are broadcast as JSON, so a binary
+ * session's copy is re-encoded here, and the decoded JSON is reused for the
+ * next subscriber of the same broadcast.
+ *
+ * <p>Registered on both client channels: CONNECT and DISCONNECT arrive on the
+ * inbound one, room messages leave through the outbound one.
+ */
+@Component
+public class WireFormatInterceptor implements ChannelInterceptor {
+    private static final Logger logger = LoggerFactory.getLogger(WireFormatInterceptor.class);
+
+    public static final String ACCEPT_HEADER = "accept-content-type";
+    public static final String NATIVE_TRANSPORT_ATTRIBUTE = WireFormatInterceptor.class.getName() + ".nativeTransport";
+
+    private final ObjectReader reader;
+    private final boolean binaryEnabled;
+    private final int maxInterned;
+    private final ConcurrentHashMap<String, BinaryMessageCodec.Encoder> binarySessions = new ConcurrentHashMap<>();
+    private final ThreadLocal<LastDecoded> lastDecoded = ThreadLocal.withInitial(LastDecoded::new);
+
+    @Autowired
+    public WireFormatInterceptor(ObjectMapper objectMapper,
+                                 @Value("${chat.websocket.wire.binary.enabled:false}") boolean binaryEnabled,
+                                 @Value("${chat.websocket.wire.binary.max-interned:1024}") int maxInterned) {
+        this.reader = objectMapper.readerFor(ChatMessageWireDto.class);
+        this.binaryEnabled = binaryEnabled;
+        this.maxInterned = maxInterned;
+    }
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        MessageHeaders headers = message.getHeaders();
+        SimpMessageType messageType = SimpMessageHeaderAccessor.getMessageType(headers);
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(headers);
+        if (sessionId == null) {
+            return message;
+        }
+        if (SimpMessageType.CONNECT.equals(messageType)) {
+            negotiate(sessionId, message);
+        } else if (SimpMessageType.DISCONNECT.equals(messageType)) {
+            binarySessions.remove(sessionId);
+        } else if (SimpMessageType.MESSAGE.equals(messageType)) {
+            BinaryMessageCodec.Encoder encoder = binarySessions.get(sessionId);
+            if (encoder != null) {
+                return toBinary(message, encoder);
+            }
+        }
+        return message;
+    }
+
+    public boolean isBinary(String sessionId) {
+        return binarySessions.containsKey(sessionId);
+    }
+
+    public int getBinarySessionCount() {
+        return binarySessions.size();
+    }
+
+    private void negotiate(String sessionId, Message<?> message) {
+        binarySessions.remove(sessionId);
+        if (!binaryEnabled) {
+            return;
+        }
+        Map<String, Object> attributes = SimpMessageHeaderAccessor.getSessionAttributes(message.getHeaders());
+        if (attributes == null || !Boolean.TRUE.equals(attributes.get(NATIVE_TRANSPORT_ATTRIBUTE))) {
+            return;
+        }
+        String accept = NativeMessageHeaderAccessor.getFirstNativeHeader(ACCEPT_HEADER, message.getHeaders());
+        if (accept == null) {
+            return;
+        }
+        List<MimeType> accepted;
+        try {
+            accepted = MimeTypeUtils.parseMimeTypes(accept);
+        } catch (InvalidMimeTypeException e) {
+            return;
+        }
+        for (MimeType mimeType : accepted) {
+            if (BinaryMessageCodec.MIME_TYPE.equals(mimeType)) {
+                binarySessions.put(sessionId, new BinaryMessageCodec.Encoder(maxInterned));
+                return;
+            }
+            if (MimeTypeUtils.APPLICATION_JSON.isCompatibleWith(mimeType)) {
+                return;
+            }
+        }
+    }
+
+    private Message<?> toBinary(Message<?> message, BinaryMessageCodec.Encoder encoder) {
+        String destination = SimpMessageHeaderAccessor.getDestination(message.getHeaders());
+        MimeType contentType = SimpMessageHeaderAccessor.getContentType(message.getHeaders());
+        if (destination == null || !destination.startsWith(ChatMessageBroadcaster.TOPIC_PREFIX)
+                || contentType == null || !MimeTypeUtils.APPLICATION_JSON.isCompatibleWith(contentType)
+                || !(message.getPayload() instanceof byte[] json)) {
+            return message;
+        }
+        ChatMessageWireDto decoded;
+        try {
+            decoded = decode(json);
+        } catch (IOException e) {
+            logger.warn("Could not re-encode message for {}, sending JSON", destination, e);
+            return message;
+        }
+        MessageHeaderAccessor accessor = MessageHeaderAccessor.getMutableAccessor(message);
+        accessor.setContentType(BinaryMessageCodec.MIME_TYPE);
+        return MessageBuilder.createMessage(encoder.encode(decoded), accessor.getMessageHeaders());
+    }
+
+    private ChatMessageWireDto decode(byte[] json) throws IOException {
+        LastDecoded last = lastDecoded.get();
+        if (last.payload != json) {
+            last.message = reader.readValue(json);
+            last.payload = json;
+        }
+        return last.message;
+    }
+
+    private static final class LastDecoded {
+        private byte[] payload;
+        private ChatMessageWireDto message;
+    }
+}
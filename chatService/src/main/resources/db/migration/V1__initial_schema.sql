@@ -0,0 +1,48 @@
+CREATE SEQUENCE chat_rooms_seq START WITH 1 INCREMENT BY 50;
+CREATE SEQUENCE chat_messages_seq START WITH 1 INCREMENT BY 50;
+
+CREATE TABLE chat_rooms (
+    id             BIGINT       NOT NULL PRIMARY KEY,
+    room_id        VARCHAR(255) NOT NULL UNIQUE,
+    name           VARCHAR(255) NOT NULL,
+    description    VARCHAR(255),
+    is_private     BOOLEAN      NOT NULL,
+    created_at     TIMESTAMP(6) NOT NULL,
+    owner_username VARCHAR(255) NOT NULL
+);
+
+CREATE TABLE chat_room_members (
+    chat_room_id BIGINT       NOT NULL REFERENCES chat_rooms (id),
+    username     VARCHAR(255) NOT NULL,
+    PRIMARY KEY (chat_room_id, username)
+);
+
+-- Range-partitioned by month on timestamp. The partition key has to be part
+-- of the primary key. Monthly partitions are named chat_messages_pYYYYMM and
+-- are created ahead of time by MessagePartitionMaintainer; rows outside every
+-- monthly range (e.g. imported history) land in the default partition.
+CREATE TABLE chat_messages (
+    id              BIGINT       NOT NULL,
+    sender_username VARCHAR(255) NOT NULL,
+    chat_room_id    VARCHAR(255) NOT NULL,
+    content         TEXT         NOT NULL,
+    timestamp       TIMESTAMP(6) NOT NULL,
+    PRIMARY KEY (id, timestamp)
+) PARTITION BY RANGE (timestamp);
+
+CREATE INDEX idx_chat_messages_room_id ON chat_messages (chat_room_id, id);
+
+CREATE TABLE chat_messages_default PARTITION OF chat_messages DEFAULT;
+
+DO $$
+DECLARE
+    month_start DATE := date_trunc('month', now())::date;
+BEGIN
+    FOR i IN 0..2 LOOP
+        EXECUTE format('CREATE TABLE chat_messages_p%s PARTITION OF chat_messages FOR VALUES FROM (%L) TO (%L)',
+                       to_char(month_start + make_interval(months => i), 'YYYYMM'),
+                       month_start + make_interval(months => i),
+                       month_start + make_interval(months => i + 1));
+    END LOOP;
+END
+$$;
@@ -0,0 +1,2 @@
+-- Reconnect sync reads a room in (timestamp, id) order, see MessageStore.findSince.
+CREATE INDEX idx_chat_messages_room_timestamp ON chat_messages (chat_room_id, timestamp, id);
@@ -0,0 +1,205 @@
+package iwkms.chatapp.chatservice.cluster;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ResultSetExtractor;
+
+import javax.sql.DataSource;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PostgresClusterFanOutTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private DataSource listenerDataSource;
+
+    private PostgresClusterFanOut fanOut;
+    private final List<String> delivered = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        fanOut = new PostgresClusterFanOut(jdbcTemplate, listenerDataSource, "chat_fanout_", 16, 50, 100);
+        fanOut.setLocalDelivery((roomId, payload) ->
+                delivered.add(roomId + "=" + new String(payload, StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    void publish_NotifiesRoomChannelWithNodeIdAndPayload() {
+        fanOut.publish("general", "{\"content\":\"Привет\"}".getBytes(StandardCharsets.UTF_8));
+
+        ArgumentCaptor<Object> args = ArgumentCaptor.forClass(Object.class);
+        verify(jdbcTemplate).query(eq("SELECT pg_notify(?, ?)"), any(ResultSetExtractor.class),
+                args.capture(), args.capture());
+        assertEquals(fanOut.channelFor("general"), args.getAllValues().get(0));
+        assertEquals(fanOut.getNodeId() + "\nm7\ngeneral{\"content\":\"Привет\"}", args.getAllValues().get(1));
+    }
+
+    @Test
+    void publish_LargePayload_IsSplitIntoOneStatement() {
+        fanOut.publish("general", json(PostgresClusterFanOut.MAX_NOTIFICATION_BYTES * 2));
+
+        ArgumentCaptor<String> sql = ArgumentCaptor.forClass(String.class);
+        verify(jdbcTemplate).query(sql.capture(), any(ResultSetExtractor.class), any(Object[].class));
+        assertEquals("SELECT pg_notify(?, ?), pg_notify(?, ?), pg_notify(?, ?)", sql.getValue());
+    }
+
+    @Test
+    void publish_PayloadNeedingTooManyParts_IsNotSent() {
+        fanOut.publish("general", json(PostgresClusterFanOut.MAX_NOTIFICATION_BYTES * PostgresClusterFanOut.MAX_PARTS));
+
+        verifyNoInteractions(jdbcTemplate);
+    }
+
+    @Test
+    void encode_SplitsBetweenCharactersWithinLimit() {
+        String content = "я😀".repeat(3000);
+        byte[] payload = content.getBytes(StandardCharsets.UTF_8);
+
+        List<String> parts = PostgresClusterFanOut.encode("node", 7, "general", payload);
+
+        assertTrue(parts.size() > 1);
+        for (String part : parts) {
+            assertTrue(part.getBytes(StandardCharsets.UTF_8).length <= PostgresClusterFanOut.MAX_NOTIFICATION_BYTES);
+        }
+    }
+
+    @Test
+    void handleNotification_SplitMessage_DeliveredOnceAllPartsArrive() {
+        fanOut.roomInterestChanged("general", true);
+        String content = "я😀".repeat(3000);
+        List<String> parts = PostgresClusterFanOut.encode("other-node", 7, "general",
+                content.getBytes(StandardCharsets.UTF_8));
+
+        for (int i = parts.size() - 1; i > 0; i--) {
+            fanOut.handleNotification(parts.get(i));
+        }
+        assertTrue(delivered.isEmpty());
+        fanOut.handleNotification(parts.get(0));
+
+        assertEquals(List.of("general=" + content), delivered);
+    }
+
+    @Test
+    void publishRoomChanged_NotifiesRoomChangesChannel() {
+        fanOut.publishRoomChanged("general");
+
+        verify(jdbcTemplate).query(eq("SELECT pg_notify(?, ?)"), any(ResultSetExtractor.class),
+                eq("chat_fanout_rooms"), eq(fanOut.getNodeId() + "\nr7\ngeneral"));
+    }
+
+    @Test
+    void handleNotification_RoomChange_ReachesListenerWithoutLocalSubscribers() {
+        List<String> changed = new ArrayList<>();
+        fanOut.setRoomChangeListener(new ClusterFanOut.RoomChangeListener() {
+            @Override
+            public void roomChanged(String roomId) {
+                changed.add(roomId);
+            }
+
+            @Override
+            public void allRoomsChanged() {
+            }
+        });
+
+        fanOut.handleNotification("other-node\nr7\ngeneral");
+
+        assertEquals(List.of("general"), changed);
+    }
+
+    @Test
+    void publish_DatabaseFailure_IsSwallowed() {
+        when(jdbcTemplate.query(anyString(), any(ResultSetExtractor.class), any(), any()))
+                .thenThrow(new DataAccessResourceFailureException("down"));
+
+        assertDoesNotThrow(() -> fanOut.publish("general", "{}".getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    void handleNotification_FromOtherNode_DeliversToInterestedRoom() {
+        fanOut.roomInterestChanged("general", true);
+
+        fanOut.handleNotification(notification("other-node", "general",
+                "{}".getBytes(StandardCharsets.UTF_8)));
+
+        assertEquals(List.of("general={}"), delivered);
+    }
+
+    @Test
+    void handleNotification_FromThisNode_IsIgnored() {
+        fanOut.roomInterestChanged("general", true);
+
+        fanOut.handleNotification(notification(fanOut.getNodeId(), "general",
+                "{}".getBytes(StandardCharsets.UTF_8)));
+
+        assertTrue(delivered.isEmpty());
+    }
+
+    @Test
+    void handleNotification_RoomWithoutLocalSubscribers_IsIgnored() {
+        fanOut.roomInterestChanged("general", true);
+        fanOut.roomInterestChanged("general", false);
+
+        fanOut.handleNotification(notification("other-node", "general",
+                "{}".getBytes(StandardCharsets.UTF_8)));
+
+        assertTrue(delivered.isEmpty());
+    }
+
+    @Test
+    void handleNotification_WithRelayListener_RelaysEveryRoomButDeliversInterestedOnly() {
+        List<String> relayed = new ArrayList<>();
+        fanOut.setRelayListener((roomId, payload) -> relayed.add(roomId));
+        fanOut.roomInterestChanged("general", true);
+
+        fanOut.handleNotification(notification("other-node", "general", "{}".getBytes(StandardCharsets.UTF_8)));
+        fanOut.handleNotification(notification("other-node", "random", "{}".getBytes(StandardCharsets.UTF_8)));
+        fanOut.handleNotification(notification(fanOut.getNodeId(), "random", "{}".getBytes(StandardCharsets.UTF_8)));
+
+        assertEquals(List.of("general", "random"), relayed);
+        assertEquals(List.of("general={}"), delivered);
+    }
+
+    @Test
+    void handleNotification_RoomIdContainingSeparator_IsParsed() {
+        fanOut.roomInterestChanged("a\nb", true);
+
+        fanOut.handleNotification(notification("other-node", "a\nb",
+                "{}".getBytes(StandardCharsets.UTF_8)));
+
+        assertEquals(List.of("a\nb={}"), delivered);
+    }
+
+    @Test
+    void handleNotification_Malformed_IsIgnored() {
+        fanOut.handleNotification("garbage");
+        fanOut.handleNotification("node\nNaN\nroom");
+        fanOut.handleNotification("node\n99\nroom");
+
+        assertTrue(delivered.isEmpty());
+    }
+
+    private static String notification(String nodeId, String roomId, byte[] payload) {
+        return PostgresClusterFanOut.encode(nodeId, 1, roomId, payload).get(0);
+    }
+
+    private static byte[] json(int size) {
+        return ("{\"content\":\"" + "x".repeat(size) + "\"}").getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,95 @@
+package iwkms.chatapp.chatservice.cluster;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+import org.springframework.web.socket.messaging.SessionUnsubscribeEvent;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class RoomInterestTrackerTest {
+
+    @Mock
+    private ClusterFanOut clusterFanOut;
+
+    private RoomInterestTracker tracker;
+
+    @BeforeEach
+    void setUp() {
+        tracker = new RoomInterestTracker(clusterFanOut);
+    }
+
+    @Test
+    void subscribe_FirstSubscriberOnly_SignalsInterest() {
+        tracker.onSubscribe(subscribeEvent("s1", "sub-0", "/topic/messages/general"));
+        tracker.onSubscribe(subscribeEvent("s2", "sub-0", "/topic/messages/general"));
+
+        verify(clusterFanOut, times(1)).roomInterestChanged("general", true);
+        assertEquals(1, tracker.getRoomCount());
+    }
+
+    @Test
+    void subscribe_OtherDestinations_AreIgnored() {
+        tracker.onSubscribe(subscribeEvent("s1", "sub-0", "/user/queue/errors"));
+
+        verifyNoInteractions(clusterFanOut);
+    }
+
+    @Test
+    void unsubscribe_LastSubscriber_DropsInterest() {
+        tracker.onSubscribe(subscribeEvent("s1", "sub-0", "/topic/messages/general"));
+        tracker.onSubscribe(subscribeEvent("s2", "sub-0", "/topic/messages/general"));
+
+        tracker.onUnsubscribe(unsubscribeEvent("s1", "sub-0"));
+        verify(clusterFanOut, never()).roomInterestChanged("general", false);
+
+        tracker.onUnsubscribe(unsubscribeEvent("s2", "sub-0"));
+        verify(clusterFanOut).roomInterestChanged("general", false);
+        assertEquals(0, tracker.getRoomCount());
+    }
+
+    @Test
+    void disconnect_ReleasesAllRoomsOfSession() {
+        tracker.onSubscribe(subscribeEvent("s1", "sub-0", "/topic/messages/general"));
+        tracker.onSubscribe(subscribeEvent("s1", "sub-1", "/topic/messages/random"));
+
+        tracker.onDisconnect(new SessionDisconnectEvent(this, disconnectMessage("s1"), "s1", CloseStatus.NORMAL));
+        tracker.onDisconnect(new SessionDisconnectEvent(this, disconnectMessage("s1"), "s1", CloseStatus.NORMAL));
+
+        verify(clusterFanOut).roomInterestChanged("general", false);
+        verify(clusterFanOut).roomInterestChanged("random", false);
+        assertEquals(0, tracker.getRoomCount());
+    }
+
+    private SessionSubscribeEvent subscribeEvent(String sessionId, String subscriptionId, String destination) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.SUBSCRIBE);
+        accessor.setSessionId(sessionId);
+        accessor.setSubscriptionId(subscriptionId);
+        accessor.setDestination(destination);
+        return new SessionSubscribeEvent(this, MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders()));
+    }
+
+    private SessionUnsubscribeEvent unsubscribeEvent(String sessionId, String subscriptionId) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.UNSUBSCRIBE);
+        accessor.setSessionId(sessionId);
+        accessor.setSubscriptionId(subscriptionId);
+        return new SessionUnsubscribeEvent(this, MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders()));
+    }
+
+    private Message<byte[]> disconnectMessage(String sessionId) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.DISCONNECT);
+        accessor.setSessionId(sessionId);
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+}
@@ -1,9 +1,18 @@
 package iwkms.chatapp.chatservice.controller;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import iwkms.chatapp.chatservice.dto.ChatMessageDeltaDto;
 import iwkms.chatapp.chatservice.dto.ChatMessageDto;
+import iwkms.chatapp.chatservice.dto.ChatMessageImportDto;
+import iwkms.chatapp.chatservice.dto.ChatMessageImportRequestDto;
+import iwkms.chatapp.chatservice.dto.ChatMessagePageDto;
+import iwkms.chatapp.chatservice.dto.ChatMessageSearchDto;
+import iwkms.chatapp.chatservice.dto.ChatMessageWireDto;
+import iwkms.chatapp.chatservice.exception.InvalidCursorException;
+import iwkms.chatapp.chatservice.exception.RateLimitExceededException;
 import iwkms.chatapp.chatservice.exception.UnauthorizedException;
 import iwkms.chatapp.chatservice.model.ChatMessage;
+import iwkms.chatapp.chatservice.ratelimit.MessageRateLimiter;
 import iwkms.chatapp.chatservice.repository.ChatMessageRepository;
 import iwkms.chatapp.chatservice.repository.ChatRoomRepository;
 import iwkms.chatapp.chatservice.service.ChatService;
@@ -23,6 +32,9 @@ import java.util.List;
 
 import static org.hamcrest.Matchers.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
@@ -43,6 +55,9 @@ class ChatControllerTest {
     @MockBean
     private ChatRoomRepository chatRoomRepository;
 
+    @MockBean
+    private MessageRateLimiter rateLimiter;
+
     private ObjectMapper objectMapper = new ObjectMapper();
     private ChatMessageDto messageDto;
     private ChatMessage message;
@@ -115,41 +130,161 @@ class ChatControllerTest {
         verify(chatService).saveMessage(any(ChatMessageDto.class));
     }
 
+    @Test
+    @WithMockUser(username = "testUser")
+    void sendMessage_NotAMember_ForbiddenWithoutSpendingToken() throws Exception {
+        doThrow(new UnauthorizedException("Вы не являетесь участником этой приватной комнаты"))
+                .when(chatService).checkCanPost(ROOM_ID, USER_NAME);
+
+        mockMvc.perform(post("/api/v1/messages")
+                .with(csrf())
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(messageDto)))
+                .andExpect(status().isForbidden());
+
+        verify(rateLimiter, never()).acquire(anyString(), anyString());
+        verify(chatService, never()).saveMessage(any(ChatMessageDto.class));
+    }
+
+    @Test
+    @WithMockUser(username = "testUser")
+    void sendMessage_RateLimited_TooManyRequests() throws Exception {
+        doThrow(new RateLimitExceededException("Слишком много сообщений, подождите немного", 1500))
+                .when(rateLimiter).acquire(USER_NAME, ROOM_ID);
+
+        mockMvc.perform(post("/api/v1/messages")
+                .with(csrf())
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(messageDto)))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().string("Retry-After", "2"));
+
+        verify(chatService, never()).saveMessage(any(ChatMessageDto.class));
+    }
+
     @Test
     @WithMockUser(username = "testUser")
     void getMessagesByRoom_Success() throws Exception {
         List<ChatMessage> messages = Arrays.asList(message);
-        when(chatService.getMessagesByChatRoom(ROOM_ID, USER_NAME)).thenReturn(messages);
+        when(chatService.getMessagePage(ROOM_ID, USER_NAME, null, null, null))
+                .thenReturn(new ChatMessagePageDto(messages, "next", null));
 
         mockMvc.perform(get("/api/v1/messages/{chatRoomId}", ROOM_ID))
                 .andExpect(status().isOk())
-                .andExpect(jsonPath("$", hasSize(1)))
-                .andExpect(jsonPath("$[0].senderUsername", is(USER_NAME)))
-                .andExpect(jsonPath("$[0].content", is(MESSAGE_CONTENT)));
+                .andExpect(jsonPath("$.messages", hasSize(1)))
+                .andExpect(jsonPath("$.messages[0].senderUsername", is(USER_NAME)))
+                .andExpect(jsonPath("$.messages[0].content", is(MESSAGE_CONTENT)))
+                .andExpect(jsonPath("$.nextCursor", is("next")))
+                .andExpect(jsonPath("$.prevCursor", nullValue()));
+
+        verify(chatService).getMessagePage(ROOM_ID, USER_NAME, null, null, null);
+    }
+
+    @Test
+    @WithMockUser(username = "testUser")
+    void getMessagesByRoom_WithCursor_PassesPagingParameters() throws Exception {
+        when(chatService.getMessagePage(ROOM_ID, USER_NAME, "cursor", null, 20))
+                .thenReturn(new ChatMessagePageDto(List.of(message), "next", "prev"));
+
+        mockMvc.perform(get("/api/v1/messages/{chatRoomId}", ROOM_ID)
+                .param("before", "cursor")
+                .param("limit", "20"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.prevCursor", is("prev")));
 
-        verify(chatService).getMessagesByChatRoom(ROOM_ID, USER_NAME);
+        verify(chatService).getMessagePage(ROOM_ID, USER_NAME, "cursor", null, 20);
+    }
+
+    @Test
+    @WithMockUser(username = "testUser")
+    void getMessagesByRoom_InvalidCursor_BadRequest() throws Exception {
+        when(chatService.getMessagePage(ROOM_ID, USER_NAME, "bad", null, null))
+                .thenThrow(new InvalidCursorException("Некорректный курсор: bad"));
+
+        mockMvc.perform(get("/api/v1/messages/{chatRoomId}", ROOM_ID).param("before", "bad"))
+                .andExpect(status().isBadRequest());
     }
 
     @Test
     @WithMockUser(username = "testUser")
     void getMessagesByRoom_Unauthorized() throws Exception {
-        when(chatService.getMessagesByChatRoom(ROOM_ID, USER_NAME))
+        when(chatService.getMessagePage(ROOM_ID, USER_NAME, null, null, null))
                 .thenThrow(new UnauthorizedException("Вы не имеете доступа к этой приватной комнате"));
 
         mockMvc.perform(get("/api/v1/messages/{chatRoomId}", ROOM_ID))
                 .andExpect(status().isForbidden());
 
-        verify(chatService).getMessagesByChatRoom(ROOM_ID, USER_NAME);
+        verify(chatService).getMessagePage(ROOM_ID, USER_NAME, null, null, null);
     }
 
     @Test
     @WithMockUser(username = "testUser")
     void getMessagesByRoom_EmptyList() throws Exception {
-        when(chatService.getMessagesByChatRoom(ROOM_ID, USER_NAME)).thenReturn(Collections.emptyList());
+        when(chatService.getMessagePage(ROOM_ID, USER_NAME, null, null, null))
+                .thenReturn(new ChatMessagePageDto(Collections.emptyList(), null, null));
 
         mockMvc.perform(get("/api/v1/messages/{chatRoomId}", ROOM_ID))
                 .andExpect(status().isNoContent());
 
-        verify(chatService).getMessagesByChatRoom(ROOM_ID, USER_NAME);
+        verify(chatService).getMessagePage(ROOM_ID, USER_NAME, null, null, null);
+    }
+
+    @Test
+    @WithMockUser(username = "testUser")
+    void getMessagesSince_ReturnsDelta() throws Exception {
+        when(chatService.getMessagesSince(ROOM_ID, USER_NAME, "c1", 100))
+                .thenReturn(new ChatMessageDeltaDto(ROOM_ID, List.of(ChatMessageWireDto.from(message)), false,
+                        "c2", null));
+
+        mockMvc.perform(get("/api/v1/messages/{chatRoomId}/since", ROOM_ID)
+                        .param("cursor", "c1")
+                        .param("limit", "100"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.messages", hasSize(1)))
+                .andExpect(jsonPath("$.messages[0].id", is(1)))
+                .andExpect(jsonPath("$.hasMore", is(false)))
+                .andExpect(jsonPath("$.cursor", is("c2")));
+    }
+
+    @Test
+    @WithMockUser(username = "testUser")
+    void searchMessages_ReturnsMatches() throws Exception {
+        when(chatService.searchMessages(USER_NAME, "hello", ROOM_ID, null))
+                .thenReturn(new ChatMessageSearchDto("hello", List.of(ChatMessageWireDto.from(message))));
+
+        mockMvc.perform(get("/api/v1/messages/search").param("q", "hello").param("roomId", ROOM_ID))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.query", is("hello")))
+                .andExpect(jsonPath("$.messages", hasSize(1)))
+                .andExpect(jsonPath("$.messages[0].id", is(1)));
+    }
+
+    @Test
+    @WithMockUser(username = "testUser")
+    void importMessages_Success() throws Exception {
+        ChatMessageImportRequestDto importRequest = new ChatMessageImportRequestDto(
+                List.of(new ChatMessageImportDto(USER_NAME, MESSAGE_CONTENT, null)));
+        when(chatService.importMessages(eq(ROOM_ID), anyList(), eq(USER_NAME))).thenReturn(1);
+
+        mockMvc.perform(post("/api/v1/messages/{chatRoomId}/import", ROOM_ID)
+                .with(csrf())
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(importRequest)))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.imported", is(1)));
+    }
+
+    @Test
+    @WithMockUser(username = "testUser")
+    void importMessages_EmptyList_BadRequest() throws Exception {
+        ChatMessageImportRequestDto importRequest = new ChatMessageImportRequestDto(List.of());
+
+        mockMvc.perform(post("/api/v1/messages/{chatRoomId}/import", ROOM_ID)
+                .with(csrf())
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(importRequest)))
+                .andExpect(status().isBadRequest());
+
+        verify(chatService, never()).importMessages(any(), anyList(), any());
     }
-} 
\ No newline at end of file
+}
@@ -1,10 +1,17 @@
 package iwkms.chatapp.chatservice.controller;
 
+import iwkms.chatapp.chatservice.dto.ChatMessageDeltaDto;
 import iwkms.chatapp.chatservice.dto.ChatMessageDto;
+import iwkms.chatapp.chatservice.dto.ChatSyncRequestDto;
 import iwkms.chatapp.chatservice.dto.WebSocketErrorDto;
+import iwkms.chatapp.chatservice.exception.RateLimitExceededException;
+import iwkms.chatapp.chatservice.exception.ServiceOverloadedException;
 import iwkms.chatapp.chatservice.exception.UnauthorizedException;
 import iwkms.chatapp.chatservice.model.ChatMessage;
+import iwkms.chatapp.chatservice.ratelimit.MessageRateLimiter;
 import iwkms.chatapp.chatservice.service.ChatService;
+import iwkms.chatapp.chatservice.websocket.ChatMessageBroadcaster;
+import iwkms.chatapp.chatservice.websocket.RoomShardedExecutor;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -18,9 +25,11 @@ import org.springframework.security.core.Authentication;
 import org.springframework.validation.Validator;
 
 import java.time.LocalDateTime;
+import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
@@ -42,6 +51,15 @@ class ChatMessageSocketControllerTest {
     @Mock
     private Authentication authentication;
 
+    @Mock
+    private ChatMessageBroadcaster broadcaster;
+
+    @Mock
+    private MessageRateLimiter rateLimiter;
+
+    @Mock
+    private RoomShardedExecutor roomExecutor;
+
     @InjectMocks
     private ChatMessageSocketController controller;
 
@@ -69,6 +87,10 @@ class ChatMessageSocketControllerTest {
         lenient().when(headerAccessor.getUser()).thenReturn(authentication);
         lenient().when(authentication.getName()).thenReturn(USER_NAME);
         lenient().when(headerAccessor.getSessionId()).thenReturn(SESSION_ID);
+        lenient().doAnswer(invocation -> {
+            invocation.getArgument(1, Runnable.class).run();
+            return null;
+        }).when(roomExecutor).execute(anyString(), any(Runnable.class));
     }
 
     @Test
@@ -80,7 +102,32 @@ class ChatMessageSocketControllerTest {
         controller.sendMessage(messageDto, headerAccessor);
         
         verify(chatService).saveMessage(any(ChatMessageDto.class));
-        verify(messagingTemplate).convertAndSend(eq("/topic/messages/" + ROOM_ID), any(ChatMessage.class));
+        verify(broadcaster).broadcast(chatMessage);
+        verify(messagingTemplate, never()).convertAndSend(anyString(), any(Object.class));
+    }
+
+    @Test
+    void sendMessage_SavesAndBroadcastsInRoomOrder() {
+        when(chatService.saveMessage(any(ChatMessageDto.class))).thenReturn(chatMessage);
+
+        controller.sendMessage(messageDto, headerAccessor);
+
+        verify(roomExecutor).execute(eq(ROOM_ID), any(Runnable.class));
+        verify(broadcaster).broadcast(chatMessage);
+    }
+
+    @Test
+    void sendMessage_ShardFull_SendsOverloadedError() {
+        doThrow(new ServiceOverloadedException("Сервис перегружен, повторите попытку позже"))
+                .when(roomExecutor).execute(eq(ROOM_ID), any(Runnable.class));
+
+        controller.sendMessage(messageDto, headerAccessor);
+
+        verify(chatService, never()).saveMessage(any(ChatMessageDto.class));
+        verify(rateLimiter).refund(USER_NAME, ROOM_ID);
+        ArgumentCaptor<WebSocketErrorDto> errorCaptor = ArgumentCaptor.forClass(WebSocketErrorDto.class);
+        verify(messagingTemplate).convertAndSendToUser(eq(SESSION_ID), eq("/queue/errors"), errorCaptor.capture());
+        assertEquals("Overloaded", errorCaptor.getValue().getErrorType());
     }
 
     @Test
@@ -95,7 +142,7 @@ class ChatMessageSocketControllerTest {
         controller.sendMessage(messageDto, headerAccessor);
         
         assertEquals(USER_NAME, dtoCaptor.getValue().getSenderUsername());
-        verify(messagingTemplate).convertAndSend(eq("/topic/messages/" + ROOM_ID), any(ChatMessage.class));
+        verify(broadcaster).broadcast(chatMessage);
     }
 
     @Test
@@ -114,9 +161,37 @@ class ChatMessageSocketControllerTest {
             eq("/queue/errors"), 
             any(WebSocketErrorDto.class)
         );
-        verify(messagingTemplate, never()).convertAndSend(eq("/topic/messages/" + ROOM_ID), any(ChatMessage.class));
+        verify(broadcaster, never()).broadcast(any(ChatMessage.class));
     }
     
+    @Test
+    void sendMessage_NotAMember_RejectedBeforeRateLimit() {
+        doThrow(new UnauthorizedException("Вы не являетесь участником этой приватной комнаты"))
+                .when(chatService).checkCanPost(ROOM_ID, USER_NAME);
+
+        controller.sendMessage(messageDto, headerAccessor);
+
+        ArgumentCaptor<WebSocketErrorDto> errorCaptor = ArgumentCaptor.forClass(WebSocketErrorDto.class);
+        verify(messagingTemplate).convertAndSendToUser(eq(SESSION_ID), eq("/queue/errors"), errorCaptor.capture());
+        assertEquals("Access Denied", errorCaptor.getValue().getErrorType());
+        verify(rateLimiter, never()).acquire(anyString(), anyString());
+        verify(roomExecutor, never()).execute(anyString(), any(Runnable.class));
+    }
+
+    @Test
+    void sendMessage_RateLimited_SendsErrorToUser() {
+        doThrow(new RateLimitExceededException("Слишком много сообщений, подождите немного", 200))
+                .when(rateLimiter).acquire(USER_NAME, ROOM_ID);
+
+        controller.sendMessage(messageDto, headerAccessor);
+
+        ArgumentCaptor<WebSocketErrorDto> errorCaptor = ArgumentCaptor.forClass(WebSocketErrorDto.class);
+        verify(messagingTemplate).convertAndSendToUser(eq(SESSION_ID), eq("/queue/errors"), errorCaptor.capture());
+        assertEquals("Rate Limit", errorCaptor.getValue().getErrorType());
+        verify(chatService, never()).saveMessage(any(ChatMessageDto.class));
+        verify(broadcaster, never()).broadcast(any(ChatMessage.class));
+    }
+
     @Test
     void sendMessage_Unauthenticated() {
         when(headerAccessor.getUser()).thenReturn(null);
@@ -131,4 +206,25 @@ class ChatMessageSocketControllerTest {
             any(WebSocketErrorDto.class)
         );
     }
-} 
\ No newline at end of file
+
+    @Test
+    void syncMessages_SendsDeltaToUser() {
+        ChatMessageDeltaDto delta = new ChatMessageDeltaDto(ROOM_ID, List.of(), false, "c2", null);
+        when(chatService.getMessagesSince(ROOM_ID, USER_NAME, "c1", null)).thenReturn(delta);
+
+        controller.syncMessages(new ChatSyncRequestDto(ROOM_ID, "c1", null), headerAccessor);
+
+        verify(messagingTemplate).convertAndSendToUser(SESSION_ID, "/queue/sync", delta);
+    }
+
+    @Test
+    void syncMessages_NoAccess_SendsError() {
+        when(chatService.getMessagesSince(ROOM_ID, USER_NAME, "c1", null))
+                .thenThrow(new UnauthorizedException("Вы не имеете доступа к этой приватной комнате"));
+
+        controller.syncMessages(new ChatSyncRequestDto(ROOM_ID, "c1", null), headerAccessor);
+
+        verify(messagingTemplate).convertAndSendToUser(eq(SESSION_ID), eq("/queue/errors"), any(WebSocketErrorDto.class));
+        verify(messagingTemplate, never()).convertAndSendToUser(eq(SESSION_ID), eq("/queue/sync"), any(Object.class));
+    }
+}
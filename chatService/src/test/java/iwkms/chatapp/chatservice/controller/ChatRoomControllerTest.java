@@ -2,27 +2,34 @@ package iwkms.chatapp.chatservice.controller;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import iwkms.chatapp.chatservice.dto.ChatRoomDto;
+import iwkms.chatapp.chatservice.exception.RateLimitExceededException;
 import iwkms.chatapp.chatservice.exception.ResourceNotFoundException;
 import iwkms.chatapp.chatservice.exception.UnauthorizedException;
 import iwkms.chatapp.chatservice.model.ChatRoom;
 import iwkms.chatapp.chatservice.repository.ChatMessageRepository;
 import iwkms.chatapp.chatservice.repository.ChatRoomRepository;
 import iwkms.chatapp.chatservice.service.ChatRoomService;
+import iwkms.chatapp.chatservice.service.MessageExportService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.http.MediaType;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.TransactionTimedOutException;
 
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 
 import static org.hamcrest.Matchers.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
@@ -44,6 +51,9 @@ class ChatRoomControllerTest {
     @MockBean
     private ChatRoomRepository chatRoomRepository;
 
+    @MockBean
+    private MessageExportService messageExportService;
+
     private ObjectMapper objectMapper = new ObjectMapper();
     private ChatRoomDto chatRoomDto;
     private ChatRoom chatRoom;
@@ -213,4 +223,88 @@ class ChatRoomControllerTest {
 
         verify(chatRoomService).removeMemberFromChatRoom(ROOM_ID, USERNAME, USERNAME);
     }
-} 
\ No newline at end of file
+
+    @Test
+    @WithMockUser(username = "testUser")
+    void exportMessages_StreamsAttachment() throws Exception {
+        when(messageExportService.export(eq(ROOM_ID), eq(MessageExportService.Format.CSV), eq(false), any()))
+                .thenAnswer(invocation -> {
+                    invocation.getArgument(3, OutputStream.class)
+                            .write("id,timestamp\r\n".getBytes(StandardCharsets.UTF_8));
+                    return 0L;
+                });
+
+        mockMvc.perform(get("/api/v1/rooms/{roomId}/export", ROOM_ID).param("format", "csv"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Type", "text/csv;charset=UTF-8"))
+                .andExpect(header().string("Content-Disposition", containsString("test-room.csv")))
+                .andExpect(content().string("id,timestamp\r\n"));
+
+        verify(messageExportService).checkAccess(ROOM_ID, USERNAME);
+        InOrder inOrder = inOrder(messageExportService);
+        inOrder.verify(messageExportService).acquireSlot();
+        inOrder.verify(messageExportService).export(eq(ROOM_ID), eq(MessageExportService.Format.CSV), eq(false), any());
+        inOrder.verify(messageExportService).releaseSlot();
+    }
+
+    @Test
+    @WithMockUser(username = "testUser")
+    void exportMessages_AllSlotsTaken_TooManyRequests() throws Exception {
+        doThrow(new RateLimitExceededException("Слишком много одновременных экспортов", 5_000))
+                .when(messageExportService).acquireSlot();
+
+        mockMvc.perform(get("/api/v1/rooms/{roomId}/export", ROOM_ID))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().string("Retry-After", "5"));
+
+        verify(messageExportService, never()).export(any(), any(), anyBoolean(), any());
+        verify(messageExportService, never()).releaseSlot();
+    }
+
+    @Test
+    @WithMockUser(username = "testUser")
+    void exportMessages_ExportFails_ReleasesSlot() throws Exception {
+        when(messageExportService.export(any(), any(), anyBoolean(), any()))
+                .thenThrow(new TransactionTimedOutException("Экспорт комнаты test-room превысил допустимое время"));
+
+        try {
+            mockMvc.perform(get("/api/v1/rooms/{roomId}/export", ROOM_ID));
+        } catch (Exception e) {
+            // the error body cannot be written under the export's content type; only the slot matters here
+        }
+
+        verify(messageExportService).releaseSlot();
+    }
+
+    @Test
+    @WithMockUser(username = "testUser")
+    void exportMessages_Gzip_UsesGzipContentType() throws Exception {
+        mockMvc.perform(get("/api/v1/rooms/{roomId}/export", ROOM_ID).param("gzip", "true"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Type", "application/gzip"))
+                .andExpect(header().string("Content-Disposition", containsString("test-room.ndjson.gz")));
+
+        verify(messageExportService).export(eq(ROOM_ID), eq(MessageExportService.Format.NDJSON), eq(true), any());
+    }
+
+    @Test
+    @WithMockUser(username = "testUser")
+    void exportMessages_NotOwner_Forbidden() throws Exception {
+        doThrow(new UnauthorizedException("Только владелец комнаты может экспортировать сообщения"))
+                .when(messageExportService).checkAccess(ROOM_ID, USERNAME);
+
+        mockMvc.perform(get("/api/v1/rooms/{roomId}/export", ROOM_ID))
+                .andExpect(status().isForbidden());
+
+        verify(messageExportService, never()).export(any(), any(), anyBoolean(), any());
+    }
+
+    @Test
+    @WithMockUser(username = "testUser")
+    void exportMessages_UnknownFormat_BadRequest() throws Exception {
+        mockMvc.perform(get("/api/v1/rooms/{roomId}/export", ROOM_ID).param("format", "xml"))
+                .andExpect(status().isBadRequest());
+
+        verify(messageExportService, never()).checkAccess(any(), any());
+    }
+}
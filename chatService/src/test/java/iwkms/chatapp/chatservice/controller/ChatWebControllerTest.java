@@ -1,12 +1,16 @@
 package iwkms.chatapp.chatservice.controller;
 
+import iwkms.chatapp.chatservice.dto.ChatMessageDto;
+import iwkms.chatapp.chatservice.exception.RateLimitExceededException;
 import iwkms.chatapp.chatservice.model.ChatRoom;
+import iwkms.chatapp.chatservice.ratelimit.MessageRateLimiter;
 import iwkms.chatapp.chatservice.repository.ChatMessageRepository;
 import iwkms.chatapp.chatservice.repository.ChatRoomRepository;
 import iwkms.chatapp.chatservice.service.ChatRoomService;
 import iwkms.chatapp.chatservice.service.ChatService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
@@ -16,9 +20,16 @@ import org.springframework.test.web.servlet.MockMvc;
 
 import java.util.Collections;
 
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
 @WebMvcTest(ChatWebController.class)
@@ -33,6 +44,9 @@ class ChatWebControllerTest {
     @MockBean
     private ChatService chatService;
     
+    @MockBean
+    private MessageRateLimiter rateLimiter;
+
     @MockBean
     private ChatMessageRepository chatMessageRepository;
     
@@ -108,4 +122,35 @@ class ChatWebControllerTest {
                 .andExpect(status().is3xxRedirection())
                 .andExpect(redirectedUrl("/login"));
     }
-} 
\ No newline at end of file
+
+    @Test
+    @WithMockUser(username = USERNAME, roles = "USER")
+    void sendMessage_ChecksAccessThenAcquiresAsAuthenticatedUser() throws Exception {
+        mockMvc.perform(post("/chat/send").with(csrf())
+                        .param("senderUsername", "someoneElse")
+                        .param("chatRoomId", ROOM_ID)
+                        .param("content", "Hello"))
+                .andExpect(status().is3xxRedirection());
+
+        InOrder order = inOrder(chatService, rateLimiter);
+        order.verify(chatService).checkCanPost(ROOM_ID, USERNAME);
+        order.verify(rateLimiter).acquire(USERNAME, ROOM_ID);
+        order.verify(chatService).saveMessage(any(ChatMessageDto.class));
+    }
+
+    @Test
+    @WithMockUser(username = USERNAME, roles = "USER")
+    void sendMessage_RateLimited_RedirectsWithError() throws Exception {
+        doThrow(new RateLimitExceededException("Слишком много сообщений", 1500L))
+                .when(rateLimiter).acquire(USERNAME, ROOM_ID);
+
+        mockMvc.perform(post("/chat/send").with(csrf())
+                        .param("senderUsername", USERNAME)
+                        .param("chatRoomId", ROOM_ID)
+                        .param("content", "Hello"))
+                .andExpect(status().is3xxRedirection())
+                .andExpect(flash().attribute("errorMessage", "Too many messages, try again in 2 s."));
+
+        verify(chatService, never()).saveMessage(any(ChatMessageDto.class));
+    }
+}
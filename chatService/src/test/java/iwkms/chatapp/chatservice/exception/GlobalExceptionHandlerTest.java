@@ -55,6 +55,19 @@ class GlobalExceptionHandlerTest {
         assertEquals(errorMessage, response.getBody().getMessage());
     }
 
+    @Test
+    void handleRateLimitExceededException() {
+        RateLimitExceededException exception = new RateLimitExceededException("Слишком много сообщений", 250);
+
+        ResponseEntity<GlobalExceptionHandler.ErrorDetails> response =
+            exceptionHandler.handleRateLimitExceededException(exception, webRequest);
+
+        assertEquals(HttpStatus.TOO_MANY_REQUESTS, response.getStatusCode());
+        assertEquals("1", response.getHeaders().getFirst("Retry-After"));
+        assertNotNull(response.getBody());
+        assertEquals("Слишком много сообщений", response.getBody().getMessage());
+    }
+
     @Test
     void handleAuthenticationException() {
         String errorMessage = "Authentication failed";
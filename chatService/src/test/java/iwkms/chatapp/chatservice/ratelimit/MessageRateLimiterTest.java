@@ -0,0 +1,131 @@
+package iwkms.chatapp.chatservice.ratelimit;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import iwkms.chatapp.chatservice.exception.RateLimitExceededException;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MessageRateLimiterTest {
+
+    private final AtomicLong now = new AtomicLong(TimeUnit.SECONDS.toNanos(100));
+
+    private MessageRateLimiter limiter(MessageRateLimiter.Limit user, MessageRateLimiter.Limit room,
+                                       Map<String, MessageRateLimiter.Limit> overrides) {
+        return new MessageRateLimiter(true, user, room, overrides, 4, 1000, now::get);
+    }
+
+    @Test
+    void acquire_AllowsBurstThenRejects() {
+        MessageRateLimiter limiter = limiter(new MessageRateLimiter.Limit(1, 3),
+                new MessageRateLimiter.Limit(100, 100), Map.of());
+
+        for (int i = 0; i < 3; i++) {
+            limiter.acquire("alice", "general");
+        }
+        RateLimitExceededException ex = assertThrows(RateLimitExceededException.class,
+                () -> limiter.acquire("alice", "general"));
+        assertEquals(1000, ex.getRetryAfterMillis());
+
+        limiter.acquire("bob", "general");
+    }
+
+    @Test
+    void acquire_RefillsAtConfiguredRate() {
+        MessageRateLimiter limiter = limiter(new MessageRateLimiter.Limit(2, 1),
+                new MessageRateLimiter.Limit(100, 100), Map.of());
+
+        limiter.acquire("alice", "general");
+        assertThrows(RateLimitExceededException.class, () -> limiter.acquire("alice", "general"));
+
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(500));
+        limiter.acquire("alice", "general");
+    }
+
+    @Test
+    void acquire_RoomRejectionRefundsUserToken() {
+        MessageRateLimiter limiter = limiter(new MessageRateLimiter.Limit(1, 2),
+                new MessageRateLimiter.Limit(1, 1), Map.of());
+
+        limiter.acquire("alice", "general");
+        assertThrows(RateLimitExceededException.class, () -> limiter.acquire("alice", "general"));
+
+        limiter.acquire("alice", "other");
+    }
+
+    @Test
+    void refund_ReturnsUserAndRoomTokens() {
+        MessageRateLimiter limiter = limiter(new MessageRateLimiter.Limit(1, 1),
+                new MessageRateLimiter.Limit(1, 1), Map.of());
+
+        limiter.acquire("alice", "general");
+        limiter.refund("alice", "general");
+
+        limiter.acquire("alice", "general");
+        assertThrows(RateLimitExceededException.class, () -> limiter.acquire("alice", "general"));
+    }
+
+    @Test
+    void acquire_UsesRoomOverride() {
+        MessageRateLimiter limiter = limiter(new MessageRateLimiter.Limit(100, 100),
+                new MessageRateLimiter.Limit(100, 100), Map.of("announcements", new MessageRateLimiter.Limit(1, 1)));
+
+        limiter.acquire("alice", "announcements");
+        assertThrows(RateLimitExceededException.class, () -> limiter.acquire("bob", "announcements"));
+        limiter.acquire("bob", "general");
+    }
+
+    @Test
+    void acquire_DisabledNeverRejects() {
+        MessageRateLimiter limiter = new MessageRateLimiter(false, new MessageRateLimiter.Limit(1, 1),
+                new MessageRateLimiter.Limit(1, 1), Map.of(), 4, 1000, now::get);
+
+        for (int i = 0; i < 10; i++) {
+            limiter.acquire("alice", "general");
+        }
+    }
+
+    @Test
+    void acquire_BoundsTrackedKeys() {
+        MessageRateLimiter limiter = new MessageRateLimiter(true, new MessageRateLimiter.Limit(1, 1),
+                new MessageRateLimiter.Limit(1000, 1000), Map.of(), 1, 10, now::get);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        limiter.bindTo(registry);
+
+        for (int i = 0; i < 100; i++) {
+            limiter.acquire("user-" + i, "general");
+        }
+
+        assertTrue(registry.get("chat.ratelimit.buckets").gauge().value() <= 11);
+    }
+
+    @Test
+    void bindTo_CountsRejectionsByScope() {
+        MessageRateLimiter limiter = limiter(new MessageRateLimiter.Limit(1, 1),
+                new MessageRateLimiter.Limit(1, 1), Map.of());
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        limiter.bindTo(registry);
+
+        limiter.acquire("alice", "general");
+        assertThrows(RateLimitExceededException.class, () -> limiter.acquire("alice", "general"));
+        assertThrows(RateLimitExceededException.class, () -> limiter.acquire("bob", "general"));
+
+        assertEquals(1.0, registry.get("chat.ratelimit.rejected").tag("scope", "user").functionCounter().count());
+        assertEquals(1.0, registry.get("chat.ratelimit.rejected").tag("scope", "room").functionCounter().count());
+    }
+
+    @Test
+    void parseOverrides_ReadsRoomLimits() {
+        Map<String, MessageRateLimiter.Limit> limits =
+                MessageRateLimiter.parseOverrides("announcements:0.5/2, general:200/400");
+
+        assertEquals(new MessageRateLimiter.Limit(0.5, 2), limits.get("announcements"));
+        assertEquals(new MessageRateLimiter.Limit(200, 400), limits.get("general"));
+        assertTrue(MessageRateLimiter.parseOverrides("").isEmpty());
+        assertThrows(IllegalArgumentException.class, () -> MessageRateLimiter.parseOverrides("general=5"));
+    }
+}
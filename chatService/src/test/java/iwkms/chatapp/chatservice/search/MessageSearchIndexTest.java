@@ -0,0 +1,226 @@
+package iwkms.chatapp.chatservice.search;
+
+import iwkms.chatapp.chatservice.model.ChatMessage;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MessageSearchIndexTest {
+
+    @TempDir
+    Path directory;
+
+    private MessageSearchIndex createIndex() {
+        return new MessageSearchIndex(true, directory.toString(), 3_600_000, 10_000, 2, 1 << 30);
+    }
+
+    private static LocalDateTime timestamp(long seconds) {
+        return LocalDateTime.of(2024, 5, 20, 12, 0, 0, 123_456_000).plusSeconds(seconds);
+    }
+
+    private static ChatMessage message(long id, String roomId, String content) {
+        ChatMessage message = new ChatMessage("alice", roomId, content);
+        message.setId(id);
+        message.setTimestamp(timestamp(id));
+        return message;
+    }
+
+    private static List<Long> ids(List<ChatMessage> messages) {
+        return messages.stream().map(ChatMessage::getId).toList();
+    }
+
+    @Test
+    void search_BufferedMessages_MatchAllTermsIgnoringCase() {
+        MessageSearchIndex index = createIndex();
+        index.add(message(1, "general", "Привет, мир!"));
+        index.add(message(2, "general", "привет всем"));
+        index.add(message(3, "general", "Hello world"));
+
+        assertEquals(List.of(2L, 1L), ids(index.search("ПРИВЕТ", room -> true, 10)));
+        assertEquals(List.of(1L), ids(index.search("мир привет", room -> true, 10)));
+        assertTrue(index.search("привет world", room -> true, 10).isEmpty());
+        assertTrue(index.search("  ,, ", room -> true, 10).isEmpty());
+    }
+
+    @Test
+    void search_FiltersRoomsAndKeepsNewest() throws Exception {
+        MessageSearchIndex index = createIndex();
+        index.add(message(1, "general", "deploy done"));
+        index.add(message(2, "secret", "deploy failed"));
+        index.flush();
+        index.add(message(4, "general", "deploy again"));
+        index.add(message(3, "general", "deploy started"));
+
+        assertEquals(List.of(4L, 3L), ids(index.search("deploy", "general"::equals, 2)));
+        assertEquals(List.of(4L, 3L, 1L), ids(index.search("deploy", "general"::equals, 10)));
+    }
+
+    @Test
+    void search_RanksByTimestampNotId() throws Exception {
+        MessageSearchIndex index = createIndex();
+        ChatMessage earlyBlock = message(51, "general", "deploy from node b");
+        earlyBlock.setTimestamp(timestamp(1));
+        ChatMessage lateBlock = message(2, "general", "deploy from node a");
+        lateBlock.setTimestamp(timestamp(60));
+        index.add(earlyBlock);
+        index.flush();
+        index.add(lateBlock);
+        index.add(message(3, "general", "deploy again"));
+
+        assertEquals(List.of(2L, 3L), ids(index.search("deploy", room -> true, 2)));
+        index.flush();
+        assertTrue(index.mergeOnce());
+        assertEquals(List.of(2L, 3L, 51L), ids(index.search("deploy", room -> true, 10)));
+    }
+
+    @Test
+    void delete_HidesCoveredMessagesOlderThanBound() throws Exception {
+        MessageSearchIndex index = createIndex();
+        index.add(message(1, "general", "deploy one"));
+        index.add(message(2, "random", "deploy two"));
+        index.flush();
+        index.add(message(3, "general", "deploy three"));
+        index.add(message(4, "general", "deploy four"));
+
+        index.delete(List.of(new MessageSearchIndex.DeletedRange("general", 1, 10)), timestamp(4));
+
+        assertEquals(List.of(4L, 2L), ids(index.search("deploy", room -> true, 10)));
+    }
+
+    @Test
+    void delete_FlushAndMergeLeaveDeletedMessagesOut() throws Exception {
+        MessageSearchIndex index = createIndex();
+        index.add(message(1, "general", "deploy one"));
+        index.add(message(2, "general", "deploy two"));
+        index.flush();
+        index.add(message(3, "general", "deploy three"));
+
+        index.delete(List.of(new MessageSearchIndex.DeletedRange("general", 1, 3)), timestamp(3));
+        index.flush();
+        assertEquals(3, index.getDocumentCount());
+        assertTrue(index.mergeOnce());
+
+        assertEquals(1, index.getSegmentCount());
+        assertEquals(1, index.getDocumentCount());
+        assertEquals(List.of(3L), ids(index.search("deploy", room -> true, 10)));
+    }
+
+    @Test
+    void purge_RewritesSegmentsAndForgetsTombstones() throws Exception {
+        MessageSearchIndex index = createIndex();
+        index.start();
+        try {
+            index.add(message(1, "general", "deploy one"));
+            index.add(message(2, "general", "deploy two"));
+            index.flush();
+            index.delete(List.of(new MessageSearchIndex.DeletedRange("general", 1, 1)), timestamp(100));
+            assertTrue(Files.exists(directory.resolve("tombstones")));
+
+            index.purge();
+
+            assertEquals(1, index.getSegmentCount());
+            assertEquals(1, index.getDocumentCount());
+            assertEquals(List.of(2L), ids(index.search("deploy", room -> true, 10)));
+            assertFalse(Files.exists(directory.resolve("tombstones")));
+        } finally {
+            index.stop();
+        }
+    }
+
+    @Test
+    void purge_KeepsTombstonesCoveringBufferedMessages() throws Exception {
+        MessageSearchIndex index = createIndex();
+        index.add(message(1, "general", "deploy one"));
+        index.delete(List.of(new MessageSearchIndex.DeletedRange("general", 1, 1)), timestamp(100));
+
+        index.purge();
+        assertTrue(index.search("deploy", room -> true, 10).isEmpty());
+
+        index.flush();
+        index.purge();
+        assertEquals(0, index.getDocumentCount());
+        assertFalse(Files.exists(directory.resolve("tombstones")));
+    }
+
+    @Test
+    void delete_SurvivesRestartBeforePurge() throws Exception {
+        MessageSearchIndex crashed = createIndex();
+        crashed.start();
+        crashed.add(message(1, "general", "secret plan"));
+        crashed.add(message(2, "general", "secret party"));
+        crashed.flush();
+        crashed.delete(List.of(new MessageSearchIndex.DeletedRange("general", 1, 1)), timestamp(100));
+
+        MessageSearchIndex reopened = createIndex();
+        reopened.start();
+        try {
+            assertEquals(List.of(2L), ids(reopened.search("secret", room -> true, 10)));
+        } finally {
+            reopened.stop();
+        }
+        assertFalse(Files.exists(directory.resolve("tombstones")));
+        assertEquals(1, reopened.getDocumentCount());
+    }
+
+    @Test
+    void flushAndMerge_KeepStoredMessages() throws Exception {
+        MessageSearchIndex index = createIndex();
+        ChatMessage original = message(7, "general", "Ёжик в тумане");
+        index.add(original);
+        index.flush();
+        index.add(message(8, "general", "ёжик"));
+        index.flush();
+
+        assertTrue(index.mergeOnce());
+
+        assertEquals(1, index.getSegmentCount());
+        List<ChatMessage> found = index.search("ёжик", room -> true, 10);
+        assertEquals(List.of(8L, 7L), ids(found));
+        ChatMessage stored = found.get(1);
+        assertEquals(original.getContent(), stored.getContent());
+        assertEquals(original.getSenderUsername(), stored.getSenderUsername());
+        assertEquals(original.getChatRoomId(), stored.getChatRoomId());
+        assertEquals(original.getTimestamp(), stored.getTimestamp());
+    }
+
+    @Test
+    void reopen_LoadsLiveSegmentsOnly() throws Exception {
+        MessageSearchIndex index = createIndex();
+        index.start();
+        index.add(message(1, "general", "release notes"));
+        index.flush();
+        index.add(message(2, "general", "release party"));
+        index.flush();
+        index.mergeOnce();
+        index.add(message(3, "general", "release day"));
+        index.stop();
+
+        MessageSearchIndex reopened = createIndex();
+        reopened.start();
+        try {
+            assertEquals(List.of(3L, 2L, 1L), ids(reopened.search("release", room -> true, 10)));
+            assertEquals(3, reopened.getDocumentCount());
+            try (Stream<Path> files = Files.list(directory)) {
+                assertEquals(3, files.count());
+            }
+        } finally {
+            reopened.stop();
+        }
+    }
+
+    @Test
+    void disabled_IndexesNothing() {
+        MessageSearchIndex index = new MessageSearchIndex(false, directory.toString(), 3_600_000, 10_000, 2, 1 << 30);
+        index.add(message(1, "general", "hello"));
+
+        assertTrue(index.search("hello", room -> true, 10).isEmpty());
+        assertEquals(0, index.getDocumentCount());
+    }
+}
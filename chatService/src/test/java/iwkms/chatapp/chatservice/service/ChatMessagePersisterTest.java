@@ -0,0 +1,170 @@
+package iwkms.chatapp.chatservice.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import iwkms.chatapp.chatservice.exception.ServiceOverloadedException;
+import iwkms.chatapp.chatservice.model.ChatMessage;
+import iwkms.chatapp.chatservice.repository.ChatMessageRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ChatMessagePersisterTest {
+
+    @Mock
+    private ChatMessageRepository chatMessageRepository;
+
+    @Mock
+    private MessageIdAllocator messageIdAllocator;
+
+    @TempDir
+    Path tempDir;
+
+    private ChatMessagePersister persister;
+    private long nextId;
+
+    @BeforeEach
+    void setUp() {
+        nextId = 1;
+        lenient().when(messageIdAllocator.nextId()).thenAnswer(invocation -> nextId++);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (persister != null) {
+            persister.stop();
+        }
+    }
+
+    private ChatMessagePersister createPersister(int batchSize, int queueCapacity) {
+        return new ChatMessagePersister(chatMessageRepository, messageIdAllocator,
+                new ObjectMapper().findAndRegisterModules(), true, batchSize, 10_000, queueCapacity, 10, 0, 5_000,
+                tempDir.resolve("dead-letter.ndjson").toString());
+    }
+
+    @Test
+    void enqueue_AssignsIdImmediately() {
+        persister = createPersister(10, 100);
+        persister.start();
+
+        ChatMessage message = persister.enqueue(new ChatMessage("user", "room", "hi"));
+
+        assertEquals(1L, message.getId());
+    }
+
+    @Test
+    void stop_FlushesPendingMessagesInOneBatch() {
+        persister = createPersister(100, 100);
+        persister.start();
+
+        for (int i = 0; i < 5; i++) {
+            persister.enqueue(new ChatMessage("user", "room", "message " + i));
+        }
+        persister.stop();
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<ChatMessage>> captor = ArgumentCaptor.forClass(List.class);
+        verify(chatMessageRepository, atLeastOnce()).batchInsert(captor.capture());
+        List<ChatMessage> written = new ArrayList<>();
+        captor.getAllValues().forEach(written::addAll);
+        assertEquals(5, written.size());
+        assertEquals(0, persister.getQueueSize());
+    }
+
+    @Test
+    void flush_SplitsIntoBatchesOfConfiguredSize() {
+        persister = createPersister(2, 100);
+        persister.start();
+
+        for (int i = 0; i < 4; i++) {
+            persister.enqueue(new ChatMessage("user", "room", "message " + i));
+        }
+        persister.stop();
+
+        verify(chatMessageRepository, atLeast(2)).batchInsert(argThat(batch -> batch.size() <= 2));
+    }
+
+    @Test
+    void enqueue_QueueFull_RejectsWithBackpressure() {
+        persister = createPersister(1, 1);
+        persister.start();
+        doAnswer(invocation -> {
+            Thread.sleep(500);
+            return null;
+        }).when(chatMessageRepository).batchInsert(anyList());
+
+        assertThrows(ServiceOverloadedException.class, () -> {
+            for (int i = 0; i < 10; i++) {
+                persister.enqueue(new ChatMessage("user", "room", "message " + i));
+            }
+        });
+    }
+
+    @Test
+    void enqueue_NotStarted_Rejects() {
+        persister = createPersister(10, 10);
+
+        assertThrows(ServiceOverloadedException.class,
+                () -> persister.enqueue(new ChatMessage("user", "room", "hi")));
+        verifyNoInteractions(chatMessageRepository);
+    }
+
+    @Test
+    void flush_RetriesExhausted_WritesBatchToDeadLetterFile() throws IOException {
+        persister = createPersister(10, 100);
+        doThrow(new RuntimeException("db down")).when(chatMessageRepository).batchInsert(anyList());
+        persister.start();
+
+        persister.enqueue(new ChatMessage("user", "room", "first"));
+        persister.enqueue(new ChatMessage("user", "room", "second"));
+        persister.stop();
+
+        List<String> lines = Files.readAllLines(tempDir.resolve("dead-letter.ndjson"), StandardCharsets.UTF_8);
+        assertEquals(2, lines.size());
+        assertTrue(lines.get(0).contains("\"content\":\"first\""));
+        assertTrue(lines.get(1).contains("\"id\":2"));
+    }
+
+    @Test
+    void stop_ConcurrentSenders_EveryAcceptedMessageIsWritten() throws InterruptedException {
+        persister = createPersister(50, 10_000);
+        persister.start();
+        List<ChatMessage> accepted = Collections.synchronizedList(new ArrayList<>());
+        Thread sender = new Thread(() -> {
+            for (int i = 0; i < 100_000; i++) {
+                try {
+                    accepted.add(persister.enqueue(new ChatMessage("user", "room", "message " + i)));
+                } catch (ServiceOverloadedException e) {
+                    return;
+                }
+            }
+        });
+        sender.start();
+        Thread.sleep(20);
+        persister.stop();
+        sender.join();
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<ChatMessage>> captor = ArgumentCaptor.forClass(List.class);
+        verify(chatMessageRepository, atLeastOnce()).batchInsert(captor.capture());
+        int written = captor.getAllValues().stream().mapToInt(List::size).sum();
+        assertEquals(accepted.size(), written);
+    }
+}
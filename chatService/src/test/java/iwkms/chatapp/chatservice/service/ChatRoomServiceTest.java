@@ -10,6 +10,7 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.util.Arrays;
@@ -27,6 +28,12 @@ class ChatRoomServiceTest {
     @Mock
     private ChatRoomRepository chatRoomRepository;
 
+    @Mock
+    private MembershipCache membershipCache;
+
+    @Spy
+    private ChatServiceMetrics metrics = new ChatServiceMetrics();
+
     @InjectMocks
     private ChatRoomService chatRoomService;
 
@@ -98,6 +105,7 @@ class ChatRoomServiceTest {
         chatRoomService.addMemberToChatRoom(ROOM_ID, newMember, USER_NAME);
 
         verify(chatRoomRepository).save(any(ChatRoom.class));
+        verify(membershipCache).memberAdded(ROOM_ID, newMember);
     }
 
     @Test
@@ -111,6 +119,7 @@ class ChatRoomServiceTest {
             chatRoomService.addMemberToChatRoom(ROOM_ID, newMember, unauthorizedUser));
             
         verify(chatRoomRepository, never()).save(any(ChatRoom.class));
+        verifyNoInteractions(membershipCache);
     }
 
     @Test
@@ -121,6 +130,7 @@ class ChatRoomServiceTest {
         chatRoomService.removeMemberFromChatRoom(ROOM_ID, USER_NAME, OWNER_NAME);
 
         verify(chatRoomRepository).save(any(ChatRoom.class));
+        verify(membershipCache).memberRemoved(ROOM_ID, USER_NAME);
     }
 
     @Test
@@ -160,35 +170,19 @@ class ChatRoomServiceTest {
     }
 
     @Test
-    void checkMembership_PublicRoom_Success() {
-        chatRoom.setPrivate(false);
-        when(chatRoomRepository.findByRoomId(ROOM_ID)).thenReturn(Optional.of(chatRoom));
+    void checkMembership_DelegatesToCache() {
+        when(membershipCache.isMember(ROOM_ID, USER_NAME)).thenReturn(true);
 
-        String nonMember = "nonMember";
-        boolean result = chatRoomService.checkMembership(ROOM_ID, nonMember);
-
-        assertTrue(result);
+        assertTrue(chatRoomService.checkMembership(ROOM_ID, USER_NAME));
+        verify(chatRoomRepository, never()).findByRoomId(anyString());
+        verify(metrics).recordMembershipCheck(anyLong());
     }
 
     @Test
-    void checkMembership_PrivateRoom_Member_Success() {
-        chatRoom.setPrivate(true);
-        when(chatRoomRepository.findByRoomId(ROOM_ID)).thenReturn(Optional.of(chatRoom));
-
-        boolean result = chatRoomService.checkMembership(ROOM_ID, USER_NAME);
-
-        assertTrue(result);
-    }
-
-    @Test
-    void checkMembership_PrivateRoom_NonMember_Failure() {
-        chatRoom.setPrivate(true);
-        when(chatRoomRepository.findByRoomId(ROOM_ID)).thenReturn(Optional.of(chatRoom));
-
-        String nonMember = "nonMember";
-        boolean result = chatRoomService.checkMembership(ROOM_ID, nonMember);
+    void checkMembership_NonMember_Failure() {
+        when(membershipCache.isMember(ROOM_ID, "nonMember")).thenReturn(false);
 
-        assertFalse(result);
+        assertFalse(chatRoomService.checkMembership(ROOM_ID, "nonMember"));
     }
 
     @Test
@@ -0,0 +1,42 @@
+package iwkms.chatapp.chatservice.service;
+
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ChatServiceMetricsTest {
+
+    @Test
+    void record_BeforeBinding_IsDiscarded() {
+        ChatServiceMetrics metrics = new ChatServiceMetrics();
+        metrics.recordSave(System.nanoTime());
+
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        metrics.bindTo(registry);
+
+        assertEquals(0, registry.get("chat.messages.save").timer().count());
+    }
+
+    @Test
+    void record_AfterBinding_UpdatesTimers() {
+        ChatServiceMetrics metrics = new ChatServiceMetrics();
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        metrics.bindTo(registry);
+
+        metrics.recordSave(System.nanoTime() - 1_000_000);
+        metrics.recordHistory(System.nanoTime());
+        metrics.recordHistory(System.nanoTime());
+        metrics.recordMembershipCheck(System.nanoTime());
+
+        Timer save = registry.get("chat.messages.save").timer();
+        assertEquals(1, save.count());
+        assertTrue(save.totalTime(TimeUnit.NANOSECONDS) >= 1_000_000);
+        assertEquals(2, registry.get("chat.messages.history").timer().count());
+        assertEquals(1, registry.get("chat.rooms.membership.check").timer().count());
+    }
+}
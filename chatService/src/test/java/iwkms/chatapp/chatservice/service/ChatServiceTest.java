@@ -1,52 +1,88 @@
 package iwkms.chatapp.chatservice.service;
 
+import iwkms.chatapp.chatservice.dto.ChatMessageDeltaDto;
 import iwkms.chatapp.chatservice.dto.ChatMessageDto;
+import iwkms.chatapp.chatservice.dto.ChatMessageImportDto;
+import iwkms.chatapp.chatservice.dto.ChatMessagePageDto;
+import iwkms.chatapp.chatservice.dto.ChatMessageSearchDto;
+import iwkms.chatapp.chatservice.dto.ChatMessageWireDto;
+import iwkms.chatapp.chatservice.dto.MessageCursor;
+import iwkms.chatapp.chatservice.dto.SyncCursor;
+import iwkms.chatapp.chatservice.exception.InvalidCursorException;
+import iwkms.chatapp.chatservice.exception.ResourceNotFoundException;
 import iwkms.chatapp.chatservice.exception.UnauthorizedException;
 import iwkms.chatapp.chatservice.model.ChatMessage;
 import iwkms.chatapp.chatservice.model.ChatRoom;
-import iwkms.chatapp.chatservice.repository.ChatMessageRepository;
-import iwkms.chatapp.chatservice.repository.ChatRoomRepository;
+import iwkms.chatapp.chatservice.model.RoomMetadata;
+import iwkms.chatapp.chatservice.search.MessageSearchIndex;
+import iwkms.chatapp.chatservice.store.MessageStore;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Limit;
 
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Base64;
 import java.util.List;
+import java.util.Optional;
+import java.util.function.Predicate;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
 class ChatServiceTest {
 
     @Mock
-    private ChatMessageRepository chatMessageRepository;
+    private MessageStore messageStore;
 
     @Mock
-    private ChatRoomRepository chatRoomRepository;
+    private RoomRegistry roomRegistry;
 
     @Mock
     private ChatRoomService chatRoomService;
 
-    @InjectMocks
+    @Mock
+    private RecentMessageCache recentMessageCache;
+
+    @Mock
+    private MessageSearchIndex messageSearchIndex;
+
+    @Mock
+    private ChatMessagePersister chatMessagePersister;
+
+    @Spy
+    private ChatServiceMetrics metrics = new ChatServiceMetrics();
+
     private ChatService chatService;
 
     private ChatMessageDto messageDto;
     private ChatMessage chatMessage;
     private ChatRoom chatRoom;
+    private RoomMetadata publicRoom;
+    private RoomMetadata privateRoom;
     private final String ROOM_ID = "test-room";
     private final String USER_NAME = "testUser";
     private final String MESSAGE_CONTENT = "Hello, world!";
+    private final long SETTLE_WINDOW_MS = 30_000;
+    private static final LocalDateTime HISTORY_START = LocalDateTime.of(2024, 5, 1, 12, 0);
 
     @BeforeEach
     void setUp() {
+        chatService = new ChatService(messageStore, roomRegistry, chatRoomService, recentMessageCache,
+                messageSearchIndex, metrics, chatMessagePersister, SETTLE_WINDOW_MS);
         messageDto = new ChatMessageDto(USER_NAME, ROOM_ID, MESSAGE_CONTENT);
 
         chatMessage = new ChatMessage();
@@ -57,13 +93,14 @@ class ChatServiceTest {
         chatMessage.setTimestamp(LocalDateTime.now());
 
         chatRoom = new ChatRoom(ROOM_ID, "Test Room", "Test Description", false, USER_NAME);
+        publicRoom = new RoomMetadata(1L, ROOM_ID, false, USER_NAME);
+        privateRoom = new RoomMetadata(1L, ROOM_ID, true, "ownerUser");
     }
 
     @Test
-    void saveMessage_ExistingRoom_Success() {
-        when(chatRoomRepository.existsByRoomId(ROOM_ID)).thenReturn(true);
-        when(chatRoomService.checkMembership(ROOM_ID, USER_NAME)).thenReturn(true);
-        when(chatMessageRepository.save(any(ChatMessage.class))).thenReturn(chatMessage);
+    void saveMessage_PublicRoom_Success() {
+        when(roomRegistry.getOrCreate(ROOM_ID, USER_NAME)).thenReturn(publicRoom);
+        when(messageStore.save(any(ChatMessage.class))).thenReturn(chatMessage);
 
         ChatMessage savedMessage = chatService.saveMessage(messageDto);
 
@@ -71,43 +108,58 @@ class ChatServiceTest {
         assertEquals(USER_NAME, savedMessage.getSenderUsername());
         assertEquals(ROOM_ID, savedMessage.getChatRoomId());
         assertEquals(MESSAGE_CONTENT, savedMessage.getContent());
-        verify(chatMessageRepository).save(any(ChatMessage.class));
-        verify(chatRoomRepository, never()).save(any(ChatRoom.class));
+        verify(messageStore).save(any(ChatMessage.class));
+        verify(chatRoomService, never()).checkMembership(anyString(), anyString());
+        verify(recentMessageCache).append(chatMessage);
+        verify(messageSearchIndex).add(chatMessage);
+        verify(metrics).recordSave(anyLong());
     }
 
     @Test
-    void saveMessage_NonExistingRoom_CreatesRoom() {
-        when(chatRoomRepository.existsByRoomId(ROOM_ID)).thenReturn(false);
+    void saveMessage_PrivateRoom_Member_Success() {
+        when(roomRegistry.getOrCreate(ROOM_ID, USER_NAME)).thenReturn(privateRoom);
         when(chatRoomService.checkMembership(ROOM_ID, USER_NAME)).thenReturn(true);
-        when(chatRoomRepository.save(any(ChatRoom.class))).thenReturn(chatRoom);
-        when(chatMessageRepository.save(any(ChatMessage.class))).thenReturn(chatMessage);
+        when(messageStore.save(any(ChatMessage.class))).thenReturn(chatMessage);
 
         ChatMessage savedMessage = chatService.saveMessage(messageDto);
 
         assertNotNull(savedMessage);
-        assertEquals(USER_NAME, savedMessage.getSenderUsername());
-        assertEquals(ROOM_ID, savedMessage.getChatRoomId());
-        assertEquals(MESSAGE_CONTENT, savedMessage.getContent());
-        verify(chatMessageRepository).save(any(ChatMessage.class));
-        verify(chatRoomRepository).save(any(ChatRoom.class));
+        verify(messageStore).save(any(ChatMessage.class));
     }
 
     @Test
     void saveMessage_NoAccess_ThrowsException() {
-        when(chatRoomRepository.existsByRoomId(ROOM_ID)).thenReturn(true);
+        when(roomRegistry.getOrCreate(ROOM_ID, USER_NAME)).thenReturn(privateRoom);
         when(chatRoomService.checkMembership(ROOM_ID, USER_NAME)).thenReturn(false);
 
         assertThrows(UnauthorizedException.class, () -> 
             chatService.saveMessage(messageDto));
             
-        verify(chatMessageRepository, never()).save(any(ChatMessage.class));
+        verify(messageStore, never()).save(any(ChatMessage.class));
+    }
+
+    @Test
+    void checkCanPost_PrivateRoomNonMember_ThrowsException() {
+        when(roomRegistry.find(ROOM_ID)).thenReturn(Optional.of(privateRoom));
+        when(chatRoomService.checkMembership(ROOM_ID, USER_NAME)).thenReturn(false);
+
+        assertThrows(UnauthorizedException.class, () -> chatService.checkCanPost(ROOM_ID, USER_NAME));
+    }
+
+    @Test
+    void checkCanPost_UnknownRoom_Passes() {
+        when(roomRegistry.find(ROOM_ID)).thenReturn(Optional.empty());
+
+        assertDoesNotThrow(() -> chatService.checkCanPost(ROOM_ID, USER_NAME));
+        verify(chatRoomService, never()).checkMembership(anyString(), anyString());
     }
 
     @Test
     void getMessagesByChatRoom_HasAccess_Success() {
         List<ChatMessage> messages = Arrays.asList(chatMessage);
         when(chatRoomService.checkMembership(ROOM_ID, USER_NAME)).thenReturn(true);
-        when(chatMessageRepository.findByChatRoomIdOrderByTimestampAsc(ROOM_ID)).thenReturn(messages);
+        when(messageStore.findLatest(ROOM_ID, Limit.of(ChatService.DEFAULT_PAGE_SIZE + 1)))
+                .thenReturn(messages);
 
         List<ChatMessage> result = chatService.getMessagesByChatRoom(ROOM_ID, USER_NAME);
 
@@ -124,17 +176,324 @@ class ChatServiceTest {
         assertThrows(UnauthorizedException.class, () -> 
             chatService.getMessagesByChatRoom(ROOM_ID, USER_NAME));
             
-        verify(chatMessageRepository, never()).findByChatRoomIdOrderByTimestampAsc(anyString());
+        verify(messageStore, never()).findLatest(anyString(), any(Limit.class));
+        verify(metrics).recordHistory(anyLong());
     }
 
     @Test
     void getMessagesByChatRoom_EmptyList_Success() {
         when(chatRoomService.checkMembership(ROOM_ID, USER_NAME)).thenReturn(true);
-        when(chatMessageRepository.findByChatRoomIdOrderByTimestampAsc(ROOM_ID)).thenReturn(new ArrayList<>());
+        when(messageStore.findLatest(ROOM_ID, Limit.of(ChatService.DEFAULT_PAGE_SIZE + 1)))
+                .thenReturn(new ArrayList<>());
 
         List<ChatMessage> result = chatService.getMessagesByChatRoom(ROOM_ID, USER_NAME);
 
         assertNotNull(result);
         assertTrue(result.isEmpty());
     }
-} 
\ No newline at end of file
+
+    @Test
+    void getMessagePage_Latest_ReturnsAscendingWithPrevCursor() {
+        when(chatRoomService.checkMembership(ROOM_ID, USER_NAME)).thenReturn(true);
+        when(messageStore.findLatest(ROOM_ID, Limit.of(3)))
+                .thenReturn(List.of(historyMessage(30L), historyMessage(20L), historyMessage(10L)));
+
+        ChatMessagePageDto page = chatService.getMessagePage(ROOM_ID, USER_NAME, null, null, 2);
+
+        assertEquals(List.of(20L, 30L), page.getMessages().stream().map(ChatMessage::getId).toList());
+        assertEquals(MessageCursor.of(historyMessage(20L)), MessageCursor.decode(page.getPrevCursor()));
+        assertEquals(MessageCursor.of(historyMessage(30L)), MessageCursor.decode(page.getNextCursor()));
+    }
+
+    @Test
+    void getMessagePage_Latest_CacheHit_SkipsDatabase() {
+        when(chatRoomService.checkMembership(ROOM_ID, USER_NAME)).thenReturn(true);
+        when(recentMessageCache.getLatest(ROOM_ID, 3))
+                .thenReturn(Optional.of(List.of(historyMessage(10L), historyMessage(20L), historyMessage(30L))));
+
+        ChatMessagePageDto page = chatService.getMessagePage(ROOM_ID, USER_NAME, null, null, 2);
+
+        assertEquals(List.of(20L, 30L), page.getMessages().stream().map(ChatMessage::getId).toList());
+        assertNotNull(page.getPrevCursor());
+        verifyNoInteractions(messageStore);
+    }
+
+    @Test
+    void getMessagePage_Latest_CacheMiss_PrimesCache() {
+        when(chatRoomService.checkMembership(ROOM_ID, USER_NAME)).thenReturn(true);
+        when(recentMessageCache.getLatest(ROOM_ID, 3)).thenReturn(Optional.empty());
+        when(messageStore.findLatest(ROOM_ID, Limit.of(3)))
+                .thenReturn(List.of(historyMessage(20L), historyMessage(10L)));
+
+        ChatMessagePageDto page = chatService.getMessagePage(ROOM_ID, USER_NAME, null, null, 2);
+
+        assertEquals(List.of(10L, 20L), page.getMessages().stream().map(ChatMessage::getId).toList());
+        assertNull(page.getPrevCursor());
+        verify(recentMessageCache).prime(eq(ROOM_ID), argThat(messages -> messages.size() == 2), eq(true));
+    }
+
+    @Test
+    void getMessagePage_Before_NoOlderMessages_OmitsPrevCursor() {
+        when(chatRoomService.checkMembership(ROOM_ID, USER_NAME)).thenReturn(true);
+        ChatMessage cursorMessage = historyMessage(20L);
+        when(messageStore.findBefore(ROOM_ID, cursorMessage.getTimestamp(), 20L, Limit.of(3)))
+                .thenReturn(List.of(historyMessage(10L)));
+
+        ChatMessagePageDto page = chatService.getMessagePage(
+                ROOM_ID, USER_NAME, MessageCursor.of(cursorMessage).encode(), null, 2);
+
+        assertEquals(1, page.getMessages().size());
+        assertNull(page.getPrevCursor());
+        assertEquals(10L, MessageCursor.decode(page.getNextCursor()).messageId());
+    }
+
+    @Test
+    void getMessagePage_Before_CursorKeepsTimestampOfLowerIdNewerMessage() {
+        when(chatRoomService.checkMembership(ROOM_ID, USER_NAME)).thenReturn(true);
+        ChatMessage newer = messageAt(60L, HISTORY_START.plusHours(1));
+        ChatMessage older = messageAt(110L, HISTORY_START);
+        when(messageStore.findBefore(ROOM_ID, newer.getTimestamp(), 60L, Limit.of(3))).thenReturn(List.of(older));
+
+        ChatMessagePageDto page = chatService.getMessagePage(
+                ROOM_ID, USER_NAME, MessageCursor.of(newer).encode(), null, 2);
+
+        assertEquals(List.of(110L), page.getMessages().stream().map(ChatMessage::getId).toList());
+        assertEquals(new MessageCursor(HISTORY_START, 110L), MessageCursor.decode(page.getNextCursor()));
+    }
+
+    @Test
+    void getMessagePage_After_ReturnsNewerMessages() {
+        when(chatRoomService.checkMembership(ROOM_ID, USER_NAME)).thenReturn(true);
+        ChatMessage cursorMessage = historyMessage(10L);
+        ChatMessage first = historyMessage(20L);
+        when(messageStore.findAfter(ROOM_ID, cursorMessage.getTimestamp(), 10L, Limit.of(3)))
+                .thenReturn(List.of(first, historyMessage(30L), historyMessage(40L)));
+        when(messageStore.findBefore(ROOM_ID, first.getTimestamp(), 20L, Limit.of(1)))
+                .thenReturn(List.of(cursorMessage));
+
+        ChatMessagePageDto page = chatService.getMessagePage(
+                ROOM_ID, USER_NAME, null, MessageCursor.of(cursorMessage).encode(), 2);
+
+        assertEquals(List.of(20L, 30L), page.getMessages().stream().map(ChatMessage::getId).toList());
+        assertEquals(30L, MessageCursor.decode(page.getNextCursor()).messageId());
+        assertEquals(20L, MessageCursor.decode(page.getPrevCursor()).messageId());
+    }
+
+    @Test
+    void getMessagePage_After_FirstPageOfRoom_OmitsPrevCursor() {
+        when(chatRoomService.checkMembership(ROOM_ID, USER_NAME)).thenReturn(true);
+        LocalDateTime start = HISTORY_START.minusDays(1);
+        ChatMessage first = historyMessage(1L);
+        when(messageStore.findAfter(ROOM_ID, start, 0L, Limit.of(3)))
+                .thenReturn(List.of(first, historyMessage(2L)));
+        when(messageStore.findBefore(ROOM_ID, first.getTimestamp(), 1L, Limit.of(1))).thenReturn(List.of());
+
+        ChatMessagePageDto page = chatService.getMessagePage(
+                ROOM_ID, USER_NAME, null, new MessageCursor(start, 0L).encode(), 2);
+
+        assertEquals(List.of(1L, 2L), page.getMessages().stream().map(ChatMessage::getId).toList());
+        assertNull(page.getPrevCursor());
+    }
+
+    @Test
+    void getMessagePage_IdOnlyCursor_ThrowsException() {
+        when(chatRoomService.checkMembership(ROOM_ID, USER_NAME)).thenReturn(true);
+        String idOnly = Base64.getUrlEncoder().withoutPadding().encodeToString("20".getBytes(StandardCharsets.US_ASCII));
+
+        assertThrows(InvalidCursorException.class, () ->
+            chatService.getMessagePage(ROOM_ID, USER_NAME, idOnly, null, null));
+    }
+
+    @Test
+    void getMessagesSince_SettledCursor_MovesOnlyPastSettledMessages() {
+        when(chatRoomService.checkMembership(ROOM_ID, USER_NAME)).thenReturn(true);
+        SyncCursor from = new SyncCursor(LocalDateTime.now().minusHours(1), 0, true);
+        ChatMessage settled = messageAt(5L, LocalDateTime.now().minusMinutes(10));
+        ChatMessage inFlight = messageAt(3L, LocalDateTime.now());
+        when(messageStore.findSince(ROOM_ID, from.timestamp(), 0L, Limit.of(3))).thenReturn(List.of(settled, inFlight));
+
+        ChatMessageDeltaDto delta = chatService.getMessagesSince(ROOM_ID, USER_NAME, from.encode(), 2);
+
+        assertEquals(List.of(5L, 3L), delta.getMessages().stream().map(ChatMessageWireDto::id).toList());
+        assertFalse(delta.isHasMore());
+        assertNull(delta.getNextCursor());
+        SyncCursor next = SyncCursor.decode(delta.getCursor());
+        assertTrue(next.settled());
+        assertFalse(next.precedes(settled));
+        assertTrue(next.precedes(inFlight));
+        verify(metrics).recordSync(anyLong());
+    }
+
+    @Test
+    void getMessagesSince_PersisterLagging_HoldsCursorBeforeQueuedMessages() {
+        when(chatRoomService.checkMembership(ROOM_ID, USER_NAME)).thenReturn(true);
+        when(chatMessagePersister.getLagMillis()).thenReturn(Duration.ofMinutes(20).toMillis());
+        SyncCursor from = new SyncCursor(LocalDateTime.now().minusHours(1), 0, true);
+        ChatMessage settled = messageAt(5L, LocalDateTime.now().minusMinutes(30));
+        ChatMessage committedDuringLag = messageAt(9L, LocalDateTime.now().minusMinutes(10));
+        when(messageStore.findSince(ROOM_ID, from.timestamp(), 0L, Limit.of(51)))
+                .thenReturn(List.of(settled, committedDuringLag));
+
+        ChatMessageDeltaDto delta = chatService.getMessagesSince(ROOM_ID, USER_NAME, from.encode(), null);
+
+        SyncCursor next = SyncCursor.decode(delta.getCursor());
+        assertFalse(next.precedes(settled));
+        assertTrue(next.precedes(committedDuringLag));
+        assertTrue(next.timestamp().isBefore(LocalDateTime.now().minusMinutes(20)));
+    }
+
+    @Test
+    void getMessagesSince_FullPageInsideSettleWindow_PagesWithoutMovingCursor() {
+        when(chatRoomService.checkMembership(ROOM_ID, USER_NAME)).thenReturn(true);
+        SyncCursor from = new SyncCursor(LocalDateTime.now().minusMinutes(1), 0, true);
+        LocalDateTime now = LocalDateTime.now();
+        when(messageStore.findSince(ROOM_ID, from.timestamp(), 0L, Limit.of(3)))
+                .thenReturn(List.of(messageAt(20L, now), messageAt(10L, now), messageAt(30L, now)));
+
+        ChatMessageDeltaDto delta = chatService.getMessagesSince(ROOM_ID, USER_NAME, from.encode(), 2);
+
+        assertEquals(List.of(20L, 10L), delta.getMessages().stream().map(ChatMessageWireDto::id).toList());
+        assertTrue(delta.isHasMore());
+        assertEquals(from, SyncCursor.decode(delta.getCursor()));
+        assertEquals(new SyncCursor(now, 10L, false), SyncCursor.decode(delta.getNextCursor()));
+    }
+
+    @Test
+    void getMessagesSince_UnsettledCursor_LeavesClientCursorAlone() {
+        when(chatRoomService.checkMembership(ROOM_ID, USER_NAME)).thenReturn(true);
+        SyncCursor from = new SyncCursor(LocalDateTime.now().minusHours(1), 7L, false);
+        when(messageStore.findSince(ROOM_ID, from.timestamp(), 7L, Limit.of(51)))
+                .thenReturn(List.of(messageAt(8L, LocalDateTime.now().minusMinutes(30))));
+
+        ChatMessageDeltaDto delta = chatService.getMessagesSince(ROOM_ID, USER_NAME, from.encode(), null);
+
+        assertEquals(1, delta.getMessages().size());
+        assertNull(delta.getCursor());
+    }
+
+    @Test
+    void getMessagesSince_NoAccess_ThrowsException() {
+        when(chatRoomService.checkMembership(ROOM_ID, USER_NAME)).thenReturn(false);
+        String cursor = chatService.startSyncCursor();
+
+        assertThrows(UnauthorizedException.class, () ->
+            chatService.getMessagesSince(ROOM_ID, USER_NAME, cursor, null));
+
+        verify(messageStore, never()).findSince(anyString(), any(LocalDateTime.class), anyLong(), any(Limit.class));
+    }
+
+    @Test
+    void getMessagesSince_MalformedCursor_ThrowsException() {
+        when(chatRoomService.checkMembership(ROOM_ID, USER_NAME)).thenReturn(true);
+
+        assertThrows(InvalidCursorException.class, () ->
+            chatService.getMessagesSince(ROOM_ID, USER_NAME, "bm90LWEtY3Vyc29y", null));
+    }
+
+    @Test
+    void getMessagePage_InvalidCursor_ThrowsException() {
+        when(chatRoomService.checkMembership(ROOM_ID, USER_NAME)).thenReturn(true);
+
+        assertThrows(InvalidCursorException.class, () ->
+            chatService.getMessagePage(ROOM_ID, USER_NAME, "not a cursor", null, null));
+    }
+
+    @Test
+    void importMessages_Owner_SavesInBatches() {
+        when(chatRoomService.getChatRoomById(ROOM_ID)).thenReturn(chatRoom);
+        List<ChatMessageImportDto> importDtos = List.of(
+                new ChatMessageImportDto(USER_NAME, "first", LocalDateTime.now().minusDays(1)),
+                new ChatMessageImportDto("otherUser", "second", null));
+
+        int imported = chatService.importMessages(ROOM_ID, importDtos, USER_NAME);
+
+        assertEquals(2, imported);
+        verify(messageStore).saveAll(argThat(messages -> messages.size() == 2
+                && messages.stream().allMatch(m -> ROOM_ID.equals(m.getChatRoomId()) && m.getTimestamp() != null)));
+        verify(messageSearchIndex, times(2)).add(any(ChatMessage.class));
+    }
+
+    @Test
+    void importMessages_NotOwner_ThrowsException() {
+        when(chatRoomService.getChatRoomById(ROOM_ID)).thenReturn(chatRoom);
+        List<ChatMessageImportDto> importDtos = List.of(new ChatMessageImportDto(USER_NAME, "first", null));
+
+        assertThrows(UnauthorizedException.class, () ->
+            chatService.importMessages(ROOM_ID, importDtos, "intruder"));
+
+        verify(messageStore, never()).saveAll(anyList());
+    }
+
+    @Test
+    void searchMessages_InRoom_ReturnsMatchesOfThatRoom() {
+        when(messageSearchIndex.isEnabled()).thenReturn(true);
+        when(chatRoomService.checkMembership(ROOM_ID, USER_NAME)).thenReturn(true);
+        when(messageSearchIndex.search(eq("hello"), any(), eq(ChatService.DEFAULT_SEARCH_RESULTS)))
+                .thenReturn(List.of(chatMessage));
+
+        ChatMessageSearchDto result = chatService.searchMessages(USER_NAME, "hello", ROOM_ID, null);
+
+        assertEquals("hello", result.getQuery());
+        assertEquals(List.of(ChatMessageWireDto.from(chatMessage)), result.getMessages());
+        ArgumentCaptor<Predicate<String>> roomFilter = ArgumentCaptor.forClass(Predicate.class);
+        verify(messageSearchIndex).search(eq("hello"), roomFilter.capture(), anyInt());
+        assertTrue(roomFilter.getValue().test(ROOM_ID));
+        assertFalse(roomFilter.getValue().test("other-room"));
+        verify(metrics).recordSearch(anyLong());
+    }
+
+    @Test
+    void searchMessages_AllRooms_FiltersRoomsUserCannotRead() {
+        when(messageSearchIndex.isEnabled()).thenReturn(true);
+        when(chatRoomService.checkMembership("open", USER_NAME)).thenReturn(true);
+        when(chatRoomService.checkMembership("secret", USER_NAME)).thenReturn(false);
+        when(chatRoomService.checkMembership("deleted", USER_NAME))
+                .thenThrow(new ResourceNotFoundException("Чат-комната не найдена"));
+
+        chatService.searchMessages(USER_NAME, "hello", null, 500);
+
+        ArgumentCaptor<Predicate<String>> roomFilter = ArgumentCaptor.forClass(Predicate.class);
+        verify(messageSearchIndex).search(eq("hello"), roomFilter.capture(), eq(ChatService.MAX_SEARCH_RESULTS));
+        assertTrue(roomFilter.getValue().test("open"));
+        assertTrue(roomFilter.getValue().test("open"));
+        assertFalse(roomFilter.getValue().test("secret"));
+        assertFalse(roomFilter.getValue().test("deleted"));
+        verify(chatRoomService, times(1)).checkMembership("open", USER_NAME);
+    }
+
+    @Test
+    void searchMessages_NoAccessToRoom_ThrowsException() {
+        when(messageSearchIndex.isEnabled()).thenReturn(true);
+        when(chatRoomService.checkMembership(ROOM_ID, USER_NAME)).thenReturn(false);
+
+        assertThrows(UnauthorizedException.class, () ->
+            chatService.searchMessages(USER_NAME, "hello", ROOM_ID, null));
+
+        verify(messageSearchIndex, never()).search(anyString(), any(), anyInt());
+    }
+
+    @Test
+    void searchMessages_IndexDisabled_ThrowsNotFound() {
+        when(messageSearchIndex.isEnabled()).thenReturn(false);
+
+        assertThrows(ResourceNotFoundException.class, () ->
+            chatService.searchMessages(USER_NAME, "hello", null, null));
+    }
+
+    private ChatMessage messageAt(long id, LocalDateTime timestamp) {
+        ChatMessage message = messageWithId(id);
+        message.setTimestamp(timestamp);
+        return message;
+    }
+
+    /** A history message stamped {@code id} seconds after {@link #HISTORY_START}. */
+    private ChatMessage historyMessage(long id) {
+        return messageAt(id, HISTORY_START.plusSeconds(id));
+    }
+
+    private ChatMessage messageWithId(long id) {
+        ChatMessage message = new ChatMessage(USER_NAME, ROOM_ID, MESSAGE_CONTENT);
+        message.setId(id);
+        return message;
+    }
+}
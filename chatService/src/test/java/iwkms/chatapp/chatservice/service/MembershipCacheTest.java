@@ -0,0 +1,134 @@
+package iwkms.chatapp.chatservice.service;
+
+import iwkms.chatapp.chatservice.cluster.ClusterFanOut;
+import iwkms.chatapp.chatservice.exception.ResourceNotFoundException;
+import iwkms.chatapp.chatservice.model.RoomMetadata;
+import iwkms.chatapp.chatservice.repository.ChatRoomRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class MembershipCacheTest {
+
+    @Mock
+    private ChatRoomRepository chatRoomRepository;
+
+    @Mock
+    private RoomRegistry roomRegistry;
+
+    @Mock
+    private ClusterFanOut clusterFanOut;
+
+    private MembershipCache membershipCache;
+    private final String ROOM_ID = "test-room";
+    private final String MEMBER = "member";
+
+    @BeforeEach
+    void setUp() {
+        membershipCache = new MembershipCache(chatRoomRepository, roomRegistry, clusterFanOut, true, 100);
+    }
+
+    @Test
+    void isMember_PublicRoom_CachedWithoutLoadingMembers() {
+        when(roomRegistry.find(ROOM_ID)).thenReturn(Optional.of(new RoomMetadata(1L, ROOM_ID, false, MEMBER)));
+
+        assertTrue(membershipCache.isMember(ROOM_ID, "anyone"));
+        assertTrue(membershipCache.isMember(ROOM_ID, "someoneElse"));
+
+        verify(roomRegistry, times(1)).find(ROOM_ID);
+        verify(chatRoomRepository, never()).findMemberUsernamesByRoomId(anyString());
+    }
+
+    @Test
+    void isMember_PrivateRoom_LoadsMembersOnce() {
+        when(roomRegistry.find(ROOM_ID)).thenReturn(Optional.of(new RoomMetadata(1L, ROOM_ID, true, MEMBER)));
+        when(chatRoomRepository.findMemberUsernamesByRoomId(ROOM_ID)).thenReturn(List.of(MEMBER));
+
+        assertTrue(membershipCache.isMember(ROOM_ID, MEMBER));
+        assertFalse(membershipCache.isMember(ROOM_ID, "stranger"));
+
+        verify(chatRoomRepository, times(1)).findMemberUsernamesByRoomId(ROOM_ID);
+    }
+
+    @Test
+    void isMember_UnknownRoom_ThrowsAndDoesNotCache() {
+        when(roomRegistry.find(ROOM_ID)).thenReturn(Optional.empty());
+
+        assertThrows(ResourceNotFoundException.class, () -> membershipCache.isMember(ROOM_ID, MEMBER));
+        assertEquals(0, membershipCache.size());
+    }
+
+    @Test
+    void memberAddedAndRemoved_UpdateCachedSetInPlace() {
+        when(roomRegistry.find(ROOM_ID)).thenReturn(Optional.of(new RoomMetadata(1L, ROOM_ID, true, MEMBER)));
+        when(chatRoomRepository.findMemberUsernamesByRoomId(ROOM_ID)).thenReturn(List.of(MEMBER));
+        membershipCache.isMember(ROOM_ID, MEMBER);
+
+        membershipCache.memberAdded(ROOM_ID, "newcomer");
+        assertTrue(membershipCache.isMember(ROOM_ID, "newcomer"));
+
+        membershipCache.memberRemoved(ROOM_ID, MEMBER);
+        assertFalse(membershipCache.isMember(ROOM_ID, MEMBER));
+
+        verify(chatRoomRepository, times(1)).findMemberUsernamesByRoomId(ROOM_ID);
+    }
+
+    @Test
+    void invalidate_ForcesReload() {
+        when(roomRegistry.find(ROOM_ID)).thenReturn(Optional.of(new RoomMetadata(1L, ROOM_ID, false, MEMBER)));
+        membershipCache.isMember(ROOM_ID, MEMBER);
+
+        membershipCache.invalidate(ROOM_ID);
+        membershipCache.isMember(ROOM_ID, MEMBER);
+
+        verify(roomRegistry, times(2)).find(ROOM_ID);
+    }
+
+    @Test
+    void memberAdded_AnnouncesRoomChangeToOtherNodes() {
+        membershipCache.memberAdded(ROOM_ID, "newcomer");
+
+        verify(clusterFanOut).publishRoomChanged(ROOM_ID);
+    }
+
+    @Test
+    void roomChangedOnOtherNode_DropsRoomHereAndFromRegistry() {
+        ArgumentCaptor<ClusterFanOut.RoomChangeListener> listener =
+                ArgumentCaptor.forClass(ClusterFanOut.RoomChangeListener.class);
+        verify(clusterFanOut).setRoomChangeListener(listener.capture());
+        when(roomRegistry.find(ROOM_ID)).thenReturn(Optional.of(new RoomMetadata(1L, ROOM_ID, true, MEMBER)));
+        when(chatRoomRepository.findMemberUsernamesByRoomId(ROOM_ID))
+                .thenReturn(List.of(MEMBER), List.of(MEMBER, "newcomer"));
+        assertFalse(membershipCache.isMember(ROOM_ID, "newcomer"));
+
+        listener.getValue().roomChanged(ROOM_ID);
+
+        assertTrue(membershipCache.isMember(ROOM_ID, "newcomer"));
+        verify(roomRegistry).evict(ROOM_ID);
+    }
+
+    @Test
+    void allRoomsChanged_ClearsEverything() {
+        ArgumentCaptor<ClusterFanOut.RoomChangeListener> listener =
+                ArgumentCaptor.forClass(ClusterFanOut.RoomChangeListener.class);
+        verify(clusterFanOut).setRoomChangeListener(listener.capture());
+        when(roomRegistry.find(ROOM_ID)).thenReturn(Optional.of(new RoomMetadata(1L, ROOM_ID, false, MEMBER)));
+        membershipCache.isMember(ROOM_ID, MEMBER);
+
+        listener.getValue().allRoomsChanged();
+
+        assertEquals(0, membershipCache.size());
+        verify(roomRegistry).clear();
+    }
+}
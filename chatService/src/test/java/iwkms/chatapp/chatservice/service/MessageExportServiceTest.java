@@ -0,0 +1,166 @@
+package iwkms.chatapp.chatservice.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import iwkms.chatapp.chatservice.exception.InvalidExportFormatException;
+import iwkms.chatapp.chatservice.exception.RateLimitExceededException;
+import iwkms.chatapp.chatservice.exception.UnauthorizedException;
+import iwkms.chatapp.chatservice.model.ChatMessage;
+import iwkms.chatapp.chatservice.model.ChatRoom;
+import iwkms.chatapp.chatservice.store.MessageStore;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.TransactionTimedOutException;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class MessageExportServiceTest {
+
+    @Mock
+    private MessageStore messageStore;
+
+    @Mock
+    private ChatRoomService chatRoomService;
+
+    private ObjectMapper objectMapper;
+    private MessageExportService exportService;
+
+    private final String ROOM_ID = "test-room";
+
+    @BeforeEach
+    void setUp() {
+        objectMapper = new ObjectMapper()
+                .findAndRegisterModules()
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        exportService = new MessageExportService(messageStore, chatRoomService, objectMapper, 2, 600);
+    }
+
+    private ChatMessage message(long id, String sender, String content) {
+        ChatMessage message = new ChatMessage(sender, ROOM_ID, content);
+        message.setId(id);
+        message.setTimestamp(LocalDateTime.of(2024, 5, 1, 10, 0).plusMinutes(id));
+        return message;
+    }
+
+    @Test
+    void export_Ndjson_WritesOneObjectPerLine() throws Exception {
+        when(messageStore.streamAfter(ROOM_ID, 0)).thenReturn(Stream.of(
+                message(1, "alice", "Привет"), message(2, "bob", "line\nbreak")));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        long count = exportService.export(ROOM_ID, MessageExportService.Format.NDJSON, false, out);
+
+        assertEquals(2, count);
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n", -1);
+        assertEquals(3, lines.length);
+        assertEquals("", lines[2]);
+        JsonNode first = objectMapper.readTree(lines[0]);
+        assertEquals(1, first.get("id").asLong());
+        assertEquals("alice", first.get("senderUsername").asText());
+        assertEquals(ROOM_ID, first.get("chatRoomId").asText());
+        assertEquals("Привет", first.get("content").asText());
+        assertEquals("2024-05-01T10:01:00", first.get("timestamp").asText());
+        assertEquals("line\nbreak", objectMapper.readTree(lines[1]).get("content").asText());
+    }
+
+    @Test
+    void export_Csv_QuotesFieldsThatNeedIt() throws Exception {
+        when(messageStore.streamAfter(ROOM_ID, 0)).thenReturn(Stream.of(
+                message(1, "alice", "plain"), message(2, "bob", "say \"hi\", then\nleave")));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        exportService.export(ROOM_ID, MessageExportService.Format.CSV, false, out);
+
+        assertEquals("id,timestamp,chatRoomId,senderUsername,content\r\n"
+                        + "1,2024-05-01T10:01:00,test-room,alice,plain\r\n"
+                        + "2,2024-05-01T10:02:00,test-room,bob,\"say \"\"hi\"\", then\nleave\"\r\n",
+                out.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void export_Csv_EscapesFormulas() throws Exception {
+        ChatMessage formula = message(1, "-bob", "=HYPERLINK(\"http://evil\")");
+        when(messageStore.streamAfter(ROOM_ID, 0)).thenReturn(Stream.of(
+                formula, message(2, "alice", "+1"), message(3, "alice", "@here, hi"), message(4, "alice", "a=b")));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        exportService.export(ROOM_ID, MessageExportService.Format.CSV, false, out);
+
+        String[] rows = out.toString(StandardCharsets.UTF_8).split("\r\n");
+        assertEquals("1,2024-05-01T10:01:00,test-room,'-bob,\"'=HYPERLINK(\"\"http://evil\"\")\"", rows[1]);
+        assertEquals("2,2024-05-01T10:02:00,test-room,alice,'+1", rows[2]);
+        assertEquals("3,2024-05-01T10:03:00,test-room,alice,\"'@here, hi\"", rows[3]);
+        assertEquals("4,2024-05-01T10:04:00,test-room,alice,a=b", rows[4]);
+    }
+
+    @Test
+    void export_PastTimeout_FailsAndClosesTheStream() {
+        exportService = new MessageExportService(messageStore, chatRoomService, objectMapper, 2, 0);
+        AtomicBoolean closed = new AtomicBoolean();
+        when(messageStore.streamAfter(ROOM_ID, 0))
+                .thenReturn(Stream.of(message(1, "alice", "hello")).onClose(() -> closed.set(true)));
+
+        assertThrows(TransactionTimedOutException.class, () -> exportService.export(
+                ROOM_ID, MessageExportService.Format.NDJSON, false, new ByteArrayOutputStream()));
+        assertTrue(closed.get());
+    }
+
+    @Test
+    void acquireSlot_AllTaken_RefusesUntilReleased() {
+        exportService.acquireSlot();
+        exportService.acquireSlot();
+
+        RateLimitExceededException refused = assertThrows(RateLimitExceededException.class,
+                exportService::acquireSlot);
+        assertTrue(refused.getRetryAfterMillis() > 0);
+
+        exportService.releaseSlot();
+        assertDoesNotThrow(exportService::acquireSlot);
+    }
+
+    @Test
+    void export_Gzip_CompressesAndClosesTheStream() throws Exception {
+        AtomicBoolean closed = new AtomicBoolean();
+        when(messageStore.streamAfter(ROOM_ID, 0))
+                .thenReturn(Stream.of(message(1, "alice", "hello")).onClose(() -> closed.set(true)));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        exportService.export(ROOM_ID, MessageExportService.Format.NDJSON, true, out);
+
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(out.toByteArray()))) {
+            String text = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+            assertTrue(text.endsWith("}\n"));
+            assertEquals("hello", objectMapper.readTree(text).get("content").asText());
+        }
+        assertTrue(closed.get());
+    }
+
+    @Test
+    void checkAccess_NotOwner_ThrowsException() {
+        when(chatRoomService.getChatRoomById(ROOM_ID))
+                .thenReturn(new ChatRoom(ROOM_ID, "Test Room", "Test Description", false, "owner"));
+
+        assertThrows(UnauthorizedException.class, () -> exportService.checkAccess(ROOM_ID, "intruder"));
+        assertDoesNotThrow(() -> exportService.checkAccess(ROOM_ID, "owner"));
+    }
+
+    @Test
+    void formatParse_UnknownFormat_ThrowsException() {
+        assertEquals(MessageExportService.Format.CSV, MessageExportService.Format.parse("CSV"));
+        assertThrows(InvalidExportFormatException.class, () -> MessageExportService.Format.parse("xml"));
+    }
+}
@@ -0,0 +1,35 @@
+package iwkms.chatapp.chatservice.service;
+
+import iwkms.chatapp.chatservice.model.ChatMessage;
+import iwkms.chatapp.chatservice.repository.ChatMessageRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class MessageIdAllocatorTest {
+
+    @Mock
+    private ChatMessageRepository chatMessageRepository;
+
+    @InjectMocks
+    private MessageIdAllocator messageIdAllocator;
+
+    @Test
+    void nextId_HandsOutWholeBlockBeforeFetchingNext() {
+        when(chatMessageRepository.nextIdBlockStart()).thenReturn(1L, 51L);
+
+        for (long expected = 1; expected <= ChatMessage.ID_ALLOCATION_SIZE; expected++) {
+            assertEquals(expected, messageIdAllocator.nextId());
+        }
+        verify(chatMessageRepository, times(1)).nextIdBlockStart();
+
+        assertEquals(51L, messageIdAllocator.nextId());
+        verify(chatMessageRepository, times(2)).nextIdBlockStart();
+    }
+}
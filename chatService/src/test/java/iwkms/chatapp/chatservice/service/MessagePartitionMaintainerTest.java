@@ -0,0 +1,108 @@
+package iwkms.chatapp.chatservice.service;
+
+import iwkms.chatapp.chatservice.repository.ChatMessageRepository;
+import iwkms.chatapp.chatservice.repository.ChatMessageRepositoryCustom.RoomIdRange;
+import iwkms.chatapp.chatservice.search.MessageSearchIndex;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class MessagePartitionMaintainerTest {
+
+    @Mock
+    private ChatMessageRepository chatMessageRepository;
+
+    @Mock
+    private MessageSearchIndex messageSearchIndex;
+
+    private MessagePartitionMaintainer createMaintainer(LocalDateTime now, int retentionMonths) {
+        Clock clock = Clock.fixed(now.toInstant(ZoneOffset.UTC), ZoneOffset.UTC);
+        return new MessagePartitionMaintainer(chatMessageRepository, messageSearchIndex, 2, retentionMonths, 60_000,
+                clock);
+    }
+
+    @Test
+    void maintain_CreatesMissingMonthsAhead() {
+        when(chatMessageRepository.findPartitionMonths()).thenReturn(List.of(YearMonth.of(2024, 5)));
+        MessagePartitionMaintainer maintainer = createMaintainer(LocalDateTime.of(2024, 5, 20, 12, 0), 0);
+
+        maintainer.maintain();
+
+        verify(chatMessageRepository).createPartition(YearMonth.of(2024, 6));
+        verify(chatMessageRepository).createPartition(YearMonth.of(2024, 7));
+        verify(chatMessageRepository, never()).createPartition(YearMonth.of(2024, 5));
+        verify(chatMessageRepository, never()).dropPartition(any());
+        assertEquals(3, maintainer.getPartitionCount());
+    }
+
+    @Test
+    void maintain_RetentionSet_DropsExpiredPartitions() {
+        when(chatMessageRepository.findPartitionMonths()).thenReturn(List.of(
+                YearMonth.of(2024, 1), YearMonth.of(2024, 2), YearMonth.of(2024, 3),
+                YearMonth.of(2024, 4), YearMonth.of(2024, 5), YearMonth.of(2024, 6), YearMonth.of(2024, 7)));
+        MessagePartitionMaintainer maintainer = createMaintainer(LocalDateTime.of(2024, 5, 20, 12, 0), 2);
+
+        maintainer.maintain();
+
+        verify(chatMessageRepository).dropPartition(YearMonth.of(2024, 1));
+        verify(chatMessageRepository).dropPartition(YearMonth.of(2024, 2));
+        verify(chatMessageRepository, never()).dropPartition(YearMonth.of(2024, 3));
+        verify(chatMessageRepository).deleteFromDefaultPartitionBefore(LocalDateTime.of(2024, 3, 1, 0, 0));
+        assertEquals(5, maintainer.getPartitionCount());
+    }
+
+    @Test
+    void maintain_RetentionSet_RemovesExpiredMessagesFromSearchIndexFirst() {
+        LocalDateTime cutoff = LocalDateTime.of(2024, 3, 1, 0, 0);
+        when(chatMessageRepository.findPartitionMonths()).thenReturn(List.of(YearMonth.of(2024, 1)));
+        when(messageSearchIndex.isEnabled()).thenReturn(true);
+        when(chatMessageRepository.findRoomIdRangesBefore(cutoff)).thenReturn(List.of(
+                new RoomIdRange("general", 1, 500), new RoomIdRange("random", 51, 99)));
+        MessagePartitionMaintainer maintainer = createMaintainer(LocalDateTime.of(2024, 5, 20, 12, 0), 2);
+
+        maintainer.maintain();
+
+        InOrder inOrder = inOrder(messageSearchIndex, chatMessageRepository);
+        inOrder.verify(messageSearchIndex).delete(List.of(
+                new MessageSearchIndex.DeletedRange("general", 1, 500),
+                new MessageSearchIndex.DeletedRange("random", 51, 99)), cutoff);
+        inOrder.verify(chatMessageRepository).dropPartition(YearMonth.of(2024, 1));
+    }
+
+    @Test
+    void maintain_SearchIndexDeleteFails_DropsNothing() {
+        when(chatMessageRepository.findPartitionMonths()).thenReturn(List.of(YearMonth.of(2024, 1)));
+        when(messageSearchIndex.isEnabled()).thenReturn(true);
+        doThrow(new IllegalStateException("disk full")).when(messageSearchIndex).delete(any(), any());
+        MessagePartitionMaintainer maintainer = createMaintainer(LocalDateTime.of(2024, 5, 20, 12, 0), 2);
+
+        assertThrows(IllegalStateException.class, maintainer::maintain);
+
+        verify(chatMessageRepository, never()).dropPartition(any());
+    }
+
+    @Test
+    void maintain_CreateFails_KeepsGoing() {
+        doThrow(new IllegalStateException("already exists"))
+                .when(chatMessageRepository).createPartition(YearMonth.of(2024, 5));
+        MessagePartitionMaintainer maintainer = createMaintainer(LocalDateTime.of(2024, 5, 20, 12, 0), 0);
+
+        maintainer.maintain();
+
+        verify(chatMessageRepository).createPartition(YearMonth.of(2024, 6));
+        assertEquals(2, maintainer.getPartitionCount());
+    }
+}
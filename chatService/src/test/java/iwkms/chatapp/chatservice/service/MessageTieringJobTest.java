@@ -0,0 +1,116 @@
+package iwkms.chatapp.chatservice.service;
+
+import iwkms.chatapp.chatservice.model.ChatMessage;
+import iwkms.chatapp.chatservice.repository.ChatMessageRepository;
+import iwkms.chatapp.chatservice.store.MessageArchive;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class MessageTieringJobTest {
+
+    @Mock
+    private ChatMessageRepository chatMessageRepository;
+
+    @Mock
+    private MessageArchive messageArchive;
+
+    private static List<ChatMessage> messages(String roomId, long... ids) {
+        return LongStream.of(ids).mapToObj(id -> {
+            ChatMessage message = new ChatMessage("alice", roomId, "m" + id);
+            message.setId(id);
+            return message;
+        }).toList();
+    }
+
+    private MessageTieringJob createJob() {
+        return new MessageTieringJob(chatMessageRepository, messageArchive, 30, 60_000, 2);
+    }
+
+    @Test
+    void runOnce_NothingOldEnough_DoesNothing() {
+        when(chatMessageRepository.findRoomIdsBefore(any(LocalDateTime.class))).thenReturn(List.of());
+
+        assertEquals(0, createJob().runOnce());
+        verifyNoInteractions(messageArchive);
+    }
+
+    @Test
+    void runOnce_ArchivesEachRoomInBatchesThenDeletes() {
+        when(chatMessageRepository.findRoomIdsBefore(any(LocalDateTime.class))).thenReturn(List.of("general", "random"));
+        when(chatMessageRepository.findFirstIdSince(eq("general"), any(LocalDateTime.class))).thenReturn(21L);
+        when(chatMessageRepository.findFirstIdSince(eq("random"), any(LocalDateTime.class))).thenReturn(null);
+        when(messageArchive.getLastArchivedId("general")).thenReturn(3L);
+        when(messageArchive.getLastArchivedId("random")).thenReturn(0L);
+        List<ChatMessage> first = messages("general", 4, 6);
+        List<ChatMessage> second = messages("general", 9);
+        when(chatMessageRepository.findRangeAsc(eq("general"), eq(3L), eq(20L), any(LocalDateTime.class), eq(2)))
+                .thenReturn(first);
+        when(chatMessageRepository.findRangeAsc(eq("general"), eq(6L), eq(20L), any(LocalDateTime.class), eq(2)))
+                .thenReturn(second);
+        when(chatMessageRepository.findRangeAsc(eq("random"), eq(0L), eq(Long.MAX_VALUE), any(LocalDateTime.class),
+                eq(2))).thenReturn(List.of());
+
+        assertEquals(3, createJob().runOnce());
+
+        InOrder order = inOrder(messageArchive, chatMessageRepository);
+        order.verify(messageArchive).append("general", first);
+        order.verify(chatMessageRepository).deleteByIds(List.of(4L, 6L));
+        order.verify(messageArchive).append("general", second);
+        order.verify(chatMessageRepository).deleteByIds(List.of(9L));
+        verify(messageArchive, never()).append(eq("random"), anyList());
+    }
+
+    @Test
+    void runOnce_SelectsByAgeAndStopsBelowLowestRecentId() {
+        when(chatMessageRepository.findRoomIdsBefore(any(LocalDateTime.class))).thenReturn(List.of("general"));
+        when(chatMessageRepository.findFirstIdSince(eq("general"), any(LocalDateTime.class))).thenReturn(5L);
+        when(chatMessageRepository.findRangeAsc(eq("general"), eq(0L), eq(4L), any(LocalDateTime.class), eq(2)))
+                .thenReturn(List.of());
+        LocalDateTime before = LocalDateTime.now().minusDays(30);
+
+        createJob().runOnce();
+
+        ArgumentCaptor<LocalDateTime> cutoff = ArgumentCaptor.forClass(LocalDateTime.class);
+        verify(chatMessageRepository).findRoomIdsBefore(cutoff.capture());
+        verify(chatMessageRepository).findRangeAsc(eq("general"), eq(0L), eq(4L), eq(cutoff.getValue()), eq(2));
+        assertFalse(cutoff.getValue().isBefore(before));
+        assertTrue(cutoff.getValue().isBefore(LocalDateTime.now().minusDays(29)));
+    }
+
+    @Test
+    void runOnce_ArchiveWriteFails_KeepsRows() {
+        when(chatMessageRepository.findRoomIdsBefore(any(LocalDateTime.class))).thenReturn(List.of("general"));
+        List<ChatMessage> batch = messages("general", 4, 6);
+        when(chatMessageRepository.findRangeAsc(eq("general"), eq(0L), eq(Long.MAX_VALUE), any(LocalDateTime.class),
+                eq(2))).thenReturn(batch);
+        doThrow(new IllegalStateException("disk full")).when(messageArchive).append("general", batch);
+
+        MessageTieringJob job = createJob();
+
+        assertThrows(IllegalStateException.class, job::runOnce);
+        verify(chatMessageRepository, never()).deleteByIds(anyList());
+    }
+
+    @Test
+    void start_ArchiveDisabled_DoesNotSchedule() {
+        when(messageArchive.isEnabled()).thenReturn(false);
+        MessageTieringJob job = createJob();
+
+        job.start();
+
+        assertFalse(job.isRunning());
+    }
+}
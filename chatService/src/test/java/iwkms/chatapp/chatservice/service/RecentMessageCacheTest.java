@@ -0,0 +1,164 @@
+package iwkms.chatapp.chatservice.service;
+
+import iwkms.chatapp.chatservice.model.ChatMessage;
+import iwkms.chatapp.chatservice.store.MessageStore;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RecentMessageCacheTest {
+
+    private static final String ROOM_ID = "test-room";
+    private static final int RING = ChatService.MAX_PAGE_SIZE + 1;
+    private static final LocalDateTime START = LocalDateTime.of(2024, 5, 1, 12, 0);
+
+    @Test
+    void getLatest_UnknownRoom_Misses() {
+        RecentMessageCache cache = cache(10, 1000);
+
+        assertTrue(cache.getLatest(ROOM_ID, 5).isEmpty());
+    }
+
+    @Test
+    void getLatest_AppendedOnly_HitsOnceEnoughMessages() {
+        RecentMessageCache cache = cache(10, 1000);
+        for (long id = 1; id <= 3; id++) {
+            cache.append(message(ROOM_ID, id));
+        }
+
+        assertTrue(cache.getLatest(ROOM_ID, 4).isEmpty());
+        assertEquals(List.of(2L, 3L), ids(cache.getLatest(ROOM_ID, 2).orElseThrow()));
+    }
+
+    @Test
+    void prime_StartOfHistory_ServesShortRooms() {
+        RecentMessageCache cache = cache(10, 1000);
+        cache.prime(ROOM_ID, List.of(message(ROOM_ID, 1L), message(ROOM_ID, 2L)), true);
+        cache.append(message(ROOM_ID, 3L));
+
+        assertEquals(List.of(1L, 2L, 3L), ids(cache.getLatest(ROOM_ID, 50).orElseThrow()));
+    }
+
+    @Test
+    void append_KeepsHistoryOrderAndDropsOldestWhenFull() {
+        RecentMessageCache cache = cache(3, 1000);
+        cache.append(message(ROOM_ID, 1L));
+        cache.append(message(ROOM_ID, 3L));
+        cache.append(message(ROOM_ID, 2L));
+        for (long id = 4; id <= RING; id++) {
+            cache.append(message(ROOM_ID, id));
+        }
+        cache.append(message(ROOM_ID, RING + 1));
+        cache.append(message(ROOM_ID, RING + 1));
+
+        List<Long> cached = ids(cache.getLatest(ROOM_ID, RING).orElseThrow());
+        assertEquals(RING, cached.size());
+        assertEquals(List.of(2L, 3L, 4L), cached.subList(0, 3));
+        assertEquals(RING, cache.getCachedMessageCount());
+    }
+
+    @Test
+    void getLatest_MaxPageSizePlusProbe_Hits() {
+        RecentMessageCache cache = cache(100, 1000);
+        for (long id = 1; id <= RING; id++) {
+            cache.append(message(ROOM_ID, id));
+        }
+
+        assertTrue(cache.getLatest(ROOM_ID, ChatService.MAX_PAGE_SIZE + 1).isPresent());
+    }
+
+    @Test
+    void prime_MergesWithMessagesWrittenMeanwhile() {
+        RecentMessageCache cache = cache(10, 1000);
+        cache.append(message(ROOM_ID, 5L));
+        cache.prime(ROOM_ID, List.of(message(ROOM_ID, 3L), message(ROOM_ID, 4L), message(ROOM_ID, 5L)), false);
+
+        assertEquals(List.of(3L, 4L, 5L), ids(cache.getLatest(ROOM_ID, 3).orElseThrow()));
+        assertEquals(3, cache.getCachedMessageCount());
+    }
+
+    @Test
+    void append_OverGlobalCap_EvictsLeastRecentlyUsedRoom() {
+        RecentMessageCache cache = cache(2, 4);
+        cache.prime("cold", List.of(message("cold", 1L), message("cold", 2L)), true);
+        cache.prime("warm", List.of(message("warm", 3L), message("warm", 4L)), true);
+        cache.getLatest("cold", 1);
+
+        cache.append(message("hot", 5L));
+
+        assertTrue(cache.getLatest("warm", 1).isEmpty());
+        assertTrue(cache.getLatest("cold", 1).isPresent());
+        assertEquals(2, cache.getRoomCount());
+        assertEquals(3, cache.getCachedMessageCount());
+    }
+
+    @Test
+    void evict_RemovesRoom() {
+        RecentMessageCache cache = cache(10, 1000);
+        cache.prime(ROOM_ID, List.of(message(ROOM_ID, 1L)), true);
+
+        cache.evict(ROOM_ID);
+
+        assertTrue(cache.getLatest(ROOM_ID, 1).isEmpty());
+        assertEquals(0, cache.getCachedMessageCount());
+    }
+
+    @Test
+    void disabled_AlwaysMisses() {
+        RecentMessageCache cache = new RecentMessageCache(false, 10, 1000, 1, "local", MessageStore.TIMESTAMP_ORDER);
+        cache.prime(ROOM_ID, List.of(message(ROOM_ID, 1L)), true);
+
+        assertTrue(cache.getLatest(ROOM_ID, 1).isEmpty());
+    }
+
+    @Test
+    void clusterFanOut_DisablesCache() {
+        RecentMessageCache cache = new RecentMessageCache(true, 10, 1000, 1, "postgres", MessageStore.TIMESTAMP_ORDER);
+        cache.prime(ROOM_ID, List.of(message(ROOM_ID, 1L)), true);
+
+        assertTrue(cache.getLatest(ROOM_ID, 1).isEmpty());
+    }
+
+    @Test
+    void append_LowerIdStampedLater_FollowsTimestampOrder() {
+        RecentMessageCache cache = cache(10, 1000);
+        cache.prime(ROOM_ID, List.of(message(ROOM_ID, 100L), message(ROOM_ID, 101L)), true);
+        ChatMessage otherNode = message(ROOM_ID, 51L);
+        otherNode.setTimestamp(START.plusSeconds(102));
+
+        cache.append(otherNode);
+
+        assertEquals(List.of(101L, 51L), ids(cache.getLatest(ROOM_ID, 2).orElseThrow()));
+    }
+
+    @Test
+    void append_IdOrderedStore_FollowsIds() {
+        RecentMessageCache cache = new RecentMessageCache(true, 10, 1000, 1, "local", MessageStore.ID_ORDER);
+        cache.prime(ROOM_ID, List.of(message(ROOM_ID, 100L), message(ROOM_ID, 101L)), true);
+        ChatMessage late = message(ROOM_ID, 102L);
+        late.setTimestamp(START);
+
+        cache.append(late);
+
+        assertEquals(List.of(101L, 102L), ids(cache.getLatest(ROOM_ID, 2).orElseThrow()));
+    }
+
+    private static RecentMessageCache cache(int messagesPerRoom, int maxMessages) {
+        return new RecentMessageCache(true, messagesPerRoom, maxMessages, 1, "local", MessageStore.TIMESTAMP_ORDER);
+    }
+
+    /** Stamped {@code id} seconds after {@link #START}, so ids and timestamps agree unless a test changes it. */
+    private static ChatMessage message(String roomId, long id) {
+        ChatMessage message = new ChatMessage("user", roomId, "message " + id);
+        message.setId(id);
+        message.setTimestamp(START.plusSeconds(id));
+        return message;
+    }
+
+    private static List<Long> ids(List<ChatMessage> messages) {
+        return messages.stream().map(ChatMessage::getId).toList();
+    }
+}
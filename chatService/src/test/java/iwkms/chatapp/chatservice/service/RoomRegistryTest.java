@@ -0,0 +1,87 @@
+package iwkms.chatapp.chatservice.service;
+
+import iwkms.chatapp.chatservice.model.RoomMetadata;
+import iwkms.chatapp.chatservice.repository.ChatRoomRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class RoomRegistryTest {
+
+    @Mock
+    private ChatRoomRepository chatRoomRepository;
+
+    private RoomRegistry roomRegistry;
+    private final String ROOM_ID = "test-room";
+    private final String USER_NAME = "testUser";
+    private final RoomMetadata metadata = new RoomMetadata(1L, ROOM_ID, false, USER_NAME);
+
+    @BeforeEach
+    void setUp() {
+        roomRegistry = new RoomRegistry(chatRoomRepository, 100);
+    }
+
+    @Test
+    void getOrCreate_ExistingRoom_ReadWithoutInsertAndCached() {
+        when(chatRoomRepository.findMetadataByRoomId(ROOM_ID)).thenReturn(Optional.of(metadata));
+
+        assertEquals(metadata, roomRegistry.getOrCreate(ROOM_ID, USER_NAME));
+        assertEquals(metadata, roomRegistry.getOrCreate(ROOM_ID, USER_NAME));
+
+        verify(chatRoomRepository, never()).insertIfAbsent(anyString(), anyString(), anyString(), anyString());
+        verify(chatRoomRepository, times(1)).findMetadataByRoomId(ROOM_ID);
+    }
+
+    @Test
+    void getOrCreate_NewRoom_CreatesOnce() {
+        when(chatRoomRepository.findMetadataByRoomId(ROOM_ID)).thenReturn(Optional.empty(), Optional.of(metadata));
+        when(chatRoomRepository.insertIfAbsent(eq(ROOM_ID), anyString(), anyString(), eq(USER_NAME))).thenReturn(true);
+
+        RoomMetadata created = roomRegistry.getOrCreate(ROOM_ID, USER_NAME);
+        RoomMetadata found = roomRegistry.find(ROOM_ID).orElseThrow();
+
+        assertEquals(created, found);
+        verify(chatRoomRepository, times(1)).insertIfAbsent(anyString(), anyString(), anyString(), anyString());
+        verify(chatRoomRepository, times(2)).findMetadataByRoomId(ROOM_ID);
+    }
+
+    @Test
+    void getOrCreate_CreatedConcurrentlyElsewhere_ReturnsThatRoom() {
+        when(chatRoomRepository.findMetadataByRoomId(ROOM_ID)).thenReturn(Optional.empty(), Optional.of(metadata));
+        when(chatRoomRepository.insertIfAbsent(eq(ROOM_ID), anyString(), anyString(), eq(USER_NAME))).thenReturn(false);
+
+        assertEquals(metadata, roomRegistry.getOrCreate(ROOM_ID, USER_NAME));
+        assertEquals(1, roomRegistry.size());
+    }
+
+    @Test
+    void find_UnknownRoom_NotCached() {
+        when(chatRoomRepository.findMetadataByRoomId(ROOM_ID)).thenReturn(Optional.empty());
+
+        assertTrue(roomRegistry.find(ROOM_ID).isEmpty());
+        assertTrue(roomRegistry.find(ROOM_ID).isEmpty());
+
+        verify(chatRoomRepository, times(2)).findMetadataByRoomId(ROOM_ID);
+        assertEquals(0, roomRegistry.size());
+    }
+
+    @Test
+    void evict_ForcesReload() {
+        when(chatRoomRepository.findMetadataByRoomId(ROOM_ID)).thenReturn(Optional.of(metadata));
+        roomRegistry.find(ROOM_ID);
+
+        roomRegistry.evict(ROOM_ID);
+        roomRegistry.find(ROOM_ID);
+
+        verify(chatRoomRepository, times(2)).findMetadataByRoomId(ROOM_ID);
+    }
+}
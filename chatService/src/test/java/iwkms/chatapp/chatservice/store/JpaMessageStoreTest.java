@@ -0,0 +1,94 @@
+package iwkms.chatapp.chatservice.store;
+
+import iwkms.chatapp.chatservice.model.ChatMessage;
+import iwkms.chatapp.chatservice.repository.ChatMessageRepository;
+import iwkms.chatapp.chatservice.service.ChatMessagePersister;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Limit;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class JpaMessageStoreTest {
+
+    @Mock
+    private ChatMessageRepository chatMessageRepository;
+
+    @Mock
+    private ChatMessagePersister chatMessagePersister;
+
+    @InjectMocks
+    private JpaMessageStore store;
+
+    private final ChatMessage message = new ChatMessage("alice", "general", "hi");
+    private final LocalDateTime timestamp = LocalDateTime.of(2024, 5, 1, 12, 0);
+
+    private static List<ChatMessage> messages(long... ids) {
+        return LongStream.of(ids).mapToObj(id -> {
+            ChatMessage chatMessage = new ChatMessage("alice", "general", "m" + id);
+            chatMessage.setId(id);
+            return chatMessage;
+        }).toList();
+    }
+
+    private static List<Long> ids(List<ChatMessage> messages) {
+        return messages.stream().map(ChatMessage::getId).toList();
+    }
+
+    @Test
+    void save_WriteBehindDisabled_SavesThroughRepository() {
+        when(chatMessageRepository.save(message)).thenReturn(message);
+
+        assertSame(message, store.save(message));
+        verify(chatMessagePersister, never()).enqueue(any(ChatMessage.class));
+    }
+
+    @Test
+    void save_WriteBehindEnabled_EnqueuesInsteadOfSaving() {
+        when(chatMessagePersister.isEnabled()).thenReturn(true);
+        when(chatMessagePersister.enqueue(message)).thenReturn(message);
+
+        assertSame(message, store.save(message));
+        verify(chatMessageRepository, never()).save(any(ChatMessage.class));
+    }
+
+    @Test
+    void finders_DelegateToTimestampKeysetQueries() {
+        when(chatMessageRepository.findBefore("general", timestamp, 50L, 10)).thenReturn(messages(120, 40));
+
+        store.findLatest("general", Limit.of(10));
+        assertEquals(List.of(120L, 40L), ids(store.findBefore("general", timestamp, 50L, Limit.of(10))));
+        store.findAfter("general", timestamp, 50L, Limit.of(10));
+        store.findSince("general", timestamp, 50L, Limit.of(10));
+        store.saveAll(List.of(message));
+
+        verify(chatMessageRepository).findLatest("general", 10);
+        verify(chatMessageRepository, times(2)).findAfter("general", timestamp, 50L, 10);
+        verify(chatMessageRepository).saveAllInBatches(List.of(message));
+    }
+
+    @Test
+    void historyOrder_IsTimestampThenId() {
+        assertSame(MessageStore.TIMESTAMP_ORDER, store.historyOrder());
+    }
+
+    @Test
+    void streamAfter_ReadsThroughCursor() {
+        Stream<ChatMessage> cursor = messages(101, 102).stream();
+        when(chatMessageRepository.streamAfter("general", 100L, MessageStore.STREAM_PAGE_SIZE)).thenReturn(cursor);
+
+        assertSame(cursor, store.streamAfter("general", 100L));
+    }
+}
@@ -0,0 +1,111 @@
+package iwkms.chatapp.chatservice.store;
+
+import iwkms.chatapp.chatservice.model.ChatMessage;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MessageArchiveTest {
+
+    @TempDir
+    Path directory;
+
+    private MessageArchive createArchive() {
+        return new MessageArchive(true, directory.toString(), 1024, "local");
+    }
+
+    private static List<ChatMessage> messages(String roomId, long firstId, int count) {
+        List<ChatMessage> messages = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            ChatMessage message = new ChatMessage("user" + (i % 3), roomId,
+                    "message " + (firstId + i) + " " + "x".repeat(i % 40));
+            message.setId(firstId + i);
+            messages.add(message);
+        }
+        return messages;
+    }
+
+    private static List<Long> ids(List<ChatMessage> messages) {
+        return messages.stream().map(ChatMessage::getId).toList();
+    }
+
+    @Test
+    void append_RoundTripsMessagesWithMicrosecondTimestamps() {
+        MessageArchive archive = createArchive();
+        ChatMessage message = new ChatMessage("alice", "general", "Привет");
+        message.setId(7L);
+        LocalDateTime timestamp = LocalDateTime.of(2023, 1, 15, 9, 30, 0, 123_456_000);
+        message.setTimestamp(timestamp);
+
+        archive.append("general", List.of(message));
+
+        List<ChatMessage> read = archive.findAfter("general", 0, 10);
+        assertEquals(1, read.size());
+        assertEquals(7L, read.get(0).getId());
+        assertEquals("alice", read.get(0).getSenderUsername());
+        assertEquals("general", read.get(0).getChatRoomId());
+        assertEquals("Привет", read.get(0).getContent());
+        assertEquals(timestamp, read.get(0).getTimestamp());
+        assertEquals(7L, archive.getLastArchivedId("general"));
+    }
+
+    @Test
+    void find_SpansBlocksAndFiles() {
+        MessageArchive archive = createArchive();
+        archive.append("general", messages("general", 1, 200));
+        archive.append("general", messages("general", 201, 200));
+
+        assertEquals(List.of(199L, 200L, 201L, 202L), ids(archive.findAfter("general", 198, 4)));
+        assertEquals(List.of(202L, 201L, 200L, 199L), ids(archive.findBefore("general", 203, 4)));
+        assertEquals(List.of(400L, 399L), ids(archive.findBefore("general", Long.MAX_VALUE, 2)));
+        assertEquals(400, archive.findAfter("general", 0, 1000).size());
+        assertTrue(archive.findAfter("general", 400, 10).isEmpty());
+        assertTrue(archive.findBefore("general", 1, 10).isEmpty());
+    }
+
+    @Test
+    void reopen_LoadsExistingFiles() {
+        createArchive().append("general", messages("general", 1, 50));
+
+        MessageArchive reopened = createArchive();
+
+        assertEquals(50L, reopened.getLastArchivedId("general"));
+        assertEquals(List.of(50L, 49L), ids(reopened.findBefore("general", Long.MAX_VALUE, 2)));
+    }
+
+    @Test
+    void unknownRoom_IsEmptyAndCreatesNoDirectory() throws Exception {
+        MessageArchive archive = createArchive();
+        archive.append("general", messages("general", 1, 5));
+
+        assertEquals(0L, archive.getLastArchivedId("random"));
+        assertTrue(archive.findBefore("random", Long.MAX_VALUE, 10).isEmpty());
+        try (Stream<Path> entries = Files.list(directory)) {
+            assertEquals(1, entries.count());
+        }
+    }
+
+    @Test
+    void disabled_ReadsNothing() {
+        createArchive().append("general", messages("general", 1, 5));
+
+        MessageArchive disabled = new MessageArchive(false, directory.toString(), 1024, "postgres");
+
+        assertEquals(0L, disabled.getLastArchivedId("general"));
+        assertTrue(disabled.findAfter("general", 0, 10).isEmpty());
+    }
+
+    @Test
+    void enabled_WithClusterFanOut_RefusesToStart() {
+        assertThrows(IllegalStateException.class,
+                () -> new MessageArchive(true, directory.toString(), 1024, "postgres"));
+    }
+}
@@ -0,0 +1,198 @@
+package iwkms.chatapp.chatservice.store;
+
+import iwkms.chatapp.chatservice.model.ChatMessage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.data.domain.Limit;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SegmentLogMessageStoreTest {
+    /** The log positions reads by id alone, so any timestamp will do. */
+    private static final LocalDateTime CURSOR_TIME = LocalDateTime.of(2024, 5, 1, 12, 0);
+
+    @TempDir
+    Path directory;
+
+    private final AtomicLong nextId = new AtomicLong(1);
+    private SegmentLogMessageStore store;
+
+    @AfterEach
+    void tearDown() {
+        if (store != null) {
+            store.stop();
+        }
+    }
+
+    private SegmentLogMessageStore createStore(int segmentBytes, SegmentLogMessageStore.FsyncPolicy fsync) {
+        SegmentLogMessageStore created = new SegmentLogMessageStore(directory, nextId::getAndIncrement,
+                segmentBytes, 4, fsync, 10);
+        created.start();
+        return created;
+    }
+
+    @Test
+    void save_AssignsIncreasingIdsAndRoundTrips() {
+        store = createStore(4096, SegmentLogMessageStore.FsyncPolicy.ALWAYS);
+        LocalDateTime timestamp = LocalDateTime.of(2024, 5, 1, 12, 30, 15, 250_000_000);
+        ChatMessage message = new ChatMessage("alice", "general", "Привет");
+        message.setTimestamp(timestamp);
+
+        ChatMessage saved = store.save(message);
+        store.save(new ChatMessage("bob", "general", "second"));
+
+        assertEquals(1L, saved.getId());
+        List<ChatMessage> latest = store.findLatest("general", Limit.of(10));
+        assertEquals(List.of(2L, 1L), ids(latest));
+        ChatMessage read = latest.get(1);
+        assertEquals("alice", read.getSenderUsername());
+        assertEquals("general", read.getChatRoomId());
+        assertEquals("Привет", read.getContent());
+        assertEquals(timestamp, read.getTimestamp());
+    }
+
+    @Test
+    void reads_SpanSegmentsAndIndexBlocks() {
+        store = createStore(256, SegmentLogMessageStore.FsyncPolicy.OS);
+        for (int i = 0; i < 40; i++) {
+            store.save(new ChatMessage("alice", "general", "message " + i));
+        }
+
+        assertEquals(List.of(11L, 12L, 13L), ids(store.findAfter("general", CURSOR_TIME, 10L, Limit.of(3))));
+        assertEquals(List.of(9L, 8L, 7L, 6L, 5L), ids(store.findBefore("general", CURSOR_TIME, 10L, Limit.of(5))));
+        assertEquals(List.of(40L, 39L), ids(store.findLatest("general", Limit.of(2))));
+        assertEquals(40, store.findAfter("general", CURSOR_TIME, 0L, Limit.of(100)).size());
+        assertTrue(store.findAfter("general", CURSOR_TIME, 40L, Limit.of(10)).isEmpty());
+        assertTrue(store.findBefore("general", CURSOR_TIME, 1L, Limit.of(10)).isEmpty());
+    }
+
+    @Test
+    void findSince_ReadsBackToTimestampInTimestampOrder() {
+        store = createStore(256, SegmentLogMessageStore.FsyncPolicy.OS);
+        LocalDateTime start = LocalDateTime.of(2024, 5, 1, 12, 0);
+        for (int i = 0; i < 30; i++) {
+            ChatMessage message = new ChatMessage("alice", "general", "message " + i);
+            message.setTimestamp(start.plusSeconds(i));
+            store.save(message);
+        }
+        ChatMessage late = new ChatMessage("bob", "general", "late");
+        late.setTimestamp(start.plusSeconds(25));
+        store.save(late);
+
+        assertEquals(List.of(26L, 31L, 27L), ids(store.findSince("general", start.plusSeconds(25), 25L, Limit.of(3))));
+        assertTrue(store.findSince("general", start.plusMinutes(1), 0L, Limit.of(3)).isEmpty());
+    }
+
+    @Test
+    void history_IsReadInAppendOrder() {
+        store = createStore(256, SegmentLogMessageStore.FsyncPolicy.OS);
+        LocalDateTime start = LocalDateTime.of(2024, 5, 1, 12, 0);
+        for (int i = 0; i < 5; i++) {
+            ChatMessage message = new ChatMessage("alice", "general", "message " + i);
+            message.setTimestamp(start.plusSeconds(i));
+            store.save(message);
+        }
+        ChatMessage late = new ChatMessage("bob", "general", "late");
+        late.setTimestamp(start);
+        store.save(late);
+
+        assertSame(MessageStore.ID_ORDER, store.historyOrder());
+        assertEquals(List.of(6L, 5L), ids(store.findLatest("general", Limit.of(2))));
+        assertEquals(List.of(5L, 4L), ids(store.findBefore("general", start, 6L, Limit.of(2))));
+        assertEquals(List.of(6L), ids(store.findAfter("general", start.plusSeconds(4), 5L, Limit.of(2))));
+    }
+
+    @Test
+    void save_InTransaction_AppendsOnlyAfterCommit() {
+        store = createStore(4096, SegmentLogMessageStore.FsyncPolicy.OS);
+        ChatMessage committed = new ChatMessage("alice", "general", "kept");
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            store.save(committed);
+            assertNull(committed.getId());
+            assertTrue(store.findLatest("general", Limit.of(10)).isEmpty());
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            store.save(new ChatMessage("alice", "general", "rolled back"));
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        assertEquals(1L, committed.getId());
+        assertEquals(List.of(1L), ids(store.findLatest("general", Limit.of(10))));
+    }
+
+    @Test
+    void rooms_AreIsolated() {
+        store = createStore(4096, SegmentLogMessageStore.FsyncPolicy.OS);
+        store.save(new ChatMessage("alice", "general", "a"));
+        store.save(new ChatMessage("alice", "random/../x", "b"));
+
+        assertEquals(List.of(1L), ids(store.findLatest("general", Limit.of(10))));
+        assertEquals(List.of(2L), ids(store.findLatest("random/../x", Limit.of(10))));
+    }
+
+    @Test
+    void read_UnknownRoom_IsEmptyAndCreatesNothing() throws IOException {
+        store = createStore(4096, SegmentLogMessageStore.FsyncPolicy.OS);
+
+        assertTrue(store.findLatest("nobody", Limit.of(10)).isEmpty());
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    @Test
+    void reopen_RecoversMessagesAndIgnoresTornTail() throws IOException {
+        store = createStore(4096, SegmentLogMessageStore.FsyncPolicy.INTERVAL);
+        for (int i = 0; i < 10; i++) {
+            store.save(new ChatMessage("alice", "general", "message " + i));
+        }
+        store.stop();
+        Path segment;
+        try (Stream<Path> files = Files.list(RoomLog.directoryFor(directory, "general"))) {
+            segment = files.findFirst().orElseThrow();
+        }
+        int end = endOfData(segment);
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(8).putInt(0, 100).putInt(4, 12345), end);
+        }
+
+        store = createStore(4096, SegmentLogMessageStore.FsyncPolicy.INTERVAL);
+        assertEquals(10, store.findAfter("general", CURSOR_TIME, 0L, Limit.of(100)).size());
+        store.save(new ChatMessage("alice", "general", "after restart"));
+        assertEquals(List.of(11L, 10L), ids(store.findLatest("general", Limit.of(2))));
+    }
+
+    private static int endOfData(Path segment) throws IOException {
+        ByteBuffer data = ByteBuffer.wrap(Files.readAllBytes(segment));
+        int position = 0;
+        while (data.getInt(position) != 0) {
+            position += LogSegment.HEADER_BYTES + data.getInt(position);
+        }
+        return position;
+    }
+
+    private static List<Long> ids(List<ChatMessage> messages) {
+        return messages.stream().map(ChatMessage::getId).toList();
+    }
+}
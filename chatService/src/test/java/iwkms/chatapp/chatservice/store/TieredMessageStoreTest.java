@@ -0,0 +1,150 @@
+package iwkms.chatapp.chatservice.store;
+
+import iwkms.chatapp.chatservice.model.ChatMessage;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Limit;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class TieredMessageStoreTest {
+
+    @Mock
+    private MessageStore hot;
+
+    @Mock
+    private MessageArchive archive;
+
+    @InjectMocks
+    private TieredMessageStore store;
+
+    private static final LocalDateTime CURSOR_TIME = LocalDateTime.of(2024, 5, 1, 12, 0);
+
+    private static List<ChatMessage> messages(long... ids) {
+        return LongStream.of(ids).mapToObj(id -> {
+            ChatMessage message = new ChatMessage("alice", "general", "m" + id);
+            message.setId(id);
+            message.setTimestamp(CURSOR_TIME.plusSeconds(id));
+            return message;
+        }).toList();
+    }
+
+    private static List<Long> ids(List<ChatMessage> messages) {
+        return messages.stream().map(ChatMessage::getId).toList();
+    }
+
+    @Test
+    void save_GoesToHotStore() {
+        ChatMessage message = messages(1).get(0);
+        when(hot.save(message)).thenReturn(message);
+
+        store.save(message);
+
+        verify(hot).save(message);
+        verifyNoInteractions(archive);
+    }
+
+    @Test
+    void findLatest_HotTierFillsPage_SkipsArchive() {
+        when(hot.findLatest("general", Limit.of(2))).thenReturn(messages(12, 11));
+        when(archive.getLastArchivedId("general")).thenReturn(10L);
+
+        assertEquals(List.of(12L, 11L), ids(store.findLatest("general", Limit.of(2))));
+        verify(archive, never()).findBefore(anyString(), anyLong(), anyInt());
+    }
+
+    @Test
+    void findLatest_HotTierShort_ContinuesInArchive() {
+        when(hot.findLatest("general", Limit.of(4))).thenReturn(messages(12, 11));
+        when(archive.getLastArchivedId("general")).thenReturn(10L);
+        when(archive.findBefore("general", Long.MAX_VALUE, 2)).thenReturn(messages(10, 9));
+
+        assertEquals(List.of(12L, 11L, 10L, 9L), ids(store.findLatest("general", Limit.of(4))));
+    }
+
+    @Test
+    void findLatest_MessageBeingMoved_ReturnedOnceFromArchive() {
+        List<ChatMessage> hotPage = messages(12, 9, 11);
+        ChatMessage last = hotPage.get(2);
+        when(hot.findLatest("general", Limit.of(3))).thenReturn(hotPage);
+        when(hot.findBefore("general", last.getTimestamp(), 11L, Limit.of(3))).thenReturn(List.of());
+        when(archive.getLastArchivedId("general")).thenReturn(10L);
+        when(archive.findBefore("general", Long.MAX_VALUE, 1)).thenReturn(messages(10));
+
+        assertEquals(List.of(12L, 11L, 10L), ids(store.findLatest("general", Limit.of(3))));
+    }
+
+    @Test
+    void findBefore_CursorInArchive_ReadsArchiveOnly() {
+        when(archive.getLastArchivedId("general")).thenReturn(10L);
+        when(archive.findBefore("general", 5L, 3)).thenReturn(messages(4, 3, 2));
+
+        assertEquals(List.of(4L, 3L, 2L), ids(store.findBefore("general", CURSOR_TIME, 5L, Limit.of(3))));
+        verifyNoInteractions(hot);
+    }
+
+    @Test
+    void findBefore_CursorInHotTier_PassesTimestampToHotTier() {
+        when(archive.getLastArchivedId("general")).thenReturn(10L);
+        when(hot.findBefore("general", CURSOR_TIME, 40L, Limit.of(2))).thenReturn(messages(60, 30));
+
+        assertEquals(List.of(60L, 30L), ids(store.findBefore("general", CURSOR_TIME, 40L, Limit.of(2))));
+    }
+
+    @Test
+    void findAfter_CursorInArchive_ContinuesAtStartOfHotTier() {
+        when(archive.getLastArchivedId("general")).thenReturn(10L);
+        when(archive.findAfter("general", 8L, 4)).thenReturn(messages(9, 10));
+        List<ChatMessage> hotPage = messages(10, 11);
+        ChatMessage last = hotPage.get(1);
+        when(hot.findAfter(eq("general"), any(LocalDateTime.class), eq(0L), eq(Limit.of(2)))).thenReturn(hotPage);
+        when(hot.findAfter("general", last.getTimestamp(), 11L, Limit.of(2))).thenReturn(messages(12));
+
+        assertEquals(List.of(9L, 10L, 11L, 12L), ids(store.findAfter("general", CURSOR_TIME, 8L, Limit.of(4))));
+    }
+
+    @Test
+    void findAfter_CursorInHotTier_SkipsArchive() {
+        when(hot.findAfter("general", CURSOR_TIME, 11L, Limit.of(4))).thenReturn(messages(12, 13));
+        when(archive.getLastArchivedId("general")).thenReturn(10L);
+
+        assertEquals(List.of(12L, 13L), ids(store.findAfter("general", CURSOR_TIME, 11L, Limit.of(4))));
+        verify(archive, never()).findAfter(anyString(), anyLong(), anyInt());
+    }
+
+    @Test
+    void streamAfter_ReadsArchiveThenHotTier() {
+        when(archive.getLastArchivedId("general")).thenReturn(3L);
+        when(archive.findAfter("general", 0L, MessageStore.STREAM_PAGE_SIZE)).thenReturn(messages(1, 2, 3));
+        when(archive.findAfter("general", 3L, MessageStore.STREAM_PAGE_SIZE)).thenReturn(messages(4));
+        when(hot.streamAfter("general", 3L)).thenReturn(messages(4, 5).stream());
+
+        try (Stream<ChatMessage> messages = store.streamAfter("general", 0L)) {
+            assertEquals(List.of(1L, 2L, 3L, 4L, 5L), ids(messages.toList()));
+        }
+    }
+
+    @Test
+    void streamAfter_NothingArchivedPastCursor_OnlyHotTier() {
+        when(archive.getLastArchivedId("general")).thenReturn(3L);
+        when(hot.streamAfter("general", 5L)).thenReturn(messages(6).stream());
+
+        assertEquals(List.of(6L), ids(store.streamAfter("general", 5L).toList()));
+        verify(archive, never()).findAfter(anyString(), anyLong(), anyInt());
+    }
+}
@@ -0,0 +1,113 @@
+package iwkms.chatapp.chatservice.websocket;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import iwkms.chatapp.chatservice.dto.ChatMessageWireDto;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.TimeZone;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BinaryMessageCodecTest {
+
+    private final ChatMessageWireDto message = new ChatMessageWireDto(300L, "alice", "general", "Привет",
+            LocalDateTime.of(2024, 5, 1, 12, 30, 15, 123_000_000));
+
+    @Test
+    void encode_RoundTripsThroughDecoder() {
+        byte[] frame = new BinaryMessageCodec.Encoder(16).encode(message);
+
+        assertEquals(BinaryMessageCodec.VERSION, frame[0]);
+        assertEquals(message, new BinaryMessageCodec.Decoder().decode(frame));
+    }
+
+    @Test
+    void encode_TimestampIsInstantInServerZone() {
+        TimeZone original = TimeZone.getDefault();
+        TimeZone.setDefault(TimeZone.getTimeZone("Asia/Yekaterinburg"));
+        try {
+            byte[] frame = new BinaryMessageCodec.Encoder(16).encode(message);
+            int[] position = {1};
+            readVarLong(frame, position);
+
+            assertEquals(Instant.parse("2024-05-01T07:30:15.123Z").toEpochMilli(), readVarLong(frame, position));
+            assertEquals(message, new BinaryMessageCodec.Decoder().decode(frame));
+        } finally {
+            TimeZone.setDefault(original);
+        }
+    }
+
+    @Test
+    void encode_SecondMessageReferencesInternedStrings() {
+        BinaryMessageCodec.Encoder encoder = new BinaryMessageCodec.Encoder(16);
+        BinaryMessageCodec.Decoder decoder = new BinaryMessageCodec.Decoder();
+        byte[] first = encoder.encode(message);
+        ChatMessageWireDto next = new ChatMessageWireDto(301L, "alice", "general", "Привет",
+                message.timestamp());
+
+        byte[] second = encoder.encode(next);
+
+        assertEquals(first.length - "alice".length() - "general".length() - 2, second.length);
+        assertEquals(message, decoder.decode(first));
+        assertEquals(next, decoder.decode(second));
+    }
+
+    @Test
+    void encode_FullTable_SendsLiterals() {
+        BinaryMessageCodec.Encoder encoder = new BinaryMessageCodec.Encoder(1);
+        BinaryMessageCodec.Decoder decoder = new BinaryMessageCodec.Decoder();
+
+        assertEquals(message, decoder.decode(encoder.encode(message)));
+        assertEquals(message, decoder.decode(encoder.encode(message)));
+    }
+
+    @Test
+    void encode_IsSmallerThanJson() throws Exception {
+        ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+
+        byte[] json = objectMapper.writeValueAsBytes(message);
+        byte[] frame = new BinaryMessageCodec.Encoder(16).encode(message);
+
+        assertTrue(frame.length * 2 < json.length, frame.length + " vs " + json.length);
+    }
+
+    @Test
+    void decode_RejectsUnknownVersion() {
+        byte[] frame = new BinaryMessageCodec.Encoder(16).encode(message);
+        frame[0] = 2;
+
+        assertThrows(IllegalArgumentException.class, () -> new BinaryMessageCodec.Decoder().decode(frame));
+    }
+
+    @Test
+    void decode_RejectsTruncatedFrame() {
+        byte[] frame = new BinaryMessageCodec.Encoder(16).encode(message);
+
+        assertThrows(IllegalArgumentException.class,
+                () -> new BinaryMessageCodec.Decoder().decode(Arrays.copyOf(frame, frame.length - 3)));
+    }
+
+    @Test
+    void decode_RejectsUnknownReference() {
+        BinaryMessageCodec.Encoder encoder = new BinaryMessageCodec.Encoder(16);
+        encoder.encode(message);
+
+        assertThrows(IllegalArgumentException.class,
+                () -> new BinaryMessageCodec.Decoder().decode(encoder.encode(message)));
+    }
+
+    private static long readVarLong(byte[] frame, int[] position) {
+        long value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = frame[position[0]++];
+            value |= (long) (b & 0x7f) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+    }
+}
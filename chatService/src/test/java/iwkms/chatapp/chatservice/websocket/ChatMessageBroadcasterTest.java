@@ -0,0 +1,176 @@
+package iwkms.chatapp.chatservice.websocket;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import iwkms.chatapp.chatservice.cluster.ClusterFanOut;
+import iwkms.chatapp.chatservice.model.ChatMessage;
+import iwkms.chatapp.chatservice.search.MessageSearchIndex;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.util.MimeTypeUtils;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.same;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class ChatMessageBroadcasterTest {
+
+    @Mock
+    private MessageChannel brokerChannel;
+
+    @Mock
+    private ClusterFanOut clusterFanOut;
+
+    @Mock
+    private MessageSearchIndex messageSearchIndex;
+
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    private ChatMessageBroadcaster broadcaster;
+    private ChatMessage message;
+
+    @BeforeEach
+    void setUp() {
+        broadcaster = new ChatMessageBroadcaster(new SimpMessagingTemplate(brokerChannel), clusterFanOut,
+                messageSearchIndex, objectMapper);
+        message = new ChatMessage("alice", "general", "Привет");
+        message.setId(42L);
+        message.setTimestamp(LocalDateTime.of(2024, 5, 1, 12, 30));
+    }
+
+    @Test
+    void broadcast_SendsEncodedJsonToRoomTopic() throws Exception {
+        when(brokerChannel.send(any(), anyLong())).thenReturn(true);
+
+        broadcaster.broadcast(message);
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Message<?>> captor = ArgumentCaptor.forClass(Message.class);
+        verify(brokerChannel).send(captor.capture(), anyLong());
+        Message<?> sent = captor.getValue();
+        assertEquals("/topic/messages/general", SimpMessageHeaderAccessor.getDestination(sent.getHeaders()));
+        assertEquals(SimpMessageType.MESSAGE, SimpMessageHeaderAccessor.getMessageType(sent.getHeaders()));
+        assertEquals(MimeTypeUtils.APPLICATION_JSON, SimpMessageHeaderAccessor.getContentType(sent.getHeaders()));
+
+        JsonNode json = objectMapper.readTree((byte[]) sent.getPayload());
+        assertEquals(42L, json.get("id").asLong());
+        assertEquals("alice", json.get("senderUsername").asText());
+        assertEquals("general", json.get("chatRoomId").asText());
+        assertEquals("Привет", json.get("content").asText());
+        assertEquals("2024-05-01T12:30:00", json.get("timestamp").asText());
+        assertEquals(5, json.size());
+    }
+
+    @Test
+    void broadcast_PublishesSamePayloadToCluster() {
+        when(brokerChannel.send(any(), anyLong())).thenReturn(true);
+
+        broadcaster.broadcast(message);
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Message<?>> captor = ArgumentCaptor.forClass(Message.class);
+        verify(brokerChannel).send(captor.capture(), anyLong());
+        verify(clusterFanOut).publish(eq("general"), same((byte[]) captor.getValue().getPayload()));
+    }
+
+    @Test
+    void constructor_RegistersLocalDeliveryForRemoteMessages() {
+        when(brokerChannel.send(any(), anyLong())).thenReturn(true);
+        ArgumentCaptor<ClusterFanOut.LocalDelivery> delivery = ArgumentCaptor.forClass(ClusterFanOut.LocalDelivery.class);
+        verify(clusterFanOut).setLocalDelivery(delivery.capture());
+        byte[] payload = "{}".getBytes();
+
+        delivery.getValue().deliver("remote-room", payload);
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Message<?>> captor = ArgumentCaptor.forClass(Message.class);
+        verify(brokerChannel).send(captor.capture(), anyLong());
+        assertEquals("/topic/messages/remote-room", SimpMessageHeaderAccessor.getDestination(captor.getValue().getHeaders()));
+        assertSame(payload, captor.getValue().getPayload());
+        verify(clusterFanOut, never()).publish(any(), any());
+        verify(messageSearchIndex, never()).add(any());
+    }
+
+    @Test
+    void remoteMessage_IsAddedToSearchIndexWithoutLocalDelivery() {
+        when(messageSearchIndex.isEnabled()).thenReturn(true);
+        broadcaster = new ChatMessageBroadcaster(new SimpMessagingTemplate(brokerChannel), clusterFanOut,
+                messageSearchIndex, objectMapper);
+        ArgumentCaptor<ClusterFanOut.LocalDelivery> relay = ArgumentCaptor.forClass(ClusterFanOut.LocalDelivery.class);
+        verify(clusterFanOut).setRelayListener(relay.capture());
+
+        relay.getValue().deliver("general", broadcaster.encode(message));
+
+        ArgumentCaptor<ChatMessage> indexed = ArgumentCaptor.forClass(ChatMessage.class);
+        verify(messageSearchIndex).add(indexed.capture());
+        assertEquals(message, indexed.getValue());
+        verify(brokerChannel, never()).send(any(), anyLong());
+    }
+
+    @Test
+    void remoteMessage_Unreadable_IsNotIndexed() {
+        when(messageSearchIndex.isEnabled()).thenReturn(true);
+        new ChatMessageBroadcaster(new SimpMessagingTemplate(brokerChannel), clusterFanOut,
+                messageSearchIndex, objectMapper);
+        ArgumentCaptor<ClusterFanOut.LocalDelivery> relay = ArgumentCaptor.forClass(ClusterFanOut.LocalDelivery.class);
+        verify(clusterFanOut).setRelayListener(relay.capture());
+
+        relay.getValue().deliver("general", "not json".getBytes());
+
+        verify(messageSearchIndex, never()).add(any());
+    }
+
+    @Test
+    void searchDisabled_RegistersNoRelayListener() {
+        verify(clusterFanOut, never()).setRelayListener(any());
+    }
+
+    @Test
+    void localBroadcast_IsNotIndexedAgain() {
+        when(brokerChannel.send(any(), anyLong())).thenReturn(true);
+
+        broadcaster.broadcast(message);
+
+        verify(messageSearchIndex, never()).add(any());
+    }
+
+    @Test
+    void encode_ReusesPooledBufferWithoutSharingOutput() throws Exception {
+        byte[] first = broadcaster.encode(message);
+        message.setContent("x");
+        byte[] second = broadcaster.encode(message);
+
+        assertNotSame(first, second);
+        assertEquals("Привет", objectMapper.readTree(first).get("content").asText());
+        assertEquals("x", objectMapper.readTree(second).get("content").asText());
+    }
+
+    @Test
+    void encode_HandlesMessagesLargerThanPooledBuffer() throws Exception {
+        message.setContent("a".repeat(100_000));
+
+        byte[] large = broadcaster.encode(message);
+        message.setContent("b");
+        byte[] small = broadcaster.encode(message);
+
+        assertEquals(100_000, objectMapper.readTree(large).get("content").asText().length());
+        assertEquals("b", objectMapper.readTree(small).get("content").asText());
+    }
+}
@@ -0,0 +1,146 @@
+package iwkms.chatapp.chatservice.websocket;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import iwkms.chatapp.chatservice.exception.ServiceOverloadedException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RoomShardedExecutorTest {
+
+    private RoomShardedExecutor executor;
+
+    @AfterEach
+    void tearDown() {
+        if (executor != null) {
+            executor.stop();
+        }
+    }
+
+    @Test
+    void constructor_ZeroShards_UsesProcessorCount() {
+        executor = new RoomShardedExecutor(0, 10, 1_000);
+
+        assertEquals(Runtime.getRuntime().availableProcessors(), executor.getShardCount());
+    }
+
+    @Test
+    void execute_RunsTasksOfOneRoomInSubmissionOrder() throws InterruptedException {
+        executor = new RoomShardedExecutor(4, 1_000, 1_000);
+        executor.start();
+        List<Integer> seen = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch done = new CountDownLatch(500);
+
+        for (int i = 0; i < 500; i++) {
+            int n = i;
+            executor.execute("room", () -> {
+                seen.add(n);
+                done.countDown();
+            });
+        }
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        for (int i = 0; i < 500; i++) {
+            assertEquals(i, seen.get(i));
+        }
+    }
+
+    @Test
+    void execute_FullShard_ThrowsServiceOverloaded() throws InterruptedException {
+        executor = new RoomShardedExecutor(1, 1, 1_000);
+        executor.start();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        executor.execute("room", () -> {
+            started.countDown();
+            awaitQuietly(release);
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        executor.execute("room", () -> { });
+
+        assertThrows(ServiceOverloadedException.class, () -> executor.execute("room", () -> { }));
+        release.countDown();
+    }
+
+    @Test
+    void execute_AfterStop_ThrowsServiceOverloaded() {
+        executor = new RoomShardedExecutor(2, 10, 1_000);
+        executor.start();
+        executor.stop();
+
+        assertFalse(executor.isRunning());
+        assertThrows(ServiceOverloadedException.class, () -> executor.execute("room", () -> { }));
+    }
+
+    @Test
+    void execute_BeforeStart_ThrowsServiceOverloaded() {
+        executor = new RoomShardedExecutor(2, 10, 1_000);
+
+        assertThrows(ServiceOverloadedException.class, () -> executor.execute("room", () -> { }));
+    }
+
+    @Test
+    void start_AfterStop_RunsTasksOnNewShards() throws InterruptedException {
+        executor = new RoomShardedExecutor(2, 10, 1_000);
+        executor.start();
+        executor.stop();
+
+        executor.start();
+        CountDownLatch done = new CountDownLatch(1);
+        executor.execute("room", done::countDown);
+
+        assertTrue(executor.isRunning());
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void stop_RunsQueuedTasksBeforeReturning() {
+        executor = new RoomShardedExecutor(1, 100, 5_000);
+        executor.start();
+        List<Integer> seen = Collections.synchronizedList(new ArrayList<>());
+        for (int i = 0; i < 50; i++) {
+            int n = i;
+            executor.execute("room", () -> seen.add(n));
+        }
+
+        executor.stop();
+
+        assertEquals(50, seen.size());
+    }
+
+    @Test
+    void bindTo_ExportsQueueDepthPerShardAndRejections() throws InterruptedException {
+        executor = new RoomShardedExecutor(1, 1, 1_000);
+        executor.start();
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        executor.bindTo(registry);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        executor.execute("room", () -> {
+            started.countDown();
+            awaitQuietly(release);
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        executor.execute("room", () -> { });
+        assertThrows(ServiceOverloadedException.class, () -> executor.execute("room", () -> { }));
+
+        assertEquals(1.0, registry.get("chat.websocket.shard.queued").tag("shard", "0").gauge().value());
+        assertEquals(1.0, registry.get("chat.websocket.shard.rejected").functionCounter().count());
+        release.countDown();
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package iwkms.chatapp.chatservice.websocket;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import iwkms.chatapp.chatservice.dto.ChatMessageWireDto;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.messaging.Message;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.broker.OrderedMessageChannelDecorator;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ExecutorSubscribableChannel;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.util.MimeTypeUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class StripedTopicBrokerMessageHandlerTest {
+
+    private static final String ROOM_TOPIC = "/topic/messages/general";
+
+    @Mock
+    private MessageChannel clientOutboundChannel;
+
+    private StripedTopicBrokerMessageHandler handler;
+
+    @BeforeEach
+    void setUp() {
+        handler = new StripedTopicBrokerMessageHandler(new ExecutorSubscribableChannel(), clientOutboundChannel,
+                new ExecutorSubscribableChannel(), List.of("/topic"), 8);
+        handler.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        handler.stop();
+    }
+
+    @Test
+    void broadcast_SendsSamePayloadToEverySubscriber() {
+        when(clientOutboundChannel.send(any())).thenReturn(true);
+        handler.handleMessage(subscribe("s1", "sub-0", ROOM_TOPIC));
+        handler.handleMessage(subscribe("s2", "sub-3", ROOM_TOPIC));
+        byte[] payload = "{\"content\":\"hi\"}".getBytes(StandardCharsets.UTF_8);
+
+        handler.handleMessage(message(ROOM_TOPIC, payload));
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Message<?>> captor = ArgumentCaptor.forClass(Message.class);
+        verify(clientOutboundChannel, times(2)).send(captor.capture());
+        List<Message<?>> sent = captor.getAllValues();
+        assertSame(payload, sent.get(0).getPayload());
+        assertSame(payload, sent.get(1).getPayload());
+        assertEquals("s1", SimpMessageHeaderAccessor.getSessionId(sent.get(0).getHeaders()));
+        assertEquals("sub-3", SimpMessageHeaderAccessor.getSubscriptionId(sent.get(1).getHeaders()));
+        assertEquals(ROOM_TOPIC, SimpMessageHeaderAccessor.getDestination(sent.get(1).getHeaders()));
+    }
+
+    @Test
+    void disconnect_StopsDelivery() {
+        handler.handleMessage(subscribe("s1", "sub-0", ROOM_TOPIC));
+        handler.handleMessage(disconnect("s1"));
+
+        handler.handleMessage(message(ROOM_TOPIC, new byte[0]));
+
+        verifyNoInteractions(clientOutboundChannel);
+    }
+
+    @Test
+    void queueDestinations_AreIgnored() {
+        handler.handleMessage(subscribe("s1", "sub-0", "/queue/errors-users1"));
+
+        handler.handleMessage(message("/queue/errors-users1", new byte[0]));
+
+        assertEquals(0, handler.getRegistry().getSubscriptionCount());
+        verifyNoInteractions(clientOutboundChannel);
+    }
+
+    @Test
+    void concurrentBroadcasts_ReachBinarySessionInPublishOrder() throws Exception {
+        ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        WireFormatInterceptor wireFormat = new WireFormatInterceptor(objectMapper, true, 16);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        ExecutorSubscribableChannel outbound = new ExecutorSubscribableChannel(executor);
+        outbound.addInterceptor(wireFormat);
+        OrderedMessageChannelDecorator.configureInterceptor(outbound, true);
+        wireFormat.preSend(binaryConnect("s1"), null);
+
+        BinaryMessageCodec.Decoder decoder = new BinaryMessageCodec.Decoder();
+        List<Object> received = new CopyOnWriteArrayList<>();
+        CountDownLatch firstHandling = new CountDownLatch(1);
+        CountDownLatch releaseFirst = new CountDownLatch(1);
+        CountDownLatch delivered = new CountDownLatch(2);
+        outbound.subscribe(frame -> {
+            try {
+                if (firstHandling.getCount() > 0) {
+                    firstHandling.countDown();
+                    releaseFirst.await(5, TimeUnit.SECONDS);
+                }
+                received.add(decoder.decode((byte[]) frame.getPayload()));
+            } catch (RuntimeException | InterruptedException e) {
+                received.add(e);
+            } finally {
+                delivered.countDown();
+            }
+        });
+
+        handler.stop();
+        handler = new StripedTopicBrokerMessageHandler(new ExecutorSubscribableChannel(), outbound,
+                new ExecutorSubscribableChannel(), List.of("/topic"), 8);
+        handler.setPreservePublishOrder(true);
+        handler.start();
+        handler.handleMessage(subscribe("s1", "sub-0", ROOM_TOPIC));
+
+        ChatMessageWireDto first = wireMessage(1L, "first");
+        ChatMessageWireDto second = wireMessage(2L, "second");
+        ExecutorService publishers = Executors.newFixedThreadPool(2);
+        try {
+            publishers.submit(() -> handler.handleMessage(jsonMessage(objectMapper, first))).get(5, TimeUnit.SECONDS);
+            assertTrue(firstHandling.await(5, TimeUnit.SECONDS));
+            publishers.submit(() -> handler.handleMessage(jsonMessage(objectMapper, second))).get(5, TimeUnit.SECONDS);
+            releaseFirst.countDown();
+            assertTrue(delivered.await(5, TimeUnit.SECONDS));
+        } finally {
+            publishers.shutdownNow();
+            executor.shutdownNow();
+        }
+
+        assertEquals(List.of(first, second), received);
+    }
+
+    private static ChatMessageWireDto wireMessage(long id, String content) {
+        return new ChatMessageWireDto(id, "alice", "general", content, LocalDateTime.of(2024, 5, 1, 12, 0));
+    }
+
+    private static Message<byte[]> jsonMessage(ObjectMapper objectMapper, ChatMessageWireDto wireMessage) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setDestination(ROOM_TOPIC);
+        accessor.setContentType(MimeTypeUtils.APPLICATION_JSON);
+        try {
+            return MessageBuilder.createMessage(objectMapper.writeValueAsBytes(wireMessage),
+                    accessor.getMessageHeaders());
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Message<byte[]> binaryConnect(String sessionId) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.CONNECT);
+        accessor.setSessionId(sessionId);
+        accessor.setNativeHeader(WireFormatInterceptor.ACCEPT_HEADER, BinaryMessageCodec.MIME_TYPE.toString());
+        Map<String, Object> attributes = new HashMap<>();
+        attributes.put(WireFormatInterceptor.NATIVE_TRANSPORT_ATTRIBUTE, Boolean.TRUE);
+        accessor.setSessionAttributes(attributes);
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+
+    private static Message<byte[]> subscribe(String sessionId, String subscriptionId, String destination) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.SUBSCRIBE);
+        accessor.setSessionId(sessionId);
+        accessor.setSubscriptionId(subscriptionId);
+        accessor.setDestination(destination);
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+
+    private static Message<byte[]> disconnect(String sessionId) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.DISCONNECT);
+        accessor.setSessionId(sessionId);
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+
+    private static Message<byte[]> message(String destination, byte[] payload) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setDestination(destination);
+        return MessageBuilder.createMessage(payload, accessor.getMessageHeaders());
+    }
+}
@@ -0,0 +1,97 @@
+package iwkms.chatapp.chatservice.websocket;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TopicSubscriptionRegistryTest {
+
+    private static final String ROOM_TOPIC = "/topic/messages/general";
+
+    private final TopicSubscriptionRegistry registry = new TopicSubscriptionRegistry(4);
+
+    @Test
+    void subscribe_AddsToDestination() {
+        registry.subscribe("s1", "sub-0", ROOM_TOPIC);
+        registry.subscribe("s2", "sub-0", ROOM_TOPIC);
+
+        assertEquals(2, registry.getSubscriptions(ROOM_TOPIC).length);
+        assertEquals(0, registry.getSubscriptions("/topic/messages/other").length);
+    }
+
+    @Test
+    void unsubscribe_RemovesOnlyThatSubscription() {
+        registry.subscribe("s1", "sub-0", ROOM_TOPIC);
+        registry.subscribe("s2", "sub-0", ROOM_TOPIC);
+
+        registry.unsubscribe("s1", "sub-0");
+
+        TopicSubscriptionRegistry.Subscription[] subscriptions = registry.getSubscriptions(ROOM_TOPIC);
+        assertEquals(1, subscriptions.length);
+        assertEquals("s2", subscriptions[0].sessionId());
+    }
+
+    @Test
+    void unsubscribeAll_RemovesEverySubscriptionOfSession() {
+        registry.subscribe("s1", "sub-0", ROOM_TOPIC);
+        registry.subscribe("s1", "sub-1", "/topic/messages/other");
+
+        registry.unsubscribeAll("s1");
+
+        assertEquals(0, registry.getSubscriptionCount());
+        assertEquals(0, registry.getDestinationCount());
+    }
+
+    @Test
+    void subscribe_ReusedSubscriptionId_MovesSubscription() {
+        registry.subscribe("s1", "sub-0", ROOM_TOPIC);
+        registry.subscribe("s1", "sub-0", "/topic/messages/other");
+
+        assertEquals(0, registry.getSubscriptions(ROOM_TOPIC).length);
+        assertEquals(1, registry.getSubscriptions("/topic/messages/other").length);
+    }
+
+    @Test
+    void getSubscriptions_ReturnsSnapshotUnaffectedByLaterChanges() {
+        registry.subscribe("s1", "sub-0", ROOM_TOPIC);
+        TopicSubscriptionRegistry.Subscription[] snapshot = registry.getSubscriptions(ROOM_TOPIC);
+
+        registry.subscribe("s2", "sub-0", ROOM_TOPIC);
+
+        assertEquals(1, snapshot.length);
+    }
+
+    @Test
+    void getMaxSubscriptionsPerDestination_ReturnsLargestDestination() {
+        registry.subscribe("s1", "sub-0", ROOM_TOPIC);
+        registry.subscribe("s2", "sub-0", ROOM_TOPIC);
+        registry.subscribe("s1", "sub-1", "/topic/messages/other");
+
+        assertEquals(2, registry.getMaxSubscriptionsPerDestination());
+    }
+
+    @Test
+    void subscribe_RacingWithUnsubscribeAll_LeavesNoOrphans() throws InterruptedException {
+        for (int round = 0; round < 200; round++) {
+            String session = "s" + round;
+            Thread subscriber = new Thread(() -> {
+                for (int i = 0; i < 50; i++) {
+                    registry.subscribe(session, "sub-" + i, "/topic/messages/room-" + i);
+                }
+            });
+            Thread disconnect = new Thread(() -> {
+                for (int i = 0; i < 50; i++) {
+                    registry.unsubscribeAll(session);
+                }
+            });
+            subscriber.start();
+            disconnect.start();
+            subscriber.join();
+            disconnect.join();
+
+            registry.unsubscribeAll(session);
+        }
+
+        assertEquals(0, registry.getSubscriptionCount());
+    }
+}
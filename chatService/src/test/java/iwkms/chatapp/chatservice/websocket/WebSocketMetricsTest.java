@@ -0,0 +1,67 @@
+package iwkms.chatapp.chatservice.websocket;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.SubscribableChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.ExecutorSubscribableChannel;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.messaging.SessionConnectedEvent;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class WebSocketMetricsTest {
+
+    @Test
+    void sessions_CountsConnectedSessionsOnce() {
+        WebSocketMetrics metrics = new WebSocketMetrics(channel(null), channel(null));
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        metrics.bindTo(registry);
+
+        metrics.onConnected(new SessionConnectedEvent(this, connected("s1")));
+        metrics.onConnected(new SessionConnectedEvent(this, connected("s2")));
+        metrics.onDisconnect(new SessionDisconnectEvent(this, connected("s1"), "s1", CloseStatus.NORMAL));
+        metrics.onDisconnect(new SessionDisconnectEvent(this, connected("s1"), "s1", CloseStatus.NORMAL));
+
+        assertEquals(1.0, registry.get("chat.websocket.sessions").gauge().value());
+        assertEquals(2.0, registry.get("chat.websocket.connections").functionCounter().count());
+    }
+
+    @Test
+    void bindTo_ExposesChannelExecutorBacklog() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.initialize();
+        try {
+            WebSocketMetrics metrics = new WebSocketMetrics(
+                    channel(new ExecutorSubscribableChannel(executor)), channel(new ExecutorSubscribableChannel()));
+            SimpleMeterRegistry registry = new SimpleMeterRegistry();
+            metrics.bindTo(registry);
+
+            assertEquals(0.0, registry.get("chat.websocket.channel.queued").tag("channel", "inbound").gauge().value());
+            assertEquals(1, registry.find("chat.websocket.channel.queued").gauges().size());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static ObjectProvider<SubscribableChannel> channel(SubscribableChannel channel) {
+        StaticListableBeanFactory beanFactory = new StaticListableBeanFactory();
+        if (channel != null) {
+            beanFactory.addBean("channel", channel);
+        }
+        return beanFactory.getBeanProvider(SubscribableChannel.class);
+    }
+
+    private static Message<byte[]> connected(String sessionId) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.CONNECT_ACK);
+        accessor.setSessionId(sessionId);
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+}
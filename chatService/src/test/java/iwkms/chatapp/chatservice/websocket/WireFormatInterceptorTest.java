@@ -0,0 +1,117 @@
+package iwkms.chatapp.chatservice.websocket;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import iwkms.chatapp.chatservice.dto.ChatMessageWireDto;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.util.MimeTypeUtils;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WireFormatInterceptorTest {
+    private static final String SESSION_ID = "session-1";
+    private static final String BINARY = "application/octet-stream;schema=chat-message-v1";
+
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    private WireFormatInterceptor interceptor;
+    private ChatMessageWireDto wireMessage;
+
+    @BeforeEach
+    void setUp() {
+        interceptor = new WireFormatInterceptor(objectMapper, true, 16);
+        wireMessage = new ChatMessageWireDto(7L, "alice", "general", "hi", LocalDateTime.of(2024, 5, 1, 12, 0));
+    }
+
+    @Test
+    void connect_NativeTransportPreferringBinary_SelectsBinary() {
+        interceptor.preSend(connect(true, BINARY + ", application/json"), null);
+
+        assertTrue(interceptor.isBinary(SESSION_ID));
+    }
+
+    @Test
+    void connect_PreferringJson_KeepsJson() {
+        interceptor.preSend(connect(true, "application/json, " + BINARY), null);
+
+        assertFalse(interceptor.isBinary(SESSION_ID));
+    }
+
+    @Test
+    void connect_SockJsTransport_KeepsJson() {
+        interceptor.preSend(connect(false, BINARY), null);
+
+        assertFalse(interceptor.isBinary(SESSION_ID));
+    }
+
+    @Test
+    void connect_BinaryDisabled_KeepsJson() {
+        interceptor = new WireFormatInterceptor(objectMapper, false, 16);
+
+        interceptor.preSend(connect(true, BINARY), null);
+
+        assertFalse(interceptor.isBinary(SESSION_ID));
+    }
+
+    @Test
+    void message_BinarySession_IsReencoded() throws Exception {
+        interceptor.preSend(connect(true, BINARY), null);
+
+        Message<?> sent = interceptor.preSend(roomMessage(objectMapper.writeValueAsBytes(wireMessage)), null);
+
+        assertEquals(BinaryMessageCodec.MIME_TYPE, SimpMessageHeaderAccessor.getContentType(sent.getHeaders()));
+        assertEquals("/topic/messages/general", SimpMessageHeaderAccessor.getDestination(sent.getHeaders()));
+        assertEquals(wireMessage, new BinaryMessageCodec.Decoder().decode((byte[]) sent.getPayload()));
+    }
+
+    @Test
+    void message_JsonSession_IsUnchanged() throws Exception {
+        Message<?> original = roomMessage(objectMapper.writeValueAsBytes(wireMessage));
+
+        assertSame(original, interceptor.preSend(original, null));
+    }
+
+    @Test
+    void disconnect_ForgetsSession() {
+        interceptor.preSend(connect(true, BINARY), null);
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.DISCONNECT);
+        accessor.setSessionId(SESSION_ID);
+
+        interceptor.preSend(MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders()), null);
+
+        assertFalse(interceptor.isBinary(SESSION_ID));
+        assertEquals(0, interceptor.getBinarySessionCount());
+    }
+
+    private Message<byte[]> connect(boolean nativeTransport, String accept) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.CONNECT);
+        accessor.setSessionId(SESSION_ID);
+        accessor.setNativeHeader(WireFormatInterceptor.ACCEPT_HEADER, accept);
+        Map<String, Object> attributes = new HashMap<>();
+        if (nativeTransport) {
+            attributes.put(WireFormatInterceptor.NATIVE_TRANSPORT_ATTRIBUTE, Boolean.TRUE);
+        }
+        accessor.setSessionAttributes(attributes);
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+
+    private Message<byte[]> roomMessage(byte[] json) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setSessionId(SESSION_ID);
+        accessor.setSubscriptionId("sub-0");
+        accessor.setDestination("/topic/messages/general");
+        accessor.setContentType(MimeTypeUtils.APPLICATION_JSON);
+        accessor.setLeaveMutable(true);
+        return MessageBuilder.createMessage(json, accessor.getMessageHeaders());
+    }
+}
@@ -0,0 +1,132 @@
+package iwkms.chatapp.common.cache;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiFunction;
+
+/**
+ * A map bounded to {@code maxEntries} that drops its least recently used
+ * entry when full. Keys are spread over lock stripes, each an access-ordered
+ * {@link LinkedHashMap} holding its share of the capacity, so recency is
+ * exact within a stripe and unrelated keys rarely contend. Small caches get a
+ * single stripe, i.e. exact LRU.
+ */
+public final class BoundedLruCache<K, V> {
+    private static final int MIN_ENTRIES_PER_STRIPE = 1024;
+    private static final int MAX_STRIPES = 64;
+
+    private final Stripe<K, V>[] stripes;
+    private final int mask;
+    private final LongAdder evictionCount = new LongAdder();
+
+    @SuppressWarnings("unchecked")
+    public BoundedLruCache(int maxEntries) {
+        int wanted = Math.max(1, Math.min(MAX_STRIPES, maxEntries / MIN_ENTRIES_PER_STRIPE));
+        int size = Integer.highestOneBit(wanted);
+        int perStripe = Math.max(1, maxEntries / size);
+        this.stripes = new Stripe[size];
+        for (int i = 0; i < size; i++) {
+            stripes[i] = new Stripe<>(perStripe, evictionCount);
+        }
+        this.mask = size - 1;
+    }
+
+    /** Returns the cached value and marks it as recently used. */
+    public V get(K key) {
+        Stripe<K, V> stripe = stripe(key);
+        stripe.lock.lock();
+        try {
+            return stripe.entries.get(key);
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    public void put(K key, V value) {
+        Stripe<K, V> stripe = stripe(key);
+        stripe.lock.lock();
+        try {
+            stripe.entries.put(key, value);
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    /**
+     * Like {@link Map#compute}, atomically with respect to every other call
+     * for the same key. A {@code null} result removes the entry.
+     */
+    public V compute(K key, BiFunction<? super K, ? super V, ? extends V> remapping) {
+        Stripe<K, V> stripe = stripe(key);
+        stripe.lock.lock();
+        try {
+            return stripe.entries.compute(key, remapping);
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    public void remove(K key) {
+        Stripe<K, V> stripe = stripe(key);
+        stripe.lock.lock();
+        try {
+            stripe.entries.remove(key);
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    public void clear() {
+        for (Stripe<K, V> stripe : stripes) {
+            stripe.lock.lock();
+            try {
+                stripe.entries.clear();
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+    }
+
+    public int size() {
+        int size = 0;
+        for (Stripe<K, V> stripe : stripes) {
+            stripe.lock.lock();
+            try {
+                size += stripe.entries.size();
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+        return size;
+    }
+
+    /** Entries dropped to stay within the capacity. */
+    public long evictionCount() {
+        return evictionCount.sum();
+    }
+
+    private Stripe<K, V> stripe(K key) {
+        int h = key.hashCode();
+        return stripes[(h ^ (h >>> 16)) & mask];
+    }
+
+    private static final class Stripe<K, V> {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final LinkedHashMap<K, V> entries;
+
+        Stripe(int capacity, LongAdder evictionCount) {
+            this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                    if (size() <= capacity) {
+                        return false;
+                    }
+                    evictionCount.increment();
+                    return true;
+                }
+            };
+        }
+    }
+}
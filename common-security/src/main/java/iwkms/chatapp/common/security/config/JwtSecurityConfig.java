@@ -9,6 +9,7 @@ import org.springframework.security.config.annotation.web.configurers.AbstractHt
 import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
+import org.springframework.security.web.util.matcher.RequestMatcher;
 
 public abstract class JwtSecurityConfig {
 
@@ -20,6 +21,15 @@ public abstract class JwtSecurityConfig {
         this.jwtAuthenticationEntryPoint = new JwtAuthenticationEntryPoint(objectMapper);
     }
 
+    /**
+     * Matches requests that arrived on {@code management.server.port}. The
+     * actuator endpoints are only open there, so they stay unreachable through
+     * the public port; a port of zero or less matches nothing.
+     */
+    protected static RequestMatcher onManagementPort(int managementPort) {
+        return request -> managementPort > 0 && request.getLocalPort() == managementPort;
+    }
+
     protected SecurityFilterChain configureSecurityFilterChain(HttpSecurity http) throws Exception {
         return http
                 .csrf(AbstractHttpConfigurer::disable)
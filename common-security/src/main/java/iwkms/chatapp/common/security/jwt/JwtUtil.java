@@ -3,9 +3,14 @@ package iwkms.chatapp.common.security.jwt;
 import io.jsonwebtoken.*;
 import io.jsonwebtoken.security.Keys;
 import io.jsonwebtoken.security.SignatureException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
 import jakarta.servlet.http.HttpServletRequest;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
@@ -18,25 +23,40 @@ import org.springframework.util.StringUtils;
 
 import java.security.Key;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 
 @Component
-public class JwtUtil {
+public class JwtUtil implements MeterBinder {
     private static final Logger logger = LoggerFactory.getLogger(JwtUtil.class);
 
     private final Key key;
+    private final JwtParser jwtParser;
+    private final VerifiedTokenCache tokenCache;
     private final long jwtExpirationMs;
     private final String jwtHeader;
     private final String jwtPrefix;
     public static final String ROLES_CLAIM = "roles";
 
+    private volatile Timer verifiedTimer;
+    private volatile Timer rejectedTimer;
+
+    public JwtUtil(String secret, long jwtExpirationMs) {
+        this(secret, jwtExpirationMs, VerifiedTokenCache.disabled());
+    }
+
+    @Autowired
     public JwtUtil(@Value("${jwt.secret}") String secret,
-                   @Value("${jwt.expiration.ms:3600000}") long jwtExpirationMs) {
+                   @Value("${jwt.expiration.ms:3600000}") long jwtExpirationMs,
+                   VerifiedTokenCache tokenCache) {
         this.key = Keys.hmacShaKeyFor(secret.getBytes());
+        this.jwtParser = Jwts.parserBuilder().setSigningKey(key).build();
+        this.tokenCache = tokenCache;
         this.jwtExpirationMs = jwtExpirationMs;
         this.jwtHeader = "Authorization";
         this.jwtPrefix = "Bearer ";
+        registerTimers(new CompositeMeterRegistry());
     }
 
     public String extractTokenFromRequest(HttpServletRequest request) {
@@ -51,59 +71,105 @@ public class JwtUtil {
     }
 
     public boolean validateToken(String token) {
+        return parseToken(token) != null;
+    }
+
+    public String getUsernameFromToken(String token) {
+        return jwtParser.parseClaimsJws(token).getBody().getSubject();
+    }
+
+    public Claims getClaimsFromToken(String token) {
+        return jwtParser.parseClaimsJws(token).getBody();
+    }
+
+    /**
+     * Verifies the token and extracts everything needed to authenticate it in a
+     * single parse.
+     *
+     * @return the verified token, or {@code null} if it is invalid or expired
+     */
+    public ParsedToken parseToken(String token) {
+        Claims claims;
         try {
-            Jwts.parserBuilder().setSigningKey(key).build().parseClaimsJws(token);
-            return true;
+            claims = jwtParser.parseClaimsJws(token).getBody();
         } catch (SignatureException e) {
             logger.error("Invalid JWT signature: {}", e.getMessage());
+            return null;
         } catch (MalformedJwtException e) {
             logger.error("Invalid JWT token: {}", e.getMessage());
+            return null;
         } catch (ExpiredJwtException e) {
             logger.error("JWT token is expired: {}", e.getMessage());
+            return null;
         } catch (UnsupportedJwtException e) {
             logger.error("JWT token is unsupported: {}", e.getMessage());
+            return null;
         } catch (IllegalArgumentException e) {
             logger.error("JWT claims string is empty: {}", e.getMessage());
-        }
-        return false;
-    }
-
-    public String getUsernameFromToken(String token) {
-        return Jwts.parserBuilder().setSigningKey(key).build()
-                .parseClaimsJws(token).getBody().getSubject();
-    }
-
-    public Claims getClaimsFromToken(String token) {
-        return Jwts.parserBuilder().setSigningKey(key).build()
-                .parseClaimsJws(token).getBody();
-    }
-
-    public Authentication getAuthentication(String token) {
-        if (!validateToken(token)) {
+            return null;
+        } catch (JwtException e) {
+            logger.error("JWT token is invalid: {}", e.getMessage());
             return null;
         }
-        
-        String username = getUsernameFromToken(token);
-        Claims claims = getClaimsFromToken(token);
-        String rolesString = claims.get(ROLES_CLAIM, String.class);
 
+        String username = claims.getSubject();
+        String rolesString = claims.get(ROLES_CLAIM, String.class);
         List<SimpleGrantedAuthority> authorities;
         if (StringUtils.hasText(rolesString)) {
             authorities = Arrays.stream(rolesString.split(","))
                     .map(SimpleGrantedAuthority::new)
-                    .collect(Collectors.toList());
+                    .toList();
         } else {
             authorities = Collections.emptyList();
             logger.warn("Roles claim missing or empty in JWT for user {}. Using empty authorities.", username);
         }
+        Date expiration = claims.getExpiration();
+        return new ParsedToken(username, authorities, expiration != null ? expiration.toInstant() : null);
+    }
+
+    /**
+     * Verified tokens are remembered until they expire, so a repeated token
+     * costs a hash and a map lookup instead of a signature check.
+     */
+    public Authentication getAuthentication(String token) {
+        ParsedToken parsed = tokenCache.get(token);
+        if (parsed == null) {
+            if (tokenCache.isRevoked(token)) {
+                return null;
+            }
+            long start = System.nanoTime();
+            parsed = parseToken(token);
+            (parsed != null ? verifiedTimer : rejectedTimer).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            if (parsed == null) {
+                return null;
+            }
+            tokenCache.put(token, parsed);
+        }
+        return toAuthentication(parsed);
+    }
+
+    /**
+     * Evicts the token from the verified-token cache and rejects it in this
+     * process until it expires. Other instances are not told.
+     */
+    public void revokeToken(String token) {
+        ParsedToken parsed = tokenCache.get(token);
+        if (parsed == null) {
+            parsed = parseToken(token);
+        }
+        if (parsed != null) {
+            tokenCache.revoke(token, parsed.expiresAt());
+        }
+    }
 
+    public Authentication toAuthentication(ParsedToken parsed) {
         UserDetails userDetails = User.builder()
-                .username(username)
+                .username(parsed.username())
                 .password("")
-                .authorities(authorities)
+                .authorities(parsed.authorities())
                 .build();
-        
-        return new UsernamePasswordAuthenticationToken(userDetails, null, authorities);
+
+        return new UsernamePasswordAuthenticationToken(userDetails, null, parsed.authorities());
     }
 
     public String generateToken(Authentication authentication) {
@@ -135,4 +201,24 @@ public class JwtUtil {
                 .signWith(key, SignatureAlgorithm.HS256)
                 .compact();
     }
-} 
\ No newline at end of file
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        registerTimers(registry);
+    }
+
+    /**
+     * Signature checks done by {@link #getAuthentication}; tokens answered
+     * from the cache are not timed. Until bound, the timers record nowhere.
+     */
+    private void registerTimers(MeterRegistry registry) {
+        verifiedTimer = Timer.builder("jwt.verify")
+                .tag("result", "valid")
+                .publishPercentileHistogram()
+                .register(registry);
+        rejectedTimer = Timer.builder("jwt.verify")
+                .tag("result", "invalid")
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+}
@@ -0,0 +1,12 @@
+package iwkms.chatapp.common.security.jwt;
+
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Result of verifying a JWT: subject, granted roles and expiry.
+ */
+public record ParsedToken(String username, List<SimpleGrantedAuthority> authorities, Instant expiresAt) {
+}
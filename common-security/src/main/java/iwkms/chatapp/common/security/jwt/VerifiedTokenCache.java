@@ -0,0 +1,188 @@
+package iwkms.chatapp.common.security.jwt;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Clock;
+import java.time.Instant;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Tokens that have already passed signature verification, keyed by the
+ * SHA-256 of the token so that raw bearer tokens are not kept in memory. An
+ * entry lives until the token expires, is revoked, or is pushed out to keep
+ * the cache within {@code jwt.cache.max-entries}.
+ *
+ * <p>Revocation is local to this process and kept in memory only: a revoked
+ * token is refused here until its natural expiry, but other instances still
+ * accept it and a restart forgets it.
+ */
+@Component
+public class VerifiedTokenCache implements MeterBinder {
+    private final boolean enabled;
+    private final int maxEntries;
+    private final Clock clock;
+
+    private final ConcurrentHashMap<TokenKey, ParsedToken> verified = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<TokenKey, Instant> revoked = new ConcurrentHashMap<>();
+
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder evictionCount = new LongAdder();
+
+    @Autowired
+    public VerifiedTokenCache(@Value("${jwt.cache.enabled:true}") boolean enabled,
+                              @Value("${jwt.cache.max-entries:10000}") int maxEntries) {
+        this(enabled, maxEntries, Clock.systemUTC());
+    }
+
+    VerifiedTokenCache(boolean enabled, int maxEntries, Clock clock) {
+        this.enabled = enabled;
+        this.maxEntries = maxEntries;
+        this.clock = clock;
+    }
+
+    public static VerifiedTokenCache disabled() {
+        return new VerifiedTokenCache(false, 0);
+    }
+
+    /**
+     * @return the cached verification result, or {@code null} if the token has
+     * not been seen or its cached entry has expired
+     */
+    public ParsedToken get(String token) {
+        if (!enabled) {
+            return null;
+        }
+        TokenKey key = TokenKey.of(token);
+        ParsedToken parsed = verified.get(key);
+        if (parsed == null) {
+            missCount.increment();
+            return null;
+        }
+        // A put that raced with revoke() may have cached a revoked token.
+        if (isExpired(parsed.expiresAt(), clock.instant()) || (!revoked.isEmpty() && revoked.containsKey(key))) {
+            if (verified.remove(key, parsed)) {
+                evictionCount.increment();
+            }
+            missCount.increment();
+            return null;
+        }
+        hitCount.increment();
+        return parsed;
+    }
+
+    public void put(String token, ParsedToken parsed) {
+        if (!enabled || parsed.expiresAt() == null) {
+            return;
+        }
+        TokenKey key = TokenKey.of(token);
+        if (revoked.containsKey(key)) {
+            return;
+        }
+        if (verified.size() >= maxEntries) {
+            makeRoom();
+        }
+        verified.put(key, parsed);
+    }
+
+    public boolean isRevoked(String token) {
+        if (revoked.isEmpty()) {
+            return false;
+        }
+        TokenKey key = TokenKey.of(token);
+        Instant until = revoked.get(key);
+        if (until == null) {
+            return false;
+        }
+        if (isExpired(until, clock.instant())) {
+            revoked.remove(key, until);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Drops the token from the cache and refuses it until {@code expiresAt}.
+     */
+    public void revoke(String token, Instant expiresAt) {
+        TokenKey key = TokenKey.of(token);
+        Instant now = clock.instant();
+        revoked.values().removeIf(until -> isExpired(until, now));
+        revoked.put(key, expiresAt != null ? expiresAt : Instant.MAX);
+        if (verified.remove(key) != null) {
+            evictionCount.increment();
+        }
+    }
+
+    public int size() {
+        return verified.size();
+    }
+
+    private void makeRoom() {
+        Instant now = clock.instant();
+        for (Map.Entry<TokenKey, ParsedToken> entry : verified.entrySet()) {
+            if (isExpired(entry.getValue().expiresAt(), now) && verified.remove(entry.getKey(), entry.getValue())) {
+                evictionCount.increment();
+            }
+        }
+        Iterator<TokenKey> keys = verified.keySet().iterator();
+        while (verified.size() >= maxEntries && keys.hasNext()) {
+            keys.next();
+            keys.remove();
+            evictionCount.increment();
+        }
+    }
+
+    private static boolean isExpired(Instant expiresAt, Instant now) {
+        return !expiresAt.isAfter(now);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("jwt.cache.hits", hitCount, LongAdder::sum)
+                .description("Bearer tokens accepted without re-verifying the signature")
+                .register(registry);
+        FunctionCounter.builder("jwt.cache.misses", missCount, LongAdder::sum)
+                .register(registry);
+        FunctionCounter.builder("jwt.cache.evictions", evictionCount, LongAdder::sum)
+                .register(registry);
+        Gauge.builder("jwt.cache.size", this, VerifiedTokenCache::size)
+                .register(registry);
+    }
+
+    private record TokenKey(long a, long b, long c, long d) {
+        private static final MessageDigest PROTOTYPE = sha256();
+
+        static TokenKey of(String token) {
+            MessageDigest digest;
+            try {
+                digest = (MessageDigest) PROTOTYPE.clone();
+            } catch (CloneNotSupportedException e) {
+                digest = sha256();
+            }
+            ByteBuffer hash = ByteBuffer.wrap(digest.digest(token.getBytes(StandardCharsets.US_ASCII)));
+            return new TokenKey(hash.getLong(), hash.getLong(), hash.getLong(), hash.getLong());
+        }
+
+        private static MessageDigest sha256() {
+            try {
+                return MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException("SHA-256 недоступен", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package iwkms.chatapp.common.cache;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BoundedLruCacheTest {
+
+    @Test
+    void put_OverCapacity_EvictsLeastRecentlyUsed() {
+        BoundedLruCache<String, Integer> cache = new BoundedLruCache<>(2);
+        cache.put("a", 1);
+        cache.put("b", 2);
+        cache.get("a");
+
+        cache.put("c", 3);
+
+        assertEquals(1, cache.get("a"));
+        assertNull(cache.get("b"));
+        assertEquals(3, cache.get("c"));
+        assertEquals(1, cache.evictionCount());
+    }
+
+    @Test
+    void compute_NullResult_RemovesEntry() {
+        BoundedLruCache<String, Integer> cache = new BoundedLruCache<>(10);
+        cache.put("a", 1);
+
+        cache.compute("a", (key, value) -> null);
+        cache.compute("b", (key, value) -> null);
+
+        assertNull(cache.get("a"));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void compute_UpdatesExistingValue() {
+        BoundedLruCache<String, Integer> cache = new BoundedLruCache<>(10);
+        cache.put("a", 1);
+
+        cache.compute("a", (key, value) -> value + 1);
+
+        assertEquals(2, cache.get("a"));
+    }
+
+    @Test
+    void clear_RemovesEveryEntry() {
+        BoundedLruCache<Integer, Integer> cache = new BoundedLruCache<>(8192);
+        for (int i = 0; i < 5000; i++) {
+            cache.put(i, i);
+        }
+
+        cache.clear();
+
+        assertEquals(0, cache.size());
+        assertNull(cache.get(42));
+    }
+
+    @Test
+    void largeCache_StaysWithinCapacityAcrossStripes() {
+        BoundedLruCache<Integer, Integer> cache = new BoundedLruCache<>(8192);
+        for (int i = 0; i < 100_000; i++) {
+            cache.put(i, i);
+        }
+
+        assertTrue(cache.size() <= 8192);
+        assertEquals(99_999, cache.get(99_999));
+    }
+}
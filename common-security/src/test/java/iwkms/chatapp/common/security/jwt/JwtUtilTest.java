@@ -1,6 +1,7 @@
 package iwkms.chatapp.common.security.jwt;
 
 import io.jsonwebtoken.Claims;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import jakarta.servlet.http.HttpServletRequest;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -13,6 +14,7 @@ import org.springframework.security.core.userdetails.User;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 
+import java.time.Instant;
 import java.util.Date;
 import java.util.List;
 import java.util.Set;
@@ -155,6 +157,77 @@ class JwtUtilTest {
         assertNull(jwtUtil.getAuthentication(expiredToken)); 
     }
 
+    @Test
+    void testParseToken_ReturnsSubjectRolesAndExpiry() {
+        UserDetails userDetails = createUserDetails("parsedUser", List.of("ROLE_USER", "ROLE_ADMIN"));
+        Authentication auth = new UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities());
+        String token = jwtUtil.generateToken(auth);
+
+        ParsedToken parsed = jwtUtil.parseToken(token);
+
+        assertNotNull(parsed);
+        assertEquals("parsedUser", parsed.username());
+        assertEquals(Set.of(new SimpleGrantedAuthority("ROLE_USER"), new SimpleGrantedAuthority("ROLE_ADMIN")),
+                Set.copyOf(parsed.authorities()));
+        assertTrue(parsed.expiresAt().isAfter(Instant.now()));
+        assertEquals(jwtUtil.getClaimsFromToken(token).getExpiration().toInstant(), parsed.expiresAt());
+    }
+
+    @Test
+    void testParseToken_InvalidSignatureReturnsNull() {
+        UserDetails userDetails = createUserDetails("userForSigTest", List.of("ROLE_USER"));
+        Authentication auth = new UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities());
+        String token = jwtUtil.generateToken(auth);
+
+        assertNull(jwtUtilDifferentSecret.parseToken(token));
+        assertNull(jwtUtilDifferentSecret.getAuthentication(token));
+    }
+
+    @Test
+    void testGetAuthentication_CachedTokenSkipsVerification() {
+        VerifiedTokenCache cache = new VerifiedTokenCache(true, 100);
+        JwtUtil cachingJwtUtil = new JwtUtil(testSecret, testExpirationMs, cache);
+        UserDetails userDetails = createUserDetails("cachedUser", List.of("ROLE_USER"));
+        Authentication auth = new UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities());
+        String token = cachingJwtUtil.generateToken(auth);
+
+        Authentication first = cachingJwtUtil.getAuthentication(token);
+        Authentication second = cachingJwtUtil.getAuthentication(token);
+
+        assertEquals(1, cache.size());
+        assertNotSame(first, second);
+        assertEquals("cachedUser", second.getName());
+        assertTrue(second.getAuthorities().contains(new SimpleGrantedAuthority("ROLE_USER")));
+    }
+
+    @Test
+    void testBindTo_TimesVerificationsByResult() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        jwtUtil.bindTo(registry);
+        UserDetails userDetails = createUserDetails("timedUser", List.of("ROLE_USER"));
+        String token = jwtUtil.generateToken(
+                new UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities()));
+
+        jwtUtil.getAuthentication(token);
+        jwtUtil.getAuthentication("not-a-token");
+
+        assertEquals(1, registry.get("jwt.verify").tag("result", "valid").timer().count());
+        assertEquals(1, registry.get("jwt.verify").tag("result", "invalid").timer().count());
+    }
+
+    @Test
+    void testRevokeToken_RejectsTokenAfterwards() {
+        JwtUtil cachingJwtUtil = new JwtUtil(testSecret, testExpirationMs, new VerifiedTokenCache(true, 100));
+        UserDetails userDetails = createUserDetails("revokedUser", List.of("ROLE_USER"));
+        Authentication auth = new UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities());
+        String token = cachingJwtUtil.generateToken(auth);
+        assertNotNull(cachingJwtUtil.getAuthentication(token));
+
+        cachingJwtUtil.revokeToken(token);
+
+        assertNull(cachingJwtUtil.getAuthentication(token));
+    }
+
     @Test
     void testExtractTokenFromRequest_ValidBearerToken() {
         String tokenValue = "sampleTokenValue";
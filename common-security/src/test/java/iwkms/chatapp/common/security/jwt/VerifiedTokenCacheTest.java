@@ -0,0 +1,125 @@
+package iwkms.chatapp.common.security.jwt;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VerifiedTokenCacheTest {
+
+    private MutableClock clock;
+    private VerifiedTokenCache cache;
+
+    @BeforeEach
+    void setUp() {
+        clock = new MutableClock(Instant.parse("2024-05-01T12:00:00Z"));
+        cache = new VerifiedTokenCache(true, 3, clock);
+    }
+
+    @Test
+    void get_ReturnsCachedTokenUntilItExpires() {
+        ParsedToken parsed = token("alice", Duration.ofMinutes(10));
+        cache.put("token-a", parsed);
+
+        assertSame(parsed, cache.get("token-a"));
+
+        clock.advance(Duration.ofMinutes(10));
+        assertNull(cache.get("token-a"));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void get_UnknownTokenIsMiss() {
+        cache.put("token-a", token("alice", Duration.ofMinutes(10)));
+
+        assertNull(cache.get("token-b"));
+    }
+
+    @Test
+    void put_EvictsExpiredEntriesBeforeLiveOnesWhenFull() {
+        cache.put("short", token("alice", Duration.ofMinutes(1)));
+        cache.put("long-1", token("bob", Duration.ofMinutes(30)));
+        cache.put("long-2", token("carol", Duration.ofMinutes(30)));
+        clock.advance(Duration.ofMinutes(2));
+
+        cache.put("long-3", token("dave", Duration.ofMinutes(30)));
+
+        assertEquals(3, cache.size());
+        assertNotNull(cache.get("long-1"));
+        assertNotNull(cache.get("long-2"));
+        assertNotNull(cache.get("long-3"));
+    }
+
+    @Test
+    void put_StaysWithinMaxEntries() {
+        for (int i = 0; i < 10; i++) {
+            cache.put("token-" + i, token("user" + i, Duration.ofMinutes(30)));
+        }
+
+        assertEquals(3, cache.size());
+    }
+
+    @Test
+    void revoke_DropsEntryAndRefusesTokenUntilExpiry() {
+        ParsedToken parsed = token("alice", Duration.ofMinutes(10));
+        cache.put("token-a", parsed);
+
+        cache.revoke("token-a", parsed.expiresAt());
+
+        assertNull(cache.get("token-a"));
+        assertTrue(cache.isRevoked("token-a"));
+        cache.put("token-a", parsed);
+        assertNull(cache.get("token-a"));
+
+        clock.advance(Duration.ofMinutes(10));
+        assertFalse(cache.isRevoked("token-a"));
+    }
+
+    @Test
+    void disabledCache_NeverHits() {
+        VerifiedTokenCache disabled = VerifiedTokenCache.disabled();
+        disabled.put("token-a", token("alice", Duration.ofMinutes(10)));
+
+        assertNull(disabled.get("token-a"));
+        assertEquals(0, disabled.size());
+    }
+
+    private ParsedToken token(String username, Duration ttl) {
+        return new ParsedToken(username, List.of(new SimpleGrantedAuthority("ROLE_USER")), clock.instant().plus(ttl));
+    }
+
+    private static final class MutableClock extends Clock {
+        private Instant now;
+
+        MutableClock(Instant now) {
+            this.now = now;
+        }
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}